@@ -0,0 +1,241 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Board of the 61 cells in one byte array, used where millions of moves are played, e.g. the
+ * playouts of {@link org.abalone.server.AbaloneMctsEngine} and the {@link AbalonePushOutSolver}.
+ *
+ * A move is encoded as {@code cell * 6 + direction}: the piece on the cell moves one cell in the
+ * direction, with the same rules as {@link AbaloneMoveIndex}. Generating and playing moves does
+ * not allocate, and {@link #copyFrom} resets a board in place. Next to the cells, the board keeps
+ * one occupancy mask per value, so that lines of pieces are tested with the
+ * {@link AbaloneLineMasks}.
+ */
+public final class AbaloneCompactBoard {
+	public static final byte EMPTY = 0;
+	public static final byte WHITE = 1;
+	public static final byte BLACK = 2;
+	/*
+	 * Value of the {@link AbaloneGeometry#OFF_BOARD} cell, which ends every line.
+	 */
+	public static final byte OFF = 3;
+	public static final int DIRECTION_COUNT = AbaloneGeometry.DIRECTION_COUNT;
+	/*
+	 * 14 pieces moving in 6 directions.
+	 */
+	public static final int MAX_MOVES = 84;
+
+	private final byte[] cells = new byte[AbaloneGeometry.CELL_COUNT + 1];
+	/*
+	 * pieces[value] is the mask of the cells holding {@link #EMPTY}, {@link #WHITE} or
+	 * {@link #BLACK}.
+	 */
+	private final long[] pieces = new long[3];
+	private byte turn;
+
+	/**
+	 * @param turn {@link AbaloneConstants#WTurn} or {@link AbaloneConstants#BTurn}, side to move.
+	 */
+	public AbaloneCompactBoard(List<ArrayList<String>> board, String turn) {
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			String square = board.get(AbaloneGeometry.getRow(cell)).get(AbaloneGeometry.getColumn(cell));
+			cells[cell] = square.equals(W) ? WHITE : square.equals(B) ? BLACK : EMPTY;
+			pieces[cells[cell]] |= AbaloneLineMasks.getCellMask(cell);
+		}
+		cells[AbaloneGeometry.OFF_BOARD] = OFF;
+		this.turn = turn.equals(WTurn) ? WHITE : BLACK;
+	}
+
+	public AbaloneCompactBoard(AbaloneCompactBoard other) {
+		copyFrom(other);
+	}
+
+	public void copyFrom(AbaloneCompactBoard other) {
+		System.arraycopy(other.cells, 0, cells, 0, cells.length);
+		System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+		turn = other.turn;
+	}
+
+	/**
+	 * @return {@link #WHITE} or {@link #BLACK}.
+	 */
+	public byte getTurn() {
+		return turn;
+	}
+
+	public String getTurnString() {
+		return turn == WHITE ? WTurn : BTurn;
+	}
+
+	/**
+	 * @return {@link #EMPTY}, {@link #WHITE}, {@link #BLACK}, or {@link #OFF} for
+	 * {@link AbaloneGeometry#OFF_BOARD}.
+	 */
+	public byte getCell(int cell) {
+		return cells[cell];
+	}
+
+	/**
+	 * @return the mask of the cells holding {@code value}: {@link #EMPTY}, {@link #WHITE} or
+	 * {@link #BLACK}.
+	 */
+	public long getPieces(byte value) {
+		return pieces[value];
+	}
+
+	public static int getMoveCell(int move) {
+		return move / DIRECTION_COUNT;
+	}
+
+	public static int getMoveDirection(int move) {
+		return move % DIRECTION_COUNT;
+	}
+
+	/**
+	 * Method used to write all the legal moves of the side to move in {@code moves}, which should
+	 * have room for {@link #MAX_MOVES} moves.
+	 * @return the number of moves.
+	 */
+	public int generateMoves(int[] moves) {
+		int count = 0;
+		for(long own = pieces[turn]; own != 0; own &= own - 1) {
+			int cell = Long.numberOfTrailingZeros(own);
+			for(int direction = 0; direction < DIRECTION_COUNT; direction++) {
+				if(isLegal(cell, direction)) {
+					moves[count++] = cell * DIRECTION_COUNT + direction;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Same rule as {@link AbaloneMoveIndex}: the line of own pieces starting from the moved piece
+	 * has at most three pieces, and is followed by an empty cell or by a shorter line of opponent's
+	 * pieces.
+	 */
+	private boolean isLegal(int cell, int direction) {
+		long own = pieces[turn];
+		int numOwn = 1;
+		while(numOwn < AbaloneLineMasks.MAX_LENGTH
+				&& AbaloneLineMasks.isLine(own, cell, direction, numOwn + 1)) {
+			numOwn++;
+		}
+		int front = cell;
+		for(int i = 0; i < numOwn; i++) {
+			front = AbaloneGeometry.getNeighbor(front, direction);
+		}
+		if(cells[front] == EMPTY) {
+			return true;
+		}
+		if(cells[front] != (turn == WHITE ? BLACK : WHITE)) {
+			// the edge, or a fourth own piece.
+			return false;
+		}
+		// pushing needs fewer opponent's pieces in line than own pieces.
+		return !AbaloneLineMasks.isLine(pieces[cells[front]], front, direction, numOwn);
+	}
+
+	/**
+	 * @return true if the move pushes pieces of the opponent.
+	 */
+	public boolean isPush(int move) {
+		int direction = getMoveDirection(move);
+		int next = AbaloneGeometry.getNeighbor(getMoveCell(move), direction);
+		while(cells[next] == turn) {
+			next = AbaloneGeometry.getNeighbor(next, direction);
+		}
+		return cells[next] != EMPTY && cells[next] != OFF;
+	}
+
+	/**
+	 * @return true if the move pushes a piece out of the hexagon.
+	 */
+	public boolean isPushOut(int move) {
+		int direction = getMoveDirection(move);
+		int next = AbaloneGeometry.getNeighbor(getMoveCell(move), direction);
+		while(cells[next] != EMPTY && cells[next] != OFF) {
+			next = AbaloneGeometry.getNeighbor(next, direction);
+		}
+		return cells[next] == OFF;
+	}
+
+	/**
+	 * Method used to play a legal move: every piece in front of the moved piece is pushed one
+	 * cell further, until an empty cell or the edge of the hexagon. Then the other side is to move.
+	 * @return true if a piece is pushed out, which wins the game for the side which moved.
+	 */
+	public boolean play(int move) {
+		int direction = getMoveDirection(move);
+		int cell = getMoveCell(move);
+		byte carried = cells[cell];
+		setCell(cell, EMPTY);
+		int next = AbaloneGeometry.getNeighbor(cell, direction);
+		while(next != AbaloneGeometry.OFF_BOARD && carried != EMPTY) {
+			byte replaced = cells[next];
+			setCell(next, carried);
+			carried = replaced;
+			next = AbaloneGeometry.getNeighbor(next, direction);
+		}
+		turn = turn == WHITE ? BLACK : WHITE;
+		return carried != EMPTY;
+	}
+
+	/**
+	 * Method used to move one more piece of the side which just moved, as the following jumps of a
+	 * round in {@link AbalonePresenter}: the piece moves one cell without pushing, and the turn does
+	 * not change.
+	 * @throws IllegalArgumentException if the piece would leave the hexagon.
+	 */
+	public void playFollowing(int move) {
+		int cell = getMoveCell(move);
+		int next = AbaloneGeometry.getNeighbor(cell, getMoveDirection(move));
+		if(next == AbaloneGeometry.OFF_BOARD) {
+			throw new IllegalArgumentException("Move out of the board: " + move);
+		}
+		setCell(next, cells[cell]);
+		setCell(cell, EMPTY);
+	}
+
+	private void setCell(int cell, byte value) {
+		long mask = AbaloneLineMasks.getCellMask(cell);
+		pieces[cells[cell]] &= ~mask;
+		pieces[value] |= mask;
+		cells[cell] = value;
+	}
+
+	/**
+	 * @return the sum of the distances of the pieces of {@code color} to the center.
+	 */
+	public int getCenterDistance(byte color) {
+		int distance = 0;
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			if(cells[cell] == color) {
+				distance += AbaloneGeometry.getDistanceToCenter(cell);
+			}
+		}
+		return distance;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof AbaloneCompactBoard)) {
+			return false;
+		}
+		AbaloneCompactBoard otherBoard = (AbaloneCompactBoard) other;
+		return turn == otherBoard.turn && Arrays.equals(cells, otherBoard.cells);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(cells) + turn;
+	}
+}
@@ -0,0 +1,358 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.UNDERGOING;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.game_api.GameApi.Message;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Messages used to run move generation, hint search and position analysis away from the UI
+ * thread. They follow the {@link org.game_api.GameApi} conventions: every message is a map with a
+ * "type", and is sent as JSON with postMessage, e.g. to a Web Worker.
+ */
+public final class AbaloneComputeApi {
+	/*
+	 * Kinds of {@link ComputeRequest}.
+	 */
+	public static final String MOVES = "Moves";
+	public static final String HINT = "Hint";
+	public static final String AI_MOVE = "AiMove";
+	public static final String ANALYSIS = "Analysis";
+	public static final String PONDER = "Ponder";
+
+	/**
+	 * Where the requests are computed. Only the last sent request is answered: sending a new
+	 * request or calling {@link #cancel()} drops the one still running.
+	 *
+	 * {@link #PONDER} requests are never answered and are not dropped by {@link #cancel()}: the
+	 * predicted position is searched in the background until the next request.
+	 */
+	public interface ComputeChannel {
+		void sendComputeRequest(ComputeRequest computeRequest, ComputeCallback computeCallback);
+		void cancel();
+	}
+
+	public interface ComputeCallback {
+		void computeDone(ComputeDone computeDone);
+	}
+
+	/**
+	 * Channel which computes the request directly on the calling thread, used when Web Workers
+	 * are not available and on the JVM. There is no background to ponder in, so {@link #PONDER}
+	 * requests are ignored.
+	 */
+	public static class LocalComputeChannel implements ComputeChannel {
+		private final ComputeService computeService = new ComputeService();
+
+		@Override
+		public void sendComputeRequest(ComputeRequest computeRequest,
+				ComputeCallback computeCallback) {
+			if(computeRequest.getKind().equals(PONDER)) {
+				return;
+			}
+			computeCallback.computeDone(computeService.compute(computeRequest));
+		}
+
+		@Override
+		public void cancel() {
+			// nothing is running after sendComputeRequest returns.
+		}
+	}
+
+	/**
+	 * Class used to answer a {@link ComputeRequest}, on whichever thread it is running.
+	 *
+	 * The service keeps one {@link AbaloneTranspositionTable} for all its searches, and the search
+	 * of the position predicted by the last {@link #PONDER} request. If the next {@link #AI_MOVE}
+	 * is asked for that position (ponder hit), its search goes on from the pondered depths;
+	 * otherwise (ponder miss) the pondered search is dropped, but not the table entries. A
+	 * pondered search which did not finish a depth yet counts as neither.
+	 */
+	public static class ComputeService {
+		public static final int TABLE_BITS = 18;
+
+		private final AbaloneTranspositionTable transpositionTable =
+				new AbaloneTranspositionTable(TABLE_BITS);
+		private AbaloneSearch ponderSearch;
+		private int ponderHits;
+		private int ponderMisses;
+
+		/**
+		 * Prepare the search of the {@link #PONDER} request, which is then run by {@link #ponder}.
+		 */
+		public void startPondering(ComputeRequest request) {
+			ponderSearch = new AbaloneSearch(request.getBoard(), request.getTurn(),
+					transpositionTable);
+			ponderSearch.setMaxDepth(request.getMaxDepth());
+		}
+
+		/**
+		 * Ponder for about {@code millis} milliseconds, the running depth is stopped then and
+		 * resumed by the next call.
+		 * @return true if pondering more is useful.
+		 */
+		public boolean ponder(int millis) {
+			if(ponderSearch == null || ponderSearch.isFinished()) {
+				return false;
+			}
+			ponderSearch.setDeadline(System.currentTimeMillis() + millis);
+			ponderSearch.searchNextDepth();
+			return !ponderSearch.isFinished();
+		}
+
+		public int getPonderHits() {
+			return ponderHits;
+		}
+
+		public int getPonderMisses() {
+			return ponderMisses;
+		}
+
+		public ComputeDone compute(ComputeRequest request) {
+			List<ArrayList<String>> board = request.getBoard();
+			if(request.getKind().equals(MOVES)) {
+				List<List<ArrayList<Integer>>> moves = Lists.newArrayList();
+				for(Placement placement : AbaloneMoveIndex.getPlacements(board, request.getTurn())) {
+					moves.add(placement.getJumps());
+				}
+				return new ComputeDone(request.getRequestId(), request.getKind(), moves,
+						Lists.<ArrayList<Integer>>newArrayList(), UNDERGOING, 0, 0,
+						Lists.<List<ArrayList<Integer>>>newArrayList());
+			}
+			AbaloneSearch.Result result;
+			if(request.getKind().equals(AI_MOVE)) {
+				result = searchOnTurnClock(takePonderSearch(board, request.getTurn()), request);
+			} else {
+				result = new AbaloneSearch(board, request.getTurn(), transpositionTable)
+						.search(request.getMaxDepth(), request.getMillis());
+			}
+			if(result == null) {
+				return new ComputeDone(request.getRequestId(), request.getKind(),
+						Lists.<List<ArrayList<Integer>>>newArrayList(),
+						Lists.<ArrayList<Integer>>newArrayList(), UNDERGOING, 0, 0,
+						Lists.<List<ArrayList<Integer>>>newArrayList());
+			}
+			List<List<ArrayList<Integer>>> principalVariation = Lists.newArrayList();
+			for(Placement placement : result.getPrincipalVariation()) {
+				principalVariation.add(placement.getJumps());
+			}
+			Placement best = result.getBestPlacement();
+			return new ComputeDone(request.getRequestId(), request.getKind(),
+					Lists.<List<ArrayList<Integer>>>newArrayList(), best.getJumps(), best.getMessage(),
+					result.getScore(), result.getDepth(), principalVariation);
+		}
+
+		/**
+		 * @return the pondered search if it is for this position, otherwise a new search.
+		 */
+		private AbaloneSearch takePonderSearch(List<ArrayList<String>> board, String turn) {
+			AbaloneSearch search = ponderSearch;
+			ponderSearch = null;
+			boolean isPondered = search != null && search.getResult() != null;
+			if(search != null && search.getHash() == AbaloneZobrist.hash(board, turn)) {
+				if(isPondered) {
+					ponderHits++;
+				}
+				return search;
+			}
+			if(isPondered) {
+				ponderMisses++;
+			}
+			return new AbaloneSearch(board, turn, transpositionTable);
+		}
+
+		/**
+		 * The AI move is searched depth after depth, as long as {@link AbaloneTimeManager} allows it
+		 * with the time left on the turn clock, {@code request.getMillis()}.
+		 */
+		private AbaloneSearch.Result searchOnTurnClock(AbaloneSearch search, ComputeRequest request) {
+			AbaloneTimeManager timeManager =
+					new AbaloneTimeManager(System.currentTimeMillis(), request.getMillis());
+			search.setMaxDepth(request.getMaxDepth());
+			search.setDeadline(timeManager.getHardDeadline());
+			while(search.searchNextDepth()
+					&& timeManager.shouldSearchDeeper(search.getResult(), System.currentTimeMillis())) {
+				// one more depth is finished, and there is time for the next one.
+			}
+			return search.getResult();
+		}
+	}
+
+	public static class ComputeRequest extends Message {
+		private final int requestId;
+		private final String kind;
+		private final List<ArrayList<String>> board;
+		private final String turn;
+		private final int maxDepth;
+		private final int millis;
+
+		/**
+		 * @param requestId id used to match the {@link ComputeDone}.
+		 * @param kind {@link #MOVES}, {@link #HINT}, {@link #AI_MOVE}, {@link #ANALYSIS} or
+		 * {@link #PONDER}.
+		 * @param board board to compute on.
+		 * @param turn side to move.
+		 * @param maxDepth maximum search depth in rounds.
+		 * @param millis maximum search time in milliseconds, for {@link #AI_MOVE} the time left on
+		 * the turn clock.
+		 */
+		public ComputeRequest(int requestId, String kind, List<ArrayList<String>> board,
+				String turn, int maxDepth, int millis) {
+			this.requestId = requestId;
+			this.kind = kind;
+			this.board = board;
+			this.turn = turn;
+			this.maxDepth = maxDepth;
+			this.millis = millis;
+		}
+
+		@Override
+		public String getMessageName() {
+			return "ComputeRequest";
+		}
+
+		@Override
+		public List<Object> getFieldsNameAndValue() {
+			return Arrays.<Object>asList("requestId", requestId, "kind", kind, "board", board,
+					"turn", turn, "maxDepth", maxDepth, "millis", millis);
+		}
+
+		public int getRequestId() {
+			return requestId;
+		}
+
+		public String getKind() {
+			return kind;
+		}
+
+		public List<ArrayList<String>> getBoard() {
+			return board;
+		}
+
+		public String getTurn() {
+			return turn;
+		}
+
+		public int getMaxDepth() {
+			return maxDepth;
+		}
+
+		public int getMillis() {
+			return millis;
+		}
+	}
+
+	public static class ComputeDone extends Message {
+		private final int requestId;
+		private final String kind;
+		private final List<List<ArrayList<Integer>>> moves;
+		private final List<ArrayList<Integer>> jumps;
+		private final String message;
+		private final int score;
+		private final int depth;
+		private final List<List<ArrayList<Integer>>> principalVariation;
+
+		/**
+		 * @param moves all the legal moves, for {@link #MOVES}.
+		 * @param jumps jumps of the best move, empty if there is no move.
+		 * @param message {@link AbaloneConstants#GAMEOVER} if the best move wins.
+		 * @param score score of the best move for the side to move.
+		 * @param depth finished search depth.
+		 * @param principalVariation jumps of the best moves of both sides.
+		 */
+		public ComputeDone(int requestId, String kind, List<List<ArrayList<Integer>>> moves,
+				List<ArrayList<Integer>> jumps, String message, int score, int depth,
+				List<List<ArrayList<Integer>>> principalVariation) {
+			this.requestId = requestId;
+			this.kind = kind;
+			this.moves = moves;
+			this.jumps = jumps;
+			this.message = message;
+			this.score = score;
+			this.depth = depth;
+			this.principalVariation = principalVariation;
+		}
+
+		@Override
+		public String getMessageName() {
+			return "ComputeDone";
+		}
+
+		@Override
+		public List<Object> getFieldsNameAndValue() {
+			return Arrays.<Object>asList("requestId", requestId, "kind", kind, "moves", moves,
+					"jumps", jumps, "message", message, "score", score, "depth", depth,
+					"principalVariation", principalVariation);
+		}
+
+		public int getRequestId() {
+			return requestId;
+		}
+
+		public String getKind() {
+			return kind;
+		}
+
+		public List<List<ArrayList<Integer>>> getMoves() {
+			return moves;
+		}
+
+		public List<ArrayList<Integer>> getJumps() {
+			return jumps;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public int getScore() {
+			return score;
+		}
+
+		public int getDepth() {
+			return depth;
+		}
+
+		public List<List<ArrayList<Integer>>> getPrincipalVariation() {
+			return principalVariation;
+		}
+	}
+
+	/**
+	 * Method used to convert a message map, transmitted as JSON, to the compute message.
+	 * @return the message, or null if the type is not a compute message.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Message messageToComputeMessage(Map<String, Object> message) {
+		String type = (String) message.get("type");
+		if("ComputeRequest".equals(type)) {
+			return new ComputeRequest(
+					(Integer) message.get("requestId"),
+					(String) message.get("kind"),
+					(List<ArrayList<String>>) message.get("board"),
+					(String) message.get("turn"),
+					(Integer) message.get("maxDepth"),
+					(Integer) message.get("millis"));
+		} else if("ComputeDone".equals(type)) {
+			return new ComputeDone(
+					(Integer) message.get("requestId"),
+					(String) message.get("kind"),
+					(List<List<ArrayList<Integer>>>) message.get("moves"),
+					(List<ArrayList<Integer>>) message.get("jumps"),
+					(String) message.get("message"),
+					(Integer) message.get("score"),
+					(Integer) message.get("depth"),
+					(List<List<ArrayList<Integer>>>) message.get("principalVariation"));
+		}
+		return null;
+	}
+
+	private AbaloneComputeApi() { }
+}
@@ -0,0 +1,200 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BOARD;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.JUMP;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.illegalSquares;
+import static org.abalone.client.AbaloneConstants.scoreSquares;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+
+/**
+ * Verifier with the same rules as {@link AbaloneLogic}, to replace it once
+ * {@link org.abalone.server.AbaloneShadowVerifier} finds no disagreement between them on the
+ * live moves.
+ *
+ * It does not build {@link AbaloneState}s nor share their rows with
+ * {@link AbaloneRowInterner}, and looks up the illegal and score squares in arrays: the jumps are
+ * checked and applied in one pass, on copies of the rows they touch only, and the result is
+ * compared row by row with the board of the state.
+ */
+public class AbaloneFastVerifier implements AbaloneVerifier {
+	private static final boolean[][] ILLEGAL_SQUARES = toMatrix(illegalSquares);
+	private static final boolean[][] SCORE_SQUARES = toMatrix(scoreSquares);
+
+	private static boolean[][] toMatrix(List<ArrayList<Integer>> squares) {
+		boolean[][] matrix = new boolean[AbaloneConstants.BoardRowNum][AbaloneConstants.BoardColNum];
+		for(List<Integer> square : squares) {
+			matrix[square.get(0)][square.get(1)] = true;
+		}
+		return matrix;
+	}
+
+	private static boolean isIn(boolean[][] matrix, int x, int y) {
+		return x >= 0 && x < matrix.length && y >= 0 && y < matrix[x].length && matrix[x][y];
+	}
+
+	@Override
+	public VerifyMoveDone verify(VerifyMove verifyMove) {
+		try {
+			checkMoveIsLegal(verifyMove);
+			return new VerifyMoveDone();
+		} catch(RuntimeException e) {
+			return new VerifyMoveDone(verifyMove.getLastMovePlayerId(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Same checks as {@link AbaloneLogic#checkMoveIsLegal}: a malformed VerifyMove throws like it
+	 * does, e.g. a ClassCastException for a row or a jump which is not an ArrayList.
+	 */
+	void checkMoveIsLegal(VerifyMove verifyMove) {
+		Map<String, Object> state = verifyMove.getState();
+		Map<String, Object> lastState = verifyMove.getLastState();
+		List<Operation> lastMove = verifyMove.getLastMove();
+		List<String> playerIds = verifyMove.getPlayerIds();
+		String lastMovePlayerId = verifyMove.getLastMovePlayerId();
+
+		if(lastState.isEmpty()) {
+			check(lastMovePlayerId.equals(playerIds.get(0)),
+					"The player of the initial operations must be the first player!");
+			check(lastMove.size() == 3 &&
+						lastMove.get(0) instanceof SetTurn &&
+						lastMove.get(1) instanceof Set &&
+						lastMove.get(2) instanceof Set,
+					"The initial operations should contains three operations: SetTurn, Set, Set");
+			return;
+		}
+
+		@SuppressWarnings("unchecked")
+		List<ArrayList<Integer>> jumps = (List<ArrayList<Integer>>) ((Set) lastMove.get(2)).getValue();
+		@SuppressWarnings("unchecked")
+		List<ArrayList<String>> lastBoard = (List<ArrayList<String>>) lastState.get(BOARD);
+		@SuppressWarnings("unchecked")
+		List<ArrayList<Integer>> lastJumps = (List<ArrayList<Integer>>) lastState.get(JUMP);
+		check(lastBoard != null && lastJumps != null, "The last state should have a board and jumps");
+		// an empty state is never the result of a move.
+		check(!state.isEmpty(), "LastState applied lastMove should get current State");
+		@SuppressWarnings("unchecked")
+		List<ArrayList<String>> board = (List<ArrayList<String>>) state.get(BOARD);
+		@SuppressWarnings("unchecked")
+		List<ArrayList<Integer>> stateJumps = (List<ArrayList<Integer>>) state.get(JUMP);
+		check(board != null && stateJumps != null, "The state should have a board and jumps");
+
+		// 1. The transformation should be correct, no jumps (or null) keep the last state.
+		boolean hasJumps = jumps != null && !jumps.isEmpty();
+		List<ArrayList<String>> newBoard = new ArrayList<ArrayList<String>>(lastBoard);
+		if(hasJumps) {
+			boolean[] isRowCopied = new boolean[newBoard.size()];
+			for(ArrayList<Integer> jump : jumps) {
+				checkJumpSquares(jump);
+				int startX = jump.get(0);
+				int startY = jump.get(1);
+				int endX = jump.get(2);
+				int endY = jump.get(3);
+				copyRow(newBoard, isRowCopied, startX);
+				copyRow(newBoard, isRowCopied, endX);
+				newBoard.get(endX).set(endY, jump.get(4) == 0 ? W : B);
+				newBoard.get(startX).set(startY, E);
+			}
+		}
+		check(isSameBoard(newBoard, board) && (hasJumps ? jumps : lastJumps).equals(stateJumps),
+				"LastState applied lastMove should get current State");
+
+		// 2. Focus on the {@code lastMove}
+		check(lastMove.get(0) instanceof SetTurn &&
+					lastMove.get(1) instanceof Set &&
+					(lastMove.size() == 3 || (lastMove.size() == 4 && lastMove.get(3) instanceof EndGame)),
+				"The structure of the lastMove should be 'SetTurn, Board, Jump, (EndGame)'");
+
+		// 3. All the jumps should locate in the one direction.
+		if(hasJumps) {
+			checkJumpDirections(jumps);
+		}
+	}
+
+	/**
+	 * Method used to check the format of the jump, and that it does not start or end on an illegal
+	 * square, nor start on a score square.
+	 */
+	private static void checkJumpSquares(List<Integer> jump) {
+		check(jump.size() == 5,
+				"Each jump item should be the format '{startX, startY, endX, endY, 0/1}'");
+		int color = jump.get(4);
+		check(color == 0 || color == 1, "Each jump item's last digit should be 0/1 for piece color");
+		int startX = jump.get(0);
+		int startY = jump.get(1);
+		check(!isIn(ILLEGAL_SQUARES, startX, startY)
+				&& !isIn(ILLEGAL_SQUARES, jump.get(2), jump.get(3)),
+				"Jump should not start or end in illegal squares");
+		check(!isIn(SCORE_SQUARES, startX, startY),
+				"start coordinates should not locate inside score squares");
+	}
+
+	private static void checkJumpDirections(List<ArrayList<Integer>> jumps) {
+		if(jumps.size() < 2) {
+			return;
+		}
+		boolean isHorizontal = jumps.get(0).get(0).intValue() == jumps.get(1).get(0).intValue();
+		for(int i = 1; i < jumps.size(); i++) {
+			List<Integer> jump = jumps.get(i);
+			List<Integer> previous = jumps.get(i - 1);
+			if(isHorizontal) {
+				check(jump.get(0).intValue() == previous.get(0).intValue()
+						&& jump.get(2).intValue() == previous.get(2).intValue(),
+						"Horizontal: X coordinate should be the same!");
+			} else {
+				for(int j = 0; j < 4; j++) {
+					check(Math.abs(jump.get(j) - previous.get(j)) == 1,
+							"Diagonal: coordiante difference should always be one");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method used to copy the row {@code x} of {@code newBoard} before its first change.
+	 */
+	private static void copyRow(List<ArrayList<String>> newBoard, boolean[] isRowCopied, int x) {
+		if(!isRowCopied[x]) {
+			newBoard.set(x, new ArrayList<String>(newBoard.get(x)));
+			isRowCopied[x] = true;
+		}
+	}
+
+	/**
+	 * @return true if the boards have equal rows, the rows not touched by the jumps are often the
+	 * same lists.
+	 */
+	private static boolean isSameBoard(List<ArrayList<String>> newBoard,
+			List<ArrayList<String>> board) {
+		if(newBoard.size() != board.size()) {
+			return false;
+		}
+		boolean isSame = true;
+		for(int i = 0; i < board.size(); i++) {
+			// every row is read, as a row which is not an ArrayList is rejected by AbaloneLogic.
+			ArrayList<String> newRow = newBoard.get(i);
+			ArrayList<String> row = board.get(i);
+			isSame &= newRow == row || (newRow != null && newRow.equals(row));
+		}
+		return isSame;
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition) {
+			throw new RuntimeException("Hacker found: " + message);
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.BoardColNum;
+import static org.abalone.client.AbaloneConstants.BoardRowNum;
+
+import java.util.Arrays;
+
+/**
+ * Class used to convert between the squares of the 11x19 board and the 61 cells of the hexagon.
+ *
+ * The board uses doubled columns: neighbors in a row are two columns apart, and the cells of a
+ * row are one column off the cells of the next row. The cells are numbered from 0 to 60, row
+ * after row and from left to right, and also have axial coordinates {q, r} where r = row - 5 and
+ * q = (column - 9 - r) / 2, so the center is {0, 0} and the distance between two cells is
+ * max(|dq|, |dr|, |dq + dr|).
+ *
+ * The six directions are numbered from 0 to 5 by their axial steps {dq, dr}: right {1, 0}, left
+ * {-1, 0}, lower right {0, 1}, upper left {0, -1}, upper right {1, -1} and lower left {-1, 1}, so
+ * {@code direction ^ 1} is the opposite direction. The neighbors and rays of every cell are
+ * precomputed; stepping out of the hexagon gives {@link #OFF_BOARD}, whose neighbors are itself,
+ * so walks along a line need no bounds checks.
+ */
+public final class AbaloneGeometry {
+	public static final int CELL_COUNT = 61;
+	public static final int RADIUS = 4;
+	public static final int DIRECTION_COUNT = 6;
+	/*
+	 * Sentinel cell outside of the hexagon, e.g. the score squares.
+	 */
+	public static final int OFF_BOARD = CELL_COUNT;
+
+	private static final int[] CELL_ROW = new int[CELL_COUNT];
+	private static final int[] CELL_COLUMN = new int[CELL_COUNT];
+	private static final int[][] SQUARE_CELL = new int[BoardRowNum][BoardColNum];
+	private static final int[] DIRECTION_Q = {1, -1, 0, 0, 1, -1};
+	private static final int[] DIRECTION_R = {0, 0, 1, -1, -1, 1};
+	/*
+	 * NEIGHBORS[cell * 6 + direction] is the next cell, for the 61 cells and OFF_BOARD.
+	 */
+	private static final int[] NEIGHBORS = new int[(CELL_COUNT + 1) * DIRECTION_COUNT];
+	/*
+	 * RAYS[cell * 6 + direction] are the cells from the neighbor to the edge of the hexagon.
+	 */
+	private static final int[][] RAYS = new int[CELL_COUNT * DIRECTION_COUNT][];
+	static {
+		int cell = 0;
+		for(int i = 0; i < BoardRowNum; i++) {
+			Arrays.fill(SQUARE_CELL[i], -1);
+			for(int j = 0; j < BoardColNum; j++) {
+				if(isLatticeSquare(i, j) && getDistance(getQ(i, j), getR(i), 0, 0) <= RADIUS) {
+					CELL_ROW[cell] = i;
+					CELL_COLUMN[cell] = j;
+					SQUARE_CELL[i][j] = cell++;
+				}
+			}
+		}
+		for(cell = 0; cell < CELL_COUNT; cell++) {
+			int q = getQ(CELL_ROW[cell], CELL_COLUMN[cell]);
+			int r = getR(CELL_ROW[cell]);
+			for(int direction = 0; direction < DIRECTION_COUNT; direction++) {
+				int nextQ = q + DIRECTION_Q[direction];
+				int nextR = r + DIRECTION_R[direction];
+				int next = getCell(getRow(nextQ, nextR), getColumn(nextQ, nextR));
+				NEIGHBORS[cell * DIRECTION_COUNT + direction] = next < 0 ? OFF_BOARD : next;
+			}
+		}
+		Arrays.fill(NEIGHBORS, OFF_BOARD * DIRECTION_COUNT, NEIGHBORS.length, OFF_BOARD);
+		int[] ray = new int[2 * RADIUS];
+		for(cell = 0; cell < CELL_COUNT; cell++) {
+			for(int direction = 0; direction < DIRECTION_COUNT; direction++) {
+				int length = 0;
+				for(int next = getNeighbor(cell, direction); next != OFF_BOARD;
+						next = getNeighbor(next, direction)) {
+					ray[length++] = next;
+				}
+				RAYS[cell * DIRECTION_COUNT + direction] = Arrays.copyOf(ray, length);
+			}
+		}
+	}
+
+	/**
+	 * @return the cell of the square, or -1 if the square is not one of the 61 cells.
+	 */
+	public static int getCell(int x, int y) {
+		if(x < 0 || y < 0 || x >= BoardRowNum || y >= BoardColNum) {
+			return -1;
+		}
+		return SQUARE_CELL[x][y];
+	}
+
+	public static int getRow(int cell) {
+		return CELL_ROW[cell];
+	}
+
+	public static int getColumn(int cell) {
+		return CELL_COLUMN[cell];
+	}
+
+	/**
+	 * @return true if the square has axial coordinates, i.e. it is a cell or a square on the
+	 * hexagonal lattice around the cells.
+	 */
+	public static boolean isLatticeSquare(int x, int y) {
+		return (y - 9 - (x - 5)) % 2 == 0;
+	}
+
+	public static int getQ(int x, int y) {
+		return (y - 9 - (x - 5)) / 2;
+	}
+
+	public static int getR(int x) {
+		return x - 5;
+	}
+
+	public static int getRow(int q, int r) {
+		return r + 5;
+	}
+
+	public static int getColumn(int q, int r) {
+		return 2 * q + r + 9;
+	}
+
+	public static int getDistance(int q1, int r1, int q2, int r2) {
+		int dq = q1 - q2;
+		int dr = r1 - r2;
+		return Math.max(Math.abs(dq), Math.max(Math.abs(dr), Math.abs(dq + dr)));
+	}
+
+	/**
+	 * @return the distance of the cell to the center, from 0 to {@link #RADIUS}.
+	 */
+	public static int getDistanceToCenter(int cell) {
+		return getDistance(getQ(CELL_ROW[cell], CELL_COLUMN[cell]), getR(CELL_ROW[cell]), 0, 0);
+	}
+
+	/**
+	 * @return the cell next to {@code cell} in {@code direction}, {@link #OFF_BOARD} outside of
+	 * the hexagon and from {@link #OFF_BOARD} itself.
+	 */
+	public static int getNeighbor(int cell, int direction) {
+		return NEIGHBORS[cell * DIRECTION_COUNT + direction];
+	}
+
+	/**
+	 * @return the cells from the neighbor of {@code cell} in {@code direction} to the edge of the
+	 * hexagon, empty on the edge. The array is shared and should not be modified.
+	 */
+	public static int[] getRay(int cell, int direction) {
+		return RAYS[cell * DIRECTION_COUNT + direction];
+	}
+
+	public static int getOpposite(int direction) {
+		return direction ^ 1;
+	}
+
+	/**
+	 * @return the direction from {@code cell} to {@code nextCell}, or -1 if the cells are not
+	 * next to each other.
+	 */
+	public static int getDirection(int cell, int nextCell) {
+		for(int direction = 0; direction < DIRECTION_COUNT; direction++) {
+			if(NEIGHBORS[cell * DIRECTION_COUNT + direction] == nextCell) {
+				return direction;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the direction of the step from square ({@code startX}, {@code startY}) to
+	 * ({@code endX}, {@code endY}), where the end square may be off the hexagon, e.g. a score
+	 * square; a horizontal step is two columns, or one column for a push out.
+	 */
+	public static int getDirection(int startX, int startY, int endX, int endY) {
+		int dx = endX - startX;
+		int dy = endY - startY;
+		if(dx == 0) {
+			return dy > 0 ? 0 : 1;
+		}
+		if(dx > 0) {
+			return dy > 0 ? 2 : 5;
+		}
+		return dy > 0 ? 4 : 3;
+	}
+
+	/**
+	 * @return {row, column} of the square one step from ({@code x}, {@code y}), which may be
+	 * off the hexagon.
+	 */
+	public static int[] getStep(int x, int y, int direction) {
+		int q = getQ(x, y) + DIRECTION_Q[direction];
+		int r = getR(x) + DIRECTION_R[direction];
+		return new int[]{getRow(q, r), getColumn(q, r)};
+	}
+
+	private AbaloneGeometry() { }
+}
@@ -0,0 +1,56 @@
+package org.abalone.client;
+
+/**
+ * Bitmasks of the lines of one to three cells of the hexagon, bit {@code cell} standing for the
+ * cell. A line is indexed by its anchor cell and its direction (see {@link AbaloneGeometry}) and
+ * holds the anchor and the next cells in the direction, so a group of pieces is found with one
+ * AND against the occupancy mask of a side:
+ * {@code (pieces & line) == line}.
+ */
+public final class AbaloneLineMasks {
+	public static final int MAX_LENGTH = 3;
+
+	/*
+	 * LINES[length][cell * 6 + direction], 0 if the line does not fit in the hexagon.
+	 */
+	private static final long[][] LINES =
+			new long[MAX_LENGTH + 1][AbaloneGeometry.CELL_COUNT * AbaloneGeometry.DIRECTION_COUNT];
+	static {
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			for(int direction = 0; direction < AbaloneGeometry.DIRECTION_COUNT; direction++) {
+				int index = cell * AbaloneGeometry.DIRECTION_COUNT + direction;
+				long line = getCellMask(cell);
+				LINES[1][index] = line;
+				int[] ray = AbaloneGeometry.getRay(cell, direction);
+				for(int length = 2; length <= MAX_LENGTH && length - 2 < ray.length; length++) {
+					line |= getCellMask(ray[length - 2]);
+					LINES[length][index] = line;
+				}
+			}
+		}
+	}
+
+	public static long getCellMask(int cell) {
+		return 1L << cell;
+	}
+
+	/**
+	 * @param length from 1 to {@link #MAX_LENGTH}.
+	 * @return the mask of the {@code length} cells from {@code cell} in {@code direction}, or 0
+	 * if the line goes out of the hexagon.
+	 */
+	public static long getLineMask(int cell, int direction, int length) {
+		return LINES[length][cell * AbaloneGeometry.DIRECTION_COUNT + direction];
+	}
+
+	/**
+	 * @return true if all the cells of the line are in {@code pieces}, false if the line does not
+	 * fit in the hexagon.
+	 */
+	public static boolean isLine(long pieces, int cell, int direction, int length) {
+		long line = LINES[length][cell * AbaloneGeometry.DIRECTION_COUNT + direction];
+		return line != 0 && (pieces & line) == line;
+	}
+
+	private AbaloneLineMasks() { }
+}
@@ -21,14 +21,14 @@ import org.game_api.GameApi.VerifyMoveDone;
 
 import com.google.common.collect.Lists;
 
-public class AbaloneLogic {
+public class AbaloneLogic implements AbaloneVerifier {
 
+	@Override
 	public VerifyMoveDone verify(VerifyMove verifyMove) {
     try {
       checkMoveIsLegal(verifyMove);
       return new VerifyMoveDone();
     } catch (Exception e) {
-    	e.printStackTrace(System.out);
       return new VerifyMoveDone(verifyMove.getLastMovePlayerId(), e.getMessage());
     }
   }
@@ -51,7 +51,6 @@ public class AbaloneLogic {
 						lastMove.get(1) instanceof Set &&
 						lastMove.get(2) instanceof Set, 
 					"The initial operations should contains three operations: SetTurn, Set, Set");
-			System.out.println("Initialization");
 			return;
 		}
 		
@@ -67,40 +66,10 @@ public class AbaloneLogic {
 		List<ArrayList<Integer>> jumps = (List<ArrayList<Integer>>) ((Set)lastMove.get(2)).getValue();
 		AbaloneState abaloneStateLast = 
 				AbaloneState.gameApiState2AbaloneState(lastState, turn, playerIds);
-		System.out.println("******" + jumps);
 		AbaloneState abaloneStateNow = 
 				AbaloneState.gameApiState2AbaloneState(state, turn, playerIds);
 		AbaloneState abaloneStateTransformed = abaloneStateLast.applyJumpOnBoard(jumps);
 		
-		System.out.println("Logic Jump");
-		for(int i = 0; i < jumps.size(); i++){
-			for(int j = 0; j < jumps.get(i).size(); j++) {
-				System.out.print(jumps.get(i).get(j) + " ");
-			}
-			System.out.println();
-		}
-		System.out.println("Logic Board Last");
-		for(int i = 0; i < abaloneStateLast.getBoard().size(); i++){
-			for(int j = 0; j < abaloneStateLast.getBoard().get(i).size(); j++) {
-				System.out.print(abaloneStateLast.getBoard().get(i).get(j) + " ");
-			}
-			System.out.println();
-		}
-		System.out.println("Logic Board Now");
-		for(int i = 0; i < abaloneStateNow.getBoard().size(); i++){
-			for(int j = 0; j < abaloneStateNow.getBoard().get(i).size(); j++) {
-				System.out.print(abaloneStateNow.getBoard().get(i).get(j) + " ");
-			}
-			System.out.println();
-		}
-		System.out.println("Logic Board Transformed");
-		for(int i = 0; i < abaloneStateTransformed.getBoard().size(); i++){
-			for(int j = 0; j < abaloneStateTransformed.getBoard().get(i).size(); j++) {
-				System.out.print(abaloneStateTransformed.getBoard().get(i).get(j) + " ");
-			}
-			System.out.println();
-		}
-		
 		check(abaloneStateNow.equals(abaloneStateTransformed), 
 				"LastState applied lastMove should get current State");		
 		
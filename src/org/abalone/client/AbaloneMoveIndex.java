@@ -0,0 +1,266 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BoardColNum;
+import static org.abalone.client.AbaloneConstants.BoardRowNum;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.S;
+import static org.abalone.client.AbaloneConstants.UNDERGOING;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.abalone.client.AbalonePresenter.Direction;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Class used to index all the legal first jumps of one round.
+ * For every piece of the side to move it records the squares the piece can be placed on, and
+ * for every such square the complete jump list (pushed pieces included) the placement produces.
+ *
+ * The index is computed once from the board at the start of the round, so holding and placing
+ * a piece in {@link AbalonePresenter} are table reads instead of scans in six directions.
+ */
+public class AbaloneMoveIndex {
+
+	/**
+	 * One legal placement of a held piece.
+	 */
+	public static class Placement {
+		private final List<ArrayList<Integer>> jumps;
+		private final String message;
+
+		Placement(List<ArrayList<Integer>> jumps, String message) {
+			this.jumps = Collections.unmodifiableList(jumps);
+			this.message = message;
+		}
+
+		/**
+		 * @return jumps sorted from the front piece to the rear piece, which is the order
+		 * {@link AbaloneState#applyJumpOnBoard(List)} expects.
+		 */
+		public List<ArrayList<Integer>> getJumps() {
+			return jumps;
+		}
+
+		/**
+		 * @return {@link AbaloneConstants#GAMEOVER} if a piece is pushed onto a score square,
+		 * otherwise {@link AbaloneConstants#UNDERGOING}.
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * @return the jump of the held piece {startX, startY, endX, endY, pieceColor}.
+		 */
+		public List<Integer> getHeldJump() {
+			return jumps.get(jumps.size() - 1);
+		}
+	}
+
+	private final String pieceColor;
+	private final boolean[][] holdableMatrix = new boolean[BoardRowNum][BoardColNum];
+	private final boolean[][][][] placableMatrices = new boolean[BoardRowNum][BoardColNum][][];
+	private final Map<Integer, Placement> placements = Maps.newHashMap();
+
+	/**
+	 * @param board board at the start of the round.
+	 * @param turn {@link AbaloneConstants#WTurn} or {@link AbaloneConstants#BTurn}.
+	 */
+	public AbaloneMoveIndex(List<ArrayList<String>> board, String turn) {
+		if(board == null || board.isEmpty()){
+			throw new IllegalArgumentException("Input board should not be null or empty! For "
+					+ "AbaloneMoveIndex class");
+		}
+		pieceColor = turn.equals(WTurn) ? W : B;
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			if(getSquare(board, cell).equals(pieceColor)) {
+				holdableMatrix[AbaloneGeometry.getRow(cell)][AbaloneGeometry.getColumn(cell)] = true;
+				indexCell(board, cell);
+			}
+		}
+	}
+
+	/**
+	 * Method used to generate all the legal first jumps of a round without building the matrices,
+	 * for players who do not click on the board.
+	 * @param board board at the start of the round.
+	 * @param turn {@link AbaloneConstants#WTurn} or {@link AbaloneConstants#BTurn}.
+	 * @return all the legal placements, pushing ones first.
+	 */
+	public static List<Placement> getPlacements(List<ArrayList<String>> board, String turn) {
+		String pieceColor = turn.equals(WTurn) ? W : B;
+		List<Placement> pushes = Lists.newArrayList();
+		List<Placement> moves = Lists.newArrayList();
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			if(!getSquare(board, cell).equals(pieceColor)) {
+				continue;
+			}
+			for(Direction direction : Direction.values()) {
+				if(isPlacable(board, pieceColor, cell, direction.getGeometryDirection())) {
+					Placement placement = getPlacement(board, cell, direction.getGeometryDirection());
+					if(isPush(board, pieceColor, placement)) {
+						pushes.add(placement);
+					} else {
+						moves.add(placement);
+					}
+				}
+			}
+		}
+		pushes.addAll(moves);
+		return pushes;
+	}
+
+	/**
+	 * @return squares which hold a piece of the side to move.
+	 */
+	public boolean[][] getHoldableMatrix() {
+		return holdableMatrix;
+	}
+
+	/**
+	 * @return squares the piece at ({@code startX}, {@code startY}) can be placed on; the start
+	 * square itself is always included so that the holding can be cancelled.
+	 */
+	public boolean[][] getPlacableMatrix(int startX, int startY) {
+		boolean[][] placableMatrix = placableMatrices[startX][startY];
+		if(placableMatrix == null) {
+			placableMatrix = new boolean[BoardRowNum][BoardColNum];
+			placableMatrix[startX][startY] = true;
+		}
+		return placableMatrix;
+	}
+
+	/**
+	 * @return the placement of the piece at ({@code startX}, {@code startY}) on
+	 * ({@code endX}, {@code endY}), or null if it is not legal.
+	 */
+	public Placement getPlacement(int startX, int startY, int endX, int endY) {
+		return placements.get(placementKey(startX, startY, endX, endY));
+	}
+
+	private void indexCell(List<ArrayList<String>> board, int cell) {
+		int startX = AbaloneGeometry.getRow(cell);
+		int startY = AbaloneGeometry.getColumn(cell);
+		boolean[][] placableMatrix = new boolean[BoardRowNum][BoardColNum];
+		placableMatrix[startX][startY] = true;
+		for(Direction direction : Direction.values()) {
+			int geometryDirection = direction.getGeometryDirection();
+			if(isPlacable(board, pieceColor, cell, geometryDirection)) {
+				int endCell = AbaloneGeometry.getNeighbor(cell, geometryDirection);
+				int endX = AbaloneGeometry.getRow(endCell);
+				int endY = AbaloneGeometry.getColumn(endCell);
+				placableMatrix[endX][endY] = true;
+				placements.put(placementKey(startX, startY, endX, endY),
+						getPlacement(board, cell, geometryDirection));
+			}
+		}
+		placableMatrices[startX][startY] = placableMatrix;
+	}
+
+	/**
+	 * A piece can move one cell in {@code direction} if the line of its own pieces starting
+	 * from it has at most three pieces, and is followed either by an empty cell or by a
+	 * shorter line of opponent's pieces.
+	 */
+	private static boolean isPlacable(List<ArrayList<String>> board, String pieceColor, 
+			int cell, int direction) {
+		String opponentColor = pieceColor.equals(W) ? B : W;
+		int numOwn = 0;
+		int numOpponent = 0;
+		int next = cell;
+		while(getSquare(board, next).equals(pieceColor)) {
+			numOwn++;
+			next = AbaloneGeometry.getNeighbor(next, direction);
+		}
+		String square = getSquare(board, next);
+		if(numOwn > 3 || square.equals(S)) {
+			return false;
+		}
+		if(square.equals(E)) {
+			return true;
+		}
+		while(getSquare(board, next).equals(opponentColor)) {
+			numOpponent++;
+			next = AbaloneGeometry.getNeighbor(next, direction);
+		}
+		return numOwn > numOpponent && numOpponent > 0;
+	}
+
+	/**
+	 * Method used to get all the jumps when the piece on {@code cell} moves one cell in
+	 * {@code direction}: every piece in front of it is pushed one cell further, until an empty
+	 * cell or a score square is reached.
+	 */
+	private static Placement getPlacement(List<ArrayList<String>> board, int cell, int direction) {
+		List<ArrayList<Integer>> jumps = Lists.<ArrayList<Integer>>newArrayList();
+		int from = cell;
+		int next = AbaloneGeometry.getNeighbor(cell, direction);
+		while(isPiece(getSquare(board, next))) {
+			jumps.add(getJump(board, from, AbaloneGeometry.getRow(next), AbaloneGeometry.getColumn(next)));
+			from = next;
+			next = AbaloneGeometry.getNeighbor(next, direction);
+		}
+		String message;
+		if(getSquare(board, next).equals(E)) {
+			jumps.add(getJump(board, from, AbaloneGeometry.getRow(next), AbaloneGeometry.getColumn(next)));
+			message = UNDERGOING;
+		} else {
+			// the front piece is pushed out, horizontally it lands on the half step score square.
+			int fromX = AbaloneGeometry.getRow(from);
+			int fromY = AbaloneGeometry.getColumn(from);
+			int[] scoreSquare = AbaloneGeometry.getStep(fromX, fromY, direction);
+			if(scoreSquare[0] == fromX) {
+				scoreSquare[1] = (fromY + scoreSquare[1]) / 2;
+			}
+			jumps.add(getJump(board, from, scoreSquare[0], scoreSquare[1]));
+			message = GAMEOVER;
+		}
+		// front piece first.
+		Collections.reverse(jumps);
+		return new Placement(jumps, message);
+	}
+
+	private static ArrayList<Integer> getJump(List<ArrayList<String>> board, int cell,
+			int endX, int endY) {
+		return Lists.newArrayList(AbaloneGeometry.getRow(cell), AbaloneGeometry.getColumn(cell),
+				endX, endY, squareColor2PieceInt(getSquare(board, cell)));
+	}
+
+	private static boolean isPush(List<ArrayList<String>> board, String pieceColor, 
+			Placement placement) {
+		List<Integer> frontJump = placement.getJumps().get(0);
+		return !board.get(frontJump.get(0)).get(frontJump.get(1)).equals(pieceColor);
+	}
+
+	/**
+	 * @return the square of the cell, or {@link AbaloneConstants#S} for
+	 * {@link AbaloneGeometry#OFF_BOARD}.
+	 */
+	private static String getSquare(List<ArrayList<String>> board, int cell) {
+		if(cell == AbaloneGeometry.OFF_BOARD) {
+			return S;
+		}
+		return board.get(AbaloneGeometry.getRow(cell)).get(AbaloneGeometry.getColumn(cell));
+	}
+
+	private static boolean isPiece(String square) {
+		return square.equals(W) || square.equals(B);
+	}
+
+	private static int squareColor2PieceInt(String squareColor) {
+		return squareColor.equals(W) ? 0 : 1;
+	}
+
+	private static int placementKey(int startX, int startY, int endX, int endY) {
+		return ((startX * BoardColNum + startY) * BoardRowNum + endX) * BoardColNum + endY;
+	}
+}
@@ -6,28 +6,34 @@ import static org.abalone.client.AbaloneConstants.BTurn;
 import static org.abalone.client.AbaloneConstants.BoardColNum;
 import static org.abalone.client.AbaloneConstants.BoardRowNum;
 import static org.abalone.client.AbaloneConstants.E;
-import static org.abalone.client.AbaloneConstants.I;
 import static org.abalone.client.AbaloneConstants.GAMEOVER;
 import static org.abalone.client.AbaloneConstants.JUMP;
-import static org.abalone.client.AbaloneConstants.S;
 import static org.abalone.client.AbaloneConstants.UNDERGOING;
 import static org.abalone.client.AbaloneConstants.W;
 import static org.abalone.client.AbaloneConstants.WTurn;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
+import org.abalone.client.AbaloneComputeApi.ComputeCallback;
+import org.abalone.client.AbaloneComputeApi.ComputeChannel;
+import org.abalone.client.AbaloneComputeApi.ComputeDone;
+import org.abalone.client.AbaloneComputeApi.ComputeRequest;
+import org.abalone.client.AbaloneComputeApi.LocalComputeChannel;
+import org.abalone.client.AbaloneMoveIndex.Placement;
 import org.game_api.GameApi.Container;
 import org.game_api.GameApi.EndGame;
 import org.game_api.GameApi.Operation;
 import org.game_api.GameApi.Set;
 import org.game_api.GameApi.SetTurn;
 import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameMetrics;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 public class AbalonePresenter {
 	
@@ -90,38 +96,100 @@ public class AbalonePresenter {
 		 */
 		public void toPlaceOnePiece(List<ArrayList<String>> board, boolean[][] placableMatrix,
 				boolean enableFinishButton, String turn, String message);
+		
+		/**
+		 * Method to be implemented for showing the hint after {@code AbalonePresenter#requestHint()},
+		 * only the piece to hold first is enabled in {@code hintMatrix}.
+		 * @param board
+		 * @param hintMatrix
+		 * @param turn
+		 */
+		public void showHint(List<ArrayList<String>> board, boolean[][] hintMatrix, String turn);
 	}
 		
 	public enum Direction{
-		UPPER_LEFT_DIAGONAL, 
-		UPPER_RIGHT_DIAGONAL, 
-		LOWER_LEFT_DIAGONAL, 
-		LOWER_RIGHT_DIAGONAL,
-		LEFT_HORIZONTAL, 
-		RIGHT_HORIZONTAL
+		UPPER_LEFT_DIAGONAL(3), 
+		UPPER_RIGHT_DIAGONAL(4), 
+		LOWER_LEFT_DIAGONAL(5), 
+		LOWER_RIGHT_DIAGONAL(2),
+		LEFT_HORIZONTAL(1), 
+		RIGHT_HORIZONTAL(0);
+		
+		private static final Direction[] BY_GEOMETRY_DIRECTION = 
+				new Direction[AbaloneGeometry.DIRECTION_COUNT];
+		static {
+			for(Direction direction : values()) {
+				BY_GEOMETRY_DIRECTION[direction.geometryDirection] = direction;
+			}
+		}
+		
+		private final int geometryDirection;
+		
+		private Direction(int geometryDirection) {
+			this.geometryDirection = geometryDirection;
+		}
+		
+		/**
+		 * @return the direction number used by the tables of {@link AbaloneGeometry}.
+		 */
+		public int getGeometryDirection() {
+			return geometryDirection;
+		}
+		
+		public static Direction fromGeometryDirection(int geometryDirection) {
+			return BY_GEOMETRY_DIRECTION[geometryDirection];
+		}
 	}
 	
+	/*
+	 * seconds for turn of a seat without turn clock, which is the default of every seat.
+	 */
+	public static final int NO_TURN_CLOCK = 0;
+	
+	/*
+	 * search limits of the AI player and of the hint, in rounds and milliseconds. The AI time is
+	 * shared out by {@link AbaloneTimeManager}, AI_MILLIS is only used when the turn has no clock.
+	 */
+	public static final int AI_MAX_DEPTH = 6;
+	public static final int AI_MILLIS = 2000;
+	public static final int HINT_MAX_DEPTH = 2;
+	public static final int HINT_MILLIS = 1000;
+	
 	/*
 	 * field variables for {@link AbalonePresenter}
 	 */
 	private final AbaloneLogic abaloneLogic = new AbaloneLogic();
 	private final View view;
 	private final Container container;
+	private final ComputeChannel computeChannel;
+	private int computeRequestId;
 	private int yourPlayerIndex;
 	private Optional<String> myTurn;
 	private String currentTurn; 							// currentTurn must not be null, explanation down.
-	private List<ArrayList<Integer>> jumps;		// used to store all the jumps in current round.
+	private int secondsForTurn;								// 0 if the turn has no clock.
+	private long turnStartMillis;
+	private final Map<String, Integer> secondsForTurnByPlayerId = Maps.newHashMap();
 	private AbaloneState abaloneState;
-	private int[] lastJump = new int[5]; 			// {startX, startY, endX, endY, pieceColor{0/1}}
-	private List<ArrayList<String>> currentBoard;
+	private AbaloneMoveIndex moveIndex;
+	private AbalonePreviewBoard previewBoard;	// board and jumps placed in current round.
+	private int[] lastJump; 									// {startX, startY, endX, endY, pieceColor{0/1}}
 	private int heldX;
 	private int heldY;
 	private String abaloneMessage = "";
 	private List<String> playerIds;
 	
 	public AbalonePresenter(View view, Container container) {
+		this(view, container, new LocalComputeChannel());
+	}
+	
+	/**
+	 * @param computeChannel channel used to search the moves of the AI player and the hints,
+	 * e.g. in a Web Worker so the board is not frozen meanwhile.
+	 */
+	public AbalonePresenter(View view, Container container, ComputeChannel computeChannel) {
 		this.view = view;
 		this.container = container;
+		this.computeChannel = computeChannel;
 		view.setPresenter(this);
 	}
 	
@@ -130,15 +198,22 @@ public class AbalonePresenter {
 	 * @param updateUI input updateUI to pass necessary information.
 	 */
 	public void updateUI(UpdateUI updateUI){
+		long start = GameMetrics.get().start();
+		try {
+			doUpdateUI(updateUI);
+		} finally {
+			GameMetrics.get().stop(GameMetrics.UPDATE_UI, updateUI.getMessageName(), start);
+		}
+	}
+	
+	private void doUpdateUI(UpdateUI updateUI){
+		turnStartMillis = System.currentTimeMillis();
 		playerIds = updateUI.getPlayerIds();
 		yourPlayerIndex = updateUI.getYourPlayerIndex();
 		myTurn = 
 				yourPlayerIndex == 0 ? Optional.<String>of(WTurn) :
 				yourPlayerIndex == 1 ? Optional.<String>of(BTurn) :
 				Optional.<String>absent(); // for the viewer
-		// If we invoke this method, that means the switch between players happens, so we 
-		// must place new jumps.
-		jumps = Lists.<ArrayList<Integer>>newArrayList();
 		if(updateUI.getState().isEmpty()){
 			// WP should finish the initialization.
 			if(myTurn.isPresent() && myTurn.get().equals(WTurn)){
@@ -149,13 +224,31 @@ public class AbalonePresenter {
 		// {@code currentTurn} can not be null, because it is gotten from lastMove, and for the 
 		// lastMove, we must have SetTurn operation, even lastMove does not contain SetTurn, it 
 		// should be before starting game, then it should let WP pass the inital moves as above.
+		// A match ended by the container on time has the lastMove [EndGame] only, so the turn
+		// is still the one of the timed out player, and must not be played.
+		boolean isGameEnd = false;
 		for(Operation operation : updateUI.getLastMove()){
 			if(operation instanceof SetTurn){
 				currentTurn = playerIds.indexOf(((SetTurn)operation).getPlayerId()) == 0 ? WTurn : BTurn;
+				secondsForTurn = ((SetTurn)operation).getNumberOfSecondsForTurn();
+			} else if(operation instanceof EndGame){
+				isGameEnd = true;
 			}
 		}
 		abaloneState = 
 				AbaloneState.gameApiState2AbaloneState(updateUI.getState(), currentTurn, playerIds);
+		// If we invoke this method, that means the switch between players happens, so we 
+		// must place new jumps, and what is still computed for the last round is useless.
+		computeChannel.cancel();
+		previewBoard = new AbalonePreviewBoard(abaloneState.getBoard());
+		lastJump = null;
+		if(isGameEnd){
+			// the board is shown read-only, nothing is left to place.
+			moveIndex = null;
+			view.setPlayerState(abaloneState.getBoard(),
+					new boolean[BoardRowNum][BoardColNum], GAMEOVER);
+			return;
+		}
 		if(updateUI.isViewer()){
 			// TODO: need to be verified after adding the player change frame in the graphics.
 			view.setPlayerState(abaloneState.getBoard(), 
@@ -163,17 +256,49 @@ public class AbalonePresenter {
 			return;
 		}
 		if(updateUI.isAiPlayer()){
-			//TODO: to be finished in HW4
-			//container.sentMakeMove();
+			if(myTurn.isPresent() && myTurn.get().equals(currentTurn)){
+				final AbalonePreviewBoard aiBoard = previewBoard;
+				final String aiTurn = currentTurn;
+				computeChannel.sendComputeRequest(new ComputeRequest(++computeRequestId,
+						AbaloneComputeApi.AI_MOVE, abaloneState.getBoard(), currentTurn,
+						AI_MAX_DEPTH, getAiMillis()), new ComputeCallback() {
+					@Override
+					public void computeDone(ComputeDone computeDone) {
+						if(computeDone.getJumps().isEmpty() || aiBoard != previewBoard) {
+							return;
+						}
+						previewBoard.apply(computeDone.getJumps());
+						boolean isGameOver = computeDone.getMessage().equals(GAMEOVER);
+						List<List<ArrayList<Integer>>> variation = computeDone.getPrincipalVariation();
+						AbalonePreviewBoard ponderBoard = null;
+						if(!isGameOver && variation.size() > 1) {
+							// the opponent is expected to answer with the next placement of the
+							// variation, so the AI searches its next round while waiting.
+							ponderBoard = new AbalonePreviewBoard(previewBoard.getBoard());
+							ponderBoard.apply(variation.get(1));
+						}
+						finishAllPlacing(isGameOver);
+						if(ponderBoard != null) {
+							computeChannel.sendComputeRequest(new ComputeRequest(++computeRequestId,
+									AbaloneComputeApi.PONDER, ponderBoard.getBoard(), aiTurn,
+									AI_MAX_DEPTH, 0), null);
+						}
+					}
+				});
+			}
 			return;
 		}
 		// So now, it must be a player.
+		if(myTurn.isPresent() && myTurn.get().equals(currentTurn)){
+			// all the legal first jumps of this round are computed only once.
+			moveIndex = new AbaloneMoveIndex(abaloneState.getBoard(), currentTurn);
+		}
 		view.setPlayerState(abaloneState.getBoard(),
 				getEnableSquares(abaloneState.getBoard(), abaloneState.getTurn()), UNDERGOING);
 		// this is my turn, so I need to make the move.
 		if(myTurn.isPresent() && myTurn.get().equals(currentTurn)){
 			view.toHoldOnePiece(abaloneState.getBoard(), getEnableSquares(abaloneState.getBoard(), 
-					myTurn.get()), !jumps.isEmpty(), myTurn.get(), UNDERGOING);
+					myTurn.get()), !previewBoard.isEmpty(), myTurn.get(), UNDERGOING);
 		}
 		// if not my round, I just watch, nothing needed to be done!
 	}
@@ -183,12 +308,12 @@ public class AbalonePresenter {
 			throw new RuntimeException("index for held piece should be valid!");
 		}
 		
+		// the player has decided, so the hint is not needed any more.
+		computeChannel.cancel();
 		heldX = x;
 		heldY = y;
 		boolean[][] placableMatrix = getPlacableMatrix(x, y);
-		Collections.sort(jumps, jumpComparator);
-		List<ArrayList<String>> boardAfterJumps = abaloneState.applyJumpOnBoard(jumps).getBoard();
-		view.toPlaceOnePiece(boardAfterJumps, placableMatrix, !jumps.isEmpty(), 
+		view.toPlaceOnePiece(previewBoard.getBoard(), placableMatrix, !previewBoard.isEmpty(), 
 				abaloneState.getTurn(), UNDERGOING);
 	}
 	
@@ -196,208 +321,114 @@ public class AbalonePresenter {
 		if(x < 0 || y < 0 || x > BoardRowNum || y > BoardColNum) {
 			throw new RuntimeException("index for held piece should be valid!");
 		}
-		// currentBoard is the board which before this jump, apply all the previous jumps.
-		Collections.sort(jumps, jumpComparator);
-		currentBoard = abaloneState.applyJumpOnBoard(jumps).getBoard();
+		computeChannel.cancel();
 		int piece = abaloneState.getTurn().equals(WTurn) ? 0 : 1;
-		List<ArrayList<String>> appliedJumpsBoard;
 		boolean[][] holdableMatrix = new boolean[BoardRowNum][BoardColNum];
 		if(heldX == x && heldY == y) {
 			// cancel previous holding piece operation
 			holdableMatrix = getEnableSquares(abaloneState.getBoard(), abaloneState.getTurn());
-			view.toHoldOnePiece(currentBoard, holdableMatrix, 
-					!jumps.isEmpty(), abaloneState.getTurn(), UNDERGOING);
+			view.toHoldOnePiece(previewBoard.getBoard(), holdableMatrix, 
+					!previewBoard.isEmpty(), abaloneState.getTurn(), UNDERGOING);
+			return;
+		}
+		abaloneMessage = UNDERGOING;
+		if(lastJump != null && lastJump[0] == x && lastJump[1] == y && 
+				lastJump[2] == heldX && lastJump[3] == heldY) {
+			// cancel the last placement, with all the pieces it pushed.
+			previewBoard.undo();
+		} else if(previewBoard.isEmpty()) {
+			/*
+			 *  the first jump of the round, its pushed pieces are already in the move index, 
+			 *  because we have make sure the place is legal.
+			 */
+			Placement placement = moveIndex.getPlacement(heldX, heldY, x, y);
+			previewBoard.apply(placement.getJumps());
+			abaloneMessage = placement.getMessage();
 		} else {
-			List<Integer> reverseCurrentJump = Lists.<Integer>newArrayList(x, y, heldX, heldY, piece);
-			if(jumps.contains(reverseCurrentJump)) {
-				// cancel previous jump after that.
-				jumps = jumps.subList(0, jumps.indexOf(reverseCurrentJump));
-				if(jumps.isEmpty()) {
-					lastJump = null;
-				} else {
-					List<Integer> lastJumpList = jumps.get(jumps.size() - 1);
-					lastJump = new int[5];
-					for(int i = 0; i < lastJump.length; i++){
-						lastJump[i] = lastJumpList.get(i);
-					}
-				}
-				holdableMatrix = getEnableSquares(abaloneState.getBoard(), abaloneState.getTurn());
-				Collections.sort(jumps, jumpComparator);
-				appliedJumpsBoard = abaloneState.applyJumpOnBoard(jumps).getBoard();
-				view.toHoldOnePiece(appliedJumpsBoard, holdableMatrix, 
-						!jumps.isEmpty(), abaloneState.getTurn(), UNDERGOING);
-				
-			} else {
-				ArrayList<Integer> thisJump = Lists.newArrayList(heldX, heldY, x, y, piece);
-				lastJump = new int[5];
-				for(int i = 0; i < lastJump.length; i++){
-					lastJump[i] = thisJump.get(i);
-				}
-				if(currentBoard.get(x).get(y).equals(E)) {
-					// add the jump into the jumps directly.
-					jumps.add(thisJump);
-					holdableMatrix = getEnableSquares(abaloneState.getBoard(), abaloneState.getTurn());
-					Collections.sort(jumps, jumpComparator);
-					appliedJumpsBoard = abaloneState.applyJumpOnBoard(jumps).getBoard();
-					view.toHoldOnePiece(appliedJumpsBoard, holdableMatrix, 
-							!jumps.isEmpty(), abaloneState.getTurn(), UNDERGOING);
-				} else {
-					/*
-					 *  because we have make sure the place is legal, we can directly get the pushed pieces,
-					 *  without checking whether the jump is legal.
-					 */
-					abaloneMessage = generateAllJumps(x, y, piece);
-					holdableMatrix = getEnableSquares(abaloneState.getBoard(), abaloneState.getTurn());
-					Collections.sort(jumps, jumpComparator);
-					appliedJumpsBoard = abaloneState.applyJumpOnBoard(jumps).getBoard();
-					view.toHoldOnePiece(appliedJumpsBoard, holdableMatrix, 
-							!jumps.isEmpty(), abaloneState.getTurn(), abaloneMessage);
-				}
-			}
+			// following jumps can only move into the square left by the previous one.
+			List<ArrayList<Integer>> jumps = new ArrayList<ArrayList<Integer>>();
+			jumps.add(Lists.newArrayList(heldX, heldY, x, y, piece));
+			previewBoard.apply(jumps);
+		}
+		List<Integer> lastJumpList = previewBoard.getLastJump();
+		lastJump = lastJumpList == null ? null : new int[]{lastJumpList.get(0), 
+				lastJumpList.get(1), lastJumpList.get(2), lastJumpList.get(3), lastJumpList.get(4)};
+		holdableMatrix = getEnableSquares(abaloneState.getBoard(), abaloneState.getTurn());
+		view.toHoldOnePiece(previewBoard.getBoard(), holdableMatrix, 
+				!previewBoard.isEmpty(), abaloneState.getTurn(), abaloneMessage);
+	}
+	
+	/**
+	 * Method used to give a turn clock to the seat of {@code playerId}, e.g. to an AI player whose
+	 * search time is then shared out by {@link AbaloneTimeManager}. The clock is sent in the
+	 * SetTurn of the move before the turn, so every presenter of the match should be given the
+	 * same clocks.
+	 * @param secondsForTurn {@link #NO_TURN_CLOCK} to remove the clock.
+	 */
+	public void setSecondsForTurn(String playerId, int secondsForTurn) {
+		if(secondsForTurn < 0) {
+			throw new IllegalArgumentException("secondsForTurn must not be negative");
 		}
+		secondsForTurnByPlayerId.put(playerId, secondsForTurn);
+	}
+	
+	private int getSecondsForTurn(String playerId) {
+		Integer secondsForTurn = secondsForTurnByPlayerId.get(playerId);
+		return secondsForTurn == null ? NO_TURN_CLOCK : secondsForTurn;
 	}
 	
 	public void finishAllPlacing(boolean isGameOver) {
-		Collections.sort(jumps, jumpComparator);
-		currentBoard = abaloneState.applyJumpOnBoard(jumps).getBoard();
 		String nextPlayerId = yourPlayerIndex == 0 ? playerIds.get(1) : playerIds.get(0);
+		// the preview board is handed over to the move, and a new one is used afterwards.
 		List<Operation> moves = Lists.<Operation>newArrayList(
-				new SetTurn(nextPlayerId),
-				new Set(BOARD, currentBoard), 
-				new Set(JUMP, jumps));
+				new SetTurn(nextPlayerId, getSecondsForTurn(nextPlayerId)),
+				new Set(BOARD, previewBoard.getBoard()), 
+				new Set(JUMP, Lists.newArrayList(previewBoard.getJumps())));
 		if(isGameOver) {
 			moves.add(new EndGame(playerIds.get(yourPlayerIndex)));
 		}
 		container.sendMakeMove(moves);
-		jumps = Lists.<ArrayList<Integer>>newArrayList();
-		lastJump = new int[5];
+		previewBoard = new AbalonePreviewBoard(abaloneState.getBoard());
+		lastJump = null;
 	}
 	
-	@SuppressWarnings("unchecked")
-	private String generateAllJumps(int x, int y, int piece) {
-		String message = "";
-		List<ArrayList<Integer>> jumpList = Lists.<ArrayList<Integer>>newArrayList(
-				Lists.<Integer>newArrayList(heldX, heldY, x, y, myTurn.get().equals(WTurn) ? 0 : 1));
-		Direction direction = getJumpDirection(jumpList);
-		switch(direction) {
-			case LEFT_HORIZONTAL:
-				while(y >= 0 && 
-						(currentBoard.get(x).get(y).equals(W) || currentBoard.get(x).get(y).equals(B))){
-					jumps.add(Lists.newArrayList(x, y + 2, x, y, 
-							squareColor2PieceInt(currentBoard.get(x).get(y + 2))));
-					y = y - 2;
-				}
-				if(y >= 0 && currentBoard.get(x).get(y).equals(E)){
-					jumps.add(Lists.newArrayList(x, y + 2, x, y, 
-							squareColor2PieceInt(currentBoard.get(x).get(y + 2))));
-					message = UNDERGOING;
-				}
-				if(y < 0 || currentBoard.get(x).get(y).equals(I) || currentBoard.get(x).get(y).equals(S)){
-					jumps.add(Lists.newArrayList(x, y + 2, x, y + 1, 
-							squareColor2PieceInt(currentBoard.get(x).get(y + 2))));
-					message = GAMEOVER;
-				}
-				break;
-			case RIGHT_HORIZONTAL:
-				while(y < BoardColNum && 
-						(currentBoard.get(x).get(y).equals(W) || currentBoard.get(x).get(y).equals(B))){
-					jumps.add(Lists.newArrayList(x, y - 2, x, y, 
-							squareColor2PieceInt(currentBoard.get(x).get(y - 2))));
-					y = y + 2;
-				}
-				if(y < BoardColNum && currentBoard.get(x).get(y).equals(E)){
-					jumps.add(Lists.newArrayList(x, y - 2, x, y, 
-							squareColor2PieceInt(currentBoard.get(x).get(y - 2))));
-					message = UNDERGOING;
-				}
-				if(y >= BoardColNum || currentBoard.get(x).get(y).equals(I) || 
-						currentBoard.get(x).get(y).equals(S)){
-					jumps.add(Lists.newArrayList(x, y - 2, x, y - 1, 
-							squareColor2PieceInt(currentBoard.get(x).get(y - 2))));
-					message = GAMEOVER;
-				}
-				break;
-			case UPPER_LEFT_DIAGONAL:
-				while(x >= 0 && y >= 0 && 
-				(currentBoard.get(x).get(y).equals(W) || currentBoard.get(x).get(y).equals(B))){
-					jumps.add(Lists.newArrayList(x + 1, y + 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x + 1).get(y + 1))));
-					x = x - 1;
-					y = y - 1;
-				}
-				if(x >= 0 && y >= 0 && currentBoard.get(x).get(y).equals(E)){
-					jumps.add(Lists.newArrayList(x + 1, y + 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x + 1).get(y + 1))));
-					message = UNDERGOING;
-				}
-				if(currentBoard.get(x).get(y).equals(S)){
-					jumps.add(Lists.newArrayList(x + 1, y + 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x + 1).get(y + 1))));
-					message = GAMEOVER;
-				}
-				break;
-			case UPPER_RIGHT_DIAGONAL:
-				while(x >= 0 && y < BoardColNum && 
-						(currentBoard.get(x).get(y).equals(W) || currentBoard.get(x).get(y).equals(B))){
-					jumps.add(Lists.newArrayList(x + 1, y - 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x + 1).get(y - 1))));
-					x = x - 1;
-					y = y + 1;
-				}
-				if(x >= 0 && y < BoardColNum && currentBoard.get(x).get(y).equals(E)){
-					jumps.add(Lists.newArrayList(x + 1, y - 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x + 1).get(y - 1))));
-					message = UNDERGOING;
-				}
-				if(currentBoard.get(x).get(y).equals(S)){
-					jumps.add(Lists.newArrayList(x + 1, y - 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x + 1).get(y - 1))));
-					message = GAMEOVER;
-				}
-				break;
-			case LOWER_LEFT_DIAGONAL:
-				while(x < BoardRowNum && y >= 0 && 
-						(currentBoard.get(x).get(y).equals(W) || currentBoard.get(x).get(y).equals(B))){
-					jumps.add(Lists.newArrayList(x - 1, y + 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x - 1).get(y + 1))));
-					x = x + 1;
-					y = y - 1;
-				}
-				if(x < BoardRowNum && y >= 0 && currentBoard.get(x).get(y).equals(E)){
-					jumps.add(Lists.newArrayList(x - 1, y + 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x - 1).get(y + 1))));
-					message = UNDERGOING;
-				}
-				if(currentBoard.get(x).get(y).equals(S)){
-					jumps.add(Lists.newArrayList(x - 1, y + 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x - 1).get(y + 1))));
-					message = GAMEOVER;
-				}
-				break;
-			case LOWER_RIGHT_DIAGONAL:
-				while(x < BoardRowNum && y < BoardColNum && 
-						(currentBoard.get(x).get(y).equals(W) || currentBoard.get(x).get(y).equals(B))){
-					jumps.add(Lists.newArrayList(x - 1, y - 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x - 1).get(y - 1))));
-					x = x + 1;
-					y = y + 1;
-				}
-				if(x < BoardRowNum && y < BoardColNum && 
-						currentBoard.get(x).get(y).equals(E)){
-					jumps.add(Lists.newArrayList(x - 1, y - 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x - 1).get(y - 1))));
-					message = UNDERGOING;
-				}
-				if(currentBoard.get(x).get(y).equals(S)){
-					jumps.add(Lists.newArrayList(x - 1, y - 1, x, y, 
-							squareColor2PieceInt(currentBoard.get(x - 1).get(y - 1))));
-					message = GAMEOVER;
-				}
-				break;
-			default:
-				break;
+	/**
+	 * @return the time left on the turn clock of the AI, which is then shared out by
+	 * {@link AbaloneTimeManager}, or {@link #AI_MILLIS} if the turn has no clock.
+	 */
+	private int getAiMillis() {
+		if(secondsForTurn <= 0) {
+			return AI_MILLIS + AbaloneTimeManager.MOVE_OVERHEAD_MILLIS;
 		}
-		return message;
+		return (int) Math.max(secondsForTurn * 1000L 
+				- (System.currentTimeMillis() - turnStartMillis), 0);
+	}
+	
+	/**
+	 * Method used to search the best round for the player, the piece to hold first is then shown
+	 * by {@code View#showHint()}. The hint is only given before the first placement of the round.
+	 */
+	public void requestHint() {
+		if(!myTurn.isPresent() || !myTurn.get().equals(currentTurn) || !previewBoard.isEmpty()) {
+			return;
+		}
+		final AbalonePreviewBoard hintedBoard = previewBoard;
+		computeChannel.sendComputeRequest(new ComputeRequest(++computeRequestId,
+				AbaloneComputeApi.HINT, abaloneState.getBoard(), currentTurn, HINT_MAX_DEPTH,
+				HINT_MILLIS), new ComputeCallback() {
+			@Override
+			public void computeDone(ComputeDone computeDone) {
+				if(computeDone.getJumps().isEmpty() || hintedBoard != previewBoard 
+						|| !previewBoard.isEmpty()) {
+					return;
+				}
+				List<ArrayList<Integer>> jumps = computeDone.getJumps();
+				List<Integer> heldJump = jumps.get(jumps.size() - 1);
+				boolean[][] hintMatrix = new boolean[BoardRowNum][BoardColNum];
+				hintMatrix[heldJump.get(0)][heldJump.get(1)] = true;
+				view.showHint(previewBoard.getBoard(), hintMatrix, currentTurn);
+			}
+		});
 	}
 	
 	/**
@@ -419,15 +450,9 @@ public class AbalonePresenter {
 			return new boolean[BoardRowNum][BoardColNum];
 		}
 		String squareColor = turn.equals(WTurn) ? W : B;
-		if(jumps == null || jumps.isEmpty()){
-			for(int i = 0; i < BoardRowNum; i++){
-				for(int j = 0; j < BoardColNum; j++){
-					if(board.get(i).get(j).equals(squareColor)){
-						enableSquare[i][j] = true;
-					}
-				}
-			}
-			return enableSquare;
+		List<ArrayList<Integer>> jumps = previewBoard.getJumps();
+		if(jumps.isEmpty()){
+			return moveIndex.getHoldableMatrix();
 		} else {
 			// {@code jumps} is not empty.
 			if(jumps.size() >= 3){
@@ -435,379 +460,47 @@ public class AbalonePresenter {
 				enableSquare[lastJump[2]][lastJump[3]] = true;
 				return enableSquare;
 			}
-			Direction direction = getJumpDirection(jumps);
 			// you can cancel your last jump.
 			enableSquare[lastJump[2]][lastJump[3]] = true;
-			switch(direction){
-				case LEFT_HORIZONTAL:
-					if(board.get(lastJump[0]).get(lastJump[1] + 2).equals(squareColor)){
-						enableSquare[lastJump[0]][lastJump[1] + 2] = true;
-					}
-					break;
-				case RIGHT_HORIZONTAL:
-					if(board.get(lastJump[0]).get(lastJump[1] - 2).equals(squareColor)){
-						enableSquare[lastJump[0]][lastJump[1] - 2] = true;
-					}
-					break;
-				case UPPER_LEFT_DIAGONAL:
-					if(board.get(lastJump[0] + 1).get(lastJump[1] + 1).equals(squareColor)){
-						enableSquare[lastJump[0] + 1][lastJump[1] + 1] = true;
-					}
-					break;
-				case UPPER_RIGHT_DIAGONAL:
-					if(board.get(lastJump[0] + 1).get(lastJump[1] - 1).equals(squareColor)){
-						enableSquare[lastJump[0] + 1][lastJump[1] - 1] = true;
-					}
-					break;
-				case LOWER_LEFT_DIAGONAL:
-					if(board.get(lastJump[0] - 1).get(lastJump[1] + 1).equals(squareColor)){
-						enableSquare[lastJump[0] - 1][lastJump[1] + 1] = true;
-					}
-					break;
-				case LOWER_RIGHT_DIAGONAL:
-					if(board.get(lastJump[0] - 1).get(lastJump[1] - 1).equals(squareColor)){
-						enableSquare[lastJump[0] - 1][lastJump[1] - 1] = true;
-					}
-					break;
-				default:
-					break;
+			// or move the piece behind the last moved one into the square it left.
+			int behind = AbaloneGeometry.getNeighbor(AbaloneGeometry.getCell(lastJump[0], lastJump[1]),
+					AbaloneGeometry.getOpposite(getJumpDirection(jumps).getGeometryDirection()));
+			if(behind != AbaloneGeometry.OFF_BOARD && board.get(AbaloneGeometry.getRow(behind))
+					.get(AbaloneGeometry.getColumn(behind)).equals(squareColor)){
+				enableSquare[AbaloneGeometry.getRow(behind)][AbaloneGeometry.getColumn(behind)] = true;
 			}
 		}
 		return enableSquare;
 	}
 	/**
 	 * Method used to get the possible placed positions for a being-held piece
-	 * @param pieceHeldPosition the start position for the being-held piece.
-	 * @return a {@code List<ArrayList<Integer>>} list of possible placed positions 
-	 * for this being-held piece. Format as following: {{4, 5}, {5, 6}}
+	 * @param startX the start row for the being-held piece.
+	 * @param startY the start column for the being-held piece.
+	 * @return 2D boolean array, which indicate where the being-held piece can be placed, 
+	 * including its start position to cancel the holding.
 	 */
 	public boolean[][] getPlacableMatrix (int startX, int startY){
-		Collections.sort(jumps, jumpComparator);
-		currentBoard = abaloneState.applyJumpOnBoard(jumps).getBoard();
-		String pieceColor = currentBoard.get(startX).get(startY);
+		List<ArrayList<Integer>> jumps = previewBoard.getJumps();
+		List<ArrayList<String>> currentBoard = previewBoard.getBoard();
+		if(jumps.isEmpty()) {
+			return moveIndex.getPlacableMatrix(startX, startY);
+		}
 		boolean[][] placableMatrix = new boolean[BoardRowNum][BoardColNum];
 		placableMatrix[startX][startY] = true;
-		
-		if(jumps == null || jumps.isEmpty()) {
-			leftPlacableSquareEmptyJump(currentBoard, startX, startY, pieceColor, placableMatrix);
-			rightPlacableSquareEmptyJump(currentBoard, startX, startY, pieceColor, placableMatrix);
-			lowerLeftPlacableSquareEmptyJump(currentBoard, startX, startY, pieceColor, placableMatrix);
-			lowerRightPlacableSquareEmptyJump(currentBoard, startX, startY, pieceColor, placableMatrix);
-			upperLeftPlacableSquareEmptyJump(currentBoard, startX, startY, pieceColor, placableMatrix);
-			upperRightPlacableSquareEmptyJump(currentBoard, startX, startY, pieceColor, placableMatrix);
-		} else {
-			// previous jumps exist.
-			if(lastJump[2] == startX && lastJump[3] == startY){
-				// want to cancel last jump
-				placableMatrix[lastJump[0]][lastJump[1]] = true;
-				return placableMatrix;
-			}
-			
-			Direction direction = getJumpDirection(jumps);
-			switch(direction){
-				case LEFT_HORIZONTAL:
-					if(currentBoard.get(startX).get(startY - 2).equals(E)){
-						placableMatrix[startX][startY - 2] = true;
-					}
-					break;
-				case RIGHT_HORIZONTAL:
-					if(currentBoard.get(startX).get(startY + 2).equals(E)){
-						placableMatrix[startX][startY + 2] = true;
-					}
-					break;
-				case UPPER_LEFT_DIAGONAL:
-					if(currentBoard.get(startX - 1).get(startY - 1).equals(E)){
-						placableMatrix[startX - 1][startY - 1] = true;
-					}
-					break;
-				case UPPER_RIGHT_DIAGONAL:
-					if(currentBoard.get(startX - 1).get(startY + 1).equals(E)){
-						placableMatrix[startX - 1][startY + 1] = true;
-					}
-					break;
-				case LOWER_LEFT_DIAGONAL:
-					if(currentBoard.get(startX + 1).get(startY - 1).equals(E)){
-						placableMatrix[startX + 1][startY - 1] = true;
-					}
-					break;
-				case LOWER_RIGHT_DIAGONAL:
-					if(currentBoard.get(startX + 1).get(startY + 1).equals(E)){
-						placableMatrix[startX + 1][startY + 1] = true;
-					}
-					break;
-				default:
-					break;
-			}
+		// previous jumps exist.
+		if(lastJump[2] == startX && lastJump[3] == startY){
+			// want to cancel last jump
+			placableMatrix[lastJump[0]][lastJump[1]] = true;
+			return placableMatrix;
 		}
-		return placableMatrix;
-	}
-	
-	private void leftPlacableSquareEmptyJump(List<ArrayList<String>> board, 
-			int startX, int startY, String pieceColor, boolean[][] placableMatrix) {
-		int numB = 0;
-		int numW = 0;
-		int x = startX;
-		int y = startY;
-		
-		if(pieceColor.equals(W)) {
-			while(y >= 0 && board.get(x).get(y).equals(W)) {
-				numW++;
-				y = y - 2;
-			}
-			if(y >= 0 && board.get(x).get(y).equals(E) && numW <= 3) {
-				placableMatrix[startX][startY - 2] = true;
-			} else if(y >= 0 && board.get(x).get(y).equals(B)) {
-				while(y >= 0 && board.get(x).get(y).equals(B)) {
-					numB++;
-					y = y - 2;
-				}
-				if(numW <= 3 && numW > numB) {
-					placableMatrix[startX][startY - 2] = true;
-				}
-			}
-		} else {
-			while(y >= 0 && board.get(x).get(y).equals(B)) {
-				numB++;
-				y = y - 2;
-			}
-			if(y >= 0 && board.get(x).get(y).equals(E) && numB <= 3) {
-				placableMatrix[startX][startY - 2] = true;
-			} else if(y >= 0 && board.get(x).get(y).equals(W)) {
-				while(y >= 0 && board.get(x).get(y).equals(W)) {
-					numW++;
-					y = y - 2;
-				}
-				if(numB <= 3 && numB > numW) {
-					placableMatrix[startX][startY - 2] = true;
-				}
-			}
-		}
-	}
-	
-	private void rightPlacableSquareEmptyJump(List<ArrayList<String>> board, 
-			int startX, int startY, String pieceColor, boolean[][] placableMatrix) {
-		int numB = 0;
-		int numW = 0;
-		int x = startX;
-		int y = startY;
-		
-		if(pieceColor.equals(W)) {
-			while(y < BoardColNum && board.get(x).get(y).equals(W)) {
-				numW++;
-				y = y + 2;
-			}
-			if(y < BoardColNum && board.get(x).get(y).equals(E) && numW <= 3) {
-				placableMatrix[startX][startY + 2] = true;
-			} else if(y < BoardColNum && board.get(x).get(y).equals(B)) {
-				while(y < BoardColNum && board.get(x).get(y).equals(B)) {
-					numB++;
-					y = y + 2;
-				}
-				if(numW <= 3 && numW > numB) {
-					placableMatrix[startX][startY + 2] = true;
-				}
-			}
-		} else {
-			while(y < BoardColNum && board.get(x).get(y).equals(B)) {
-				numB++;
-				y = y + 2;
-			}
-			if(y < BoardColNum && board.get(x).get(y).equals(E) && numB <= 3) {
-				placableMatrix[startX][startY + 2] = true;
-			} else if(y < BoardColNum && board.get(x).get(y).equals(W)) {
-				while(y < BoardColNum && board.get(x).get(y).equals(W)) {
-					numW++;
-					y = y + 2;
-				}
-				if(numB <= 3 && numB > numW) {
-					placableMatrix[startX][startY + 2] = true;
-				}
-			}
-		}
-	}
-	
-	private void upperLeftPlacableSquareEmptyJump(List<ArrayList<String>> board, 
-			int startX, int startY, String pieceColor, boolean[][] placableMatrix) {
-		int numB = 0;
-		int numW = 0;
-		int x = startX;
-		int y = startY;
-		
-		if(pieceColor.equals(W)) {
-			while(x >= 0 && y >= 0 && board.get(x).get(y).equals(W)) {
-				numW++;
-				x = x - 1;
-				y = y - 1;
-			}
-			if(x >= 0 && y >= 0 && board.get(x).get(y).equals(E) && numW <= 3) {
-				placableMatrix[startX - 1][startY - 1] = true;
-			} else if(x >= 0 && y >= 0 && board.get(x).get(y).equals(B)) {
-				while(x >= 0 && y >= 0 && board.get(x).get(y).equals(B)) {
-					numB++;
-					x = x - 1;
-					y = y - 1;
-				}
-				if(numW <= 3 && numW > numB) {
-					placableMatrix[startX - 1][startY - 1] = true;
-				}
-			}
-		} else {
-			while(x >= 0 && y >= 0 && board.get(x).get(y).equals(B)) {
-				numB++;
-				x = x - 1;
-				y = y - 1;
-			}
-			if(x >= 0 && y >= 0 && board.get(x).get(y).equals(E) && numB <= 3) {
-				placableMatrix[startX - 1][startY - 1] = true;
-			} else if(x >= 0 && y >= 0 && board.get(x).get(y).equals(W)) {
-				while(x >= 0 && y >= 0 && board.get(x).get(y).equals(W)) {
-					numW++;
-					x = x - 1;
-					y = y - 1;
-				}
-				if(numB <= 3 && numB > numW) {
-					placableMatrix[startX - 1][startY - 1] = true;
-				}
-			}
-		}
-	}
-	
-	private void upperRightPlacableSquareEmptyJump(List<ArrayList<String>> board, 
-			int startX, int startY, String pieceColor, boolean[][] placableMatrix) {
-		int numB = 0;
-		int numW = 0;
-		int x = startX;
-		int y = startY;
-		
-		if(pieceColor.equals(W)) {
-			while(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(W)) {
-				numW++;
-				x = x - 1;
-				y = y + 1;
-			}
-			if(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(E) && numW <= 3) {
-				placableMatrix[startX - 1][startY + 1] = true;
-			} else if(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(B)) {
-				while(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(B)) {
-					numB++;
-					x = x - 1;
-					y = y + 1;
-				}
-				if(numW <= 3 && numW > numB) {
-					placableMatrix[startX - 1][startY + 1] = true;
-				}
-			}
-		} else {
-			while(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(B)) {
-				numB++;
-				x = x - 1;
-				y = y + 1;
-			}
-			if(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(E) && numB <= 3) {
-				placableMatrix[startX - 1][startY + 1] = true;
-			} else if(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(W)) {
-				while(x >= 0 && y < BoardColNum && board.get(x).get(y).equals(W)) {
-					numW++;
-					x = x - 1;
-					y = y + 1;
-				}
-				if(numB <= 3 && numB > numW) {
-					placableMatrix[startX - 1][startY + 1] = true;
-				}
-			}
-		}
-	}
-	
-	private void lowerLeftPlacableSquareEmptyJump(List<ArrayList<String>> board, 
-			int startX, int startY, String pieceColor, boolean[][] placableMatrix) {
-		int numB = 0;
-		int numW = 0;
-		int x = startX;
-		int y = startY;
 		
-		if(pieceColor.equals(W)) {
-			while(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(W)) {
-				numW++;
-				x = x + 1;
-				y = y - 1;
-			}
-			if(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(E) && numW <= 3) {
-				placableMatrix[startX + 1][startY - 1] = true;
-			} else if(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(B)) {
-				while(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(B)) {
-					numB++;
-					x = x + 1;
-					y = y - 1;
-				}
-				if(numW <= 3 && numW > numB) {
-					placableMatrix[startX + 1][startY - 1] = true;
-				}
-			}
-		} else {
-			while(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(B)) {
-				numB++;
-				x = x + 1;
-				y = y - 1;
-			}
-			if(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(E) && numB <= 3) {
-				placableMatrix[startX + 1][startY - 1] = true;
-			} else if(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(W)) {
-				while(x < BoardRowNum && y >= 0 && board.get(x).get(y).equals(W)) {
-					numW++;
-					x = x + 1;
-					y = y - 1;
-				}
-				if(numB <= 3 && numB > numW) {
-					placableMatrix[startX + 1][startY - 1] = true;
-				}
-			}
-		}
-	}
-	
-	private void lowerRightPlacableSquareEmptyJump(List<ArrayList<String>> board, 
-			int startX, int startY, String pieceColor, boolean[][] placablaMatrix) {
-		int numB = 0;
-		int numW = 0;
-		int x = startX;
-		int y = startY;
-		
-		if(pieceColor.equals(W)) {
-			while(x < BoardRowNum && y < BoardColNum && board.get(x).get(y).equals(W)) {
-				numW++;
-				x = x + 1;
-				y = y + 1;
-			}
-			if(x < BoardRowNum && y < BoardColNum  && board.get(x).get(y).equals(E) && numW <= 3) {
-				placablaMatrix[startX + 1][startY + 1] = true;
-			} else if(x < BoardRowNum && y < BoardColNum  && board.get(x).get(y).equals(B)) {
-				while(x < BoardRowNum && y < BoardColNum  && board.get(x).get(y).equals(B)) {
-					numB++;
-					x = x + 1;
-					y = y + 1;
-				}
-				if(numW <= 3 && numW > numB) {
-					placablaMatrix[startX + 1][startY + 1] = true;
-				}
-			}
-		} else {
-			while(x < BoardRowNum && y < BoardColNum && board.get(x).get(y).equals(B)) {
-				numB++;
-				x = x + 1;
-				y = y + 1;
-			}
-			if(x < BoardRowNum && y < BoardColNum && board.get(x).get(y).equals(E) && numB <= 3) {
-				placablaMatrix[startX + 1][startY + 1] = true;
-			} else if(x < BoardRowNum && y < BoardColNum && board.get(x).get(y).equals(W)) {
-				while(x < BoardRowNum && y < BoardColNum && board.get(x).get(y).equals(W)) {
-					numW++;
-					x = x + 1;
-					y = y + 1;
-				}
-				if(numB <= 3 && numB > numW) {
-					placablaMatrix[startX + 1][startY + 1] = true;
-				}
-			}
+		int next = AbaloneGeometry.getNeighbor(AbaloneGeometry.getCell(startX, startY),
+				getJumpDirection(jumps).getGeometryDirection());
+		if(next != AbaloneGeometry.OFF_BOARD && currentBoard.get(AbaloneGeometry.getRow(next))
+				.get(AbaloneGeometry.getColumn(next)).equals(E)){
+			placableMatrix[AbaloneGeometry.getRow(next)][AbaloneGeometry.getColumn(next)] = true;
 		}
+		return placableMatrix;
 	}
 	
 	/**
@@ -816,96 +509,32 @@ public class AbalonePresenter {
 	 * @return one of the six directions.
 	 */
 	public static Direction getJumpDirection(List<ArrayList<Integer>> jumpList) {
-		if(jumpList.get(0).get(0) == jumpList.get(0).get(2)){
-			if(jumpList.get(0).get(1) < jumpList.get(0).get(3)){
-				return Direction.RIGHT_HORIZONTAL;
-			}else{
-				return Direction.LEFT_HORIZONTAL;
-			}
-		}else if(jumpList.get(0).get(0) > jumpList.get(0).get(2)){
-			if(jumpList.get(0).get(1) < jumpList.get(0).get(3)){
-				return Direction.UPPER_RIGHT_DIAGONAL;
-			}else{
-				return Direction.UPPER_LEFT_DIAGONAL;
-			}
-		}else{
-			if(jumpList.get(0).get(1) < jumpList.get(0).get(3)){
-				return Direction.LOWER_RIGHT_DIAGONAL;
-			}else{
-				return Direction.LOWER_LEFT_DIAGONAL;
-			}
-		}
+		List<Integer> jump = jumpList.get(0);
+		return Direction.fromGeometryDirection(AbaloneGeometry.getDirection(
+				jump.get(0), jump.get(1), jump.get(2), jump.get(3)));
 	}
 	
+	/**
+	 * Comparator of the jumps of one line: the jump of the front piece, the one furthest along
+	 * the direction of the first jump, comes first.
+	 */
 	@SuppressWarnings("unchecked")
 	public static Comparator<ArrayList<Integer>> jumpComparator = new Comparator<ArrayList<Integer>>(){
 		@Override
 		public int compare(ArrayList<Integer> jumpA, ArrayList<Integer> jumpB) {
-			Direction direction = getJumpDirection(Lists.<ArrayList<Integer>>newArrayList(jumpA, jumpB));
-			switch(direction){
-				case UPPER_LEFT_DIAGONAL:
-					if(jumpA.get(0) < jumpB.get(0) && jumpA.get(1) < jumpB.get(1)) {
-						return -1;
-					} else if (jumpA.get(0) == jumpB.get(0) && jumpA.get(1) == jumpB.get(1)) {
-						return 0;
-					} else {
-						return 1;
-					}
-				case UPPER_RIGHT_DIAGONAL: 
-					if(jumpA.get(0) < jumpB.get(0) && jumpA.get(1) > jumpB.get(1)) {
-						return -1;
-					} else if(jumpA.get(0) == jumpB.get(0) && jumpA.get(1) == jumpB.get(1)) {
-						return 0;
-					} else {
-						return 1;
-					}
-				case LOWER_LEFT_DIAGONAL: 
-					if(jumpA.get(0) > jumpB.get(0) && jumpA.get(1) < jumpB.get(1)){
-						return -1;
-					} else if(jumpA.get(0) == jumpB.get(0) && jumpA.get(1) == jumpB.get(1)) {
-						return 0;
-					} else {
-						return 1;
-					}
-				case LOWER_RIGHT_DIAGONAL:
-					if(jumpA.get(0) > jumpB.get(0) && jumpA.get(1) > jumpB.get(1)) {
-						return -1;
-					} else if(jumpA.get(0) == jumpB.get(0) && jumpA.get(1) == jumpB.get(1)) {
-						return 0;
-					} else {
-						return 1;
-					}
-				case LEFT_HORIZONTAL: 
-					if(jumpA.get(1) < jumpB.get(1)) {
-						return -1;
-					} else if(jumpA.get(0) == jumpB.get(0) && jumpA.get(1) == jumpB.get(1)) {
-						return 0;
-					} else {
-						return 1;
-					}
-				case RIGHT_HORIZONTAL:
-					if(jumpA.get(1) > jumpB.get(1)) {
-						return -1;
-					} else if(jumpA.get(0) == jumpB.get(0) && jumpA.get(1) == jumpB.get(1)) {
-						return 0;
-					} else {
-						return 1;
-					}
-				default:
-					return 0;
+			int direction = getJumpDirection(Lists.<ArrayList<Integer>>newArrayList(jumpA, jumpB))
+					.getGeometryDirection();
+			int cellA = AbaloneGeometry.getCell(jumpA.get(0), jumpA.get(1));
+			int cellB = AbaloneGeometry.getCell(jumpB.get(0), jumpB.get(1));
+			if(cellA == cellB) {
+				return 0;
+			}
+			for(int cell : AbaloneGeometry.getRay(cellB, direction)) {
+				if(cell == cellA) {
+					return -1;
+				}
 			}
-		}
-	};
-	
-	private int squareColor2PieceInt(String squareColor) {
-		if(squareColor == null || squareColor.length() == 0) {
-			return -1;
-		} else if (squareColor.equals(W)) {
-			return 0;
-		} else if (squareColor.equals(B)) {
 			return 1;
-		} else {
-			return -1;
 		}
-	}
+	};
 }
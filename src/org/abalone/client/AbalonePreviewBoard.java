@@ -0,0 +1,114 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.W;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Class used to show the board of the current round while the player is still placing pieces.
+ *
+ * The board is copied once at the start of the round and then changed in place: every placement
+ * pushes one step (the jumps it produced) on a stack, and cancelling a placement pops the step and
+ * restores the squares it overwrote. So the jumps never need to be sorted and re-applied.
+ */
+public class AbalonePreviewBoard {
+
+	/**
+	 * Jumps of one placement, sorted from the front piece to the rear (held) piece, plus the
+	 * content of their end squares before they were applied.
+	 */
+	private static class Step {
+		private final List<ArrayList<Integer>> jumps;
+		private final String[] replacedSquares;
+
+		Step(List<ArrayList<Integer>> jumps) {
+			this.jumps = jumps;
+			this.replacedSquares = new String[jumps.size()];
+		}
+	}
+
+	private final List<ArrayList<String>> board;
+	private final List<Step> steps = Lists.newArrayList();
+	private final List<ArrayList<Integer>> jumps = Lists.newArrayList();
+
+	/**
+	 * @param startBoard board at the start of the round, which is not changed.
+	 */
+	public AbalonePreviewBoard(List<ArrayList<String>> startBoard) {
+		board = Lists.newArrayListWithCapacity(startBoard.size());
+		for(ArrayList<String> row : startBoard) {
+			board.add(Lists.newArrayList(row));
+		}
+	}
+
+	/**
+	 * Apply the jumps of one placement on the board.
+	 * @param placementJumps jumps sorted from the front piece to the rear piece, the last one
+	 * should be the jump of the held piece.
+	 */
+	public void apply(List<ArrayList<Integer>> placementJumps) {
+		Step step = new Step(placementJumps);
+		for(int i = 0; i < placementJumps.size(); i++) {
+			List<Integer> jump = placementJumps.get(i);
+			step.replacedSquares[i] = board.get(jump.get(2)).get(jump.get(3));
+			board.get(jump.get(2)).set(jump.get(3), jump.get(4) == 0 ? W : B);
+			board.get(jump.get(0)).set(jump.get(1), E);
+		}
+		steps.add(step);
+		jumps.addAll(placementJumps);
+	}
+
+	/**
+	 * Cancel the last placement.
+	 * @return the jumps of the cancelled placement.
+	 */
+	public List<ArrayList<Integer>> undo() {
+		if(steps.isEmpty()) {
+			throw new IllegalStateException("There is no placement to cancel!");
+		}
+		Step step = steps.remove(steps.size() - 1);
+		for(int i = step.jumps.size() - 1; i >= 0; i--) {
+			List<Integer> jump = step.jumps.get(i);
+			board.get(jump.get(0)).set(jump.get(1), jump.get(4) == 0 ? W : B);
+			board.get(jump.get(2)).set(jump.get(3), step.replacedSquares[i]);
+		}
+		jumps.subList(jumps.size() - step.jumps.size(), jumps.size()).clear();
+		return step.jumps;
+	}
+
+	/**
+	 * @return the board after all the placements, which is changed by following placements.
+	 */
+	public List<ArrayList<String>> getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return all the jumps of this round, from the front piece to the rear piece.
+	 */
+	public List<ArrayList<Integer>> getJumps() {
+		return Collections.unmodifiableList(jumps);
+	}
+
+	/**
+	 * @return the jump of the last held piece {startX, startY, endX, endY, pieceColor},
+	 * or null if nothing is placed in this round.
+	 */
+	public List<Integer> getLastJump() {
+		if(steps.isEmpty()) {
+			return null;
+		}
+		List<ArrayList<Integer>> lastStepJumps = steps.get(steps.size() - 1).jumps;
+		return lastStepJumps.get(lastStepJumps.size() - 1);
+	}
+
+	public boolean isEmpty() {
+		return steps.isEmpty();
+	}
+}
@@ -0,0 +1,233 @@
+package org.abalone.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+
+/**
+ * Solver proving or disproving that the side to move (the attacker) forces a push out within a
+ * number of plies, with proof-number search on an {@link AbaloneCompactBoard}.
+ *
+ * The attacker only plays pushes, so a proof is a sequence of pushes winning against every
+ * defense, and a disproof only means there is no such sequence. The tree always grows at the most
+ * proving node: the leaf whose proof would prove (or whose disproof would disprove) the root with
+ * the least work. Positions where the attacker can push a piece on the edge are sharp
+ * ({@link #isSharp}), {@link AbaloneSearch} tries the solver there before searching.
+ */
+public class AbalonePushOutSolver {
+	public static final int DEFAULT_MAX_PLIES = 5;
+	public static final int DEFAULT_MAX_NODES = 20000;
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	public enum Proof {
+		PROVEN, DISPROVEN, UNKNOWN
+	}
+
+	/**
+	 * Node of the tree, the attacker is to move at even plies.
+	 */
+	private static final class Node {
+		private final int move;
+		private final int ply;
+		private int proof = 1;
+		private int disproof = 1;
+		private Node[] children;
+
+		Node(int move, int ply) {
+			this.move = move;
+			this.ply = ply;
+		}
+
+		boolean isAttackerToMove() {
+			return ply % 2 == 0;
+		}
+	}
+
+	private final List<ArrayList<String>> board;
+	private final String turn;
+	private final AbaloneCompactBoard rootBoard;
+	private final AbaloneCompactBoard workBoard;
+	private final int[] moves = new int[AbaloneCompactBoard.MAX_MOVES];
+	private Node root;
+	private int nodes;
+
+	/**
+	 * @param board board to solve, which is not changed.
+	 * @param turn {@link AbaloneConstants#WTurn} or {@link AbaloneConstants#BTurn}, the attacker.
+	 */
+	public AbalonePushOutSolver(List<ArrayList<String>> board, String turn) {
+		this.board = board;
+		this.turn = turn;
+		this.rootBoard = new AbaloneCompactBoard(board, turn);
+		this.workBoard = new AbaloneCompactBoard(rootBoard);
+	}
+
+	/**
+	 * @return true if the side to move can push a piece of the opponent which is on the edge.
+	 */
+	public static boolean isSharp(List<ArrayList<String>> board, String turn) {
+		AbaloneCompactBoard compactBoard = new AbaloneCompactBoard(board, turn);
+		int[] moves = new int[AbaloneCompactBoard.MAX_MOVES];
+		int count = compactBoard.generateMoves(moves);
+		for(int i = 0; i < count; i++) {
+			if(!compactBoard.isPush(moves[i])) {
+				continue;
+			}
+			int direction = AbaloneCompactBoard.getMoveDirection(moves[i]);
+			int cell = AbaloneCompactBoard.getMoveCell(moves[i]);
+			while(compactBoard.getCell(cell) != AbaloneCompactBoard.EMPTY
+					&& compactBoard.getCell(cell) != AbaloneCompactBoard.OFF) {
+				if(compactBoard.getCell(cell) != compactBoard.getTurn()
+						&& AbaloneGeometry.getDistanceToCenter(cell) == AbaloneGeometry.RADIUS) {
+					return true;
+				}
+				cell = AbaloneGeometry.getNeighbor(cell, direction);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param maxPlies the push out should happen within this number of plies, both sides counted.
+	 * @param maxNodes the search stops with {@link Proof#UNKNOWN} after this number of nodes.
+	 */
+	public Proof solve(int maxPlies, int maxNodes) {
+		root = new Node(-1, 0);
+		nodes = 1;
+		Node[] path = new Node[maxPlies + 1];
+		while(root.proof != 0 && root.disproof != 0 && nodes < maxNodes) {
+			workBoard.copyFrom(rootBoard);
+			Node node = root;
+			int depth = 0;
+			path[0] = root;
+			while(node.children != null) {
+				node = selectMostProving(node);
+				workBoard.play(node.move);
+				path[++depth] = node;
+			}
+			expand(node, maxPlies);
+			for(int i = depth - 1; i >= 0; i--) {
+				update(path[i]);
+			}
+		}
+		return root.proof == 0 ? Proof.PROVEN
+				: root.disproof == 0 ? Proof.DISPROVEN : Proof.UNKNOWN;
+	}
+
+	/**
+	 * @return the first placement of the proven push out sequence, null if it is not proven.
+	 */
+	public Placement getWinningPlacement() {
+		if(root == null || root.proof != 0) {
+			return null;
+		}
+		for(Node child : root.children) {
+			if(child.proof == 0) {
+				int cell = AbaloneCompactBoard.getMoveCell(child.move);
+				int endCell = AbaloneGeometry.getNeighbor(cell,
+						AbaloneCompactBoard.getMoveDirection(child.move));
+				return new AbaloneMoveIndex(board, turn).getPlacement(
+						AbaloneGeometry.getRow(cell), AbaloneGeometry.getColumn(cell),
+						AbaloneGeometry.getRow(endCell), AbaloneGeometry.getColumn(endCell));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of plies until the push out against the longest defense, 0 if the win is
+	 * not proven.
+	 */
+	public int getProofPlies() {
+		return root == null || root.proof != 0 ? 0 : getProofPlies(root);
+	}
+
+	private static int getProofPlies(Node node) {
+		if(node.children == null) {
+			// the push out.
+			return node.ply;
+		}
+		int plies = node.isAttackerToMove() ? Integer.MAX_VALUE : 0;
+		for(Node child : node.children) {
+			if(child.proof != 0) {
+				continue;
+			}
+			plies = node.isAttackerToMove() ? Math.min(plies, getProofPlies(child))
+					: Math.max(plies, getProofPlies(child));
+		}
+		return plies;
+	}
+
+	public int getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * The attacker follows the child with the smallest proof number, the defender the child with
+	 * the smallest disproof number.
+	 */
+	private static Node selectMostProving(Node node) {
+		Node best = null;
+		for(Node child : node.children) {
+			if(best == null || (node.isAttackerToMove() ? child.proof < best.proof
+					: child.disproof < best.disproof)) {
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Method used to create the children of {@code node}, whose position is on the work board.
+	 * A push out is decided at once: won if the attacker played it, lost otherwise. A position
+	 * reached after {@code maxPlies} plies is lost.
+	 */
+	private void expand(Node node, int maxPlies) {
+		boolean isAttacker = node.isAttackerToMove();
+		int count = workBoard.generateMoves(moves);
+		int childCount = 0;
+		for(int i = 0; i < count; i++) {
+			if(!isAttacker || workBoard.isPush(moves[i])) {
+				moves[childCount++] = moves[i];
+			}
+		}
+		Node[] children = new Node[childCount];
+		for(int i = 0; i < childCount; i++) {
+			Node child = new Node(moves[i], node.ply + 1);
+			if(workBoard.isPushOut(moves[i])) {
+				child.proof = isAttacker ? 0 : INFINITY;
+				child.disproof = isAttacker ? INFINITY : 0;
+			} else if(child.ply >= maxPlies) {
+				child.proof = INFINITY;
+				child.disproof = 0;
+			}
+			children[i] = child;
+		}
+		node.children = children;
+		nodes += childCount;
+		update(node);
+	}
+
+	/**
+	 * Proof numbers of an attacker node: the smallest proof, the sum of the disproofs. They are
+	 * the other way round for a defender node. A node without children is lost for the attacker.
+	 */
+	private static void update(Node node) {
+		if(node.children.length == 0) {
+			node.proof = INFINITY;
+			node.disproof = 0;
+			return;
+		}
+		int min = INFINITY;
+		int sum = 0;
+		for(Node child : node.children) {
+			int minNumber = node.isAttackerToMove() ? child.proof : child.disproof;
+			int sumNumber = node.isAttackerToMove() ? child.disproof : child.proof;
+			min = Math.min(min, minNumber);
+			sum = Math.min(sum + sumNumber, INFINITY);
+		}
+		node.proof = node.isAttackerToMove() ? min : sum;
+		node.disproof = node.isAttackerToMove() ? sum : min;
+	}
+}
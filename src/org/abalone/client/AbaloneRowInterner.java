@@ -0,0 +1,83 @@
+package org.abalone.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class used to share identical board rows between states, moves and matches.
+ *
+ * A row returned by {@link #intern(List)} may be held by many boards at the same time, so it
+ * must never be changed: boards are changed by copying the row first (see
+ * {@link AbaloneState#applyJumpOnBoard(List)}). The interner keeps a copy of its own of every
+ * new row, so the callers may still change the rows they pass.
+ *
+ * The rows are spread over {@link #STRIPES} maps by their hash, each with its own lock, so that
+ * the server threads verifying moves of different matches seldom wait for each other (the client
+ * is single threaded, and this is also compiled by GWT, which has no java.util.concurrent). The
+ * least recently used rows of a map are forgotten when it holds more than its share of
+ * {@link #MAX_ROWS}, they then simply stop being shared.
+ */
+public final class AbaloneRowInterner {
+	public static final int MAX_ROWS = 8192;
+	public static final int STRIPES = 16;
+
+	private static final List<Map<List<String>, ArrayList<String>>> stripes = createStripes();
+
+	private static List<Map<List<String>, ArrayList<String>>> createStripes() {
+		List<Map<List<String>, ArrayList<String>>> stripes =
+				new ArrayList<Map<List<String>, ArrayList<String>>>(STRIPES);
+		for(int i = 0; i < STRIPES; i++) {
+			stripes.add(new LinkedHashMap<List<String>, ArrayList<String>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<String>, ArrayList<String>> eldest) {
+					return size() > MAX_ROWS / STRIPES;
+				}
+			});
+		}
+		return stripes;
+	}
+
+	/**
+	 * @return the shared row equal to {@code row}, which is a copy of {@code row} the first time.
+	 */
+	public static ArrayList<String> intern(List<String> row) {
+		int hash = row.hashCode();
+		Map<List<String>, ArrayList<String>> rows = stripes.get((hash ^ (hash >>> 16)) & (STRIPES - 1));
+		synchronized(rows) {
+			ArrayList<String> internedRow = rows.get(row);
+			if(internedRow == null) {
+				internedRow = new ArrayList<String>(row);
+				rows.put(internedRow, internedRow);
+			}
+			return internedRow;
+		}
+	}
+
+	/**
+	 * @param board board whose rows are any lists, e.g. parsed from JSON.
+	 * @return a board made of the shared rows equal to the rows of {@code board}.
+	 */
+	public static List<ArrayList<String>> internBoard(List<? extends List<String>> board) {
+		List<ArrayList<String>> internedBoard = new ArrayList<ArrayList<String>>(board.size());
+		for(List<String> row : board) {
+			internedBoard.add(intern(row));
+		}
+		return internedBoard;
+	}
+
+	static int size() {
+		int size = 0;
+		for(Map<List<String>, ArrayList<String>> rows : stripes) {
+			synchronized(rows) {
+				size += rows.size();
+			}
+		}
+		return size;
+	}
+
+	private AbaloneRowInterner() { }
+}
@@ -0,0 +1,368 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Class used to search the best round for the side to move: iterative deepening alpha-beta
+ * (negamax) over the placements of {@link AbaloneMoveIndex}, applied and cancelled in place on an
+ * {@link AbalonePreviewBoard}.
+ *
+ * The search runs one depth at a time ({@link #searchNextDepth()}), so callers can stop between
+ * two depths; a depth is also stopped by {@link #cancel()} or by the deadline. The result of the
+ * last finished depth is always kept, and a stopped depth can be searched again later with a new
+ * deadline: the {@link AbaloneTranspositionTable} makes the already searched part cheap. This is
+ * how the search is paused and resumed, e.g. to ponder on the opponent's time.
+ */
+public class AbaloneSearch {
+	/*
+	 * Score of pushing a piece onto a score square, the ply of the push is subtracted.
+	 */
+	public static final int WIN_SCORE = 1000000;
+	public static final int MAX_PLY = 64;
+
+	private static final int INFINITY = WIN_SCORE + 1;
+	private static final int CHECK_TIME_NODES = 256;
+	private static final int DEFAULT_TABLE_BITS = 16;
+	private static final int CENTER_WEIGHT = 10;
+	private static final int EDGE_WEIGHT = 15;
+	private static final int COHESION_WEIGHT = 2;
+
+	/*
+	 * Directions in which the pairs of neighbors are counted, once per pair: right, lower left
+	 * and lower right.
+	 */
+	private static final int[] COHESION_DIRECTIONS = {0, 5, 2};
+
+	/**
+	 * Result of the last finished depth.
+	 */
+	public static class Result {
+		private final List<Placement> principalVariation;
+		private final int score;
+		private final int depth;
+		private final long nodes;
+
+		Result(List<Placement> principalVariation, int score, int depth, long nodes) {
+			this.principalVariation = Collections.unmodifiableList(principalVariation);
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+		}
+
+		/**
+		 * @return the best placement, whose jumps can be sent in the move.
+		 */
+		public Placement getBestPlacement() {
+			return principalVariation.get(0);
+		}
+
+		/**
+		 * @return the best placement of both sides from the searched position, one per round.
+		 */
+		public List<Placement> getPrincipalVariation() {
+			return principalVariation;
+		}
+
+		/**
+		 * @return score for the side to move, more than {@code WIN_SCORE - MAX_PLY} if it wins.
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		public int getDepth() {
+			return depth;
+		}
+
+		public long getNodes() {
+			return nodes;
+		}
+	}
+
+	/*
+	 * Thrown inside the recursion to stop the current depth.
+	 */
+	private static class SearchStoppedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private final AbalonePreviewBoard board;
+	private final String turn;
+	private final AbaloneTranspositionTable transpositionTable;
+	private final long rootHash;
+	private long hash;
+	private final Placement[][] pvTable = new Placement[MAX_PLY][MAX_PLY];
+	private final int[] pvLength = new int[MAX_PLY];
+	private long deadline = Long.MAX_VALUE;
+	private int maxDepth = MAX_PLY - 1;
+	private volatile boolean stopped;
+	private long nodes;
+	private int depth;
+	private Result result;
+
+	/**
+	 * @param board board to search, which is not changed.
+	 * @param turn {@link AbaloneConstants#WTurn} or {@link AbaloneConstants#BTurn}, side to move.
+	 */
+	public AbaloneSearch(List<ArrayList<String>> board, String turn) {
+		this(board, turn, new AbaloneTranspositionTable(DEFAULT_TABLE_BITS));
+	}
+
+	/**
+	 * @param transpositionTable table shared with the previous searches of the same game.
+	 */
+	public AbaloneSearch(List<ArrayList<String>> board, String turn,
+			AbaloneTranspositionTable transpositionTable) {
+		this.board = new AbalonePreviewBoard(board);
+		this.turn = turn;
+		this.transpositionTable = transpositionTable;
+		this.rootHash = AbaloneZobrist.hash(board, turn);
+		this.hash = rootHash;
+	}
+
+	/**
+	 * Search until {@code maxDepth} is finished or {@code millis} milliseconds are used.
+	 * @return result of the last finished depth, null if not even one depth is finished.
+	 */
+	public Result search(int maxDepth, int millis) {
+		setMaxDepth(maxDepth);
+		setDeadline(System.currentTimeMillis() + millis);
+		while(searchNextDepth()) {
+			// one more depth is finished.
+		}
+		return result;
+	}
+
+	/**
+	 * Search one depth deeper than the last finished one.
+	 * @return false if the search is stopped, cancelled, or there is no need to search deeper.
+	 */
+	public boolean searchNextDepth() {
+		if(stopped || depth >= maxDepth || isDecided()) {
+			return false;
+		}
+		if(depth == 0 && solvePushOut()) {
+			return true;
+		}
+		int score;
+		try {
+			score = negamax(turn, depth + 1, -INFINITY, INFINITY, 0);
+		} catch(SearchStoppedException e) {
+			while(!board.isEmpty()) {
+				board.undo();
+			}
+			hash = rootHash;
+			return false;
+		}
+		if(pvLength[0] == 0) {
+			// no legal placement at all.
+			return false;
+		}
+		depth++;
+		List<Placement> principalVariation = Lists.newArrayList();
+		for(int i = 0; i < pvLength[0]; i++) {
+			principalVariation.add(pvTable[0][i]);
+		}
+		result = new Result(principalVariation, score, depth, nodes);
+		return true;
+	}
+
+	/**
+	 * Method used to try the {@link AbalonePushOutSolver} before the first depth, in sharp
+	 * positions only: alpha-beta spends most of its nodes on such endings.
+	 * @return true if a forced push out is proven, it is then the result.
+	 */
+	private boolean solvePushOut() {
+		if(!AbalonePushOutSolver.isSharp(board.getBoard(), turn)) {
+			return false;
+		}
+		AbalonePushOutSolver solver = new AbalonePushOutSolver(board.getBoard(), turn);
+		AbalonePushOutSolver.Proof proof = solver.solve(AbalonePushOutSolver.DEFAULT_MAX_PLIES,
+				AbalonePushOutSolver.DEFAULT_MAX_NODES);
+		nodes += solver.getNodes();
+		if(proof != AbalonePushOutSolver.Proof.PROVEN) {
+			return false;
+		}
+		depth = solver.getProofPlies();
+		result = new Result(Lists.newArrayList(solver.getWinningPlacement()),
+				WIN_SCORE - (depth - 1), depth, nodes);
+		return true;
+	}
+
+	/**
+	 * Stop the search as soon as possible, the result of the last finished depth is kept.
+	 */
+	public void cancel() {
+		stopped = true;
+	}
+
+	public void setDeadline(long deadlineMillis) {
+		deadline = deadlineMillis;
+	}
+
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+	}
+
+	public Result getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the hash of the searched position.
+	 */
+	public long getHash() {
+		return rootHash;
+	}
+
+	/**
+	 * @return true if searching deeper is useless: the maximum depth is reached or the search is
+	 * decided.
+	 */
+	public boolean isFinished() {
+		return depth >= maxDepth || isDecided();
+	}
+
+	/**
+	 * @return true if the last finished depth already found a forced push out.
+	 */
+	public boolean isDecided() {
+		return result != null && Math.abs(result.getScore()) > WIN_SCORE - MAX_PLY;
+	}
+
+	private int negamax(String sideTurn, int remainingDepth, int alpha, int beta, int ply) {
+		nodes++;
+		if(depth > 0 && nodes % CHECK_TIME_NODES == 0
+				&& (stopped || System.currentTimeMillis() > deadline)) {
+			throw new SearchStoppedException();
+		}
+		pvLength[ply] = ply;
+		int tableMove = AbaloneTranspositionTable.NO_MOVE;
+		int tableIndex = transpositionTable.probe(hash);
+		if(tableIndex >= 0) {
+			tableMove = transpositionTable.getMove(tableIndex);
+			if(ply > 0 && transpositionTable.getDepth(tableIndex) >= remainingDepth) {
+				int tableScore = transpositionTable.getScore(tableIndex);
+				byte bound = transpositionTable.getBound(tableIndex);
+				if(bound == AbaloneTranspositionTable.EXACT
+						|| (bound == AbaloneTranspositionTable.LOWER_BOUND && tableScore >= beta)
+						|| (bound == AbaloneTranspositionTable.UPPER_BOUND && tableScore <= alpha)) {
+					return tableScore;
+				}
+			}
+		}
+		List<Placement> placements = AbaloneMoveIndex.getPlacements(board.getBoard(), sideTurn);
+		for(Placement placement : placements) {
+			if(placement.getMessage().equals(GAMEOVER)) {
+				pvTable[ply][ply] = placement;
+				pvLength[ply] = ply + 1;
+				return WIN_SCORE - ply;
+			}
+		}
+		if(remainingDepth == 0 || placements.isEmpty() || ply == MAX_PLY - 1) {
+			return evaluate(sideTurn);
+		}
+		if(tableMove != AbaloneTranspositionTable.NO_MOVE) {
+			moveToFront(placements, tableMove);
+		}
+		if(ply == 0 && result != null) {
+			// the best placement of the last depth is searched first.
+			moveToFront(placements,
+					AbaloneTranspositionTable.encodeMove(result.getBestPlacement().getHeldJump()));
+		}
+		String opponentTurn = sideTurn.equals(WTurn) ? BTurn : WTurn;
+		int originalAlpha = alpha;
+		int bestMove = tableMove;
+		for(Placement placement : placements) {
+			long hashChange = getHashChange(placement);
+			board.apply(placement.getJumps());
+			hash ^= hashChange;
+			int score = -negamax(opponentTurn, remainingDepth - 1, -beta, -alpha, ply + 1);
+			hash ^= hashChange;
+			board.undo();
+			if(score > alpha) {
+				alpha = score;
+				bestMove = AbaloneTranspositionTable.encodeMove(placement.getHeldJump());
+				pvTable[ply][ply] = placement;
+				for(int i = ply + 1; i < pvLength[ply + 1]; i++) {
+					pvTable[ply][i] = pvTable[ply + 1][i];
+				}
+				pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+				if(alpha >= beta) {
+					break;
+				}
+			}
+		}
+		if(Math.abs(alpha) <= WIN_SCORE - MAX_PLY) {
+			// scores of forced push outs depend on the ply, they are not stored.
+			byte bound = alpha <= originalAlpha ? AbaloneTranspositionTable.UPPER_BOUND
+					: alpha >= beta ? AbaloneTranspositionTable.LOWER_BOUND
+					: AbaloneTranspositionTable.EXACT;
+			transpositionTable.store(hash, remainingDepth, alpha, bound, bestMove);
+		}
+		return alpha;
+	}
+
+	private static void moveToFront(List<Placement> placements, int move) {
+		for(int i = 0; i < placements.size(); i++) {
+			if(AbaloneTranspositionTable.encodeMove(placements.get(i).getHeldJump()) == move) {
+				placements.add(0, placements.remove(i));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the change of the hash made by the placement, including the change of turn.
+	 */
+	private static long getHashChange(Placement placement) {
+		long hashChange = AbaloneZobrist.turnKey();
+		for(List<Integer> jump : placement.getJumps()) {
+			hashChange ^= AbaloneZobrist.squareKey(jump.get(0), jump.get(1), jump.get(4))
+					^ AbaloneZobrist.squareKey(jump.get(2), jump.get(3), jump.get(4));
+		}
+		return hashChange;
+	}
+
+	/**
+	 * Method used to evaluate the board for {@code sideTurn}: pieces near the center, away from
+	 * the edge and next to each other are better.
+	 */
+	private int evaluate(String sideTurn) {
+		List<ArrayList<String>> squares = board.getBoard();
+		String ownColor = sideTurn.equals(WTurn) ? W : B;
+		int score = 0;
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			String square = getSquare(squares, cell);
+			if(!square.equals(W) && !square.equals(B)) {
+				continue;
+			}
+			int distance = AbaloneGeometry.getDistanceToCenter(cell);
+			int value = CENTER_WEIGHT * (4 - distance) - (distance == 4 ? EDGE_WEIGHT : 0);
+			for(int direction : COHESION_DIRECTIONS) {
+				int neighbor = AbaloneGeometry.getNeighbor(cell, direction);
+				if(neighbor != AbaloneGeometry.OFF_BOARD && getSquare(squares, neighbor).equals(square)) {
+					value += COHESION_WEIGHT;
+				}
+			}
+			score += square.equals(ownColor) ? value : -value;
+		}
+		return score;
+	}
+
+	private static String getSquare(List<ArrayList<String>> squares, int cell) {
+		return squares.get(AbaloneGeometry.getRow(cell)).get(AbaloneGeometry.getColumn(cell));
+	}
+}
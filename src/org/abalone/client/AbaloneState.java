@@ -42,7 +42,11 @@ public class AbaloneState {
 	}
 	
 	/**
-	 * Assume that the input {@code jumps} are sorted based on their move direction
+	 * Assume that the input {@code jumps} are sorted based on their move direction.
+	 * 
+	 * Only the rows touched by {@code jumps} are copied, all the other rows are shared with this
+	 * state, and the new rows are shared through {@link AbaloneRowInterner}. So the rows of a
+	 * board must never be changed in place.
 	 * @param jumps the format is as following:
 	 * {
 	 * 	{startX, startY, endX, endY, 0/1 (0 for white, 1 for black)}, 
@@ -50,25 +54,13 @@ public class AbaloneState {
 	 * }
 	 * @return a new result {@link AbaloneState}
 	 */
-	@SuppressWarnings("unchecked")
 	public AbaloneState applyJumpOnBoard(List<ArrayList<Integer>> jumps) {
 		if(jumps == null || jumps.isEmpty()){
 			return this;
 		}
 		
-		System.out.println("State Jumps");
-		for(int i = 0; i < jumps.size(); i++){
-			for(int j = 0; j < jumps.get(i).size(); j++) {
-				System.out.print(jumps.get(i).get(j) + " ");
-			}
-			System.out.println();
-		}
-		
-		List<ArrayList<String>> newBoard = new ArrayList<ArrayList<String>>();
-		
-		for(int i = 0; i < board.size(); i++) {
-			newBoard.add((ArrayList<String>)board.get(i).clone());
-		}
+		List<ArrayList<String>> newBoard = new ArrayList<ArrayList<String>>(board);
+		boolean[] isRowCopied = new boolean[board.size()];
 		// variable used to stand for whether the current player wins the game.
 		boolean youWin = false;
 		
@@ -88,6 +80,8 @@ public class AbaloneState {
 				throw new RuntimeException("Jump should not start or end in illegal scores");
 			}
 			
+			copyRow(newBoard, isRowCopied, startX);
+			copyRow(newBoard, isRowCopied, endX);
 			if(pieceColor == 0) {
 				newBoard.get(endX).set(endY, AbaloneConstants.W);
 				newBoard.get(startX).set(startY, AbaloneConstants.E);
@@ -96,9 +90,24 @@ public class AbaloneState {
 				newBoard.get(startX).set(startY, AbaloneConstants.E);
 			}
 		}
+		for(int i = 0; i < newBoard.size(); i++) {
+			if(isRowCopied[i]) {
+				newBoard.set(i, AbaloneRowInterner.intern(newBoard.get(i)));
+			}
+		}
 		return new AbaloneState(turn, playerIds, newBoard, jumps, isGameEnd);
 	}
 	
+	/**
+	 * Helper method used to copy the row {@code x} of {@code newBoard} before its first change.
+	 */
+	private static void copyRow(List<ArrayList<String>> newBoard, boolean[] isRowCopied, int x) {
+		if(!isRowCopied[x]) {
+			newBoard.set(x, new ArrayList<String>(newBoard.get(x)));
+			isRowCopied[x] = true;
+		}
+	}
+	
 	/**
 	 * Method used to get opponent's turn: 
 	 * {@link AbaloneConstants#bTurn} => {@link AbaloneConstants#wTurn}
@@ -131,7 +140,8 @@ public class AbaloneState {
 		List<ArrayList<String>> board = (List<ArrayList<String>>)gameApiState.get(BOARD);
 		@SuppressWarnings("unchecked")
 		List<ArrayList<Integer>> jump = (List<ArrayList<Integer>>)gameApiState.get(JUMP);
-		return new AbaloneState(turn, playerIds, board, jump, null);
+		// rows equal to the ones of previous states, of any match, are shared.
+		return new AbaloneState(turn, playerIds, AbaloneRowInterner.internBoard(board), jump, null);
 	}
 	
 	public static AbaloneState getEmptyAbaloneState() {
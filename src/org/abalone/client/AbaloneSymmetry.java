@@ -0,0 +1,210 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Class used to map any position to its canonical form, so caches, opening books and position
+ * databases store one entry for all the equivalent positions.
+ *
+ * The hexagon has 12 symmetries: 6 rotations of 60 degrees, each of them with or without the
+ * mirror which keeps the q axis. In addition, a position with black to move is the same as the
+ * position with the colors swapped and white to move. The canonical form has white to move, and
+ * among the 12 transformed boards it is the one whose cells, read in {@link AbaloneGeometry}
+ * order, are the smallest.
+ *
+ * Only the 61 cells are transformed: pieces pushed onto the score squares end the game, so they
+ * are not part of a position which is still played.
+ */
+public final class AbaloneSymmetry {
+	public static final int TRANSFORM_COUNT = 12;
+
+	/*
+	 * CELL_TRANSFORMS[transform][cell] is the cell moved to by the transform.
+	 */
+	private static final int[][] CELL_TRANSFORMS = new int[TRANSFORM_COUNT][AbaloneGeometry.CELL_COUNT];
+	private static final int[] INVERSE_TRANSFORMS = new int[TRANSFORM_COUNT];
+	static {
+		for(int transform = 0; transform < TRANSFORM_COUNT; transform++) {
+			for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+				int[] square = transformSquare(AbaloneGeometry.getRow(cell),
+						AbaloneGeometry.getColumn(cell), transform);
+				CELL_TRANSFORMS[transform][cell] = AbaloneGeometry.getCell(square[0], square[1]);
+			}
+		}
+		for(int transform = 0; transform < TRANSFORM_COUNT; transform++) {
+			for(int inverse = 0; inverse < TRANSFORM_COUNT; inverse++) {
+				boolean isIdentity = true;
+				for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT && isIdentity; cell++) {
+					isIdentity = CELL_TRANSFORMS[inverse][CELL_TRANSFORMS[transform][cell]] == cell;
+				}
+				if(isIdentity) {
+					INVERSE_TRANSFORMS[transform] = inverse;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Canonical form of a position, with the transform used to get it.
+	 */
+	public static class Canonical {
+		private final String key;
+		private final int transform;
+		private final boolean isColorSwapped;
+
+		Canonical(String key, int transform, boolean isColorSwapped) {
+			this.key = key;
+			this.transform = transform;
+			this.isColorSwapped = isColorSwapped;
+		}
+
+		/**
+		 * @return one character (W, B or E) per cell of the canonical board, white to move.
+		 * Equivalent positions have the same key.
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		public int getTransform() {
+			return transform;
+		}
+
+		public boolean isColorSwapped() {
+			return isColorSwapped;
+		}
+
+		/**
+		 * @return the canonical board, white to move.
+		 */
+		public List<ArrayList<String>> getBoard() {
+			List<ArrayList<String>> board = Lists.newArrayListWithCapacity(initialBoard.size());
+			for(ArrayList<String> row : initialBoard) {
+				board.add(Lists.newArrayList(row));
+			}
+			for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+				board.get(AbaloneGeometry.getRow(cell)).set(AbaloneGeometry.getColumn(cell),
+						String.valueOf(key.charAt(cell)));
+			}
+			return board;
+		}
+
+		/**
+		 * @return the jumps of the original position, mapped to the canonical board.
+		 */
+		public List<ArrayList<Integer>> toCanonical(List<ArrayList<Integer>> jumps) {
+			return transformJumps(jumps, transform, isColorSwapped);
+		}
+
+		/**
+		 * @return the jumps of the canonical board, mapped back to the original position.
+		 */
+		public List<ArrayList<Integer>> fromCanonical(List<ArrayList<Integer>> jumps) {
+			return transformJumps(jumps, INVERSE_TRANSFORMS[transform], isColorSwapped);
+		}
+	}
+
+	/**
+	 * @param turn {@link AbaloneConstants#WTurn} or {@link AbaloneConstants#BTurn}, side to move.
+	 */
+	public static Canonical canonicalize(List<ArrayList<String>> board, String turn) {
+		boolean isColorSwapped = turn.equals(BTurn);
+		char[] cells = new char[AbaloneGeometry.CELL_COUNT];
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			String square = board.get(AbaloneGeometry.getRow(cell)).get(AbaloneGeometry.getColumn(cell));
+			if(square.equals(W)) {
+				cells[cell] = isColorSwapped ? 'B' : 'W';
+			} else if(square.equals(B)) {
+				cells[cell] = isColorSwapped ? 'W' : 'B';
+			} else {
+				cells[cell] = 'E';
+			}
+		}
+		String bestKey = null;
+		int bestTransform = 0;
+		char[] transformed = new char[AbaloneGeometry.CELL_COUNT];
+		for(int transform = 0; transform < TRANSFORM_COUNT; transform++) {
+			for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+				transformed[CELL_TRANSFORMS[transform][cell]] = cells[cell];
+			}
+			String key = new String(transformed);
+			if(bestKey == null || key.compareTo(bestKey) < 0) {
+				bestKey = key;
+				bestTransform = transform;
+			}
+		}
+		return new Canonical(bestKey, bestTransform, isColorSwapped);
+	}
+
+	/**
+	 * @return the cell moved to by {@code transform}.
+	 */
+	public static int transformCell(int cell, int transform) {
+		return CELL_TRANSFORMS[transform][cell];
+	}
+
+	public static int inverse(int transform) {
+		return INVERSE_TRANSFORMS[transform];
+	}
+
+	/**
+	 * Method used to transform a square on the hexagonal lattice: {@code transform % 6} rotations
+	 * of 60 degrees, then the mirror if {@code transform >= 6}.
+	 * @return {row, column} of the transformed square.
+	 */
+	public static int[] transformSquare(int x, int y, int transform) {
+		int q = AbaloneGeometry.getQ(x, y);
+		int r = AbaloneGeometry.getR(x);
+		int s = -q - r;
+		for(int i = 0; i < transform % 6; i++) {
+			int oldQ = q;
+			q = -r;
+			r = -s;
+			s = -oldQ;
+		}
+		if(transform >= 6) {
+			int oldR = r;
+			r = s;
+			s = oldR;
+		}
+		return new int[]{AbaloneGeometry.getRow(q, r), AbaloneGeometry.getColumn(q, r)};
+	}
+
+	/**
+	 * Method used to transform jumps {startX, startY, endX, endY, pieceColor}, including the
+	 * pushes out of the board: a horizontal push out ends half a step away (one column), as in
+	 * {@link AbaloneMoveIndex}.
+	 */
+	public static List<ArrayList<Integer>> transformJumps(List<ArrayList<Integer>> jumps,
+			int transform, boolean swapColors) {
+		List<ArrayList<Integer>> transformedJumps = Lists.newArrayListWithCapacity(jumps.size());
+		for(List<Integer> jump : jumps) {
+			int startX = jump.get(0);
+			int startY = jump.get(1);
+			int endX = jump.get(2);
+			int endY = jump.get(3);
+			if(startX == endX && Math.abs(endY - startY) == 1) {
+				// half step of a horizontal push out, back to the lattice.
+				endY = startY + 2 * (endY - startY);
+			}
+			int[] start = transformSquare(startX, startY, transform);
+			int[] end = transformSquare(endX, endY, transform);
+			if(start[0] == end[0] && AbaloneGeometry.getCell(end[0], end[1]) < 0) {
+				end[1] = start[1] + (end[1] - start[1]) / 2;
+			}
+			int pieceColor = swapColors ? 1 - jump.get(4) : jump.get(4);
+			transformedJumps.add(Lists.newArrayList(start[0], start[1], end[0], end[1], pieceColor));
+		}
+		return transformedJumps;
+	}
+
+	private AbaloneSymmetry() { }
+}
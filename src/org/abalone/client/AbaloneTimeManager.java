@@ -0,0 +1,96 @@
+package org.abalone.client;
+
+import java.util.List;
+
+/**
+ * Class used to decide how long the AI searches in its turn, from the time left on its turn clock
+ * ({@link org.game_api.GameApi.SetTurn#getNumberOfSecondsForTurn()}).
+ *
+ * A fixed overhead is kept for sending the move and for a busy container, the rest is available.
+ * The search aims at the soft deadline and never goes past the hard deadline, where the running
+ * depth is stopped. After every finished depth:
+ * (1). if the best placement did not change for {@link #STABLE_DEPTHS} depths, the soft budget
+ * is halved: searching deeper is unlikely to change the move.
+ * (2). if the best placement changed or the score dropped, the position is volatile and the soft
+ * budget is extended, up to the hard deadline.
+ * (3). a depth is only started if it is expected to finish before the hard deadline, from the
+ * time of the last depth and the growth between the last two depths.
+ */
+public class AbaloneTimeManager {
+	public static final int MOVE_OVERHEAD_MILLIS = 500;
+	public static final int STABLE_DEPTHS = 2;
+	public static final int VOLATILE_SCORE_DROP = 30;
+	private static final double SOFT_FRACTION = 0.4;
+	private static final double HARD_FRACTION = 0.85;
+	private static final double STABLE_FACTOR = 0.5;
+	private static final double VOLATILE_FACTOR = 1.8;
+	private static final int DEFAULT_GROWTH = 8;
+
+	private final long startMillis;
+	private final long softBudget;
+	private final long hardDeadline;
+	private long lastDepthMillis;
+	private long lastDepthDuration;
+	private long previousDepthDuration;
+	private List<Integer> lastHeldJump;
+	private int lastScore;
+	private int stableDepths;
+	private double softFactor = 1;
+
+	/**
+	 * @param startMillis time the turn started, when the UpdateUI was received.
+	 * @param turnMillis time of the turn clock, in milliseconds.
+	 */
+	public AbaloneTimeManager(long startMillis, int turnMillis) {
+		this.startMillis = startMillis;
+		long available = Math.max(turnMillis - MOVE_OVERHEAD_MILLIS, 0);
+		this.softBudget = (long) (available * SOFT_FRACTION);
+		this.hardDeadline = startMillis + (long) (available * HARD_FRACTION);
+		this.lastDepthMillis = startMillis;
+	}
+
+	/**
+	 * @return time after which the running depth is stopped.
+	 */
+	public long getHardDeadline() {
+		return hardDeadline;
+	}
+
+	/**
+	 * @return time after which no new depth is started, depending on the finished depths.
+	 */
+	public long getSoftDeadline() {
+		return Math.min(startMillis + (long) (softBudget * softFactor), hardDeadline);
+	}
+
+	/**
+	 * Method to be called after every finished depth.
+	 * @param result result of the depth which just finished.
+	 * @param nowMillis current time.
+	 * @return true if the next depth should be searched.
+	 */
+	public boolean shouldSearchDeeper(AbaloneSearch.Result result, long nowMillis) {
+		previousDepthDuration = lastDepthDuration;
+		lastDepthDuration = nowMillis - lastDepthMillis;
+		lastDepthMillis = nowMillis;
+		List<Integer> heldJump = result.getBestPlacement().getHeldJump();
+		if(lastHeldJump == null) {
+			stableDepths = 0;
+		} else if(!heldJump.equals(lastHeldJump) || result.getScore() < lastScore - VOLATILE_SCORE_DROP) {
+			stableDepths = 0;
+			softFactor = VOLATILE_FACTOR;
+		} else if(++stableDepths >= STABLE_DEPTHS) {
+			softFactor = STABLE_FACTOR;
+		} else {
+			softFactor = 1;
+		}
+		lastHeldJump = heldJump;
+		lastScore = result.getScore();
+		if(nowMillis >= getSoftDeadline()) {
+			return false;
+		}
+		long growth = previousDepthDuration > 0
+				? Math.max(lastDepthDuration / previousDepthDuration, 2) : DEFAULT_GROWTH;
+		return nowMillis + lastDepthDuration * growth <= hardDeadline;
+	}
+}
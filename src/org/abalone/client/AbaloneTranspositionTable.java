@@ -0,0 +1,99 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.BoardColNum;
+import static org.abalone.client.AbaloneConstants.BoardRowNum;
+
+import java.util.List;
+
+/**
+ * Fixed-size table of the positions already searched by {@link AbaloneSearch}, indexed by their
+ * {@link AbaloneZobrist} hash: score, bound, depth and best placement of every position.
+ *
+ * The table outlives a search, so the next search of the same game (after a ponder miss, or for
+ * the next turn) starts with the entries of the previous ones. An entry is replaced by a deeper
+ * or equally deep search of any position.
+ */
+public class AbaloneTranspositionTable {
+	/*
+	 * Bound of a stored score.
+	 */
+	public static final byte EXACT = 0;
+	public static final byte LOWER_BOUND = 1;
+	public static final byte UPPER_BOUND = 2;
+	public static final int NO_MOVE = -1;
+
+	private final int mask;
+	private final long[] keys;
+	private final int[] scores;
+	private final int[] moves;
+	private final byte[] depths;
+	private final byte[] bounds;
+
+	/**
+	 * @param sizeBits the table has 2^sizeBits entries.
+	 */
+	public AbaloneTranspositionTable(int sizeBits) {
+		int size = 1 << sizeBits;
+		mask = size - 1;
+		keys = new long[size];
+		scores = new int[size];
+		moves = new int[size];
+		depths = new byte[size];
+		bounds = new byte[size];
+		clear();
+	}
+
+	/**
+	 * @return index of the entry of {@code hash}, or -1 if the position is not in the table.
+	 */
+	public int probe(long hash) {
+		int index = (int) hash & mask;
+		return keys[index] == hash && depths[index] >= 0 ? index : -1;
+	}
+
+	public void store(long hash, int depth, int score, byte bound, int move) {
+		int index = (int) hash & mask;
+		if(keys[index] == hash || depth >= depths[index]) {
+			keys[index] = hash;
+			depths[index] = (byte) depth;
+			scores[index] = score;
+			bounds[index] = bound;
+			moves[index] = move;
+		}
+	}
+
+	public int getDepth(int index) {
+		return depths[index];
+	}
+
+	public int getScore(int index) {
+		return scores[index];
+	}
+
+	public byte getBound(int index) {
+		return bounds[index];
+	}
+
+	/**
+	 * @return the best placement found, encoded by {@link #encodeMove(List)}, or {@link #NO_MOVE}.
+	 */
+	public int getMove(int index) {
+		return moves[index];
+	}
+
+	public void clear() {
+		for(int i = 0; i < depths.length; i++) {
+			keys[i] = 0;
+			depths[i] = -1;
+			moves[i] = NO_MOVE;
+		}
+	}
+
+	/**
+	 * @param heldJump jump of the held piece of a placement {startX, startY, endX, endY, color}.
+	 */
+	public static int encodeMove(List<Integer> heldJump) {
+		return ((heldJump.get(0) * BoardColNum + heldJump.get(1)) * BoardRowNum + heldJump.get(2))
+				* BoardColNum + heldJump.get(3);
+	}
+}
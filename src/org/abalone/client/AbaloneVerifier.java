@@ -0,0 +1,16 @@
+package org.abalone.client;
+
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+
+/**
+ * Verification of the last move of a VerifyMove, e.g. {@link AbaloneLogic} or
+ * {@link AbaloneFastVerifier}. Implementations are used by several threads at once.
+ */
+public interface AbaloneVerifier {
+	/**
+	 * @return a VerifyMoveDone without hacker if the move is legal, or with the player who made
+	 * it and the reason otherwise.
+	 */
+	VerifyMoveDone verify(VerifyMove verifyMove);
+}
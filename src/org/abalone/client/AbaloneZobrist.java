@@ -0,0 +1,77 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.BoardColNum;
+import static org.abalone.client.AbaloneConstants.BoardRowNum;
+import static org.abalone.client.AbaloneConstants.W;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class used to compute the 64 bits Zobrist hash of a position (board and side to move): the
+ * exclusive or of one random key per piece on its square, and of a key for black to move.
+ *
+ * A jump changes the hash by {@code squareKey(start) ^ squareKey(end)} of the piece, so the hash
+ * can also be updated incrementally. The keys are generated from a fixed seed, so a hash is the
+ * same on every server and in every client.
+ */
+public final class AbaloneZobrist {
+	private static final long[][][] SQUARE_KEYS = new long[BoardRowNum][BoardColNum][2];
+	private static final long BLACK_TURN_KEY;
+	static {
+		long seed = 0x41BA10E5EEDL;
+		for(int i = 0; i < BoardRowNum; i++) {
+			for(int j = 0; j < BoardColNum; j++) {
+				for(int color = 0; color < 2; color++) {
+					seed += 0x9E3779B97F4A7C15L;
+					SQUARE_KEYS[i][j][color] = mix(seed);
+				}
+			}
+		}
+		seed += 0x9E3779B97F4A7C15L;
+		BLACK_TURN_KEY = mix(seed);
+	}
+
+	/**
+	 * SplitMix64 finalizer.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @param turn {@link AbaloneConstants#WTurn} or {@link AbaloneConstants#BTurn}, side to move.
+	 */
+	public static long hash(List<ArrayList<String>> board, String turn) {
+		long hash = turn.equals(BTurn) ? BLACK_TURN_KEY : 0L;
+		for(int i = 0; i < board.size(); i++) {
+			List<String> row = board.get(i);
+			for(int j = 0; j < row.size(); j++) {
+				String square = row.get(j);
+				if(square.equals(W)) {
+					hash ^= SQUARE_KEYS[i][j][0];
+				} else if(square.equals(B)) {
+					hash ^= SQUARE_KEYS[i][j][1];
+				}
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * @param pieceColor 0 for white, 1 for black, as in the jumps.
+	 */
+	public static long squareKey(int x, int y, int pieceColor) {
+		return SQUARE_KEYS[x][y][pieceColor];
+	}
+
+	public static long turnKey() {
+		return BLACK_TURN_KEY;
+	}
+
+	private AbaloneZobrist() { }
+}
@@ -1,14 +1,20 @@
 package org.abalone.graphics;
 
 import org.abalone.client.AbaloneLogic;
+import org.abalone.client.AbaloneComputeApi.ComputeChannel;
+import org.abalone.client.AbaloneComputeApi.LocalComputeChannel;
 import org.abalone.client.AbalonePresenter;
+import org.abalone.worker.WorkerComputeChannel;
 import org.game_api.GameApi.ContainerConnector;
 import org.game_api.GameApi.Game;
 import org.game_api.GameApi.IteratingPlayerContainer;
 import org.game_api.GameApi.UpdateUI;
 import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.game_api.GameMetrics;
 
 import com.google.gwt.core.client.EntryPoint;
+import com.google.gwt.core.client.GWT;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.RootPanel;
 
@@ -25,7 +31,11 @@ public class AbaloneEntryPoint implements EntryPoint {
 		Game game = new Game() {
 			@Override
 			public void sendVerifyMove(VerifyMove verifyMove) {
-				container.sendVerifyMoveDone(new AbaloneLogic().verify(verifyMove));
+				// recorded here, not in AbaloneLogic, which the server also runs on many threads.
+				long start = GameMetrics.get().start();
+				VerifyMoveDone verifyMoveDone = new AbaloneLogic().verify(verifyMove);
+				GameMetrics.get().stop(GameMetrics.VERIFY, verifyMove.getMessageName(), start);
+				container.sendVerifyMoveDone(verifyMoveDone);
 			}
 
 			@Override
@@ -36,7 +46,12 @@ public class AbaloneEntryPoint implements EntryPoint {
 //		container = new IteratingPlayerContainer(game, 2);
 		container = new ContainerConnector(game);
 		AbaloneGraphics abaloneGraphics = new AbaloneGraphics();
-		abalonePresenter = new AbalonePresenter(abaloneGraphics, container);
+		// the engine runs in a Web Worker when the browser has them, so the board never freezes.
+		ComputeChannel computeChannel = WorkerComputeChannel.isSupported()
+				? new WorkerComputeChannel(
+						GWT.getModuleBaseURL() + "../abalone_worker/abalone_worker.nocache.js")
+				: new LocalComputeChannel();
+		abalonePresenter = new AbalonePresenter(abaloneGraphics, container, computeChannel);
 		
 //		final ListBox playerSelect = new ListBox();
 //		playerSelect.addItem("White Player");
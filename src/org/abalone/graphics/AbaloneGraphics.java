@@ -12,6 +12,7 @@ import java.util.List;
 
 import org.abalone.client.AbalonePresenter;
 import org.abalone.client.AbalonePresenter.View;
+import org.game_api.GameMetrics;
 
 import com.google.common.collect.Lists;
 import com.google.gwt.core.shared.GWT;
@@ -65,6 +66,8 @@ public class AbaloneGraphics extends Composite implements View {
   HorizontalPanel row10;
   @UiField
   Button finishRoundBtn;
+  @UiField
+  Button hintBtn;
   
   private AbaloneImages abaloneImages;
   private AbalonePresenter abalonePresenter;
@@ -102,6 +105,11 @@ public class AbaloneGraphics extends Composite implements View {
     abalonePresenter.finishAllPlacing(isGameOver);
   }
   
+  @UiHandler("hintBtn")
+  void onClickHintBtn(ClickEvent e) {
+    abalonePresenter.requestHint();
+  }
+  
 	@Override
 	public void setPresenter(AbalonePresenter abalonePresenter) {
 		this.abalonePresenter = abalonePresenter;
@@ -127,6 +135,7 @@ public class AbaloneGraphics extends Composite implements View {
 		if(board == null || board.isEmpty()){
 			throw new IllegalArgumentException("Input board should not null or empty!");
 		}
+		long start = GameMetrics.get().start();
 		for(int i = 0; i < board.size(); i++){
 			List<Image> images = squaresToImages(board.get(i), enableMatrix[i], i, actionType);
 			switch(i){
@@ -167,6 +176,7 @@ public class AbaloneGraphics extends Composite implements View {
 					break;
 			}
 		}
+		GameMetrics.get().stop(GameMetrics.RENDER, actionType.name(), start);
 	}
 
 	/**
@@ -310,5 +320,9 @@ public class AbaloneGraphics extends Composite implements View {
 			}).center();
 		}
 	}
-	
+
+	@Override
+	public void showHint(List<ArrayList<String>> board, boolean[][] hintMatrix, String turn) {
+		fillBoard(board, hintMatrix, ActionType.HOLD);
+	}
 }
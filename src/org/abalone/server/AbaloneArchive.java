@@ -0,0 +1,398 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.abalone.client.AbaloneCompactBoard;
+import org.abalone.client.AbaloneGeometry;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Archive format of {@link AbaloneGameRecord}, for the historical games: records are grouped in
+ * deflated blocks of up to {@link #GAMES_PER_BLOCK} games, and an index of the blocks at the end
+ * of the file gives random access to any game by its number.
+ * <pre>
+ *   int MAGIC, byte VERSION,
+ *   blocks: deflated bytes,
+ *   index: varint blockCount, for every block: long offset, int compressedLength,
+ *          int length, int gameCount,
+ *   long indexOffset, int MAGIC
+ * </pre>
+ * A block holds its games one after the other: UTF gameId, UTF whitePlayerId, UTF blackPlayerId,
+ * byte result, varint roundCount, then the rounds. The board is replayed while writing and
+ * reading, so the first move of a round is written as its index in the legal moves of
+ * {@link AbaloneCompactBoard#generateMoves}, one byte below {@link #ESCAPE}:
+ * <pre>
+ *   byte index | FOLLOWING (0x80) if the round has following moves,
+ *   varint move if index is ESCAPE,
+ *   varint followingCount if FOLLOWING, then for every following move a byte: the direction of
+ *   the piece moving into the cell left by the previous move, or FOLLOWING_ESCAPE and varint move.
+ * </pre>
+ * Most rounds take one byte before compression, which deflate shrinks further.
+ */
+public final class AbaloneArchive {
+	public static final int MAGIC = 0x41424C41;
+	public static final int VERSION = 1;
+	public static final int GAMES_PER_BLOCK = 1024;
+	private static final int ESCAPE = 0x7F;
+	private static final int FOLLOWING = 0x80;
+	private static final int FOLLOWING_ESCAPE = AbaloneCompactBoard.DIRECTION_COUNT;
+	private static final int FOOTER_BYTES = 12;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Position and size of a block.
+	 */
+	private static class Block {
+		private final long offset;
+		private final int compressedLength;
+		private final int length;
+		private final int firstGame;
+		private final int gameCount;
+
+		Block(long offset, int compressedLength, int length, int firstGame, int gameCount) {
+			this.offset = offset;
+			this.compressedLength = compressedLength;
+			this.length = length;
+			this.firstGame = firstGame;
+			this.gameCount = gameCount;
+		}
+	}
+
+	/**
+	 * Reader of an archive file, sequentially with {@link #read()} or at random with
+	 * {@link #read(int)}. The last block read is kept decoded.
+	 */
+	public static class ArchiveReader implements AbaloneGameRecord.RecordReader {
+		private final RandomAccessFile file;
+		private final List<Block> blocks = Lists.newArrayList();
+		private final int gameCount;
+		private int nextGame;
+		private Block decodedBlock;
+		private List<AbaloneGameRecord> decodedRecords;
+
+		public ArchiveReader(File archive) throws IOException {
+			file = new RandomAccessFile(archive, "r");
+			try {
+				if(file.length() < 5 + FOOTER_BYTES || file.readInt() != MAGIC) {
+					throw new IOException("Not a game archive: " + archive);
+				}
+				int version = file.readUnsignedByte();
+				if(version != VERSION) {
+					throw new IOException("Unsupported game archive version: " + version);
+				}
+				file.seek(file.length() - FOOTER_BYTES);
+				long indexOffset = file.readLong();
+				if(file.readInt() != MAGIC) {
+					throw new IOException("Truncated game archive: " + archive);
+				}
+				byte[] index = new byte[(int) (file.length() - FOOTER_BYTES - indexOffset)];
+				file.seek(indexOffset);
+				file.readFully(index);
+				DataInputStream input = new DataInputStream(new ByteArrayInputStream(index));
+				int blockCount = AbaloneBinaryRecords.readVarint(input);
+				int firstGame = 0;
+				for(int i = 0; i < blockCount; i++) {
+					Block block = new Block(input.readLong(), input.readInt(), input.readInt(), firstGame,
+							input.readInt());
+					blocks.add(block);
+					firstGame += block.gameCount;
+				}
+				gameCount = firstGame;
+			} catch(IOException e) {
+				file.close();
+				throw e;
+			}
+		}
+
+		public int getGameCount() {
+			return gameCount;
+		}
+
+		@Override
+		public AbaloneGameRecord read() throws IOException {
+			return nextGame < gameCount ? read(nextGame) : null;
+		}
+
+		/**
+		 * Method used to read the game {@code game}, the following {@link #read()} reads the next one.
+		 * @param game from 0 to {@link #getGameCount()} - 1, in the order of writing.
+		 */
+		public AbaloneGameRecord read(int game) throws IOException {
+			if(game < 0 || game >= gameCount) {
+				throw new IndexOutOfBoundsException("No game " + game + " in " + gameCount + " games");
+			}
+			Block block = findBlock(game);
+			if(block != decodedBlock) {
+				decodedRecords = decodeBlock(block);
+				decodedBlock = block;
+			}
+			nextGame = game + 1;
+			return decodedRecords.get(game - block.firstGame);
+		}
+
+		private Block findBlock(int game) {
+			int low = 0;
+			int high = blocks.size() - 1;
+			while(low < high) {
+				int middle = (low + high + 1) >>> 1;
+				if(blocks.get(middle).firstGame <= game) {
+					low = middle;
+				} else {
+					high = middle - 1;
+				}
+			}
+			return blocks.get(low);
+		}
+
+		private List<AbaloneGameRecord> decodeBlock(Block block) throws IOException {
+			byte[] compressed = new byte[block.compressedLength];
+			file.seek(block.offset);
+			file.readFully(compressed);
+			byte[] bytes = new byte[block.length];
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(compressed);
+				if(inflater.inflate(bytes) != bytes.length || !inflater.finished()) {
+					throw new IOException("Corrupted block at " + block.offset);
+				}
+			} catch(DataFormatException e) {
+				throw new IOException("Corrupted block at " + block.offset, e);
+			} finally {
+				inflater.end();
+			}
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+			List<AbaloneGameRecord> records = Lists.newArrayListWithCapacity(block.gameCount);
+			AbaloneCompactBoard board = new AbaloneCompactBoard(initialBoard, WTurn);
+			AbaloneCompactBoard initial = new AbaloneCompactBoard(board);
+			int[] legalMoves = new int[AbaloneCompactBoard.MAX_MOVES];
+			try {
+				for(int i = 0; i < block.gameCount; i++) {
+					board.copyFrom(initial);
+					records.add(readRecord(input, board, legalMoves));
+				}
+			} catch(EOFException e) {
+				throw new IOException("Truncated block at " + block.offset, e);
+			} catch(IllegalArgumentException e) {
+				throw new IOException("Corrupted block at " + block.offset, e);
+			}
+			return records;
+		}
+
+		@Override
+		public void close() throws IOException {
+			file.close();
+		}
+	}
+
+	/**
+	 * Writer of an archive, the header is written by the constructor and the index by
+	 * {@link #close()}.
+	 */
+	public static class ArchiveWriter implements AbaloneGameRecord.RecordWriter {
+		private final CountingOutputStream output;
+		private final int gamesPerBlock;
+		private final List<Block> blocks = Lists.newArrayList();
+		private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+		// a record is encoded here first, so that a record which fails leaves the block as it was.
+		private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+		private final DataOutputStream recordOutput = new DataOutputStream(recordBytes);
+		private final AbaloneCompactBoard initial = new AbaloneCompactBoard(initialBoard, WTurn);
+		private final AbaloneCompactBoard board = new AbaloneCompactBoard(initial);
+		private final int[] legalMoves = new int[AbaloneCompactBoard.MAX_MOVES];
+		private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		private final byte[] deflated = new byte[BUFFER_SIZE];
+		private int blockGames;
+		private int gameCount;
+
+		public ArchiveWriter(OutputStream output) throws IOException {
+			this(output, GAMES_PER_BLOCK);
+		}
+
+		ArchiveWriter(OutputStream output, int gamesPerBlock) throws IOException {
+			this.output = new CountingOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+			this.gamesPerBlock = gamesPerBlock;
+			DataOutputStream header = new DataOutputStream(this.output);
+			header.writeInt(MAGIC);
+			header.writeByte(VERSION);
+		}
+
+		/**
+		 * @throws IllegalArgumentException if a round has no move.
+		 */
+		@Override
+		public void write(AbaloneGameRecord record) throws IOException {
+			board.copyFrom(initial);
+			recordBytes.reset();
+			writeRecord(recordOutput, record, board, legalMoves);
+			recordBytes.writeTo(blockBytes);
+			gameCount++;
+			if(++blockGames == gamesPerBlock) {
+				writeBlock();
+			}
+		}
+
+		private void writeBlock() throws IOException {
+			if(blockGames == 0) {
+				return;
+			}
+			long offset = output.getCount();
+			deflater.reset();
+			deflater.setInput(blockBytes.toByteArray());
+			deflater.finish();
+			while(!deflater.finished()) {
+				output.write(deflated, 0, deflater.deflate(deflated));
+			}
+			blocks.add(new Block(offset, (int) (output.getCount() - offset), blockBytes.size(),
+					gameCount - blockGames, blockGames));
+			blockBytes.reset();
+			blockGames = 0;
+		}
+
+		/**
+		 * Method used to end the current block, so that its games are in the stream. Blocks of
+		 * fewer games compress less.
+		 */
+		@Override
+		public void flush() throws IOException {
+			writeBlock();
+			output.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			writeBlock();
+			DataOutputStream index = new DataOutputStream(output);
+			long indexOffset = output.getCount();
+			AbaloneBinaryRecords.writeVarint(index, blocks.size());
+			for(Block block : blocks) {
+				index.writeLong(block.offset);
+				index.writeInt(block.compressedLength);
+				index.writeInt(block.length);
+				index.writeInt(block.gameCount);
+			}
+			index.writeLong(indexOffset);
+			index.writeInt(MAGIC);
+			deflater.end();
+			index.close();
+		}
+	}
+
+	private static void writeRecord(DataOutputStream output, AbaloneGameRecord record,
+			AbaloneCompactBoard board, int[] legalMoves) throws IOException {
+		output.writeUTF(record.getGameId());
+		output.writeUTF(record.getWhitePlayerId());
+		output.writeUTF(record.getBlackPlayerId());
+		output.writeByte(AbaloneBinaryRecords.encodeResult(record.getResult()));
+		List<int[]> rounds = record.getRounds();
+		AbaloneBinaryRecords.writeVarint(output, rounds.size());
+		for(int[] moves : rounds) {
+			if(moves.length == 0) {
+				throw new IllegalArgumentException("Empty round in game " + record.getGameId());
+			}
+			int index = indexOf(legalMoves, board.generateMoves(legalMoves), moves[0]);
+			int head = index < 0 ? ESCAPE : index;
+			output.writeByte(moves.length > 1 ? head | FOLLOWING : head);
+			if(head == ESCAPE) {
+				AbaloneBinaryRecords.writeVarint(output, moves[0]);
+			}
+			board.play(moves[0]);
+			if(moves.length > 1) {
+				AbaloneBinaryRecords.writeVarint(output, moves.length - 1);
+			}
+			for(int i = 1; i < moves.length; i++) {
+				int cell = AbaloneCompactBoard.getMoveCell(moves[i]);
+				int direction = AbaloneCompactBoard.getMoveDirection(moves[i]);
+				if(AbaloneGeometry.getNeighbor(cell, direction)
+						== AbaloneCompactBoard.getMoveCell(moves[i - 1])) {
+					output.writeByte(direction);
+				} else {
+					output.writeByte(FOLLOWING_ESCAPE);
+					AbaloneBinaryRecords.writeVarint(output, moves[i]);
+				}
+				board.playFollowing(moves[i]);
+			}
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a move is not on the board.
+	 */
+	private static AbaloneGameRecord readRecord(DataInputStream input, AbaloneCompactBoard board,
+			int[] legalMoves) throws IOException {
+		String gameId = input.readUTF();
+		String whitePlayerId = input.readUTF();
+		String blackPlayerId = input.readUTF();
+		String result = AbaloneBinaryRecords.decodeResult(input.readUnsignedByte());
+		int roundCount = AbaloneBinaryRecords.readVarint(input);
+		List<int[]> rounds = Lists.newArrayListWithCapacity(roundCount);
+		for(int round = 0; round < roundCount; round++) {
+			int head = input.readUnsignedByte();
+			int index = head & ~FOLLOWING;
+			int move;
+			if(index == ESCAPE) {
+				move = checkMove(AbaloneBinaryRecords.readVarint(input));
+			} else {
+				int count = board.generateMoves(legalMoves);
+				if(index >= count) {
+					throw new IllegalArgumentException("No legal move " + index + " in round " + round);
+				}
+				move = legalMoves[index];
+			}
+			board.play(move);
+			int[] moves = new int[(head & FOLLOWING) != 0 ? 1 + AbaloneBinaryRecords.readVarint(input) : 1];
+			moves[0] = move;
+			for(int i = 1; i < moves.length; i++) {
+				int direction = input.readUnsignedByte();
+				if(direction == FOLLOWING_ESCAPE) {
+					moves[i] = checkMove(AbaloneBinaryRecords.readVarint(input));
+				} else if(direction < FOLLOWING_ESCAPE) {
+					// the piece comes from the opposite direction of the cell left by the previous move.
+					int cell = AbaloneGeometry.getNeighbor(AbaloneCompactBoard.getMoveCell(moves[i - 1]),
+							AbaloneGeometry.getOpposite(direction));
+					moves[i] = checkMove(cell * AbaloneCompactBoard.DIRECTION_COUNT + direction);
+				} else {
+					throw new IllegalArgumentException("Bad following move: " + direction);
+				}
+				board.playFollowing(moves[i]);
+			}
+			rounds.add(moves);
+		}
+		return new AbaloneGameRecord(gameId, whitePlayerId, blackPlayerId, result, rounds);
+	}
+
+	private static int indexOf(int[] moves, int count, int move) {
+		for(int i = 0; i < count && i < ESCAPE; i++) {
+			if(moves[i] == move) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int checkMove(int move) {
+		if(move < 0 || move >= AbaloneGeometry.CELL_COUNT * AbaloneCompactBoard.DIRECTION_COUNT) {
+			throw new IllegalArgumentException("Bad move: " + move);
+		}
+		return move;
+	}
+
+	private AbaloneArchive() { }
+}
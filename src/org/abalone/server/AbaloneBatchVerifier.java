@@ -0,0 +1,265 @@
+package org.abalone.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.abalone.client.AbaloneLogic;
+import org.abalone.client.AbaloneVerifier;
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Verification of batches of VerifyMove with {@link AbaloneLogic}, or another
+ * {@link AbaloneVerifier}, on a pool of threads, the results keep the order of the batch. A batch
+ * is read and written in one of two formats:
+ * <ul>
+ * <li>JSON: an array of VerifyMove messages, answered by an array of VerifyMoveDone messages.
+ * <li>Binary: {@link #MAGIC}, varint count, then for every VerifyMove its varint length and its
+ * UTF-8 JSON; answered by {@link #MAGIC}, varint count, then for every result a byte 0 if the
+ * move is legal, or 1 followed by the UTF hackerPlayerId and message.
+ * </ul>
+ *
+ * With one thread there is no pool, a batch is verified on the calling thread. This is the
+ * setting on App Engine, which does not let an application start threads of its own: the
+ * parallelism comes from the requests served at the same time ({@code threadsafe} in
+ * appengine-web.xml), see {@link AbaloneVerifyServlet}.
+ */
+public class AbaloneBatchVerifier {
+	public static final int MAGIC = 0x41425642;
+	public static final int MAX_BATCH = 1000;
+	private static final int MAX_MESSAGE_BYTES = 1 << 20;
+	/**
+	 * Maximum size of a batch, in characters of JSON or bytes of the binary format.
+	 */
+	public static final int MAX_BATCH_SIZE = 16 << 20;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final AbaloneVerifier logic;
+	private final int threads;
+	private final ExecutorService executor;
+
+	public AbaloneBatchVerifier() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public AbaloneBatchVerifier(int threads) {
+		this(threads, new AbaloneLogic());
+	}
+
+	/**
+	 * @param logic verifier of every move, e.g. an {@link AbaloneShadowVerifier}.
+	 */
+	public AbaloneBatchVerifier(int threads, AbaloneVerifier logic) {
+		this.logic = logic;
+		this.threads = threads;
+		this.executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+	}
+
+	/**
+	 * Method used to verify the batch in as many slices as there are threads.
+	 * @return one VerifyMoveDone per VerifyMove, in the same order.
+	 */
+	public List<VerifyMoveDone> verify(List<VerifyMove> verifyMoves) {
+		if(verifyMoves.size() > MAX_BATCH) {
+			throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH + " moves");
+		}
+		if(executor == null) {
+			return verifySlice(verifyMoves);
+		}
+		int sliceSize = Math.max(1, (verifyMoves.size() + threads - 1) / threads);
+		List<Future<List<VerifyMoveDone>>> futures = Lists.newArrayList();
+		for(final List<VerifyMove> slice : Lists.partition(verifyMoves, sliceSize)) {
+			futures.add(executor.submit(new Callable<List<VerifyMoveDone>>() {
+				@Override
+				public List<VerifyMoveDone> call() {
+					return verifySlice(slice);
+				}
+			}));
+		}
+		List<VerifyMoveDone> results = Lists.newArrayListWithCapacity(verifyMoves.size());
+		try {
+			for(Future<List<VerifyMoveDone>> future : futures) {
+				results.addAll(future.get());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Verification interrupted", e);
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Verification failed", e.getCause());
+		}
+		return results;
+	}
+
+	private List<VerifyMoveDone> verifySlice(List<VerifyMove> slice) {
+		List<VerifyMoveDone> results = Lists.newArrayListWithCapacity(slice.size());
+		for(VerifyMove verifyMove : slice) {
+			results.add(logic.verify(verifyMove));
+		}
+		return results;
+	}
+
+	public void shutdown() {
+		if(executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the JSON is not an array of VerifyMove messages, or is
+	 * longer than {@link #MAX_BATCH_SIZE}, or holds more than {@link #MAX_BATCH} moves.
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<VerifyMove> readJsonBatch(Reader reader) throws IOException {
+		Object batch = AbaloneMessageJson.parse(readJson(reader));
+		if(!(batch instanceof List)) {
+			throw new IllegalArgumentException("A batch should be a JSON array");
+		}
+		if(((List<Object>) batch).size() > MAX_BATCH) {
+			throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH + " moves");
+		}
+		List<VerifyMove> verifyMoves = Lists.newArrayList();
+		for(Object message : (List<Object>) batch) {
+			if(!(message instanceof Map)) {
+				throw new IllegalArgumentException("A batch should only hold VerifyMove messages");
+			}
+			verifyMoves.add(checkVerifyMove(
+					AbaloneMessageJson.toMessage((Map<String, Object>) message)));
+		}
+		return verifyMoves;
+	}
+
+	private static String readJson(Reader reader) throws IOException {
+		StringBuilder json = new StringBuilder();
+		char[] buffer = new char[BUFFER_SIZE];
+		int count;
+		while((count = reader.read(buffer)) != -1) {
+			if(json.length() + count > MAX_BATCH_SIZE) {
+				throw new IllegalArgumentException("A batch is at most " + MAX_BATCH_SIZE + " long");
+			}
+			json.append(buffer, 0, count);
+		}
+		return json.toString();
+	}
+
+	public static void writeJsonResults(Writer writer, List<VerifyMoveDone> results)
+			throws IOException {
+		writer.write('[');
+		for(int i = 0; i < results.size(); i++) {
+			if(i > 0) {
+				writer.write(',');
+			}
+			writer.write(AbaloneMessageJson.toJson(results.get(i)));
+		}
+		writer.write(']');
+		writer.flush();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the stream is not a batch of VerifyMove messages.
+	 */
+	public static List<VerifyMove> readBinaryBatch(InputStream input) throws IOException {
+		DataInputStream dataInput = new DataInputStream(new BufferedInputStream(input, BUFFER_SIZE));
+		try {
+			if(dataInput.readInt() != MAGIC) {
+				throw new IllegalArgumentException("Not a verify batch");
+			}
+			int count = AbaloneBinaryRecords.readVarint(dataInput);
+			if(count > MAX_BATCH) {
+				throw new IllegalArgumentException("A batch holds at most " + MAX_BATCH + " moves");
+			}
+			List<VerifyMove> verifyMoves = Lists.newArrayListWithCapacity(count);
+			long size = 0;
+			for(int i = 0; i < count; i++) {
+				int length = AbaloneBinaryRecords.readVarint(dataInput);
+				if(length > MAX_MESSAGE_BYTES) {
+					throw new IllegalArgumentException("VerifyMove " + i + " is too long: " + length);
+				}
+				size += length;
+				if(size > MAX_BATCH_SIZE) {
+					throw new IllegalArgumentException("A batch is at most " + MAX_BATCH_SIZE + " long");
+				}
+				byte[] json = new byte[length];
+				dataInput.readFully(json);
+				verifyMoves.add(checkVerifyMove(AbaloneMessageJson.toMessage(
+						new String(json, StandardCharsets.UTF_8))));
+			}
+			return verifyMoves;
+		} catch(EOFException e) {
+			throw new IllegalArgumentException("Truncated verify batch", e);
+		}
+	}
+
+	public static void writeBinaryBatch(OutputStream output, List<VerifyMove> verifyMoves)
+			throws IOException {
+		DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+		dataOutput.writeInt(MAGIC);
+		AbaloneBinaryRecords.writeVarint(dataOutput, verifyMoves.size());
+		for(VerifyMove verifyMove : verifyMoves) {
+			byte[] json = AbaloneMessageJson.toJsonBytes(verifyMove);
+			AbaloneBinaryRecords.writeVarint(dataOutput, json.length);
+			dataOutput.write(json);
+		}
+		dataOutput.flush();
+	}
+
+	public static void writeBinaryResults(OutputStream output, List<VerifyMoveDone> results)
+			throws IOException {
+		DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+		dataOutput.writeInt(MAGIC);
+		AbaloneBinaryRecords.writeVarint(dataOutput, results.size());
+		for(VerifyMoveDone result : results) {
+			if(result.getHackerPlayerId() == null) {
+				dataOutput.writeByte(0);
+			} else {
+				dataOutput.writeByte(1);
+				dataOutput.writeUTF(result.getHackerPlayerId());
+				dataOutput.writeUTF(String.valueOf(result.getMessage()));
+			}
+		}
+		dataOutput.flush();
+	}
+
+	public static List<VerifyMoveDone> readBinaryResults(InputStream input) throws IOException {
+		DataInputStream dataInput = new DataInputStream(new BufferedInputStream(input, BUFFER_SIZE));
+		if(dataInput.readInt() != MAGIC) {
+			throw new IOException("Not verify results");
+		}
+		int count = AbaloneBinaryRecords.readVarint(dataInput);
+		List<VerifyMoveDone> results = Lists.newArrayListWithCapacity(count);
+		for(int i = 0; i < count; i++) {
+			if(dataInput.readUnsignedByte() == 0) {
+				results.add(new VerifyMoveDone());
+			} else {
+				results.add(new VerifyMoveDone(dataInput.readUTF(), dataInput.readUTF()));
+			}
+		}
+		return results;
+	}
+
+	private static VerifyMove checkVerifyMove(Message message) {
+		// UpdateUI extends VerifyMove, but is not a move to verify.
+		if(!message.getMessageName().equals("VerifyMove")) {
+			throw new IllegalArgumentException("Expected a VerifyMove, got " + message.getMessageName());
+		}
+		return (VerifyMove) message;
+	}
+}
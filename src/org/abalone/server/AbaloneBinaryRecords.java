@@ -0,0 +1,165 @@
+package org.abalone.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Binary format of {@link AbaloneGameRecord}: a header ({@link #MAGIC} and {@link #VERSION}),
+ * then one record after the other:
+ * <pre>
+ *   byte 'G', UTF gameId, UTF whitePlayerId, UTF blackPlayerId, byte result,
+ *   varint roundCount, for every round: byte moveCount, moveCount varint moves
+ * </pre>
+ * A move is an {@link org.abalone.client.AbaloneCompactBoard} move, so a round of one placement
+ * takes 2 or 3 bytes.
+ */
+public final class AbaloneBinaryRecords {
+	public static final int MAGIC = 0x41424C52;
+	public static final int VERSION = 1;
+	private static final int RECORD_TAG = 'G';
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Reader of the binary format, the header is checked by the constructor.
+	 */
+	public static class BinaryRecordReader implements AbaloneGameRecord.RecordReader {
+		private final DataInputStream input;
+
+		public BinaryRecordReader(InputStream input) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(input, BUFFER_SIZE));
+			if(this.input.readInt() != MAGIC) {
+				throw new IOException("Not a game record stream");
+			}
+			int version = this.input.readUnsignedByte();
+			if(version != VERSION) {
+				throw new IOException("Unsupported game record version: " + version);
+			}
+		}
+
+		@Override
+		public AbaloneGameRecord read() throws IOException {
+			int tag = input.read();
+			if(tag < 0) {
+				return null;
+			}
+			if(tag != RECORD_TAG) {
+				throw new IOException("Bad game record tag: " + tag);
+			}
+			try {
+				String gameId = input.readUTF();
+				String whitePlayerId = input.readUTF();
+				String blackPlayerId = input.readUTF();
+				String result = decodeResult(input.readUnsignedByte());
+				int roundCount = readVarint(input);
+				List<int[]> rounds = Lists.newArrayListWithCapacity(roundCount);
+				for(int round = 0; round < roundCount; round++) {
+					int[] moves = new int[input.readUnsignedByte()];
+					for(int i = 0; i < moves.length; i++) {
+						moves[i] = readVarint(input);
+					}
+					rounds.add(moves);
+				}
+				return new AbaloneGameRecord(gameId, whitePlayerId, blackPlayerId, result, rounds);
+			} catch(EOFException e) {
+				throw new IOException("Truncated game record", e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writer of the binary format, the header is written by the constructor.
+	 */
+	public static class BinaryRecordWriter implements AbaloneGameRecord.RecordWriter {
+		private final DataOutputStream output;
+
+		public BinaryRecordWriter(OutputStream output) throws IOException {
+			this.output = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+			this.output.writeInt(MAGIC);
+			this.output.writeByte(VERSION);
+		}
+
+		@Override
+		public void write(AbaloneGameRecord record) throws IOException {
+			output.writeByte(RECORD_TAG);
+			output.writeUTF(record.getGameId());
+			output.writeUTF(record.getWhitePlayerId());
+			output.writeUTF(record.getBlackPlayerId());
+			output.writeByte(encodeResult(record.getResult()));
+			List<int[]> rounds = record.getRounds();
+			writeVarint(output, rounds.size());
+			for(int[] moves : rounds) {
+				output.writeByte(moves.length);
+				for(int move : moves) {
+					writeVarint(output, move);
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			output.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			output.close();
+		}
+	}
+
+	static int encodeResult(String result) {
+		return result.equals(AbaloneGameRecord.WHITE_WINS) ? 1
+				: result.equals(AbaloneGameRecord.BLACK_WINS) ? 2 : 0;
+	}
+
+	static String decodeResult(int code) throws IOException {
+		switch(code) {
+			case 0:
+				return AbaloneGameRecord.UNFINISHED;
+			case 1:
+				return AbaloneGameRecord.WHITE_WINS;
+			case 2:
+				return AbaloneGameRecord.BLACK_WINS;
+			default:
+				throw new IOException("Bad game result: " + code);
+		}
+	}
+
+	/**
+	 * Method used to write a non negative int in 7-bit groups, low group first.
+	 */
+	static void writeVarint(DataOutputStream output, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	static int readVarint(DataInputStream input) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Bad varint");
+	}
+
+	private AbaloneBinaryRecords() { }
+}
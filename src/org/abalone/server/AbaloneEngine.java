@@ -0,0 +1,22 @@
+package org.abalone.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+
+/**
+ * Engine choosing the placement of an AI seat, see {@link AbaloneEngineSeats}.
+ *
+ * Engines keep what they searched from one move to the next, so every seat has its own engine,
+ * called by one thread at a time.
+ */
+public interface AbaloneEngine {
+	/**
+	 * @param turn {@link org.abalone.client.AbaloneConstants#WTurn} or
+	 * {@link org.abalone.client.AbaloneConstants#BTurn}, side to move.
+	 * @param millis time available for the move, in milliseconds.
+	 * @return the chosen placement, or null if the side to move has no legal placement.
+	 */
+	Placement chooseMove(List<ArrayList<String>> board, String turn, int millis);
+}
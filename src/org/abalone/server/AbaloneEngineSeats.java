@@ -0,0 +1,83 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.WTurn;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Engines of the AI seats of one match, every seat has its own engine, e.g.
+ * {@code AbaloneEngineSeats.parse("mcts,alphabeta")} plays white with {@link AbaloneMctsEngine}
+ * and black with {@link AbaloneSearchEngine}. The seats are closed at the end of the match, see
+ * {@link AbaloneLoadDriver.Builder#engines}.
+ */
+public class AbaloneEngineSeats implements Closeable {
+	public static final String ALPHA_BETA = "alphabeta";
+	public static final String MCTS = "mcts";
+
+	private final Map<String, AbaloneEngine> engines = Maps.newHashMap();
+
+	public AbaloneEngineSeats(AbaloneEngine whiteEngine, AbaloneEngine blackEngine) {
+		if(whiteEngine == null || blackEngine == null || whiteEngine == blackEngine) {
+			throw new IllegalArgumentException("Every AI seat should have its own engine!");
+		}
+		engines.put(WTurn, whiteEngine);
+		engines.put(BTurn, blackEngine);
+	}
+
+	/**
+	 * @param config names of the white and of the black engine, separated by a comma:
+	 * {@link #ALPHA_BETA} or {@link #MCTS}.
+	 */
+	public static AbaloneEngineSeats parse(String config) {
+		String[] names = config.split(",");
+		if(names.length != 2) {
+			throw new IllegalArgumentException("Engine config should name two engines: " + config);
+		}
+		return new AbaloneEngineSeats(newEngine(names[0].trim()), newEngine(names[1].trim()));
+	}
+
+	public static AbaloneEngine newEngine(String name) {
+		if(name.equals(ALPHA_BETA)) {
+			return new AbaloneSearchEngine();
+		}
+		if(name.equals(MCTS)) {
+			return new AbaloneMctsEngine();
+		}
+		throw new IllegalArgumentException("Unknown engine: " + name);
+	}
+
+	/**
+	 * @param turn {@link org.abalone.client.AbaloneConstants#WTurn} or
+	 * {@link org.abalone.client.AbaloneConstants#BTurn}.
+	 */
+	public AbaloneEngine getEngine(String turn) {
+		return engines.get(turn);
+	}
+
+	/**
+	 * @return the placement chosen by the engine of the side to move.
+	 */
+	public Placement chooseMove(List<ArrayList<String>> board, String turn, int millis) {
+		return getEngine(turn).chooseMove(board, turn, millis);
+	}
+
+	/**
+	 * Method used to shut down the engines which run on threads of their own.
+	 */
+	@Override
+	public void close() {
+		for(AbaloneEngine engine : engines.values()) {
+			if(engine instanceof AbaloneMctsEngine) {
+				((AbaloneMctsEngine) engine).shutdown();
+			}
+		}
+	}
+}
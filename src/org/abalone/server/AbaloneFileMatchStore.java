@@ -0,0 +1,77 @@
+package org.abalone.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import org.abalone.server.AbaloneMatchRepository.MatchState;
+import org.abalone.server.AbaloneMatchRepository.MatchStore;
+
+/**
+ * {@link MatchStore} on the local disk, one serialized {@link MatchState} per match in
+ * {@code <matchId>.match}. A state is written to a temporary file then renamed, so a reader sees
+ * the previous or the new state of a match, never a partial one.
+ */
+public class AbaloneFileMatchStore implements MatchStore {
+	private static final Pattern MATCH_ID = Pattern.compile("[A-Za-z0-9_-]+");
+	private static final String SUFFIX = ".match";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	private final File directory;
+
+	public AbaloneFileMatchStore(File directory) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		this.directory = directory;
+	}
+
+	private File getFile(String matchId) {
+		if(!MATCH_ID.matcher(matchId).matches()) {
+			throw new IllegalArgumentException("Invalid match id: " + matchId);
+		}
+		return new File(directory, matchId + SUFFIX);
+	}
+
+	@Override
+	public MatchState read(String matchId) throws IOException {
+		File file = getFile(matchId);
+		if(!file.exists()) {
+			return null;
+		}
+		ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			return (MatchState) input.readObject();
+		} catch(ClassNotFoundException e) {
+			throw new IOException("Not a match state: " + file, e);
+		} finally {
+			input.close();
+		}
+	}
+
+	@Override
+	public void write(Collection<MatchState> states) throws IOException {
+		for(MatchState state : states) {
+			File file = getFile(state.getMatchId());
+			File temporaryFile = new File(directory, file.getName() + TEMPORARY_SUFFIX);
+			ObjectOutputStream output =
+					new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+			try {
+				output.writeObject(state);
+			} finally {
+				output.close();
+			}
+			Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+}
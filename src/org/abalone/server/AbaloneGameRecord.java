@@ -0,0 +1,277 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.abalone.client.AbaloneCompactBoard;
+import org.abalone.client.AbaloneGeometry;
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbalonePreviewBoard;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Record of one game: the players, the result and the rounds played from
+ * {@link org.abalone.client.AbaloneConstants#initialBoard}, white first.
+ *
+ * A round is stored as the moves of the held pieces, each move one
+ * {@link AbaloneCompactBoard} move (cell * 6 + direction): the first one is a placement of
+ * {@link AbaloneMoveIndex} with its pushed pieces, the following ones move a single piece into the
+ * square left by the previous one, as in {@link org.abalone.client.AbalonePresenter}. The jumps
+ * of the pushed pieces are found again by {@link #getRoundJumps()}.
+ *
+ * Records are read and written one at a time, as text ({@link AbaloneTextRecords}) or binary
+ * ({@link AbaloneBinaryRecords}), so any number of games can be streamed.
+ */
+public final class AbaloneGameRecord {
+	public static final String WHITE_WINS = "1-0";
+	public static final String BLACK_WINS = "0-1";
+	public static final String UNFINISHED = "*";
+
+	/**
+	 * Streaming reader of records.
+	 */
+	public interface RecordReader extends Closeable {
+		/**
+		 * @return the next record, or null at the end of the stream.
+		 */
+		AbaloneGameRecord read() throws IOException;
+	}
+
+	/**
+	 * Streaming writer of records.
+	 */
+	public interface RecordWriter extends Closeable {
+		void write(AbaloneGameRecord record) throws IOException;
+
+		void flush() throws IOException;
+	}
+
+	private final String gameId;
+	private final String whitePlayerId;
+	private final String blackPlayerId;
+	private final String result;
+	private final List<int[]> rounds;
+
+	/**
+	 * @param rounds moves of the held pieces of every round, which are not copied.
+	 */
+	AbaloneGameRecord(String gameId, String whitePlayerId, String blackPlayerId, String result,
+			List<int[]> rounds) {
+		if(!result.equals(WHITE_WINS) && !result.equals(BLACK_WINS) && !result.equals(UNFINISHED)) {
+			throw new IllegalArgumentException("Unknown game result: " + result);
+		}
+		this.gameId = gameId;
+		this.whitePlayerId = whitePlayerId;
+		this.blackPlayerId = blackPlayerId;
+		this.result = result;
+		this.rounds = Collections.unmodifiableList(rounds);
+	}
+
+	public String getGameId() {
+		return gameId;
+	}
+
+	public String getWhitePlayerId() {
+		return whitePlayerId;
+	}
+
+	public String getBlackPlayerId() {
+		return blackPlayerId;
+	}
+
+	/**
+	 * @return {@link #WHITE_WINS}, {@link #BLACK_WINS} or {@link #UNFINISHED}.
+	 */
+	public String getResult() {
+		return result;
+	}
+
+	public int getRoundCount() {
+		return rounds.size();
+	}
+
+	/**
+	 * @return the {@link AbaloneCompactBoard} moves of the held pieces of the round.
+	 */
+	public int[] getRoundMoves(int round) {
+		return rounds.get(round).clone();
+	}
+
+	List<int[]> getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * Method used to replay the game.
+	 * @return the jumps of every round, pushed pieces included, as in the JUMP operation.
+	 * @throws IllegalArgumentException if a round is not legal.
+	 */
+	public List<List<ArrayList<Integer>>> getRoundJumps() {
+		List<List<ArrayList<Integer>>> roundJumps = Lists.newArrayListWithCapacity(rounds.size());
+		List<ArrayList<String>> board = initialBoard;
+		String turn = WTurn;
+		for(int[] moves : rounds) {
+			AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+			for(int i = 0; i < moves.length; i++) {
+				int[] squares = getSquares(moves[i]);
+				if(i == 0) {
+					Placement placement = new AbaloneMoveIndex(board, turn)
+							.getPlacement(squares[0], squares[1], squares[2], squares[3]);
+					if(placement == null) {
+						throw new IllegalArgumentException("Illegal round " + roundJumps.size()
+								+ " in game " + gameId);
+					}
+					previewBoard.apply(placement.getJumps());
+				} else {
+					List<ArrayList<Integer>> jumps = new ArrayList<ArrayList<Integer>>();
+					jumps.add(Lists.newArrayList(
+							squares[0], squares[1], squares[2], squares[3], turn.equals(WTurn) ? 0 : 1));
+					previewBoard.apply(jumps);
+				}
+			}
+			roundJumps.add(Lists.newArrayList(previewBoard.getJumps()));
+			board = previewBoard.getBoard();
+			turn = turn.equals(WTurn) ? BTurn : WTurn;
+		}
+		return roundJumps;
+	}
+
+	/**
+	 * @return {startX, startY, endX, endY} of the move.
+	 */
+	static int[] getSquares(int move) {
+		int cell = AbaloneCompactBoard.getMoveCell(move);
+		int endCell = AbaloneGeometry.getNeighbor(cell, AbaloneCompactBoard.getMoveDirection(move));
+		if(endCell == AbaloneGeometry.OFF_BOARD) {
+			throw new IllegalArgumentException("Move out of the board: " + move);
+		}
+		return new int[]{AbaloneGeometry.getRow(cell), AbaloneGeometry.getColumn(cell),
+				AbaloneGeometry.getRow(endCell), AbaloneGeometry.getColumn(endCell)};
+	}
+
+	/**
+	 * @return the move of the piece from the start square to the next end square.
+	 * @throws IllegalArgumentException if the squares are not next to each other.
+	 */
+	static int getMove(int startX, int startY, int endX, int endY) {
+		int cell = AbaloneGeometry.getCell(startX, startY);
+		int endCell = AbaloneGeometry.getCell(endX, endY);
+		if(cell >= 0 && endCell >= 0) {
+			int direction = AbaloneGeometry.getDirection(cell, endCell);
+			if(direction >= 0) {
+				return cell * AbaloneCompactBoard.DIRECTION_COUNT + direction;
+			}
+		}
+		throw new IllegalArgumentException("Not a move of one step: (" + startX + ", " + startY
+				+ ") to (" + endX + ", " + endY + ")");
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof AbaloneGameRecord)) {
+			return false;
+		}
+		AbaloneGameRecord otherRecord = (AbaloneGameRecord) other;
+		if(!gameId.equals(otherRecord.gameId) || !whitePlayerId.equals(otherRecord.whitePlayerId)
+				|| !blackPlayerId.equals(otherRecord.blackPlayerId)
+				|| !result.equals(otherRecord.result) || rounds.size() != otherRecord.rounds.size()) {
+			return false;
+		}
+		for(int i = 0; i < rounds.size(); i++) {
+			if(!Arrays.equals(rounds.get(i), otherRecord.rounds.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return gameId.hashCode() * 31 + rounds.size();
+	}
+
+	/**
+	 * Builder of a record from the jumps of the rounds, e.g. the JUMP operations of a match.
+	 */
+	public static class Builder {
+		private final String gameId;
+		private final String whitePlayerId;
+		private final String blackPlayerId;
+		private final List<int[]> rounds = Lists.newArrayList();
+		private List<ArrayList<String>> board = initialBoard;
+		private String turn = WTurn;
+
+		public Builder(String gameId, String whitePlayerId, String blackPlayerId) {
+			this.gameId = gameId;
+			this.whitePlayerId = whitePlayerId;
+			this.blackPlayerId = blackPlayerId;
+		}
+
+		/**
+		 * @param roundJumps all the jumps of the round, pushed pieces included, as in the JUMP
+		 * operation.
+		 * @throws IllegalArgumentException if the jumps are not a legal round.
+		 */
+		public Builder addRound(List<? extends List<Integer>> roundJumps) {
+			List<Integer> moves = Lists.newArrayList();
+			AbaloneMoveIndex moveIndex = new AbaloneMoveIndex(board, turn);
+			AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+			int next = 0;
+			while(next < roundJumps.size()) {
+				// the first placement ends with its held piece, the following ones are single jumps.
+				int held = next;
+				if(next == 0) {
+					while(held < roundJumps.size() && !isPlacement(moveIndex, roundJumps, held)) {
+						held++;
+					}
+					if(held == roundJumps.size()) {
+						throw new IllegalArgumentException("Illegal round " + rounds.size()
+								+ " in game " + gameId);
+					}
+				}
+				List<Integer> heldJump = roundJumps.get(held);
+				moves.add(getMove(heldJump.get(0), heldJump.get(1), heldJump.get(2), heldJump.get(3)));
+				List<ArrayList<Integer>> placementJumps = Lists.newArrayList();
+				for(int i = next; i <= held; i++) {
+					placementJumps.add(Lists.newArrayList(roundJumps.get(i)));
+				}
+				previewBoard.apply(placementJumps);
+				next = held + 1;
+			}
+			int[] roundMoves = new int[moves.size()];
+			for(int i = 0; i < roundMoves.length; i++) {
+				roundMoves[i] = moves.get(i);
+			}
+			rounds.add(roundMoves);
+			board = previewBoard.getBoard();
+			turn = turn.equals(WTurn) ? BTurn : WTurn;
+			return this;
+		}
+
+		private static boolean isPlacement(AbaloneMoveIndex moveIndex,
+				List<? extends List<Integer>> roundJumps, int held) {
+			List<Integer> heldJump = roundJumps.get(held);
+			Placement placement = moveIndex.getPlacement(heldJump.get(0), heldJump.get(1),
+					heldJump.get(2), heldJump.get(3));
+			return placement != null && placement.getJumps().equals(roundJumps.subList(0, held + 1));
+		}
+
+		/**
+		 * @param result {@link #WHITE_WINS}, {@link #BLACK_WINS} or {@link #UNFINISHED}.
+		 */
+		public AbaloneGameRecord build(String result) {
+			return new AbaloneGameRecord(gameId, whitePlayerId, blackPlayerId, result,
+					Lists.newArrayList(rounds));
+		}
+	}
+}
@@ -0,0 +1,514 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BOARD;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.JUMP;
+import static org.abalone.client.AbaloneConstants.WTurn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.abalone.client.AbaloneLogic;
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbalonePresenter;
+import org.abalone.client.AbalonePreviewBoard;
+import org.abalone.client.AbaloneVerifier;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.IteratingPlayerContainer;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.game_api.GameMetrics;
+import org.game_api.GameRandom;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+/**
+ * Load generator which plays full matches between simulated players through the
+ * {@link Game}/{@link org.game_api.GameApi.Container} interfaces, on an
+ * {@link IteratingPlayerContainer} per match and a pool of threads, one match at a time per
+ * thread.
+ *
+ * A simulated player answers its UpdateUI with a random placement of {@link AbaloneMoveIndex}, or
+ * with the placement of its engine when the seats have {@link Builder#engines}, waits its think
+ * time, then sends the move as {@link AbalonePresenter} does. Every VerifyMove is
+ * checked with {@link AbaloneLogic}, or another {@link AbaloneVerifier}. The {@link Report} holds
+ * the throughput and the latencies per message type:
+ * <ul>
+ * <li>{@link GameMetrics#VERIFY}/VerifyMove: {@link AbaloneVerifier#verify}.
+ * <li>{@link GameMetrics#UPDATE_UI}/UpdateUI: a player handling its UpdateUI, choosing the move
+ * included.
+ * <li>{@link GameMetrics#POST}/MakeMove: {@link IteratingPlayerContainer#sendMakeMove}, with the
+ * verification by every player and the UpdateUI of the mover.
+ * </ul>
+ * With random players, the matches and the moves only depend on the seed, so two runs with the
+ * same seed play the same games, as long as no turn clock runs out. This does not hold with
+ * {@link Builder#engines}: the engines stop on a wall-clock deadline, and the MCTS engine seeds
+ * its playouts from the clock.
+ */
+public class AbaloneLoadDriver {
+	public static final String MAKE_MOVE = "MakeMove";
+	public static final int MAX_KEPT_FAILURES = 5;
+
+	private final int matches;
+	private final int threads;
+	private final int thinkMillis;
+	private final int jitterMillis;
+	private final int maxRounds;
+	private final int secondsForTurn;
+	private final long seed;
+	private final Ticker ticker;
+	private final AbaloneVerifier verifier;
+	private final String engines;
+	private final int engineMillis;
+	private final AbaloneLogic logic = new AbaloneLogic();
+
+	public static class Builder {
+		private int matches = 100;
+		private int threads = Runtime.getRuntime().availableProcessors();
+		private int thinkMillis = 0;
+		private int jitterMillis = 0;
+		private int maxRounds = 200;
+		private int secondsForTurn = AbalonePresenter.NO_TURN_CLOCK;
+		private long seed = System.nanoTime();
+		private Ticker ticker = Ticker.systemTicker();
+		private AbaloneVerifier verifier = new AbaloneLogic();
+		private String engines;
+		private int engineMillis;
+
+		public Builder matches(int matches) {
+			checkPositive(matches, "matches");
+			this.matches = matches;
+			return this;
+		}
+
+		/**
+		 * @param threads number of matches played at once.
+		 */
+		public Builder threads(int threads) {
+			checkPositive(threads, "threads");
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * @param thinkMillis time a player waits before sending its move.
+		 * @param jitterMillis up to this many milliseconds are added at random to every think time.
+		 */
+		public Builder thinkMillis(int thinkMillis, int jitterMillis) {
+			if(thinkMillis < 0 || jitterMillis < 0) {
+				throw new IllegalArgumentException("Think time must not be negative");
+			}
+			this.thinkMillis = thinkMillis;
+			this.jitterMillis = jitterMillis;
+			return this;
+		}
+
+		/**
+		 * @param maxRounds rounds after which a match without push out is stopped.
+		 */
+		public Builder maxRounds(int maxRounds) {
+			checkPositive(maxRounds, "maxRounds");
+			this.maxRounds = maxRounds;
+			return this;
+		}
+
+		/**
+		 * @param secondsForTurn turn clock of the SetTurn, 0 for no clock.
+		 */
+		public Builder secondsForTurn(int secondsForTurn) {
+			if(secondsForTurn < 0) {
+				throw new IllegalArgumentException("secondsForTurn must not be negative");
+			}
+			this.secondsForTurn = secondsForTurn;
+			return this;
+		}
+
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public Builder ticker(Ticker ticker) {
+			this.ticker = ticker;
+			return this;
+		}
+
+		/**
+		 * @param verifier verifier of every VerifyMove, {@link AbaloneLogic} by default.
+		 */
+		public Builder verifier(AbaloneVerifier verifier) {
+			this.verifier = verifier;
+			return this;
+		}
+
+		/**
+		 * @param engines engines of the white and of the black seat of every match, as parsed by
+		 * {@link AbaloneEngineSeats#parse}, e.g. "mcts,alphabeta".
+		 * @param engineMillis time of an engine for a move.
+		 */
+		public Builder engines(String engines, int engineMillis) {
+			AbaloneEngineSeats.parse(engines).close();
+			checkPositive(engineMillis, "engineMillis");
+			this.engines = engines;
+			this.engineMillis = engineMillis;
+			return this;
+		}
+
+		public AbaloneLoadDriver build() {
+			return new AbaloneLoadDriver(this);
+		}
+
+		private static void checkPositive(int value, String name) {
+			if(value <= 0) {
+				throw new IllegalArgumentException(name + " must be positive: " + value);
+			}
+		}
+	}
+
+	private AbaloneLoadDriver(Builder builder) {
+		this.matches = builder.matches;
+		this.threads = builder.threads;
+		this.thinkMillis = builder.thinkMillis;
+		this.jitterMillis = builder.jitterMillis;
+		this.maxRounds = builder.maxRounds;
+		this.secondsForTurn = builder.secondsForTurn;
+		this.seed = builder.seed;
+		this.ticker = builder.ticker;
+		this.verifier = builder.verifier;
+		this.engines = builder.engines;
+		this.engineMillis = builder.engineMillis;
+	}
+
+	/**
+	 * Result of a run, the latencies are in {@link #getMetrics()}.
+	 */
+	public static class Report {
+		private final int matches;
+		private final int finishedMatches;
+		private final int timedOutMatches;
+		private final int failedMatches;
+		private final Multiset<String> failureReasons;
+		private final List<Throwable> failures;
+		private final int moves;
+		private final long elapsedNanos;
+		private final GameMetrics metrics;
+
+		Report(int matches, int finishedMatches, int timedOutMatches, int failedMatches,
+				Multiset<String> failureReasons, List<Throwable> failures, int moves, long elapsedNanos,
+				GameMetrics metrics) {
+			this.matches = matches;
+			this.finishedMatches = finishedMatches;
+			this.timedOutMatches = timedOutMatches;
+			this.failedMatches = failedMatches;
+			this.failureReasons = ImmutableMultiset.copyOf(failureReasons);
+			this.failures = ImmutableList.copyOf(failures);
+			this.moves = moves;
+			this.elapsedNanos = elapsedNanos;
+			this.metrics = metrics;
+		}
+
+		public int getMatches() {
+			return matches;
+		}
+
+		/**
+		 * @return the matches which ended with a push out, the others stopped after the maximum
+		 * number of rounds, were lost on time or failed.
+		 */
+		public int getFinishedMatches() {
+			return finishedMatches;
+		}
+
+		/**
+		 * @return the matches ended by the container because a turn clock ran out.
+		 */
+		public int getTimedOutMatches() {
+			return timedOutMatches;
+		}
+
+		/**
+		 * @return the matches stopped by an error: a hacker found by the verification, or an
+		 * exception of the game.
+		 */
+		public int getFailedMatches() {
+			return failedMatches;
+		}
+
+		/**
+		 * @return the failed matches per class and message of their exception.
+		 */
+		public Multiset<String> getFailureReasons() {
+			return failureReasons;
+		}
+
+		/**
+		 * @return the exceptions of the first {@link #MAX_KEPT_FAILURES} failed matches, with their
+		 * stack traces.
+		 */
+		public List<Throwable> getFailures() {
+			return failures;
+		}
+
+		public int getMoves() {
+			return moves;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getMovesPerSecond() {
+			return elapsedNanos == 0 ? 0 : moves * 1e9 / elapsedNanos;
+		}
+
+		public GameMetrics getMetrics() {
+			return metrics;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder report = new StringBuilder();
+			report.append(String.format("%d matches (%d finished, %d timed out, %d failed), %d moves "
+					+ "in %.1f s: %.1f moves/s%n", matches, finishedMatches, timedOutMatches, failedMatches,
+					moves, elapsedNanos / 1e9, getMovesPerSecond()));
+			for(Multiset.Entry<String> reason : failureReasons.entrySet()) {
+				report.append(String.format("%6d failed: %s%n", reason.getCount(), reason.getElement()));
+			}
+			report.append(String.format("%-24s %8s %8s %8s %8s%n", "phase/message", "count", "p50 us",
+					"p99 us", "max us"));
+			for(Map.Entry<String, Object> entry : metrics.snapshot().entrySet()) {
+				@SuppressWarnings("unchecked")
+				Map<String, Object> histogram = (Map<String, Object>) entry.getValue();
+				report.append(String.format("%-24s %8s %8s %8s %8s%n", entry.getKey(),
+						histogram.get("count"), histogram.get("p50"), histogram.get("p99"),
+						histogram.get("max")));
+			}
+			return report.toString();
+		}
+	}
+
+	/**
+	 * Method used to play all the matches, and to wait for them.
+	 */
+	public Report run() throws InterruptedException {
+		final GameMetrics metrics = new GameMetrics(ticker);
+		final AtomicInteger finishedMatches = new AtomicInteger();
+		final AtomicInteger timedOutMatches = new AtomicInteger();
+		final AtomicInteger failedMatches = new AtomicInteger();
+		final Multiset<String> failureReasons = ConcurrentHashMultiset.create();
+		final List<Throwable> failures = Collections.synchronizedList(Lists.<Throwable>newArrayList());
+		final AtomicInteger moves = new AtomicInteger();
+		GameRandom random = new GameRandom(seed);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		long start = ticker.read();
+		try {
+			for(int i = 0; i < matches; i++) {
+				final SimulatedMatch match = new SimulatedMatch(random.split(), metrics);
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if(match.play()) {
+								(match.container.getTimedOutPlayerId() != null ? timedOutMatches
+										: finishedMatches).incrementAndGet();
+							}
+						} catch(InterruptedException e) {
+							Thread.currentThread().interrupt();
+							fail(e);
+						} catch(RuntimeException e) {
+							fail(e);
+						} finally {
+							moves.addAndGet(match.moves);
+						}
+					}
+
+					private void fail(Exception e) {
+						failedMatches.incrementAndGet();
+						failureReasons.add(e.getClass().getName() + ": " + e.getMessage());
+						synchronized(failures) {
+							if(failures.size() < MAX_KEPT_FAILURES) {
+								failures.add(e);
+							}
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+		}
+		while(!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+		}
+		return new Report(matches, finishedMatches.get(), timedOutMatches.get(), failedMatches.get(),
+				failureReasons, failures, moves.get(), ticker.read() - start, metrics);
+	}
+
+	/**
+	 * Both players of a match, in front of its container: as in the GWT client, the container
+	 * sends the UpdateUI of the player to move, and every VerifyMove of a move.
+	 */
+	private class SimulatedMatch implements Game {
+		private final GameRandom random;
+		private final GameMetrics metrics;
+		private final IteratingPlayerContainer container;
+		/*
+		 * Engines of the seats, only while the match is played: an engine may hold a large
+		 * transposition table.
+		 */
+		private AbaloneEngineSeats seats;
+		private List<Operation> nextMove;
+		private String nextPlayerId;
+		private boolean isGameEnd;
+		private int moves;
+
+		SimulatedMatch(GameRandom random, GameMetrics metrics) {
+			this.random = random;
+			this.metrics = metrics;
+			this.container = new IteratingPlayerContainer(this, 2, ticker, random.nextLong());
+		}
+
+		/**
+		 * @return true if the match ended, with a push out or on time.
+		 * @throws RuntimeException if a move is rejected.
+		 */
+		boolean play() throws InterruptedException {
+			seats = engines == null ? null : AbaloneEngineSeats.parse(engines);
+			try {
+				List<String> playerIds = container.getPlayerIds();
+				container.updateUi(playerIds.get(0));
+				sendMakeMove(logic.getInitialMove(playerIds));
+				for(int round = 0; round < maxRounds && !isGameEnd; round++) {
+					// the container answers the move with the UpdateUI of the mover, the next player
+					// asks for its own.
+					container.updateUi(nextPlayerId);
+					if(nextMove == null) {
+						break;
+					}
+					think();
+					sendMakeMove(nextMove);
+				}
+				return isGameEnd;
+			} finally {
+				if(seats != null) {
+					seats.close();
+					seats = null;
+				}
+			}
+		}
+
+		private void think() throws InterruptedException {
+			int millis = thinkMillis + (jitterMillis == 0 ? 0 : random.nextInt(jitterMillis + 1));
+			if(millis > 0) {
+				Thread.sleep(millis);
+			}
+		}
+
+		private void sendMakeMove(List<Operation> move) {
+			nextMove = null;
+			long start = metrics.start();
+			container.sendMakeMove(move);
+			metrics.stop(GameMetrics.POST, MAKE_MOVE, start);
+			moves++;
+		}
+
+		@Override
+		public void sendVerifyMove(VerifyMove verifyMove) {
+			long start = metrics.start();
+			VerifyMoveDone verifyMoveDone = verifier.verify(verifyMove);
+			metrics.stop(GameMetrics.VERIFY, verifyMove.getMessageName(), start);
+			// throws for a hacker, which fails the match.
+			container.sendVerifyMoveDone(verifyMoveDone);
+		}
+
+		@Override
+		public void sendUpdateUI(UpdateUI updateUI) {
+			long start = metrics.start();
+			chooseMove(updateUI);
+			metrics.stop(GameMetrics.UPDATE_UI, updateUI.getMessageName(), start);
+		}
+
+		/**
+		 * Method used to find the player to move from the SetTurn of the last move, and if it is
+		 * the player of the UpdateUI, to choose its move.
+		 */
+		private void chooseMove(UpdateUI updateUI) {
+			List<String> playerIds = updateUI.getPlayerIds();
+			if(updateUI.getState().isEmpty()) {
+				return;
+			}
+			for(Operation operation : updateUI.getLastMove()) {
+				if(operation instanceof SetTurn) {
+					nextPlayerId = ((SetTurn) operation).getPlayerId();
+				} else if(operation instanceof EndGame) {
+					isGameEnd = true;
+				}
+			}
+			if(isGameEnd || !updateUI.getYourPlayerId().equals(nextPlayerId)) {
+				return;
+			}
+			int yourPlayerIndex = playerIds.indexOf(nextPlayerId);
+			@SuppressWarnings("unchecked")
+			List<ArrayList<String>> board = (List<ArrayList<String>>) updateUI.getState().get(BOARD);
+			String turn = yourPlayerIndex == 0 ? WTurn : BTurn;
+			Placement placement;
+			if(seats != null) {
+				placement = seats.chooseMove(board, turn, engineMillis);
+			} else {
+				List<Placement> placements = AbaloneMoveIndex.getPlacements(board, turn);
+				placement = placements.isEmpty() ? null
+						: placements.get(random.nextInt(placements.size()));
+			}
+			if(placement == null) {
+				return;
+			}
+			AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+			previewBoard.apply(placement.getJumps());
+			nextMove = Lists.<Operation>newArrayList(
+					new SetTurn(playerIds.get(1 - yourPlayerIndex), secondsForTurn),
+					new Set(BOARD, previewBoard.getBoard()),
+					new Set(JUMP, Lists.newArrayList(previewBoard.getJumps())));
+			if(GAMEOVER.equals(placement.getMessage())) {
+				nextMove.add(new EndGame(nextPlayerId));
+			}
+		}
+	}
+
+	/**
+	 * Usage: {@code AbaloneLoadDriver [matches [threads [thinkMillis [jitterMillis [seed]]]]]}
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		Builder builder = new Builder();
+		if(args.length > 0) {
+			builder.matches(Integer.parseInt(args[0]));
+		}
+		if(args.length > 1) {
+			builder.threads(Integer.parseInt(args[1]));
+		}
+		if(args.length > 3) {
+			builder.thinkMillis(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		} else if(args.length > 2) {
+			builder.thinkMillis(Integer.parseInt(args[2]), 0);
+		}
+		if(args.length > 4) {
+			builder.seed(Long.parseLong(args[4]));
+		}
+		System.err.print(builder.build().run());
+	}
+}
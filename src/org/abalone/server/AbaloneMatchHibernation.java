@@ -0,0 +1,188 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BOARD;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.JUMP;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.abalone.client.AbaloneGeometry;
+import org.abalone.client.AbaloneLineMasks;
+import org.abalone.client.AbaloneRowInterner;
+import org.abalone.server.AbaloneMatchRepository.MatchState;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Compact form of the {@link MatchState} of an idle match, a few tens of bytes instead of the
+ * nested lists of the board:
+ * <pre>
+ *   byte FORMAT, varint version, byte playerCount, playerCount UTF playerIds,
+ *   byte turn (index in the playerIds, or NO_TURN), varint secondsForTurn, long turnStartMillis,
+ *   byte isGameEnd, long white cells, long black cells (masks of {@link AbaloneLineMasks}),
+ *   byte jumpCount, jumpCount * 5 bytes {startX, startY, endX, endY, color}
+ * </pre>
+ * Only Abalone states are compacted: BOARD with its pieces on the 61 cells, and JUMP.
+ */
+public final class AbaloneMatchHibernation {
+	private static final int FORMAT = 1;
+	private static final int NO_TURN = 0xFF;
+	/*
+	 * The squares of the board out of the hexagon, which are the same in every state.
+	 */
+	private static final List<ArrayList<String>> TEMPLATE = Lists.newArrayList();
+	static {
+		for(ArrayList<String> row : initialBoard) {
+			TEMPLATE.add(Lists.newArrayList(row));
+		}
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			TEMPLATE.get(AbaloneGeometry.getRow(cell)).set(AbaloneGeometry.getColumn(cell), E);
+		}
+	}
+
+	/**
+	 * @return the compact form of the state, or null if it is not an Abalone state which can be
+	 * compacted, e.g. a piece pushed out is still on the board.
+	 */
+	public static byte[] hibernate(MatchState matchState) {
+		Map<String, Object> state = matchState.getState();
+		List<String> playerIds = matchState.getPlayerIds();
+		int turn = matchState.getTurn() == null ? NO_TURN : playerIds.indexOf(matchState.getTurn());
+		if(state.size() != 2 || !(state.get(BOARD) instanceof List) || !(state.get(JUMP) instanceof List)
+				|| turn < 0 || playerIds.size() >= NO_TURN) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		List<List<String>> board = (List<List<String>>) state.get(BOARD);
+		@SuppressWarnings("unchecked")
+		List<List<Integer>> jumps = (List<List<Integer>>) state.get(JUMP);
+		long[] pieces = getPieces(board);
+		if(pieces == null || jumps.size() > 0xFF) {
+			return null;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream output = new DataOutputStream(bytes);
+		try {
+			output.writeByte(FORMAT);
+			AbaloneBinaryRecords.writeVarint(output, matchState.getVersion());
+			output.writeByte(playerIds.size());
+			for(String playerId : playerIds) {
+				output.writeUTF(playerId);
+			}
+			output.writeByte(turn);
+			AbaloneBinaryRecords.writeVarint(output, matchState.getSecondsForTurn());
+			output.writeLong(matchState.getTurnStartMillis());
+			output.writeBoolean(matchState.isGameEnd());
+			output.writeLong(pieces[0]);
+			output.writeLong(pieces[1]);
+			output.writeByte(jumps.size());
+			for(List<Integer> jump : jumps) {
+				if(jump.size() != 5) {
+					return null;
+				}
+				for(Integer value : jump) {
+					if(value == null || value < 0 || value > 0xFF) {
+						return null;
+					}
+					output.writeByte(value);
+				}
+			}
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return {white cells, black cells}, or null if the board is not the template with pieces on
+	 * the cells.
+	 */
+	private static long[] getPieces(List<List<String>> board) {
+		if(board.size() != TEMPLATE.size()) {
+			return null;
+		}
+		long[] pieces = new long[2];
+		for(int row = 0; row < TEMPLATE.size(); row++) {
+			List<String> templateRow = TEMPLATE.get(row);
+			List<String> boardRow = board.get(row);
+			if(boardRow.size() != templateRow.size()) {
+				return null;
+			}
+			for(int column = 0; column < templateRow.size(); column++) {
+				String square = boardRow.get(column);
+				int cell = AbaloneGeometry.getCell(row, column);
+				if(cell < 0) {
+					if(!templateRow.get(column).equals(square)) {
+						return null;
+					}
+				} else if(W.equals(square)) {
+					pieces[0] |= AbaloneLineMasks.getCellMask(cell);
+				} else if(B.equals(square)) {
+					pieces[1] |= AbaloneLineMasks.getCellMask(cell);
+				} else if(!E.equals(square)) {
+					return null;
+				}
+			}
+		}
+		return pieces;
+	}
+
+	/**
+	 * Method used to rebuild the state, the rows of its board are shared by
+	 * {@link AbaloneRowInterner}.
+	 */
+	public static MatchState rehydrate(String matchId, byte[] hibernated) {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(hibernated));
+		try {
+			if(input.readUnsignedByte() != FORMAT) {
+				throw new IllegalArgumentException("Not a hibernated match: " + matchId);
+			}
+			int version = AbaloneBinaryRecords.readVarint(input);
+			List<String> playerIds = Lists.newArrayList();
+			for(int i = input.readUnsignedByte(); i > 0; i--) {
+				playerIds.add(input.readUTF());
+			}
+			int turn = input.readUnsignedByte();
+			int secondsForTurn = AbaloneBinaryRecords.readVarint(input);
+			long turnStartMillis = input.readLong();
+			boolean isGameEnd = input.readBoolean();
+			long white = input.readLong();
+			long black = input.readLong();
+			List<ArrayList<String>> board = Lists.newArrayListWithCapacity(TEMPLATE.size());
+			for(ArrayList<String> row : TEMPLATE) {
+				board.add(Lists.newArrayList(row));
+			}
+			for(long cells = white | black; cells != 0; cells &= cells - 1) {
+				int cell = Long.numberOfTrailingZeros(cells);
+				board.get(AbaloneGeometry.getRow(cell)).set(AbaloneGeometry.getColumn(cell),
+						(white & AbaloneLineMasks.getCellMask(cell)) != 0 ? W : B);
+			}
+			List<ArrayList<Integer>> jumps = Lists.newArrayList();
+			for(int i = input.readUnsignedByte(); i > 0; i--) {
+				jumps.add(Lists.newArrayList(input.readUnsignedByte(), input.readUnsignedByte(),
+						input.readUnsignedByte(), input.readUnsignedByte(), input.readUnsignedByte()));
+			}
+			Map<String, Object> state = Maps.newHashMap();
+			state.put(BOARD, AbaloneRowInterner.internBoard(board));
+			state.put(JUMP, jumps);
+			return new MatchState(matchId, version, playerIds,
+					turn == NO_TURN ? null : playerIds.get(turn), secondsForTurn, turnStartMillis, state,
+					isGameEnd);
+		} catch(IOException e) {
+			throw new IllegalArgumentException("Truncated hibernated match: " + matchId, e);
+		}
+	}
+
+	private AbaloneMatchHibernation() { }
+}
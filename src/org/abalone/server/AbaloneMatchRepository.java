@@ -0,0 +1,478 @@
+package org.abalone.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.jsr107cache.CacheException;
+import net.sf.jsr107cache.CacheManager;
+
+import org.game_api.GameApi.Delete;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Current state of the active matches, served from a JCache and written behind to a
+ * {@link MatchStore}:
+ * (1). {@link #makeMove} reads the state from the cache, applies the operations, puts the new
+ * state back in the cache and marks the match as dirty.
+ * (2). every flush interval, the dirty matches are written to the store in one batch. A match
+ * which made several moves since the last flush is written once, with its latest state.
+ * (3). a match missing from the cache (evicted, or after a restart) is read from the dirty
+ * matches first, then from the store.
+ *
+ * Idle matches are taken out of the cache by {@link #hibernateIdle}, into the compact form of
+ * {@link AbaloneMatchHibernation} in memory, or only in the store. They are brought back by the
+ * next {@link #get}.
+ *
+ * Moves of the same match are serialized, moves of different matches run in parallel. States
+ * written after the last {@link #flush()} are lost if the process stops, so {@link #close()}
+ * flushes.
+ *
+ * The flush interval is kept by a thread of the repository, which App Engine forbids. There the
+ * repository is built with no interval, and the requests call {@link #flushIfDue} after their
+ * moves, or a cron request calls {@link #flush()}.
+ */
+public class AbaloneMatchRepository implements Closeable {
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+	private static final int LOCK_STRIPES = 64;
+	private static final Logger logger = Logger.getLogger(AbaloneMatchRepository.class.getName());
+	/**
+	 * System property set by the App Engine runtime, in production and in the development server.
+	 */
+	private static final String APP_ENGINE_ENVIRONMENT = "com.google.appengine.runtime.environment";
+
+	/**
+	 * Persistent store of the states, written in batches.
+	 */
+	public interface MatchStore {
+		/**
+		 * @return the state, or null if the match was never written.
+		 */
+		MatchState read(String matchId) throws IOException;
+
+		void write(Collection<MatchState> states) throws IOException;
+	}
+
+	/**
+	 * Immutable state of a match after {@code version} moves. It is serializable since the JCache
+	 * of App Engine keeps copies in memcache.
+	 */
+	public static class MatchState implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String matchId;
+		private final int version;
+		private final ImmutableList<String> playerIds;
+		private final String turn;
+		private final int secondsForTurn;
+		private final long turnStartMillis;
+		private final HashMap<String, Object> state;
+		private final boolean isGameEnd;
+
+		MatchState(String matchId, int version, List<String> playerIds, String turn,
+				int secondsForTurn, long turnStartMillis, Map<String, Object> state, boolean isGameEnd) {
+			this.matchId = matchId;
+			this.version = version;
+			this.playerIds = ImmutableList.copyOf(playerIds);
+			this.turn = turn;
+			this.secondsForTurn = secondsForTurn;
+			this.turnStartMillis = turnStartMillis;
+			this.state = new HashMap<String, Object>(state);
+			this.isGameEnd = isGameEnd;
+		}
+
+		public String getMatchId() {
+			return matchId;
+		}
+
+		/**
+		 * @return the number of moves made in the match, the initial move included.
+		 */
+		public int getVersion() {
+			return version;
+		}
+
+		public List<String> getPlayerIds() {
+			return playerIds;
+		}
+
+		/**
+		 * @return the player id of the last SetTurn, or null.
+		 */
+		public String getTurn() {
+			return turn;
+		}
+
+		/**
+		 * @return the numberOfSecondsForTurn of the last SetTurn, 0 if the turn has no clock.
+		 */
+		public int getSecondsForTurn() {
+			return secondsForTurn;
+		}
+
+		/**
+		 * @return the time of the last SetTurn, in milliseconds since the epoch.
+		 */
+		public long getTurnStartMillis() {
+			return turnStartMillis;
+		}
+
+		public Map<String, Object> getState() {
+			return Collections.unmodifiableMap(state);
+		}
+
+		public boolean isGameEnd() {
+			return isGameEnd;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if an operation is not supported by the game.
+		 */
+		MatchState apply(List<Operation> operations, long nowMillis) {
+			Map<String, Object> newState = new HashMap<String, Object>(state);
+			String newTurn = turn;
+			int newSecondsForTurn = secondsForTurn;
+			long newTurnStartMillis = turnStartMillis;
+			boolean newIsGameEnd = isGameEnd;
+			for(Operation operation : operations) {
+				if(operation instanceof Set) {
+					newState.put(((Set) operation).getKey(), ((Set) operation).getValue());
+				} else if(operation instanceof Delete) {
+					newState.remove(((Delete) operation).getKey());
+				} else if(operation instanceof SetTurn) {
+					newTurn = ((SetTurn) operation).getPlayerId();
+					newSecondsForTurn = ((SetTurn) operation).getNumberOfSecondsForTurn();
+					newTurnStartMillis = nowMillis;
+				} else if(operation instanceof EndGame) {
+					newIsGameEnd = true;
+				} else {
+					throw new IllegalArgumentException("Unsupported operation: "
+							+ operation.getMessageName());
+				}
+			}
+			return new MatchState(matchId, version + 1, playerIds, newTurn, newSecondsForTurn,
+					newTurnStartMillis, newState, newIsGameEnd);
+		}
+	}
+
+	private final Map<String, MatchState> cache;
+	private final MatchStore store;
+	private final ConcurrentMap<String, MatchState> dirtyStates = new ConcurrentHashMap<String, MatchState>();
+	private final ConcurrentMap<String, byte[]> hibernatedStates = new ConcurrentHashMap<String, byte[]>();
+	/*
+	 * Time of the last access of the matches in the cache, in nanoseconds of the ticker.
+	 */
+	private final ConcurrentMap<String, Long> accessNanos = new ConcurrentHashMap<String, Long>();
+	private final Ticker ticker;
+	private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+	private final Object flushLock = new Object();
+	private final ScheduledExecutorService flusher;
+	private final AtomicLong cacheMisses = new AtomicLong();
+	private final AtomicLong storeWrites = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong flushFailures = new AtomicLong();
+	private final AtomicLong rehydrations = new AtomicLong();
+	private volatile long lastFlushNanos;
+
+	/**
+	 * Repository on the default JCache of the container, flushed every
+	 * {@link #DEFAULT_FLUSH_INTERVAL_MILLIS}. On App Engine, the JCache is memcache and there is
+	 * no flusher thread, see {@link #flushIfDue}.
+	 */
+	public AbaloneMatchRepository(MatchStore store) {
+		this(createCache(), store, System.getProperty(APP_ENGINE_ENVIRONMENT) != null ? 0
+				: DEFAULT_FLUSH_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * @param flushIntervalMillis 0 to only flush on {@link #flush()} and {@link #close()}.
+	 */
+	public AbaloneMatchRepository(Map<String, MatchState> cache, MatchStore store,
+			long flushIntervalMillis) {
+		this(cache, store, flushIntervalMillis, Ticker.systemTicker());
+	}
+
+	/**
+	 * @param ticker time source of the idle times.
+	 */
+	public AbaloneMatchRepository(Map<String, MatchState> cache, MatchStore store,
+			long flushIntervalMillis, Ticker ticker) {
+		this.cache = cache;
+		this.store = store;
+		this.ticker = ticker;
+		this.lastFlushNanos = ticker.read();
+		if(flushIntervalMillis > 0) {
+			flusher = Executors.newSingleThreadScheduledExecutor();
+			flusher.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch(IOException e) {
+						// counted by flush, the states stay dirty and are written by the next flush.
+						logger.log(Level.WARNING, "Flush of " + dirtyStates.size()
+								+ " dirty matches failed", e);
+					}
+				}
+			}, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+		} else {
+			flusher = null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, MatchState> createCache() {
+		try {
+			return CacheManager.getInstance().getCacheFactory().createCache(
+					Collections.emptyMap());
+		} catch(CacheException e) {
+			throw new RuntimeException("No JCache available", e);
+		}
+	}
+
+	/**
+	 * Method used to start a match with its initial move.
+	 * @throws IllegalArgumentException if the match exists.
+	 */
+	public MatchState createMatch(String matchId, List<String> playerIds,
+			List<Operation> initialMove) throws IOException {
+		Lock lock = locks.get(matchId);
+		lock.lock();
+		try {
+			if(get(matchId) != null) {
+				throw new IllegalArgumentException("The match " + matchId + " already exists");
+			}
+			MatchState empty = new MatchState(matchId, 0, playerIds, null, 0, 0,
+					Collections.<String, Object>emptyMap(), false);
+			return put(empty.apply(initialMove, System.currentTimeMillis()));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the current state of the match, or null if it does not exist.
+	 */
+	public MatchState get(String matchId) throws IOException {
+		MatchState state = cache.get(matchId);
+		if(state == null) {
+			state = load(matchId);
+			if(state == null) {
+				return null;
+			}
+		}
+		accessNanos.put(matchId, ticker.read());
+		return state;
+	}
+
+	/**
+	 * Method used to bring a match missing from the cache back into it. The lock of the match is
+	 * held from the read to the put, so that a state loaded meanwhile a move never replaces the
+	 * state of the move.
+	 */
+	private MatchState load(String matchId) throws IOException {
+		Lock lock = locks.get(matchId);
+		lock.lock();
+		try {
+			MatchState state = cache.get(matchId);
+			if(state != null) {
+				// loaded by another thread meanwhile.
+				return state;
+			}
+			cacheMisses.incrementAndGet();
+			state = dirtyStates.get(matchId);
+			if(state == null) {
+				byte[] hibernated = hibernatedStates.get(matchId);
+				if(hibernated != null) {
+					state = AbaloneMatchHibernation.rehydrate(matchId, hibernated);
+					rehydrations.incrementAndGet();
+				} else {
+					state = store.read(matchId);
+				}
+			}
+			if(state != null) {
+				cache.put(matchId, state);
+				hibernatedStates.remove(matchId);
+			}
+			return state;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Method used to apply a verified move on the current state of the match.
+	 * @throws IllegalArgumentException if the match does not exist or is over.
+	 */
+	public MatchState makeMove(String matchId, List<Operation> operations) throws IOException {
+		Lock lock = locks.get(matchId);
+		lock.lock();
+		try {
+			MatchState state = get(matchId);
+			if(state == null) {
+				throw new IllegalArgumentException("No match " + matchId);
+			}
+			if(state.isGameEnd()) {
+				throw new IllegalArgumentException("The match " + matchId + " is over");
+			}
+			return put(state.apply(operations, System.currentTimeMillis()));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private MatchState put(MatchState state) {
+		cache.put(state.getMatchId(), state);
+		dirtyStates.put(state.getMatchId(), state);
+		return state;
+	}
+
+	/**
+	 * Method used to flush from the requests, where no flusher thread runs: the dirty matches
+	 * are written if the last flush started at least {@code intervalMillis} ago.
+	 * @return true if the dirty matches were written.
+	 */
+	public boolean flushIfDue(long intervalMillis) throws IOException {
+		if(ticker.read() - lastFlushNanos < TimeUnit.MILLISECONDS.toNanos(intervalMillis)) {
+			return false;
+		}
+		flush();
+		return true;
+	}
+
+	/**
+	 * Method used to write the dirty matches to the store. A match which moves during the write
+	 * stays dirty.
+	 */
+	public void flush() throws IOException {
+		synchronized(flushLock) {
+			lastFlushNanos = ticker.read();
+			List<MatchState> states = Lists.newArrayList(dirtyStates.values());
+			if(states.isEmpty()) {
+				return;
+			}
+			try {
+				store.write(states);
+			} catch(IOException e) {
+				flushFailures.incrementAndGet();
+				throw e;
+			}
+			for(MatchState state : states) {
+				dirtyStates.remove(state.getMatchId(), state);
+			}
+			storeWrites.addAndGet(states.size());
+			flushes.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Method used to take the matches not accessed for {@code idleMillis} out of the cache. A match
+	 * whose last state is not flushed yet stays in the cache until a later call.
+	 * @param toStore false to keep the matches in memory in their compact form, true to only keep
+	 * them in the store. A state without a compact form is only kept in the store.
+	 * @return the number of matches taken out of the cache.
+	 */
+	public int hibernateIdle(long idleMillis, boolean toStore) {
+		long idleSince = ticker.read() - TimeUnit.MILLISECONDS.toNanos(idleMillis);
+		int count = 0;
+		for(Map.Entry<String, Long> entry : accessNanos.entrySet()) {
+			if(entry.getValue() > idleSince) {
+				continue;
+			}
+			String matchId = entry.getKey();
+			Lock lock = locks.get(matchId);
+			lock.lock();
+			try {
+				if(dirtyStates.containsKey(matchId) || !accessNanos.remove(matchId, entry.getValue())) {
+					// not flushed yet, or accessed meanwhile.
+					continue;
+				}
+				MatchState state = cache.get(matchId);
+				byte[] hibernated = state == null || toStore ? null : AbaloneMatchHibernation.hibernate(state);
+				if(hibernated != null) {
+					hibernatedStates.put(matchId, hibernated);
+				}
+				cache.remove(matchId);
+				count++;
+			} finally {
+				lock.unlock();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of matches kept in memory in their compact form.
+	 */
+	public int getHibernatedCount() {
+		return hibernatedStates.size();
+	}
+
+	public long getRehydrations() {
+		return rehydrations.get();
+	}
+
+	/**
+	 * @return the number of matches waiting for the next flush.
+	 */
+	public int getDirtyCount() {
+		return dirtyStates.size();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * @return the number of states written to the store, a state per match and flush.
+	 */
+	public long getStoreWrites() {
+		return storeWrites.get();
+	}
+
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	/**
+	 * @return the number of flushes whose write to the store failed, their matches stay dirty.
+	 */
+	public long getFlushFailures() {
+		return flushFailures.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(flusher != null) {
+			flusher.shutdown();
+			try {
+				flusher.awaitTermination(1, TimeUnit.MINUTES);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+}
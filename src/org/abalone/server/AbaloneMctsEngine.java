@@ -0,0 +1,362 @@
+package org.abalone.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.abalone.client.AbaloneCompactBoard;
+import org.abalone.client.AbaloneGeometry;
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link AbaloneEngine} using Monte Carlo Tree Search, a second style of opponent besides the
+ * alpha-beta {@link org.abalone.client.AbaloneSearch}.
+ *
+ * Every iteration:
+ * (1). selects a path in the tree with UCT, a winning push out is always selected.
+ * (2). expands the leaf once it was visited {@link #EXPAND_VISITS} times.
+ * (3). plays random moves on an {@link AbaloneCompactBoard} until a piece is pushed out, or until
+ * {@link #MAX_PLAYOUT_PLIES}, where the side closer to the center wins. A push out is always
+ * played when there is one. Playouts do not allocate.
+ * (4). adds the result to the nodes of the path.
+ *
+ * The tree is searched by several threads at once (tree parallelism): a thread going through a
+ * node adds {@link #VIRTUAL_LOSS} lost visits to it, removed when its result is added, so the
+ * other threads explore other paths meanwhile. The tree is kept after the move: if the next
+ * position is a child or a grandchild of the last root, its subtree is the new root.
+ *
+ * Engines made with {@link #AbaloneMctsEngine()} share one pool of daemon threads, one per
+ * processor, so an engine per seat does not start threads of its own.
+ */
+public class AbaloneMctsEngine implements AbaloneEngine {
+	public static final double EXPLORATION = 0.7;
+	public static final int VIRTUAL_LOSS = 3;
+	public static final int EXPAND_VISITS = 8;
+	public static final int MAX_PLAYOUT_PLIES = 120;
+	private static final int MAX_TREE_DEPTH = 128;
+	private static final byte DRAW = 0;
+
+	/**
+	 * Node of the tree, its statistics are for the side which played its move.
+	 */
+	static final class Node {
+		private final int move;
+		private final byte mover;
+		private final boolean isPushOut;
+		/*
+		 * Visits include the virtual losses of the threads going through the node.
+		 */
+		private final AtomicInteger visits = new AtomicInteger();
+		/*
+		 * 2 per won playout, 1 per draw.
+		 */
+		private final AtomicInteger halfPoints = new AtomicInteger();
+		private volatile Node[] children;
+		private Node winningChild;
+
+		Node(int move, byte mover, boolean isPushOut) {
+			this.move = move;
+			this.mover = mover;
+			this.isPushOut = isPushOut;
+		}
+
+		int getVisits() {
+			return visits.get();
+		}
+
+		Node[] getChildren() {
+			return children;
+		}
+
+		synchronized Node[] expand(AbaloneCompactBoard board, int[] moves) {
+			if(children == null) {
+				int count = board.generateMoves(moves);
+				Node[] newChildren = new Node[count];
+				for(int i = 0; i < count; i++) {
+					newChildren[i] = new Node(moves[i], board.getTurn(), board.isPushOut(moves[i]));
+					if(newChildren[i].isPushOut && winningChild == null) {
+						winningChild = newChildren[i];
+					}
+				}
+				children = newChildren;
+			}
+			return children;
+		}
+	}
+
+	/**
+	 * One thread of the search, with its own board, buffers and random numbers.
+	 */
+	private class SearchWorker implements Callable<Void> {
+		private final AbaloneCompactBoard board;
+		private final int[] moves = new int[AbaloneCompactBoard.MAX_MOVES];
+		private final Node[] path = new Node[MAX_TREE_DEPTH + 1];
+		private final long deadlineMillis;
+		private final long maxPlayouts;
+		private long random;
+
+		SearchWorker(long seed, long deadlineMillis, long maxPlayouts) {
+			this.board = new AbaloneCompactBoard(rootBoard);
+			this.deadlineMillis = deadlineMillis;
+			this.maxPlayouts = maxPlayouts;
+			this.random = seed == 0 ? 1 : seed;
+		}
+
+		@Override
+		public Void call() {
+			while(System.currentTimeMillis() < deadlineMillis && playouts.get() < maxPlayouts) {
+				board.copyFrom(rootBoard);
+				int depth = 0;
+				Node node = root;
+				node.visits.addAndGet(VIRTUAL_LOSS);
+				path[depth++] = node;
+				byte winner = -1;
+				while(depth <= MAX_TREE_DEPTH) {
+					if(node.isPushOut) {
+						winner = node.mover;
+						break;
+					}
+					Node[] children = node.children;
+					if(children == null) {
+						if(node != root && node.visits.get() - VIRTUAL_LOSS < EXPAND_VISITS) {
+							break;
+						}
+						children = node.expand(board, moves);
+					}
+					if(children.length == 0) {
+						winner = DRAW;
+						break;
+					}
+					node = select(node, children);
+					board.play(node.move);
+					node.visits.addAndGet(VIRTUAL_LOSS);
+					path[depth++] = node;
+				}
+				if(winner < 0) {
+					winner = playout();
+				}
+				for(int i = 0; i < depth; i++) {
+					path[i].visits.addAndGet(1 - VIRTUAL_LOSS);
+					path[i].halfPoints.addAndGet(
+							winner == path[i].mover ? 2 : winner == DRAW ? 1 : 0);
+				}
+				playouts.incrementAndGet();
+			}
+			return null;
+		}
+
+		private Node select(Node parent, Node[] children) {
+			if(parent.winningChild != null) {
+				return parent.winningChild;
+			}
+			double logVisits = Math.log(Math.max(parent.visits.get(), 1));
+			Node bestChild = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for(Node child : children) {
+				int visits = child.visits.get();
+				if(visits == 0) {
+					return child;
+				}
+				double value = child.halfPoints.get() / (2.0 * visits)
+						+ EXPLORATION * Math.sqrt(logVisits / visits);
+				if(value > bestValue) {
+					bestValue = value;
+					bestChild = child;
+				}
+			}
+			return bestChild;
+		}
+
+		/**
+		 * @return the color of the winner, or {@link #DRAW}.
+		 */
+		private byte playout() {
+			for(int ply = 0; ply < MAX_PLAYOUT_PLIES; ply++) {
+				int count = board.generateMoves(moves);
+				if(count == 0) {
+					return DRAW;
+				}
+				int move = -1;
+				for(int i = 0; i < count && move < 0; i++) {
+					if(board.isPushOut(moves[i])) {
+						move = moves[i];
+					}
+				}
+				if(move < 0) {
+					move = moves[nextInt(count)];
+				}
+				byte mover = board.getTurn();
+				if(board.play(move)) {
+					return mover;
+				}
+			}
+			int whiteDistance = board.getCenterDistance(AbaloneCompactBoard.WHITE);
+			int blackDistance = board.getCenterDistance(AbaloneCompactBoard.BLACK);
+			return whiteDistance < blackDistance ? AbaloneCompactBoard.WHITE
+					: blackDistance < whiteDistance ? AbaloneCompactBoard.BLACK : DRAW;
+		}
+
+		/**
+		 * xorshift64 generator, which is enough for playouts and needs no synchronization.
+		 */
+		private int nextInt(int bound) {
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			return (int) ((random >>> 1) % bound);
+		}
+	}
+
+	private static final ExecutorService SHARED_EXECUTOR = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(),
+			new ThreadFactoryBuilder().setNameFormat("mcts-%d").setDaemon(true).build());
+
+	private final int threads;
+	private final ExecutorService executor;
+	private final AtomicLong playouts = new AtomicLong();
+	private AbaloneCompactBoard rootBoard;
+	private Node root;
+	private long seed = System.nanoTime();
+
+	/**
+	 * Engine with one thread per processor, on the pool shared by these engines.
+	 */
+	public AbaloneMctsEngine() {
+		this(Runtime.getRuntime().availableProcessors(), SHARED_EXECUTOR);
+	}
+
+	/**
+	 * @param threads number of threads searching the tree.
+	 * @param executor executor running the threads, with at least {@code threads} threads.
+	 */
+	public AbaloneMctsEngine(int threads, ExecutorService executor) {
+		this.threads = threads;
+		this.executor = executor;
+	}
+
+	@Override
+	public Placement chooseMove(List<ArrayList<String>> board, String turn, int millis) {
+		return chooseMove(board, turn, millis, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxPlayouts the search stops after this number of playouts, or after {@code millis}.
+	 */
+	public Placement chooseMove(List<ArrayList<String>> board, String turn, int millis,
+			long maxPlayouts) {
+		AbaloneCompactBoard newRootBoard = new AbaloneCompactBoard(board, turn);
+		Node reused = root == null ? null : findDescendant(root, rootBoard, newRootBoard, 2);
+		rootBoard = newRootBoard;
+		if(reused != null) {
+			root = reused;
+		} else {
+			byte lastMover = newRootBoard.getTurn() == AbaloneCompactBoard.WHITE
+					? AbaloneCompactBoard.BLACK : AbaloneCompactBoard.WHITE;
+			root = new Node(-1, lastMover, false);
+		}
+		root.expand(new AbaloneCompactBoard(rootBoard), new int[AbaloneCompactBoard.MAX_MOVES]);
+		playouts.set(0);
+		long deadlineMillis = System.currentTimeMillis() + millis;
+		List<Future<Void>> futures = Lists.newArrayListWithCapacity(threads);
+		for(int i = 0; i < threads; i++) {
+			seed = seed * 6364136223846793005L + 1442695040888963407L;
+			futures.add(executor.submit(new SearchWorker(seed, deadlineMillis, maxPlayouts)));
+		}
+		try {
+			for(Future<Void> future : futures) {
+				future.get();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Search interrupted", e);
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Search failed", e.getCause());
+		}
+		Node best = getBestChild();
+		if(best == null) {
+			return null;
+		}
+		int cell = AbaloneCompactBoard.getMoveCell(best.move);
+		int endCell = AbaloneGeometry.getNeighbor(cell,
+				AbaloneCompactBoard.getMoveDirection(best.move));
+		return new AbaloneMoveIndex(board, turn).getPlacement(
+				AbaloneGeometry.getRow(cell), AbaloneGeometry.getColumn(cell),
+				AbaloneGeometry.getRow(endCell), AbaloneGeometry.getColumn(endCell));
+	}
+
+	/**
+	 * @return the winning push out if there is one, otherwise the most visited move of the root.
+	 */
+	private Node getBestChild() {
+		if(root.winningChild != null) {
+			return root.winningChild;
+		}
+		Node best = null;
+		for(Node child : root.children) {
+			if(best == null || child.getVisits() > best.getVisits()) {
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the node of {@code target} at most {@code depth} moves under {@code node}, or null.
+	 */
+	private static Node findDescendant(Node node, AbaloneCompactBoard board,
+			AbaloneCompactBoard target, int depth) {
+		if(board.equals(target)) {
+			return node;
+		}
+		Node[] children = node.getChildren();
+		if(depth == 0 || children == null) {
+			return null;
+		}
+		for(Node child : children) {
+			if(child.isPushOut) {
+				continue;
+			}
+			AbaloneCompactBoard childBoard = new AbaloneCompactBoard(board);
+			childBoard.play(child.move);
+			Node found = findDescendant(child, childBoard, target, depth - 1);
+			if(found != null) {
+				return found;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the visits of the current root, including the visits kept from the last moves.
+	 */
+	public int getRootVisits() {
+		return root == null ? 0 : root.getVisits();
+	}
+
+	/**
+	 * @return the number of playouts of the last move.
+	 */
+	public long getPlayouts() {
+		return playouts.get();
+	}
+
+	/**
+	 * Method used to shut down the executor given to the constructor, the shared pool is never
+	 * shut down.
+	 */
+	public void shutdown() {
+		if(executor != SHARED_EXECUTOR) {
+			executor.shutdown();
+		}
+	}
+}
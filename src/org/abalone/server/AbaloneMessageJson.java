@@ -0,0 +1,376 @@
+package org.abalone.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.GameApiJsonHelper;
+import org.game_api.GameApi.Message;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * JSON encoding and decoding of the game API messages on the server, where the GWT JSON classes
+ * used by {@link GameApiJsonHelper} are not available. The values are the ones of
+ * {@link Message#toMessage()}: null, booleans, numbers, strings, lists and maps. Parsed numbers
+ * are Integers when they are whole and fit, Doubles otherwise.
+ *
+ * Messages are immutable, so the bytes of a message are encoded once and shared by all its
+ * recipients, until the message is garbage collected.
+ */
+public final class AbaloneMessageJson {
+	/**
+	 * Maximum nesting of arrays and objects, a VerifyMove nests about 5 deep.
+	 */
+	public static final int MAX_DEPTH = 64;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	/*
+	 * Weak keys are compared by identity, so finding the bytes of a message does not hash it.
+	 */
+	private static final Cache<Message, byte[]> ENCODED_MESSAGES =
+			CacheBuilder.newBuilder().weakKeys().build();
+
+	public static String toJson(Message message) {
+		StringBuilder json = new StringBuilder(256);
+		appendValue(json, message.toMessage());
+		return json.toString();
+	}
+
+	/**
+	 * @return the UTF-8 bytes of {@link #toJson(Message)}, shared by all the callers for the same
+	 * message, which must not change them.
+	 */
+	public static byte[] toJsonBytes(Message message) {
+		byte[] bytes = ENCODED_MESSAGES.getIfPresent(message);
+		if(bytes == null) {
+			bytes = toJson(message).getBytes(StandardCharsets.UTF_8);
+			ENCODED_MESSAGES.put(message, bytes);
+		}
+		return bytes;
+	}
+
+	private static void appendValue(StringBuilder json, Object value) {
+		if(value == null) {
+			json.append("null");
+		} else if(value instanceof Boolean || value instanceof Integer || value instanceof Long
+				|| value instanceof Double) {
+			json.append(value);
+		} else if(value instanceof String) {
+			appendString(json, (String) value);
+		} else if(value instanceof Message) {
+			appendValue(json, ((Message) value).toMessage());
+		} else if(value instanceof List) {
+			json.append('[');
+			List<?> values = (List<?>) value;
+			for(int i = 0; i < values.size(); i++) {
+				if(i > 0) {
+					json.append(',');
+				}
+				appendValue(json, values.get(i));
+			}
+			json.append(']');
+		} else if(value instanceof Map) {
+			json.append('{');
+			boolean isFirst = true;
+			for(Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if(!isFirst) {
+					json.append(',');
+				}
+				isFirst = false;
+				appendString(json, entry.getKey().toString());
+				json.append(':');
+				appendValue(json, entry.getValue());
+			}
+			json.append('}');
+		} else {
+			throw new IllegalStateException("Invalid object encountered");
+		}
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+				case '"':
+					json.append("\\\"");
+					break;
+				case '\\':
+					json.append("\\\\");
+					break;
+				case '\n':
+					json.append("\\n");
+					break;
+				case '\r':
+					json.append("\\r");
+					break;
+				case '\t':
+					json.append("\\t");
+					break;
+				default:
+					// control characters, and the line separators which end a JavaScript string.
+					if(c < 0x20 || c == '\u2028' || c == '\u2029') {
+						json.append("\\u").append(HEX_DIGITS[c >> 12]).append(HEX_DIGITS[(c >> 8) & 0xF])
+								.append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+					} else {
+						json.append(c);
+					}
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * @return the message of the JSON object, e.g. a VerifyMove.
+	 * @throws IllegalArgumentException if the JSON is malformed or is not a message.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Message toMessage(String json) {
+		Object value = parse(json);
+		if(!(value instanceof Map)) {
+			throw new IllegalArgumentException("A message should be a JSON object");
+		}
+		return toMessage((Map<String, Object>) value);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the map is not a message.
+	 */
+	public static Message toMessage(Map<String, Object> map) {
+		try {
+			Message message = Message.messageToHasEquality(map);
+			if(message == null) {
+				throw new IllegalArgumentException("Unknown message type: " + map.get("type"));
+			}
+			return message;
+		} catch(ClassCastException | NullPointerException e) {
+			throw new IllegalArgumentException("Bad message: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return the value of the JSON text: null, a Boolean, an Integer, a Double, a String, a List
+	 * or a Map.
+	 * @throws IllegalArgumentException if the JSON is malformed, or nests deeper than
+	 * {@link #MAX_DEPTH}.
+	 */
+	public static Object parse(String json) {
+		Parser parser = new Parser(json);
+		Object value = parser.parseValue();
+		parser.skipWhitespace();
+		if(parser.position != json.length()) {
+			throw parser.error("Unexpected text after the value");
+		}
+		return value;
+	}
+
+	/**
+	 * Recursive descent parser of one JSON text, the depth is bounded so that deep input does not
+	 * overflow the stack.
+	 */
+	private static class Parser {
+		private final String json;
+		private int position;
+		private int depth;
+
+		Parser(String json) {
+			this.json = json;
+		}
+
+		Object parseValue() {
+			skipWhitespace();
+			if(position == json.length()) {
+				throw error("Unexpected end of JSON");
+			}
+			char c = json.charAt(position);
+			switch(c) {
+				case '{':
+					enter();
+					Map<String, Object> map = parseObject();
+					depth--;
+					return map;
+				case '[':
+					enter();
+					List<Object> list = parseArray();
+					depth--;
+					return list;
+				case '"':
+					return parseString();
+				case 't':
+					return parseLiteral("true", Boolean.TRUE);
+				case 'f':
+					return parseLiteral("false", Boolean.FALSE);
+				case 'n':
+					return parseLiteral("null", null);
+				default:
+					if(c == '-' || (c >= '0' && c <= '9')) {
+						return parseNumber();
+					}
+					throw error("Unexpected character '" + c + "'");
+			}
+		}
+
+		private Map<String, Object> parseObject() {
+			Map<String, Object> map = Maps.newLinkedHashMap();
+			position++;
+			skipWhitespace();
+			if(consume('}')) {
+				return map;
+			}
+			do {
+				skipWhitespace();
+				if(position == json.length() || json.charAt(position) != '"') {
+					throw error("Expected a key");
+				}
+				String key = parseString();
+				skipWhitespace();
+				expect(':');
+				map.put(key, parseValue());
+				skipWhitespace();
+			} while(consume(','));
+			expect('}');
+			return map;
+		}
+
+		private List<Object> parseArray() {
+			List<Object> list = Lists.newArrayList();
+			position++;
+			skipWhitespace();
+			if(consume(']')) {
+				return list;
+			}
+			do {
+				list.add(parseValue());
+				skipWhitespace();
+			} while(consume(','));
+			expect(']');
+			return list;
+		}
+
+		private String parseString() {
+			position++;
+			StringBuilder value = new StringBuilder();
+			while(true) {
+				if(position == json.length()) {
+					throw error("Unterminated string");
+				}
+				char c = json.charAt(position++);
+				if(c == '"') {
+					return value.toString();
+				}
+				if(c != '\\') {
+					value.append(c);
+					continue;
+				}
+				if(position == json.length()) {
+					throw error("Unterminated string");
+				}
+				char escaped = json.charAt(position++);
+				switch(escaped) {
+					case '"':
+					case '\\':
+					case '/':
+						value.append(escaped);
+						break;
+					case 'b':
+						value.append('\b');
+						break;
+					case 'f':
+						value.append('\f');
+						break;
+					case 'n':
+						value.append('\n');
+						break;
+					case 'r':
+						value.append('\r');
+						break;
+					case 't':
+						value.append('\t');
+						break;
+					case 'u':
+						if(position + 4 > json.length()) {
+							throw error("Bad unicode escape");
+						}
+						try {
+							value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+						} catch(NumberFormatException e) {
+							throw error("Bad unicode escape");
+						}
+						position += 4;
+						break;
+					default:
+						throw error("Bad escape '" + escaped + "'");
+				}
+			}
+		}
+
+		private Object parseNumber() {
+			int start = position;
+			boolean isWhole = true;
+			while(position < json.length()) {
+				char c = json.charAt(position);
+				if(c == '.' || c == 'e' || c == 'E') {
+					isWhole = false;
+				} else if(c != '-' && c != '+' && (c < '0' || c > '9')) {
+					break;
+				}
+				position++;
+			}
+			String number = json.substring(start, position);
+			try {
+				if(isWhole) {
+					long value = Long.parseLong(number);
+					if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+						return (int) value;
+					}
+				}
+				return Double.parseDouble(number);
+			} catch(NumberFormatException e) {
+				throw error("Bad number " + number);
+			}
+		}
+
+		private Object parseLiteral(String literal, Object value) {
+			if(!json.startsWith(literal, position)) {
+				throw error("Unexpected character '" + json.charAt(position) + "'");
+			}
+			position += literal.length();
+			return value;
+		}
+
+		private void enter() {
+			if(++depth > MAX_DEPTH) {
+				throw error("Nested deeper than " + MAX_DEPTH);
+			}
+		}
+
+		void skipWhitespace() {
+			while(position < json.length() && Character.isWhitespace(json.charAt(position))) {
+				position++;
+			}
+		}
+
+		private boolean consume(char c) {
+			if(position < json.length() && json.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if(!consume(c)) {
+				throw error("Expected '" + c + "'");
+			}
+		}
+
+		IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + position);
+		}
+	}
+
+	private AbaloneMessageJson() { }
+}
@@ -0,0 +1,244 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.UNDERGOING;
+import static org.abalone.client.AbaloneConstants.WTurn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbaloneSearch;
+import org.abalone.client.AbaloneState;
+import org.abalone.client.AbaloneSymmetry;
+import org.abalone.client.AbaloneSymmetry.Canonical;
+import org.abalone.client.AbaloneZobrist;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Service used to analyze any {@link AbaloneState}: best move, score and principal variation,
+ * searched with {@link AbaloneSearch} until a depth or a time limit.
+ *
+ * Analyses are kept in a size-bounded cache shared by all the callers and keyed by the
+ * {@link AbaloneZobrist} hash of the canonical position ({@link AbaloneSymmetry}), so popular
+ * positions (openings, matches watched by many spectators) and all their rotations, mirrors and
+ * color swaps are answered without searching. A cached analysis is used when it was searched at
+ * least as deep as asked, or when it already found a forced push out.
+ *
+ * This class is thread safe, and batches are analyzed in parallel on its executor.
+ */
+public class AbalonePositionAnalyzer {
+	public static final int DEFAULT_MAXIMUM_SIZE = 100000;
+
+	/**
+	 * Result of one analysis, immutable.
+	 */
+	public static class Analysis {
+		private final long positionHash;
+		private final List<ArrayList<Integer>> bestJumps;
+		private final String message;
+		private final int score;
+		private final int depth;
+		private final long nodes;
+		private final List<List<ArrayList<Integer>>> principalVariation;
+
+		private Analysis(long positionHash, List<ArrayList<Integer>> bestJumps, String message,
+				int score, int depth, long nodes, List<List<ArrayList<Integer>>> principalVariation) {
+			this.positionHash = positionHash;
+			this.bestJumps = bestJumps;
+			this.message = message;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+			this.principalVariation = principalVariation;
+		}
+
+		Analysis(long positionHash, AbaloneSearch.Result result) {
+			this.positionHash = positionHash;
+			if(result == null) {
+				// the side to move has no legal move.
+				bestJumps = Collections.emptyList();
+				message = UNDERGOING;
+				score = 0;
+				depth = 0;
+				nodes = 0;
+				principalVariation = Collections.emptyList();
+				return;
+			}
+			List<List<ArrayList<Integer>>> jumpsOfVariation = Lists.newArrayList();
+			for(Placement placement : result.getPrincipalVariation()) {
+				jumpsOfVariation.add(placement.getJumps());
+			}
+			bestJumps = result.getBestPlacement().getJumps();
+			message = result.getBestPlacement().getMessage();
+			score = result.getScore();
+			depth = result.getDepth();
+			nodes = result.getNodes();
+			principalVariation = Collections.unmodifiableList(jumpsOfVariation);
+		}
+
+		/**
+		 * @return this analysis of the canonical position, mapped back to the original position.
+		 */
+		Analysis fromCanonical(Canonical canonical) {
+			if(canonical.getTransform() == 0 && !canonical.isColorSwapped()) {
+				return this;
+			}
+			List<List<ArrayList<Integer>>> jumpsOfVariation = Lists.newArrayList();
+			for(List<ArrayList<Integer>> jumps : principalVariation) {
+				jumpsOfVariation.add(canonical.fromCanonical(jumps));
+			}
+			return new Analysis(positionHash, canonical.fromCanonical(bestJumps), message, score,
+					depth, nodes, Collections.unmodifiableList(jumpsOfVariation));
+		}
+
+		/**
+		 * @return the hash of the canonical position, equal for all the equivalent positions.
+		 */
+		public long getPositionHash() {
+			return positionHash;
+		}
+
+		/**
+		 * @return jumps of the best move, sorted from the front piece, empty if there is no move.
+		 */
+		public List<ArrayList<Integer>> getBestJumps() {
+			return bestJumps;
+		}
+
+		/**
+		 * @return {@link org.abalone.client.AbaloneConstants#GAMEOVER} if the best move wins.
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * @return score for the side to move.
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		public int getDepth() {
+			return depth;
+		}
+
+		public long getNodes() {
+			return nodes;
+		}
+
+		public List<List<ArrayList<Integer>>> getPrincipalVariation() {
+			return principalVariation;
+		}
+
+		boolean isDecided() {
+			return Math.abs(score) > AbaloneSearch.WIN_SCORE - AbaloneSearch.MAX_PLY;
+		}
+	}
+
+	private final Cache<Long, Analysis> cache;
+	private final ExecutorService executor;
+
+	/**
+	 * Analyzer with a cache of {@link #DEFAULT_MAXIMUM_SIZE} positions and one thread per processor.
+	 */
+	public AbalonePositionAnalyzer() {
+		this(DEFAULT_MAXIMUM_SIZE,
+				Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @param maximumSize maximum number of cached analyses, the least recently used are evicted.
+	 * @param executor executor used to analyze batches.
+	 */
+	public AbalonePositionAnalyzer(long maximumSize, ExecutorService executor) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.build();
+		this.executor = executor;
+	}
+
+	/**
+	 * Analyze the position of {@code state}, on the calling thread.
+	 * @param maxDepth maximum search depth in rounds.
+	 * @param millis maximum search time in milliseconds.
+	 */
+	public Analysis analyze(AbaloneState state, int maxDepth, int millis) {
+		Canonical canonical = AbaloneSymmetry.canonicalize(state.getBoard(), state.getTurn());
+		return analyzeCanonical(canonical, maxDepth, millis).fromCanonical(canonical);
+	}
+
+	/**
+	 * Analyze all the positions in parallel, equivalent positions are only analyzed once.
+	 * @return the analyses, in the order of {@code states}.
+	 */
+	public List<Analysis> analyzeAll(List<AbaloneState> states, final int maxDepth,
+			final int millis) {
+		Map<String, Future<Analysis>> futures = Maps.newHashMap();
+		List<Canonical> canonicals = Lists.newArrayListWithCapacity(states.size());
+		for(AbaloneState state : states) {
+			final Canonical canonical = AbaloneSymmetry.canonicalize(state.getBoard(), state.getTurn());
+			canonicals.add(canonical);
+			if(!futures.containsKey(canonical.getKey())) {
+				futures.put(canonical.getKey(), executor.submit(new Callable<Analysis>() {
+					@Override
+					public Analysis call() {
+						return analyzeCanonical(canonical, maxDepth, millis);
+					}
+				}));
+			}
+		}
+		List<Analysis> analyses = Lists.newArrayListWithCapacity(states.size());
+		try {
+			for(Canonical canonical : canonicals) {
+				analyses.add(futures.get(canonical.getKey()).get().fromCanonical(canonical));
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Analysis interrupted", e);
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Analysis failed", e.getCause());
+		}
+		return analyses;
+	}
+
+	private Analysis analyzeCanonical(Canonical canonical, int maxDepth, int millis) {
+		List<ArrayList<String>> board = canonical.getBoard();
+		long positionHash = AbaloneZobrist.hash(board, WTurn);
+		Analysis cached = cache.getIfPresent(positionHash);
+		if(cached != null && (cached.getDepth() >= maxDepth || cached.isDecided())) {
+			return cached;
+		}
+		AbaloneSearch.Result result = new AbaloneSearch(board, WTurn).search(maxDepth, millis);
+		Analysis analysis = new Analysis(positionHash, result);
+		if(cached == null || analysis.getDepth() >= cached.getDepth()) {
+			cache.put(positionHash, analysis);
+		}
+		return analysis;
+	}
+
+	public CacheStats getCacheStats() {
+		return cache.stats();
+	}
+
+	public long getCacheSize() {
+		return cache.size();
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
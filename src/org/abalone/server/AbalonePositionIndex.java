@@ -0,0 +1,556 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.abalone.client.AbalonePreviewBoard;
+import org.abalone.client.AbaloneSymmetry;
+import org.abalone.client.AbaloneSymmetry.Canonical;
+import org.abalone.client.AbaloneZobrist;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+/**
+ * Persistent index from positions to what happened from them in past games ("opening explorer"):
+ * number of games, wins of each side and the most common next moves.
+ *
+ * Positions are keyed by the {@link AbaloneZobrist} hash of their canonical form
+ * ({@link AbaloneSymmetry}), and next moves are kept in the canonical orientation, so rotated,
+ * mirrored and color swapped games add up. The index is a small log-structured merge tree:
+ * (1). {@link #addGame} adds to a sorted map in memory.
+ * (2). when the map holds {@link #MEMTABLE_POSITIONS} positions, it is written as a new immutable
+ * segment file: sorted keys, offsets, then the statistics.
+ * (3). segments are read through memory mapping, a lookup is one binary search per segment.
+ * (4). when there are more than {@link #MAX_SEGMENTS} segments they are merged into one, which
+ * replaces them all.
+ *
+ * Only the {@link #MAX_NEXT_MOVES} most common next moves are written for a position. Games added
+ * after the last {@link #flush()} are lost if the process stops, so imports should flush, or be
+ * replayed from the match log. This class is thread safe.
+ */
+public class AbalonePositionIndex implements Closeable {
+	public static final int MEMTABLE_POSITIONS = 100000;
+	public static final int MAX_SEGMENTS = 4;
+	public static final int MAX_NEXT_MOVES = 16;
+	private static final int MAGIC = 0x41504958;
+	private static final int VERSION = 1;
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String MERGED_PREFIX = "merged-";
+	private static final String SEGMENT_SUFFIX = ".idx";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	/**
+	 * Statistics of one position, for the side to move.
+	 */
+	public static class PositionStats {
+		private final int games;
+		private final int sideToMoveWins;
+		private final int opponentWins;
+		private final List<NextMove> nextMoves;
+
+		PositionStats(int games, int sideToMoveWins, int opponentWins, List<NextMove> nextMoves) {
+			this.games = games;
+			this.sideToMoveWins = sideToMoveWins;
+			this.opponentWins = opponentWins;
+			this.nextMoves = Collections.unmodifiableList(nextMoves);
+		}
+
+		public int getGames() {
+			return games;
+		}
+
+		public int getSideToMoveWins() {
+			return sideToMoveWins;
+		}
+
+		public int getOpponentWins() {
+			return opponentWins;
+		}
+
+		/**
+		 * @return the next moves, the most common first.
+		 */
+		public List<NextMove> getNextMoves() {
+			return nextMoves;
+		}
+	}
+
+	/**
+	 * Move of the first held piece of the next round, and the number of games which played it.
+	 */
+	public static class NextMove {
+		private final List<Integer> heldJump;
+		private final int games;
+
+		NextMove(List<Integer> heldJump, int games) {
+			this.heldJump = heldJump;
+			this.games = games;
+		}
+
+		/**
+		 * @return {startX, startY, endX, endY} of the held piece, in the orientation of the board
+		 * of the lookup.
+		 */
+		public List<Integer> getHeldJump() {
+			return heldJump;
+		}
+
+		public int getGames() {
+			return games;
+		}
+	}
+
+	/**
+	 * Mutable statistics, in memory and while merging.
+	 */
+	private static class Stats {
+		private int games;
+		private int sideToMoveWins;
+		private int opponentWins;
+		private final Map<Integer, Integer> moveGames = Maps.newHashMap();
+
+		void addMove(int move, int count) {
+			Integer games = moveGames.get(move);
+			moveGames.put(move, games == null ? count : games + count);
+		}
+
+		void add(Stats other) {
+			games += other.games;
+			sideToMoveWins += other.sideToMoveWins;
+			opponentWins += other.opponentWins;
+			for(Map.Entry<Integer, Integer> entry : other.moveGames.entrySet()) {
+				addMove(entry.getKey(), entry.getValue());
+			}
+		}
+
+		/**
+		 * @return the moves, the most common first, at most {@link #MAX_NEXT_MOVES}.
+		 */
+		List<Map.Entry<Integer, Integer>> getTopMoves() {
+			List<Map.Entry<Integer, Integer>> moves = Lists.newArrayList(moveGames.entrySet());
+			Collections.sort(moves, new Comparator<Map.Entry<Integer, Integer>>() {
+				@Override
+				public int compare(Map.Entry<Integer, Integer> first, Map.Entry<Integer, Integer> second) {
+					int byGames = second.getValue().compareTo(first.getValue());
+					return byGames != 0 ? byGames : first.getKey().compareTo(second.getKey());
+				}
+			});
+			return moves.size() > MAX_NEXT_MOVES ? moves.subList(0, MAX_NEXT_MOVES) : moves;
+		}
+	}
+
+	/**
+	 * Immutable segment file, memory mapped:
+	 * int magic, int version, int count, long[count] sorted keys, int[count] offsets, then for
+	 * every key: int games, int sideToMoveWins, int opponentWins, byte moveCount,
+	 * moveCount * (short move, int games).
+	 */
+	static class Segment {
+		private final File file;
+		private final MappedByteBuffer buffer;
+		private final int count;
+		private final int keysStart;
+		private final int offsetsStart;
+		private final int dataStart;
+
+		Segment(File file) throws IOException {
+			this.file = file;
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			try {
+				buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+						randomAccessFile.length());
+			} finally {
+				randomAccessFile.close();
+			}
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a position index segment: " + file);
+			}
+			count = buffer.getInt(8);
+			keysStart = 12;
+			offsetsStart = keysStart + 8 * count;
+			dataStart = offsetsStart + 4 * count;
+		}
+
+		int getCount() {
+			return count;
+		}
+
+		long getKey(int index) {
+			return buffer.getLong(keysStart + 8 * index);
+		}
+
+		/**
+		 * @return the index of the key, or -1.
+		 */
+		int find(long key) {
+			int low = 0;
+			int high = count - 1;
+			while(low <= high) {
+				int middle = (low + high) >>> 1;
+				long middleKey = getKey(middle);
+				if(middleKey < key) {
+					low = middle + 1;
+				} else if(middleKey > key) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -1;
+		}
+
+		void readStats(int index, Stats stats) {
+			int position = dataStart + buffer.getInt(offsetsStart + 4 * index);
+			stats.games += buffer.getInt(position);
+			stats.sideToMoveWins += buffer.getInt(position + 4);
+			stats.opponentWins += buffer.getInt(position + 8);
+			int moveCount = buffer.get(position + 12);
+			position += 13;
+			for(int i = 0; i < moveCount; i++) {
+				stats.addMove(buffer.getShort(position), buffer.getInt(position + 2));
+				position += 6;
+			}
+		}
+
+		static void write(File file, TreeMap<Long, Stats> positions) throws IOException {
+			SegmentWriter writer = new SegmentWriter(file, positions.size());
+			try {
+				for(Map.Entry<Long, Stats> entry : positions.entrySet()) {
+					writer.add(entry.getKey(), entry.getValue());
+				}
+				writer.finish();
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Writer of a segment key after key, in increasing order of the keys: the statistics go to a
+	 * temporary data file, so only the keys and the offsets are kept in memory. The segment is
+	 * renamed to its name once complete and synced, a crash leaves only temporary files.
+	 */
+	static class SegmentWriter implements Closeable {
+		private final File file;
+		private final File dataFile;
+		private final DataOutputStream dataOutput;
+		private final long[] keys;
+		private final int[] offsets;
+		private int count;
+
+		/**
+		 * @param maxCount maximum number of keys of the segment.
+		 */
+		SegmentWriter(File file, int maxCount) throws IOException {
+			this.file = file;
+			this.dataFile = new File(file.getPath() + ".data" + TEMPORARY_SUFFIX);
+			this.dataOutput = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(dataFile)));
+			this.keys = new long[maxCount];
+			this.offsets = new int[maxCount];
+		}
+
+		void add(long key, Stats stats) throws IOException {
+			keys[count] = key;
+			offsets[count++] = dataOutput.size();
+			dataOutput.writeInt(stats.games);
+			dataOutput.writeInt(stats.sideToMoveWins);
+			dataOutput.writeInt(stats.opponentWins);
+			List<Map.Entry<Integer, Integer>> moves = stats.getTopMoves();
+			dataOutput.writeByte(moves.size());
+			for(Map.Entry<Integer, Integer> move : moves) {
+				dataOutput.writeShort(move.getKey());
+				dataOutput.writeInt(move.getValue());
+			}
+		}
+
+		void finish() throws IOException {
+			dataOutput.close();
+			File temporaryFile = new File(file.getPath() + TEMPORARY_SUFFIX);
+			FileOutputStream fileOutput = new FileOutputStream(temporaryFile);
+			try {
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(count);
+				for(int i = 0; i < count; i++) {
+					output.writeLong(keys[i]);
+				}
+				for(int i = 0; i < count; i++) {
+					output.writeInt(offsets[i]);
+				}
+				Files.copy(dataFile, output);
+				output.flush();
+				fileOutput.getFD().sync();
+			} finally {
+				fileOutput.close();
+			}
+			if(!temporaryFile.renameTo(file)) {
+				throw new IOException("Can not write segment " + file);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			dataOutput.close();
+			dataFile.delete();
+		}
+	}
+
+	private final File directory;
+	private final List<Segment> segments = Lists.newArrayList();
+	private TreeMap<Long, Stats> memtable = new TreeMap<Long, Stats>();
+	private int nextSegmentNumber;
+
+	/**
+	 * Open the index stored in {@code directory}, which is created if needed. The segments older
+	 * than the last merged segment are already in it: they are left by a compaction which stopped
+	 * before deleting them, and are deleted now.
+	 */
+	public AbalonePositionIndex(File directory) throws IOException {
+		this.directory = directory;
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can not create the index directory " + directory);
+		}
+		File[] files = directory.listFiles();
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File first, File second) {
+				return Integer.compare(getSegmentNumber(first), getSegmentNumber(second));
+			}
+		});
+		int mergedNumber = -1;
+		for(File file : files) {
+			if(file.getName().startsWith(MERGED_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX)) {
+				mergedNumber = Math.max(mergedNumber, getSegmentNumber(file));
+			}
+		}
+		for(File file : files) {
+			String name = file.getName();
+			if(name.endsWith(TEMPORARY_SUFFIX)) {
+				deleteFile(file);
+			} else if(name.endsWith(SEGMENT_SUFFIX)) {
+				int number = getSegmentNumber(file);
+				if(number < mergedNumber) {
+					deleteFile(file);
+				} else {
+					segments.add(new Segment(file));
+				}
+				nextSegmentNumber = Math.max(nextSegmentNumber, number + 1);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of a segment file, -1 for another file.
+	 */
+	private static int getSegmentNumber(File file) {
+		String name = file.getName();
+		for(String prefix : new String[] {SEGMENT_PREFIX, MERGED_PREFIX}) {
+			if(name.startsWith(prefix) && name.endsWith(SEGMENT_SUFFIX)) {
+				return Integer.parseInt(name.substring(prefix.length(),
+						name.length() - SEGMENT_SUFFIX.length()));
+			}
+		}
+		return -1;
+	}
+
+	private static void deleteFile(File file) throws IOException {
+		if(!file.delete() && file.exists()) {
+			throw new IOException("Can not delete " + file);
+		}
+	}
+
+	/**
+	 * Method used to add every position of the game from which a round was played, with the move
+	 * of the first held piece of the round.
+	 */
+	public synchronized void addGame(AbaloneGameRecord record) throws IOException {
+		List<ArrayList<String>> board = initialBoard;
+		String turn = WTurn;
+		List<List<ArrayList<Integer>>> roundJumps = record.getRoundJumps();
+		for(int round = 0; round < roundJumps.size(); round++) {
+			Canonical canonical = AbaloneSymmetry.canonicalize(board, turn);
+			long key = AbaloneZobrist.hash(canonical.getBoard(), WTurn);
+			Stats stats = memtable.get(key);
+			if(stats == null) {
+				stats = new Stats();
+				memtable.put(key, stats);
+			}
+			stats.games++;
+			String winnerTurn = record.getResult().equals(AbaloneGameRecord.WHITE_WINS) ? WTurn
+					: record.getResult().equals(AbaloneGameRecord.BLACK_WINS) ? BTurn : null;
+			if(winnerTurn != null && winnerTurn.equals(turn)) {
+				stats.sideToMoveWins++;
+			} else if(winnerTurn != null) {
+				stats.opponentWins++;
+			}
+			int firstMove = record.getRoundMoves(round)[0];
+			int[] squares = AbaloneGameRecord.getSquares(firstMove);
+			List<ArrayList<Integer>> canonicalJumps = canonical.toCanonical(toJumps(squares));
+			List<Integer> canonicalJump = canonicalJumps.get(0);
+			stats.addMove(AbaloneGameRecord.getMove(canonicalJump.get(0), canonicalJump.get(1),
+					canonicalJump.get(2), canonicalJump.get(3)), 1);
+			AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+			previewBoard.apply(roundJumps.get(round));
+			board = previewBoard.getBoard();
+			turn = turn.equals(WTurn) ? BTurn : WTurn;
+		}
+		if(memtable.size() >= MEMTABLE_POSITIONS) {
+			flush();
+		}
+	}
+
+	/**
+	 * @return the jumps made of the one jump of the squares of a move, for {@link Canonical}.
+	 */
+	private static List<ArrayList<Integer>> toJumps(int[] squares) {
+		List<ArrayList<Integer>> jumps = new ArrayList<ArrayList<Integer>>();
+		jumps.add(Lists.newArrayList(squares[0], squares[1], squares[2], squares[3], 0));
+		return jumps;
+	}
+
+	/**
+	 * Add all the games of the reader, e.g. an archive of {@link AbaloneBinaryRecords}.
+	 * @return the number of games added.
+	 */
+	public int addGames(AbaloneGameRecord.RecordReader reader) throws IOException {
+		int games = 0;
+		for(AbaloneGameRecord record = reader.read(); record != null; record = reader.read()) {
+			addGame(record);
+			games++;
+		}
+		return games;
+	}
+
+	/**
+	 * @param turn {@link org.abalone.client.AbaloneConstants#WTurn} or
+	 * {@link org.abalone.client.AbaloneConstants#BTurn}, side to move.
+	 * @return the statistics of the position, or null if no game reached it.
+	 */
+	public synchronized PositionStats lookup(List<ArrayList<String>> board, String turn) {
+		Canonical canonical = AbaloneSymmetry.canonicalize(board, turn);
+		long key = AbaloneZobrist.hash(canonical.getBoard(), WTurn);
+		Stats stats = new Stats();
+		Stats memtableStats = memtable.get(key);
+		if(memtableStats != null) {
+			stats.add(memtableStats);
+		}
+		for(Segment segment : segments) {
+			int index = segment.find(key);
+			if(index >= 0) {
+				segment.readStats(index, stats);
+			}
+		}
+		if(stats.games == 0) {
+			return null;
+		}
+		List<NextMove> nextMoves = Lists.newArrayList();
+		for(Map.Entry<Integer, Integer> move : stats.getTopMoves()) {
+			int[] squares = AbaloneGameRecord.getSquares(move.getKey());
+			List<Integer> jump = canonical.fromCanonical(toJumps(squares)).get(0);
+			nextMoves.add(new NextMove(Collections.unmodifiableList(jump.subList(0, 4)),
+					move.getValue()));
+		}
+		return new PositionStats(stats.games, stats.sideToMoveWins, stats.opponentWins, nextMoves);
+	}
+
+	/**
+	 * Write the positions in memory as a new segment, and merge the segments if there are too
+	 * many.
+	 */
+	public synchronized void flush() throws IOException {
+		if(memtable.isEmpty()) {
+			return;
+		}
+		File file = newSegmentFile(SEGMENT_PREFIX);
+		Segment.write(file, memtable);
+		segments.add(new Segment(file));
+		memtable = new TreeMap<Long, Stats>();
+		if(segments.size() > MAX_SEGMENTS) {
+			compact();
+		}
+	}
+
+	/**
+	 * Merge all the segments into one, key after key, straight into the merged segment file. The
+	 * merged segment has a greater number than the segments it replaces, so once it is renamed the
+	 * segments are skipped when the index is opened, even if they could not be deleted.
+	 */
+	private void compact() throws IOException {
+		int maxCount = 0;
+		for(Segment segment : segments) {
+			maxCount += segment.getCount();
+		}
+		File file = newSegmentFile(MERGED_PREFIX);
+		SegmentWriter writer = new SegmentWriter(file, maxCount);
+		try {
+			int[] positions = new int[segments.size()];
+			while(true) {
+				long smallestKey = Long.MAX_VALUE;
+				boolean isDone = true;
+				for(int i = 0; i < segments.size(); i++) {
+					if(positions[i] < segments.get(i).getCount()) {
+						isDone = false;
+						smallestKey = Math.min(smallestKey, segments.get(i).getKey(positions[i]));
+					}
+				}
+				if(isDone) {
+					break;
+				}
+				Stats stats = new Stats();
+				for(int i = 0; i < segments.size(); i++) {
+					Segment segment = segments.get(i);
+					if(positions[i] < segment.getCount() && segment.getKey(positions[i]) == smallestKey) {
+						segment.readStats(positions[i]++, stats);
+					}
+				}
+				writer.add(smallestKey, stats);
+			}
+			writer.finish();
+		} finally {
+			writer.close();
+		}
+		List<Segment> oldSegments = Lists.newArrayList(segments);
+		segments.clear();
+		segments.add(new Segment(file));
+		for(Segment segment : oldSegments) {
+			// a segment left here is deleted when the index is opened again.
+			segment.file.delete();
+		}
+	}
+
+	private File newSegmentFile(String prefix) {
+		return new File(directory, prefix + String.format("%08d", nextSegmentNumber++)
+				+ SEGMENT_SUFFIX);
+	}
+
+	synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flush();
+	}
+}
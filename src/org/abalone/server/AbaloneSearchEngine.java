@@ -0,0 +1,40 @@
+package org.abalone.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbaloneSearch;
+import org.abalone.client.AbaloneTranspositionTable;
+
+/**
+ * {@link AbaloneEngine} searching with the alpha-beta {@link AbaloneSearch}, the transposition
+ * table is kept from one move to the next.
+ */
+public class AbaloneSearchEngine implements AbaloneEngine {
+	public static final int DEFAULT_MAX_DEPTH = 6;
+	public static final int TABLE_BITS = 20;
+
+	private final int maxDepth;
+	private final AbaloneTranspositionTable transpositionTable =
+			new AbaloneTranspositionTable(TABLE_BITS);
+
+	public AbaloneSearchEngine() {
+		this(DEFAULT_MAX_DEPTH);
+	}
+
+	public AbaloneSearchEngine(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	@Override
+	public Placement chooseMove(List<ArrayList<String>> board, String turn, int millis) {
+		AbaloneSearch.Result result = new AbaloneSearch(board, turn, transpositionTable)
+				.search(maxDepth, millis);
+		if(result == null) {
+			// not even the first depth in time, which is then searched whatever the time.
+			result = new AbaloneSearch(board, turn, transpositionTable).search(1, Integer.MAX_VALUE);
+		}
+		return result == null ? null : result.getBestPlacement();
+	}
+}
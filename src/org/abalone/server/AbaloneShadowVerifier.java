@@ -0,0 +1,236 @@
+package org.abalone.server;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.abalone.client.AbaloneVerifier;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.game_api.GameMetrics;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Verifier running a candidate verifier, e.g. {@link org.abalone.client.AbaloneFastVerifier}, in
+ * the shadow of the reference one, {@link org.abalone.client.AbaloneLogic}, on a sample of the
+ * moves. The reference always gives the result; the two verifiers disagree when only one of them
+ * finds a hacker, the reasons may differ. The first {@link #MAX_DISAGREEMENTS} disagreements are
+ * kept with their whole VerifyMove.
+ *
+ * Sampled moves are timed in {@link #getMetrics()}, with the phases {@link #REFERENCE} and
+ * {@link #CANDIDATE} per message type. The two verifiers take turns going first, so that neither
+ * always runs with the caches warmed by the other.
+ *
+ * Once enough moves are sampled without any disagreement, {@link #promote()} hands all the moves
+ * to the candidate alone, which can also be done automatically after {@code promoteAfterSamples}
+ * samples.
+ */
+public class AbaloneShadowVerifier implements AbaloneVerifier {
+	public static final String REFERENCE = "reference";
+	public static final String CANDIDATE = "candidate";
+	public static final int MAX_DISAGREEMENTS = 100;
+
+	private final AbaloneVerifier reference;
+	private final AbaloneVerifier candidate;
+	private final double sampleRate;
+	private final long promoteAfterSamples;
+	private final Ticker ticker;
+	private final GameMetrics metrics;
+	private final AtomicLong samples = new AtomicLong();
+	private final AtomicLong disagreementCount = new AtomicLong();
+	private final AtomicLong referenceNanos = new AtomicLong();
+	private final AtomicLong candidateNanos = new AtomicLong();
+	private final List<Disagreement> disagreements = Lists.newArrayList();
+	private volatile boolean isPromoted;
+
+	/**
+	 * A move on which the verifiers disagree.
+	 */
+	public static class Disagreement {
+		private final VerifyMove verifyMove;
+		private final VerifyMoveDone referenceResult;
+		private final VerifyMoveDone candidateResult;
+
+		Disagreement(VerifyMove verifyMove, VerifyMoveDone referenceResult,
+				VerifyMoveDone candidateResult) {
+			this.verifyMove = verifyMove;
+			this.referenceResult = referenceResult;
+			this.candidateResult = candidateResult;
+		}
+
+		public VerifyMove getVerifyMove() {
+			return verifyMove;
+		}
+
+		public VerifyMoveDone getReferenceResult() {
+			return referenceResult;
+		}
+
+		public VerifyMoveDone getCandidateResult() {
+			return candidateResult;
+		}
+
+		/**
+		 * @return the JSON of the VerifyMove, to replay it, e.g. in a test.
+		 */
+		public String getPayload() {
+			return AbaloneMessageJson.toJson(verifyMove);
+		}
+
+		@Override
+		public String toString() {
+			return "reference=" + AbaloneMessageJson.toJson(referenceResult)
+					+ " candidate=" + AbaloneMessageJson.toJson(candidateResult)
+					+ " verifyMove=" + getPayload();
+		}
+	}
+
+	/**
+	 * @param sampleRate fraction of the moves verified by both verifiers, from 0 to 1.
+	 * @param promoteAfterSamples number of samples without disagreement after which the candidate
+	 * is promoted, 0 to only promote with {@link #promote()}.
+	 */
+	public AbaloneShadowVerifier(AbaloneVerifier reference, AbaloneVerifier candidate,
+			double sampleRate, long promoteAfterSamples) {
+		this(reference, candidate, sampleRate, promoteAfterSamples, Ticker.systemTicker());
+	}
+
+	public AbaloneShadowVerifier(AbaloneVerifier reference, AbaloneVerifier candidate,
+			double sampleRate, long promoteAfterSamples, Ticker ticker) {
+		if(!(sampleRate >= 0 && sampleRate <= 1)) {
+			throw new IllegalArgumentException("sampleRate should be between 0 and 1: " + sampleRate);
+		}
+		if(promoteAfterSamples < 0) {
+			throw new IllegalArgumentException("promoteAfterSamples must not be negative");
+		}
+		this.reference = reference;
+		this.candidate = candidate;
+		this.sampleRate = sampleRate;
+		this.promoteAfterSamples = promoteAfterSamples;
+		this.ticker = ticker;
+		this.metrics = new GameMetrics(ticker);
+	}
+
+	@Override
+	public VerifyMoveDone verify(VerifyMove verifyMove) {
+		if(isPromoted) {
+			return candidate.verify(verifyMove);
+		}
+		if(sampleRate < 1 && !(ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+			return reference.verify(verifyMove);
+		}
+		long sample = samples.incrementAndGet();
+		VerifyMoveDone referenceResult;
+		VerifyMoveDone candidateResult;
+		if(sample % 2 == 0) {
+			referenceResult = verify(reference, REFERENCE, referenceNanos, verifyMove);
+			candidateResult = verify(candidate, CANDIDATE, candidateNanos, verifyMove);
+		} else {
+			candidateResult = verify(candidate, CANDIDATE, candidateNanos, verifyMove);
+			referenceResult = verify(reference, REFERENCE, referenceNanos, verifyMove);
+		}
+		if(!Objects.equal(referenceResult.getHackerPlayerId(), candidateResult.getHackerPlayerId())) {
+			disagreementCount.incrementAndGet();
+			synchronized(disagreements) {
+				if(disagreements.size() < MAX_DISAGREEMENTS) {
+					disagreements.add(new Disagreement(verifyMove, referenceResult, candidateResult));
+				}
+			}
+		} else if(promoteAfterSamples > 0 && sample >= promoteAfterSamples && isPromotable()) {
+			isPromoted = true;
+		}
+		return referenceResult;
+	}
+
+	/**
+	 * Method used to time the verification, a verifier which throws is taken as finding a hacker
+	 * with the message of the exception.
+	 */
+	private VerifyMoveDone verify(AbaloneVerifier verifier, String phase, AtomicLong totalNanos,
+			VerifyMove verifyMove) {
+		long start = ticker.read();
+		VerifyMoveDone result;
+		try {
+			result = verifier.verify(verifyMove);
+		} catch(RuntimeException e) {
+			result = new VerifyMoveDone(verifyMove.getLastMovePlayerId(), String.valueOf(e));
+		}
+		long nanos = ticker.read() - start;
+		metrics.record(phase, verifyMove.getMessageName(), nanos);
+		totalNanos.addAndGet(nanos);
+		return result;
+	}
+
+	/**
+	 * @return true if moves were sampled, and the verifiers never disagreed.
+	 */
+	public boolean isPromotable() {
+		return samples.get() > 0 && disagreementCount.get() == 0;
+	}
+
+	/**
+	 * Method used to verify all the following moves with the candidate alone.
+	 * @throws IllegalStateException if the candidate is not {@link #isPromotable()}.
+	 */
+	public void promote() {
+		if(!isPromotable()) {
+			throw new IllegalStateException("The candidate disagreed " + disagreementCount.get()
+					+ " times in " + samples.get() + " samples");
+		}
+		isPromoted = true;
+	}
+
+	public boolean isPromoted() {
+		return isPromoted;
+	}
+
+	public long getSamples() {
+		return samples.get();
+	}
+
+	public long getDisagreementCount() {
+		return disagreementCount.get();
+	}
+
+	public double getDisagreementRate() {
+		long sampleCount = samples.get();
+		return sampleCount == 0 ? 0 : (double) disagreementCount.get() / sampleCount;
+	}
+
+	/**
+	 * The ratio is only as fair as the reference: whatever the reference does besides verifying,
+	 * e.g. logging, counts against it. It sums all the samples, so a few slow ones, e.g. before the
+	 * JIT compiled the verifiers, weigh on it; compare it with the percentiles of
+	 * {@link #getMetrics()}.
+	 * @return the time taken by the candidate divided by the time taken by the reference, over the
+	 * same sampled moves, 0 if nothing is sampled yet.
+	 */
+	public double getLatencyRatio() {
+		long nanos = referenceNanos.get();
+		return nanos == 0 ? 0 : (double) candidateNanos.get() / nanos;
+	}
+
+	public GameMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the first {@link #MAX_DISAGREEMENTS} disagreements.
+	 */
+	public List<Disagreement> getDisagreements() {
+		synchronized(disagreements) {
+			return ImmutableList.copyOf(disagreements);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d samples, %d disagreements (rate %.6f), latency ratio %.3f%s: %s",
+				getSamples(), getDisagreementCount(), getDisagreementRate(), getLatencyRatio(),
+				isPromoted ? ", promoted" : "", metrics.snapshot());
+	}
+}
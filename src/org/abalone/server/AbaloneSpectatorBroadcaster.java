@@ -0,0 +1,204 @@
+package org.abalone.server;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.game_api.GameApi;
+import org.game_api.GameApi.UpdateUI;
+
+/**
+ * Fan-out of the spectator {@link UpdateUI} of one match: the message is the same for every
+ * viewer, so it is encoded once per move and the bytes are shared by all the connections.
+ * <p>
+ * Every viewer holds at most one pending frame. A viewer still writing the previous frame when
+ * a new move is broadcast only gets the latest one, the skipped frames are counted as dropped:
+ * an UpdateUI holds the whole state, so the latest frame is all a viewer needs to catch up.
+ * Frames are ordered by their sequence: a frame never replaces a newer pending frame, and is
+ * never written after a newer one, even when broadcasts and new viewers race.
+ */
+public class AbaloneSpectatorBroadcaster {
+
+	/**
+	 * Connection of one viewer, e.g. a web socket.
+	 */
+	public interface ViewerChannel {
+		/**
+		 * Blocking write of a whole frame, called by one thread at a time.
+		 * @throws IOException if the viewer is gone, the viewer is then removed.
+		 */
+		void write(byte[] frame) throws IOException;
+	}
+
+	/**
+	 * Encoded spectator UpdateUI, shared by all the viewers.
+	 */
+	public static class Frame {
+		private final long sequence;
+		private final byte[] bytes;
+
+		Frame(long sequence, byte[] bytes) {
+			this.sequence = sequence;
+			this.bytes = bytes;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return the UTF-8 JSON of the UpdateUI, not to be modified.
+		 */
+		public byte[] getBytes() {
+			return bytes;
+		}
+	}
+
+	private class Viewer implements Runnable {
+		private final ViewerChannel channel;
+		private final AtomicReference<Frame> pendingFrame = new AtomicReference<>();
+		private final AtomicBoolean isScheduled = new AtomicBoolean();
+		private volatile long sentSequence;
+
+		Viewer(ViewerChannel channel) {
+			this.channel = channel;
+		}
+
+		void offer(Frame frame) {
+			while(true) {
+				if(frame.getSequence() <= sentSequence) {
+					return;
+				}
+				Frame pending = pendingFrame.get();
+				if(pending != null && pending.getSequence() >= frame.getSequence()) {
+					if(pending.getSequence() > frame.getSequence()) {
+						droppedFrames.incrementAndGet();
+					}
+					return;
+				}
+				if(pendingFrame.compareAndSet(pending, frame)) {
+					if(pending != null) {
+						droppedFrames.incrementAndGet();
+					}
+					break;
+				}
+			}
+			if(isScheduled.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		}
+
+		/**
+		 * Method used to write the pending frames until there is none, on the executor.
+		 */
+		@Override
+		public void run() {
+			while(true) {
+				Frame frame = pendingFrame.getAndSet(null);
+				if(frame == null) {
+					isScheduled.set(false);
+					// a frame offered after the check, but before isScheduled was cleared.
+					if(pendingFrame.get() == null || !isScheduled.compareAndSet(false, true)) {
+						return;
+					}
+					continue;
+				}
+				if(frame.getSequence() <= sentSequence) {
+					continue;
+				}
+				try {
+					channel.write(frame.getBytes());
+					sentSequence = frame.getSequence();
+					sentFrames.incrementAndGet();
+				} catch(IOException e) {
+					viewers.remove(channel);
+					return;
+				}
+			}
+		}
+	}
+
+	private final Executor executor;
+	private final Map<ViewerChannel, Viewer> viewers = new ConcurrentHashMap<>();
+	private final AtomicReference<Frame> latestFrame = new AtomicReference<>();
+	private final AtomicLong encodedFrames = new AtomicLong();
+	private final AtomicLong sentFrames = new AtomicLong();
+	private final AtomicLong droppedFrames = new AtomicLong();
+
+	/**
+	 * @param executor runs the writes to the viewers, a slow viewer only holds one of its threads.
+	 */
+	public AbaloneSpectatorBroadcaster(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Add a viewer, it gets the latest frame right away if a move was already broadcast.
+	 */
+	public void addViewer(ViewerChannel channel) {
+		Viewer viewer = new Viewer(channel);
+		if(viewers.put(channel, viewer) != null) {
+			throw new IllegalArgumentException("The viewer is already watching the match!");
+		}
+		Frame frame = latestFrame.get();
+		if(frame != null) {
+			viewer.offer(frame);
+		}
+	}
+
+	public void removeViewer(ViewerChannel channel) {
+		viewers.remove(channel);
+	}
+
+	public int getViewerCount() {
+		return viewers.size();
+	}
+
+	/**
+	 * Method used to encode the spectator UpdateUI once, and send it to all the viewers.
+	 * @param updateUi the UpdateUI of {@link GameApi#VIEWER_ID}, e.g. from
+	 * {@link GameApi.IteratingPlayerContainer#getUpdateUi(String)}.
+	 * @return the encoded frame.
+	 */
+	public Frame broadcast(UpdateUI updateUi) {
+		if(!updateUi.isViewer()) {
+			throw new IllegalArgumentException("Only the viewer UpdateUI can be shared: "
+					+ updateUi.getYourPlayerId());
+		}
+		Frame frame = new Frame(encodedFrames.incrementAndGet(),
+				AbaloneMessageJson.toJsonBytes(updateUi));
+		while(true) {
+			Frame latest = latestFrame.get();
+			if((latest != null && latest.getSequence() > frame.getSequence())
+					|| latestFrame.compareAndSet(latest, frame)) {
+				break;
+			}
+		}
+		for(Viewer viewer : viewers.values()) {
+			viewer.offer(frame);
+		}
+		return frame;
+	}
+
+	/**
+	 * @return the number of moves encoded, one per broadcast whatever the number of viewers.
+	 */
+	public long getEncodedFrames() {
+		return encodedFrames.get();
+	}
+
+	public long getSentFrames() {
+		return sentFrames.get();
+	}
+
+	/**
+	 * @return the number of frames replaced by a later one before a slow viewer got them.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+}
@@ -0,0 +1,184 @@
+package org.abalone.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+import org.abalone.client.AbaloneGeometry;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Text format of {@link AbaloneGameRecord}, one game per line:
+ * <pre>
+ *   gameId TAB whitePlayerId TAB blackPlayerId TAB result TAB round round ...
+ * </pre>
+ * Rounds are separated by spaces. A round is the moves of its held pieces separated by commas,
+ * every move written in the standard Abalone notation as the start and end squares, e.g.
+ * {@code a1b2}: rows from {@code a} (row 9 of the board) to {@code i} (row 1), diagonals from
+ * {@code 1} to {@code 9} (the axial q coordinate + 5). Empty lines and lines starting with
+ * {@code #} are skipped.
+ */
+public final class AbaloneTextRecords {
+	private static final char SEPARATOR = '\t';
+
+	/**
+	 * Reader of the text format, one line at a time.
+	 */
+	public static class TextRecordReader implements AbaloneGameRecord.RecordReader {
+		private final BufferedReader reader;
+		private int lineNumber;
+
+		public TextRecordReader(Reader reader) {
+			this.reader = reader instanceof BufferedReader
+					? (BufferedReader) reader : new BufferedReader(reader);
+		}
+
+		@Override
+		public AbaloneGameRecord read() throws IOException {
+			String line;
+			do {
+				line = reader.readLine();
+				lineNumber++;
+				if(line == null) {
+					return null;
+				}
+			} while(line.isEmpty() || line.charAt(0) == '#');
+			try {
+				return parseRecord(line);
+			} catch(IllegalArgumentException e) {
+				throw new IOException("Bad game record at line " + lineNumber + ": " + e.getMessage(), e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Writer of the text format, the output should be buffered.
+	 */
+	public static class TextRecordWriter implements AbaloneGameRecord.RecordWriter {
+		private final Writer writer;
+
+		public TextRecordWriter(Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void write(AbaloneGameRecord record) throws IOException {
+			writer.write(formatRecord(record));
+			writer.write('\n');
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	public static String formatRecord(AbaloneGameRecord record) {
+		StringBuilder line = new StringBuilder();
+		appendField(line, record.getGameId());
+		appendField(line, record.getWhitePlayerId());
+		appendField(line, record.getBlackPlayerId());
+		line.append(record.getResult()).append(SEPARATOR);
+		List<int[]> rounds = record.getRounds();
+		for(int round = 0; round < rounds.size(); round++) {
+			if(round > 0) {
+				line.append(' ');
+			}
+			int[] moves = rounds.get(round);
+			for(int i = 0; i < moves.length; i++) {
+				if(i > 0) {
+					line.append(',');
+				}
+				int[] squares = AbaloneGameRecord.getSquares(moves[i]);
+				appendSquare(line, squares[0], squares[1]);
+				appendSquare(line, squares[2], squares[3]);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the line is not a game record.
+	 */
+	public static AbaloneGameRecord parseRecord(String line) {
+		String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+		if(fields.length != 5) {
+			throw new IllegalArgumentException("A game record should have 5 fields");
+		}
+		List<int[]> rounds = Lists.newArrayList();
+		if(!fields[4].isEmpty()) {
+			for(String round : fields[4].split(" ")) {
+				String[] notations = round.split(",");
+				int[] moves = new int[notations.length];
+				for(int i = 0; i < notations.length; i++) {
+					moves[i] = parseMove(notations[i]);
+				}
+				rounds.add(moves);
+			}
+		}
+		return new AbaloneGameRecord(fields[0], fields[1], fields[2], fields[3], rounds);
+	}
+
+	/**
+	 * @return the notation of the square, e.g. {@code e5} for the center.
+	 */
+	public static String toNotation(int x, int y) {
+		StringBuilder notation = new StringBuilder(2);
+		appendSquare(notation, x, y);
+		return notation.toString();
+	}
+
+	/**
+	 * @return {x, y} of the square of the notation.
+	 * @throws IllegalArgumentException if the notation is not one of the 61 cells.
+	 */
+	public static int[] parseSquare(String notation) {
+		if(notation.length() != 2) {
+			throw new IllegalArgumentException("Bad square: " + notation);
+		}
+		int x = 9 - (notation.charAt(0) - 'a');
+		int q = notation.charAt(1) - '1' - 4;
+		int r = AbaloneGeometry.getR(x);
+		int y = AbaloneGeometry.getColumn(q, r);
+		if(AbaloneGeometry.getCell(x, y) < 0) {
+			throw new IllegalArgumentException("Bad square: " + notation);
+		}
+		return new int[]{x, y};
+	}
+
+	private static int parseMove(String notation) {
+		if(notation.length() != 4) {
+			throw new IllegalArgumentException("Bad move: " + notation);
+		}
+		int[] start = parseSquare(notation.substring(0, 2));
+		int[] end = parseSquare(notation.substring(2));
+		return AbaloneGameRecord.getMove(start[0], start[1], end[0], end[1]);
+	}
+
+	private static void appendSquare(StringBuilder builder, int x, int y) {
+		builder.append((char) ('a' + 9 - x)).append((char) ('1' + AbaloneGeometry.getQ(x, y) + 4));
+	}
+
+	private static void appendField(StringBuilder builder, String field) {
+		if(field.indexOf(SEPARATOR) >= 0 || field.indexOf('\n') >= 0) {
+			throw new IllegalArgumentException("Game record fields can not hold tabs or new lines: "
+					+ field);
+		}
+		builder.append(field).append(SEPARATOR);
+	}
+
+	private AbaloneTextRecords() { }
+}
@@ -0,0 +1,124 @@
+package org.abalone.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.abalone.client.AbaloneFastVerifier;
+import org.abalone.client.AbaloneLogic;
+import org.abalone.server.AbaloneShadowVerifier.Disagreement;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+
+/**
+ * Servlet verifying batches of moves with {@link AbaloneBatchVerifier}, so that the server does
+ * not have to trust the verification done in the browsers. A POST with the content type
+ * {@link #BINARY_CONTENT_TYPE} uses the binary format, any other the JSON format, and is answered
+ * in the same format. The {@code threads} init parameter sets the size of the pool, one thread
+ * per processor by default. On App Engine, which forbids threads started by the application,
+ * the batch is verified on the request thread, and {@code threads} can only be 1.
+ *
+ * The {@code shadowSampleRate} init parameter runs {@link AbaloneFastVerifier} in the shadow of
+ * {@link AbaloneLogic} on this fraction of the moves, see {@link AbaloneShadowVerifier}, and a GET
+ * answers its report. The disagreements hold the states of live matches, so they are only added
+ * for a user in the {@link #ADMIN_ROLE} role, e.g. on the {@code /admin/verify} mapping of
+ * web.xml. With {@code shadowPromoteAfter}, the fast verifier takes over after this many samples
+ * without disagreement.
+ */
+public class AbaloneVerifyServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	public static final String BINARY_CONTENT_TYPE = "application/x-abalone-verify";
+	public static final String JSON_CONTENT_TYPE = "application/json";
+	public static final String ADMIN_ROLE = "admin";
+	/**
+	 * System property set by the App Engine runtime, in production and in the development server.
+	 */
+	private static final String APP_ENGINE_ENVIRONMENT = "com.google.appengine.runtime.environment";
+
+	private transient AbaloneBatchVerifier verifier;
+	private transient AbaloneShadowVerifier shadowVerifier;
+
+	@Override
+	public void init() throws ServletException {
+		String threads = getInitParameter("threads");
+		String shadowSampleRate = getInitParameter("shadowSampleRate");
+		String shadowPromoteAfter = getInitParameter("shadowPromoteAfter");
+		try {
+			boolean isAppEngine = System.getProperty(APP_ENGINE_ENVIRONMENT) != null;
+			int threadCount = threads != null ? Integer.parseInt(threads)
+					: isAppEngine ? 1 : Runtime.getRuntime().availableProcessors();
+			if(isAppEngine && threadCount != 1) {
+				throw new IllegalArgumentException("App Engine verifies on the request thread");
+			}
+			if(shadowSampleRate == null) {
+				verifier = new AbaloneBatchVerifier(threadCount);
+			} else {
+				shadowVerifier = new AbaloneShadowVerifier(new AbaloneLogic(),
+						new AbaloneFastVerifier(), Double.parseDouble(shadowSampleRate),
+						shadowPromoteAfter == null ? 0 : Long.parseLong(shadowPromoteAfter));
+				verifier = new AbaloneBatchVerifier(threadCount, shadowVerifier);
+			}
+		} catch(IllegalArgumentException e) {
+			throw new ServletException("Bad init parameters: threads=" + threads + " shadowSampleRate="
+					+ shadowSampleRate + " shadowPromoteAfter=" + shadowPromoteAfter, e);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		verifier.shutdown();
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		if(shadowVerifier == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "No shadow verifier");
+			return;
+		}
+		response.setContentType("text/plain");
+		response.setCharacterEncoding("UTF-8");
+		PrintWriter writer = response.getWriter();
+		writer.println(shadowVerifier);
+		if(request.isUserInRole(ADMIN_ROLE)) {
+			for(Disagreement disagreement : shadowVerifier.getDisagreements()) {
+				writer.println(disagreement);
+			}
+		}
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		String contentType = request.getContentType();
+		boolean isBinary = contentType != null && contentType.startsWith(BINARY_CONTENT_TYPE);
+		List<VerifyMove> verifyMoves;
+		try {
+			if(isBinary) {
+				verifyMoves = AbaloneBatchVerifier.readBinaryBatch(request.getInputStream());
+			} else {
+				if(request.getCharacterEncoding() == null) {
+					request.setCharacterEncoding("UTF-8");
+				}
+				verifyMoves = AbaloneBatchVerifier.readJsonBatch(request.getReader());
+			}
+		} catch(IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+		List<VerifyMoveDone> results = verifier.verify(verifyMoves);
+		if(isBinary) {
+			response.setContentType(BINARY_CONTENT_TYPE);
+			AbaloneBatchVerifier.writeBinaryResults(response.getOutputStream(), results);
+		} else {
+			response.setContentType(JSON_CONTENT_TYPE);
+			response.setCharacterEncoding("UTF-8");
+			AbaloneBatchVerifier.writeJsonResults(response.getWriter(), results);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.abalone.worker;
+
+import org.abalone.client.AbaloneComputeApi;
+import org.abalone.client.AbaloneComputeApi.ComputeDone;
+import org.abalone.client.AbaloneComputeApi.ComputeRequest;
+import org.abalone.client.AbaloneComputeApi.ComputeService;
+import org.game_api.GameApi.GameApiJsonHelper;
+import org.game_api.GameApi.Message;
+
+import com.google.gwt.core.client.EntryPoint;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONObject;
+
+/**
+ * Entry point of the abalone_worker module, which runs inside a Web Worker and answers the
+ * {@link ComputeRequest} posted by {@link WorkerComputeChannel}.
+ */
+public class AbaloneWorkerEntryPoint implements EntryPoint {
+	/*
+	 * Length of one pondering slice, the worker reads its messages between two slices.
+	 */
+	public static final int PONDER_SLICE_MILLIS = 50;
+
+	private final ComputeService computeService = new ComputeService();
+	private int ponderToken;
+
+	@Override
+	public void onModuleLoad() {
+		injectEventListener(this);
+	}
+
+	public void eventListner(JavaScriptObject message) {
+		Message messageObj = AbaloneComputeApi.messageToComputeMessage(
+				GameApiJsonHelper.getMapFromJsonObject(new JSONObject(message)));
+		if(!(messageObj instanceof ComputeRequest)) {
+			return;
+		}
+		ComputeRequest computeRequest = (ComputeRequest) messageObj;
+		// any request stops the pondering slices, a ponder hit goes on in compute().
+		ponderToken++;
+		if(computeRequest.getKind().equals(AbaloneComputeApi.PONDER)) {
+			computeService.startPondering(computeRequest);
+			scheduleSlice(this, ponderToken);
+		} else {
+			ComputeDone computeDone = computeService.compute(computeRequest);
+			postMessageToPage(
+					GameApiJsonHelper.getJsonObject(computeDone.toMessage()).getJavaScriptObject());
+		}
+	}
+
+	public void ponderSlice(int token) {
+		if(token == ponderToken && computeService.ponder(PONDER_SLICE_MILLIS)) {
+			scheduleSlice(this, token);
+		}
+	}
+
+	private static native void scheduleSlice(AbaloneWorkerEntryPoint workerEntryPoint,
+			int token) /*-{
+		self.setTimeout($entry(function() {
+			workerEntryPoint.@org.abalone.worker.AbaloneWorkerEntryPoint::ponderSlice(I)(token);
+		}), 0);
+	}-*/;
+
+	private static native void postMessageToPage(JavaScriptObject message) /*-{
+		self.postMessage(message);
+	}-*/;
+
+	private native void injectEventListener(AbaloneWorkerEntryPoint workerEntryPoint) /*-{
+		function postMessageListener(e) {
+			var w = workerEntryPoint;
+			w.@org.abalone.worker.AbaloneWorkerEntryPoint::eventListner(Lcom/google/gwt/core/client/JavaScriptObject;)(e.data);
+		}
+		self.addEventListener("message", postMessageListener, false);
+	}-*/;
+}
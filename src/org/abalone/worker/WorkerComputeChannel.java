@@ -0,0 +1,110 @@
+package org.abalone.worker;
+
+import org.abalone.client.AbaloneComputeApi;
+import org.abalone.client.AbaloneComputeApi.ComputeCallback;
+import org.abalone.client.AbaloneComputeApi.ComputeChannel;
+import org.abalone.client.AbaloneComputeApi.ComputeDone;
+import org.abalone.client.AbaloneComputeApi.ComputeRequest;
+import org.game_api.GameApi.GameApiJsonHelper;
+import org.game_api.GameApi.Message;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONObject;
+
+/**
+ * Channel which computes the requests in a Web Worker running the abalone_worker module, so the
+ * board is never frozen while the engine thinks.
+ *
+ * A search running in the worker can not be interrupted by a message, because the worker does not
+ * read its messages before the search returns. So {@link #cancel()} terminates the worker, and a
+ * new one is started with the next request.
+ *
+ * A {@link AbaloneComputeApi#PONDER} request has no callback, and is not cancelled: the worker
+ * ponders in short slices and reads the next request between two of them.
+ */
+public class WorkerComputeChannel implements ComputeChannel {
+	private final String workerUrl;
+	private JavaScriptObject worker;
+	private int lastRequestId;
+	private ComputeCallback computeCallback;
+
+	/**
+	 * @param workerUrl url of the compiled worker script, abalone_worker.nocache.js.
+	 */
+	public WorkerComputeChannel(String workerUrl) {
+		this.workerUrl = workerUrl;
+	}
+
+	public static native boolean isSupported() /*-{
+		return typeof $wnd.Worker != "undefined";
+	}-*/;
+
+	@Override
+	public void sendComputeRequest(ComputeRequest computeRequest, ComputeCallback computeCallback) {
+		if(computeRequest.getKind().equals(AbaloneComputeApi.PONDER)) {
+			if(worker != null && this.computeCallback == null) {
+				postMessageToWorker(worker,
+						GameApiJsonHelper.getJsonObject(computeRequest.toMessage()).getJavaScriptObject());
+			}
+			return;
+		}
+		if(this.computeCallback != null) {
+			// the worker is still busy with the previous request.
+			cancel();
+		}
+		if(worker == null) {
+			worker = createWorker(this, workerUrl);
+		}
+		lastRequestId = computeRequest.getRequestId();
+		this.computeCallback = computeCallback;
+		postMessageToWorker(worker,
+				GameApiJsonHelper.getJsonObject(computeRequest.toMessage()).getJavaScriptObject());
+	}
+
+	@Override
+	public void cancel() {
+		if(computeCallback == null) {
+			// the worker is idle or pondering, it reads the next request soon enough.
+			return;
+		}
+		computeCallback = null;
+		if(worker != null) {
+			terminateWorker(worker);
+			worker = null;
+		}
+	}
+
+	public void eventListner(JavaScriptObject message) {
+		Message messageObj = AbaloneComputeApi.messageToComputeMessage(
+				GameApiJsonHelper.getMapFromJsonObject(new JSONObject(message)));
+		if(!(messageObj instanceof ComputeDone)) {
+			return;
+		}
+		ComputeDone computeDone = (ComputeDone) messageObj;
+		if(computeCallback == null || computeDone.getRequestId() != lastRequestId) {
+			// answer of a cancelled request.
+			return;
+		}
+		ComputeCallback callback = computeCallback;
+		computeCallback = null;
+		callback.computeDone(computeDone);
+	}
+
+	private static native JavaScriptObject createWorker(WorkerComputeChannel channel,
+			String workerUrl) /*-{
+		var worker = new $wnd.Worker(workerUrl);
+		worker.addEventListener("message", function(e) {
+			channel.@org.abalone.worker.WorkerComputeChannel::eventListner(Lcom/google/gwt/core/client/JavaScriptObject;)(e.data);
+		}, false);
+		return worker;
+	}-*/;
+
+	private static native void postMessageToWorker(JavaScriptObject worker,
+			JavaScriptObject message) /*-{
+		worker.postMessage(message);
+	}-*/;
+
+	private static native void terminateWorker(JavaScriptObject worker) /*-{
+		worker.terminate();
+	}-*/;
+}
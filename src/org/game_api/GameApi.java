@@ -2,16 +2,19 @@ package org.game_api;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.json.client.JSONArray;
 import com.google.gwt.json.client.JSONBoolean;
 import com.google.gwt.json.client.JSONNull;
@@ -55,30 +58,61 @@ public final class GameApi {
 
     @Override
     public void sendGameReady() {
-      GameReady gameReady = new GameReady();
-      postMessageToParent(GameApiJsonHelper.getJsonString(gameReady));
+      postMessage(new GameReady());
     }
 
     @Override
     public void sendVerifyMoveDone(VerifyMoveDone verifyMoveDone) {
-      postMessageToParent(GameApiJsonHelper.getJsonString(verifyMoveDone));
+      postMessage(verifyMoveDone);
     }
 
     @Override
     public void sendMakeMove(List<Operation> operations) {
-      MakeMove makeMove = new MakeMove(operations);
-      postMessageToParent(GameApiJsonHelper.getJsonString(makeMove));
+      postMessage(new MakeMove(operations));
+    }
+
+    private void postMessage(Message message) {
+      long start = GameMetrics.get().start();
+      postMessageToParent(GameApiJsonHelper.getJsonObject(message.toMessage())
+          .getJavaScriptObject());
+      GameMetrics.get().stop(GameMetrics.POST, message.getMessageName(), start);
     }
 
     /* This method is used to post message from iFrame which is the container
-     * to the game.
+     * to the game. The object is structured-cloned by postMessage, so it is
+     * never converted to a string.
+     */
+    public static native void postMessageToParent(JavaScriptObject message) /*-{
+      $wnd.parent.postMessage(message, "*");
+    }-*/;
+
+    /* String version of {@link #postMessageToParent(JavaScriptObject)}, for
+     * messages which are already serialized.
      */
     public static native void postMessageToParent(String message) /*-{
       $wnd.parent.postMessage(JSON.parse(message), "*");
     }-*/;
 
+    /* Called with the object posted by the container, read in place through
+     * a JSONObject overlay.
+     */
+    public void eventListner(JavaScriptObject message) {
+      long start = GameMetrics.get().start();
+      Message messageObj = GameApiJsonHelper.getMessageObject(new JSONObject(message));
+      GameMetrics.get().stop(GameMetrics.PARSE, messageObj.getMessageName(), start);
+      dispatch(messageObj);
+    }
+
+    /* Fallback for containers which post their messages as JSON strings.
+     */
     public void eventListner(String message) {
+      long start = GameMetrics.get().start();
       Message messageObj = GameApiJsonHelper.getMessageObject(message);
+      GameMetrics.get().stop(GameMetrics.PARSE, messageObj.getMessageName(), start);
+      dispatch(messageObj);
+    }
+
+    private void dispatch(Message messageObj) {
       if (messageObj instanceof UpdateUI) {
         game.sendUpdateUI((UpdateUI) messageObj);
       } else if (messageObj instanceof VerifyMove) {
@@ -88,9 +122,12 @@ public final class GameApi {
 
     private native void injectEventListener(ContainerConnector containerConnector) /*-{
       function postMessageListener(e) {
-        var str = JSON.stringify(e.data);
         var c = containerConnector;
-        c.@org.game_api.GameApi.ContainerConnector::eventListner(Ljava/lang/String;)(str);
+        if (typeof e.data == "string") {
+          c.@org.game_api.GameApi.ContainerConnector::eventListner(Ljava/lang/String;)(e.data);
+        } else {
+          c.@org.game_api.GameApi.ContainerConnector::eventListner(Lcom/google/gwt/core/client/JavaScriptObject;)(e.data);
+        }
       }
       $wnd.addEventListener("message", postMessageListener, false);
     }-*/;
@@ -99,19 +136,44 @@ public final class GameApi {
 
   /**
    * A container for games that can iterates over all the players and send them Game API messages.
+   *
+   * It also enforces the turn clocks: when a move contains SetTurn with numberOfSecondsForTurn,
+   * that player must send MakeMove before the time is over.
    */
   public static class IteratingPlayerContainer implements Container {
     private final Game game;
+    private final Ticker ticker;
     private final List<Map<String, Object>> playersInfo = Lists.newArrayList();
     private final List<String> playerIds;
     private String updateUiPlayerId;
-    private GameState gameState = new GameState();
+    private final GameState gameState;
     private GameState lastGameState = null;
     private List<Operation> lastMove = null;
     private String lastMovePlayerId;
+    private String turnPlayerId;
+    private long turnDeadlineNanos;
+    private EndGame endGame;
+    private String timedOutPlayerId;
 
     public IteratingPlayerContainer(Game game, int numberOfPlayers) {
+      this(game, numberOfPlayers, Ticker.systemTicker());
+    }
+
+    /**
+     * @param ticker time source of the turn clocks.
+     */
+    public IteratingPlayerContainer(Game game, int numberOfPlayers, Ticker ticker) {
+      this(game, numberOfPlayers, ticker, new Random().nextLong());
+    }
+
+    /**
+     * @param seed seed of the random operations, e.g. the {@link #getSeed()} of a recorded match
+     * to replay it: the same moves then give the same states.
+     */
+    public IteratingPlayerContainer(Game game, int numberOfPlayers, Ticker ticker, long seed) {
       this.game = game;
+      this.ticker = ticker;
+      this.gameState = new GameState(seed);
       List<String> playerIds = Lists.newArrayList();
       for (int i = 0; i < numberOfPlayers; i++) {
         String playerId = String.valueOf(42 + i);
@@ -125,20 +187,110 @@ public final class GameApi {
       return playerIds;
     }
 
+    public long getSeed() {
+      return gameState.getSeed();
+    }
+
     @Override
     public void sendGameReady() {
     }
 
     public void updateUi(String yourPlayerId) {
       updateUiPlayerId = yourPlayerId;
-      game.sendUpdateUI(new UpdateUI(yourPlayerId, playersInfo,
+      if (!checkTurnClock()) {
+        game.sendUpdateUI(getUpdateUi(yourPlayerId));
+      }
+    }
+
+    /**
+     * @return the UpdateUI of the current state as seen by yourPlayerId, e.g. {@link #VIEWER_ID}
+     * for the one shared by all the spectators.
+     */
+    public UpdateUI getUpdateUi(String yourPlayerId) {
+      return new UpdateUI(yourPlayerId, playersInfo,
           gameState.getStateForPlayerId(yourPlayerId),
           lastGameState == null ? null : lastGameState.getStateForPlayerId(yourPlayerId),
-          lastMove, lastMovePlayerId, gameState.getPlayerIdToNumberOfTokensInPot()));
+          lastMove, lastMovePlayerId, gameState.getPlayerIdToNumberOfTokensInPot());
+    }
+
+    /**
+     * @return the milliseconds left to the player whose turn it is, or -1 if the turn has no
+     * clock.
+     */
+    public long getMillisLeftForTurn() {
+      if (turnPlayerId == null) {
+        return -1;
+      }
+      return Math.max((turnDeadlineNanos - ticker.read()) / 1000000, 0);
+    }
+
+    /**
+     * @return the EndGame which ended the match, sent by a player or made by the container when a
+     * turn clock ran out, or null while the match goes on.
+     */
+    public EndGame getEndGame() {
+      return endGame;
+    }
+
+    /**
+     * @return the player who lost the match on time, or null.
+     */
+    public String getTimedOutPlayerId() {
+      return timedOutPlayerId;
     }
 
+    /**
+     * Method used to end the match if the player to move ran out of time: the container makes
+     * the move EndGame, in which every other player wins, and sends the UpdateUI of the current
+     * player. This move is not verified, as it is not made by a player.
+     * @return true if the match was ended.
+     */
+    public boolean checkTurnClock() {
+      if (endGame != null || turnPlayerId == null || ticker.read() <= turnDeadlineNanos) {
+        return false;
+      }
+      Map<String, Integer> playerIdToScore = Maps.newHashMap();
+      for (String playerId : playerIds) {
+        playerIdToScore.put(playerId, playerId.equals(turnPlayerId) ? 0 : 1);
+      }
+      timedOutPlayerId = turnPlayerId;
+      turnPlayerId = null;
+      endGame = new EndGame(playerIdToScore);
+      lastMovePlayerId = timedOutPlayerId;
+      lastMove = ImmutableList.<Operation>of(endGame);
+      lastGameState = gameState.copy();
+      gameState.makeMove(lastMove);
+      game.sendUpdateUI(getUpdateUi(updateUiPlayerId));
+      return true;
+    }
+
+    /**
+     * A move sent after the turn clock ran out is not made, the match ends instead, see
+     * {@link #checkTurnClock()}.
+     * @throws IllegalStateException if the match has ended.
+     */
     @Override
     public void sendMakeMove(List<Operation> operations) {
+      if (checkTurnClock()) {
+        return;
+      }
+      if (endGame != null) {
+        throw new IllegalStateException("The match has ended");
+      }
+      turnPlayerId = null;
+      for (Operation operation : operations) {
+        if (operation instanceof SetTurn
+            && ((SetTurn) operation).getNumberOfSecondsForTurn() > 0) {
+          turnPlayerId = ((SetTurn) operation).getPlayerId();
+          turnDeadlineNanos = ticker.read()
+              + ((SetTurn) operation).getNumberOfSecondsForTurn() * 1000000000L;
+        } else if (operation instanceof EndGame) {
+          endGame = (EndGame) operation;
+        }
+      }
+      if (endGame != null) {
+        turnPlayerId = null;
+      }
       lastMovePlayerId = updateUiPlayerId;
       lastMove = ImmutableList.copyOf(operations);
       lastGameState = gameState.copy();
@@ -150,7 +302,7 @@ public final class GameApi {
             lastGameState.getStateForPlayerId(playerId), lastMove, lastMovePlayerId,
             gameState.getPlayerIdToNumberOfTokensInPot()));
       }
-      updateUi(updateUiPlayerId);
+      game.sendUpdateUI(getUpdateUi(updateUiPlayerId));
     }
 
     @Override
@@ -161,18 +313,41 @@ public final class GameApi {
     }
   }
 
+  /**
+   * State of a match. SetRandomInteger and Shuffle draw from a {@link GameRandom} of the seed of
+   * the match, so replaying the moves from the same seed gives the same states.
+   */
   public static class GameState {
     private final Map<String, Object> state = Maps.newHashMap();
     private final Map<String, Object> visibleTo = Maps.newHashMap();
     private Map<String, Integer> playerIdToNumberOfTokensInPot = Maps.newHashMap();
+    private final long seed;
+    private GameRandom random;
+
+    public GameState() {
+      this(new Random().nextLong());
+    }
 
+    public GameState(long seed) {
+      this.seed = seed;
+      this.random = new GameRandom(seed);
+    }
+
+    /**
+     * @return a copy which also continues with the same random values.
+     */
     public GameState copy() {
-      GameState result = new GameState();
+      GameState result = new GameState(seed);
       result.state.putAll(state);
       result.visibleTo.putAll(visibleTo);
+      result.random = random.copy();
       return result;
     }
 
+    public long getSeed() {
+      return seed;
+    }
+
     public Map<String, Integer> getPlayerIdToNumberOfTokensInPot() {
       return playerIdToNumberOfTokensInPot;
     }
@@ -209,7 +384,7 @@ public final class GameApi {
         String key = setRandomInteger.getKey();
         int from = setRandomInteger.getFrom();
         int to = setRandomInteger.getTo();
-        int value = new Random().nextInt(to - from) + from;
+        int value = random.nextInt(to - from) + from;
         state.put(key, value);
         visibleTo.put(key, ALL);
       } else if (operation instanceof SetVisibility) {
@@ -241,10 +416,9 @@ public final class GameApi {
 
     private List<String> shuffle(List<String> list) {
       List<String> listCopy = Lists.newArrayList(list);
-      Random rnd = new Random();
       List<String> res = Lists.newArrayList();
       while (!listCopy.isEmpty()) {
-        int index = rnd.nextInt(listCopy.size());
+        int index = random.nextInt(listCopy.size());
         res.add(listCopy.remove(index));
       }
       return res;
@@ -817,7 +991,18 @@ public final class GameApi {
     }
   }
 
+  /**
+   * A message is immutable: the lists and maps given to its constructor belong to the message
+   * and must not be changed afterwards, so that its hash code and its {@link #toMessage()} map are
+   * computed once, whichever number of recipients it is sent to, compared with or logged by.
+   */
   public abstract static class Message {
+    /*
+     * 0 until computed, like String#hashCode.
+     */
+    private int hash;
+    private volatile Map<String, Object> messageMap;
+
     public abstract String getMessageName();
 
     public List<Object> getFieldsNameAndValue() {
@@ -826,16 +1011,25 @@ public final class GameApi {
 
     @Override
     public int hashCode() {
-      return getFieldsNameAndValue().hashCode() ^ getMessageName().hashCode();
+      int h = hash;
+      if (h == 0) {
+        h = getFieldsNameAndValue().hashCode() ^ getMessageName().hashCode();
+        hash = h;
+      }
+      return h;
     }
 
     @Override
     public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
       if (!(obj instanceof Message)) {
         return false;
       }
       Message other = (Message) obj;
-      return Objects.equals(other.getFieldsNameAndValue(), getFieldsNameAndValue())
+      return other.hashCode() == hashCode()
+          && Objects.equals(other.getFieldsNameAndValue(), getFieldsNameAndValue())
           && Objects.equals(other.getMessageName(), getMessageName());
     }
 
@@ -855,7 +1049,19 @@ public final class GameApi {
       return messages;
     }
 
+    /**
+     * @return the message as a map of JSON-supported values, which must not be changed.
+     */
     public Map<String, Object> toMessage() {
+      Map<String, Object> result = messageMap;
+      if (result == null) {
+        result = Collections.unmodifiableMap(buildMessage());
+        messageMap = result;
+      }
+      return result;
+    }
+
+    private Map<String, Object> buildMessage() {
       Map<String, Object> message = new HashMap<>();
       message.put("type", getMessageName());
       List<Object> fieldsNameAndValue = getFieldsNameAndValue();
@@ -1095,6 +1301,10 @@ public final class GameApi {
       return Message.messageToHasEquality(getMapObject(jsonString));
     }
 
+    public static Message getMessageObject(JSONObject jsonObj) {
+      return Message.messageToHasEquality(getMapFromJsonObject(jsonObj));
+    }
+
     public static Map<String, Object> getMapObject(String jsonString) {
       JSONValue jsonVal = JSONParser.parseStrict(jsonString);
       JSONObject jsonObj = jsonVal.isObject();
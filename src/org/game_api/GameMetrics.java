@@ -0,0 +1,231 @@
+package org.game_api;
+
+import java.util.Map;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+import com.google.gwt.core.client.GWT;
+
+/**
+ * Low-overhead counters and latency histograms per phase (JSON parse, verify, updateUI, render,
+ * postMessage...) and per message type.
+ *
+ * <p>Recording is two map lookups, by phase then by message type, and a few integer operations
+ * without any allocation, so it can stay enabled in production. Latencies are kept in
+ * microseconds in logarithmic buckets (8 buckets per power of two, so a percentile is within
+ * 12.5% of the exact value). Time is read with
+ * {@code performance.now()} in the compiled client and with {@link System#nanoTime()} on the JVM.
+ *
+ * <p>Usage:
+ * <pre>
+ *   long start = GameMetrics.get().start();
+ *   ... work ...
+ *   GameMetrics.get().stop(GameMetrics.PARSE, "UpdateUI", start);
+ * </pre>
+ */
+public final class GameMetrics {
+  public static final String PARSE = "parse";
+  public static final String VERIFY = "verify";
+  public static final String UPDATE_UI = "updateUI";
+  public static final String RENDER = "render";
+  public static final String POST = "post";
+
+  private static GameMetrics instance = new GameMetrics(defaultTicker());
+
+  /**
+   * @return the metrics shared by the whole game.
+   */
+  public static GameMetrics get() {
+    return instance;
+  }
+
+  /**
+   * Replaces the shared metrics, e.g. with a fake {@link Ticker} in tests.
+   */
+  public static void set(GameMetrics gameMetrics) {
+    instance = gameMetrics;
+  }
+
+  private static Ticker defaultTicker() {
+    if (GWT.isScript()) {
+      return new Ticker() {
+        @Override
+        public long read() {
+          return (long) (performanceNow() * 1000000);
+        }
+      };
+    }
+    return Ticker.systemTicker();
+  }
+
+  private static native double performanceNow() /*-{
+    var perf = $wnd.performance;
+    return perf && perf.now ? perf.now() : new Date().getTime();
+  }-*/;
+
+  private final Ticker ticker;
+  /*
+   * Histograms by phase, then by message type.
+   */
+  private final Map<String, Map<String, Histogram>> histograms = Maps.newHashMap();
+
+  public GameMetrics(Ticker ticker) {
+    this.ticker = ticker;
+  }
+
+  /**
+   * @return the current time in nanoseconds, to be passed to {@link #stop}.
+   */
+  public long start() {
+    return ticker.read();
+  }
+
+  /**
+   * Records the time since {@code startNanos}, which was returned by {@link #start()}.
+   */
+  public void stop(String phase, String messageType, long startNanos) {
+    record(phase, messageType, ticker.read() - startNanos);
+  }
+
+  public synchronized void record(String phase, String messageType, long nanos) {
+    Map<String, Histogram> phaseHistograms = histograms.get(phase);
+    if (phaseHistograms == null) {
+      phaseHistograms = Maps.newHashMap();
+      histograms.put(phase, phaseHistograms);
+    }
+    Histogram histogram = phaseHistograms.get(messageType);
+    if (histogram == null) {
+      histogram = new Histogram();
+      phaseHistograms.put(messageType, histogram);
+    }
+    histogram.record(nanos);
+  }
+
+  /**
+   * @return a copy of the histogram of {@code phase} for {@code messageType}, which is not
+   * changed by the following recordings, or null if nothing is recorded yet.
+   */
+  public synchronized Histogram getHistogram(String phase, String messageType) {
+    Map<String, Histogram> phaseHistograms = histograms.get(phase);
+    Histogram histogram = phaseHistograms == null ? null : phaseHistograms.get(messageType);
+    return histogram == null ? null : new Histogram(histogram);
+  }
+
+  /**
+   * Exports all the histograms, keyed by "phase/messageType". Every value is a map with "count",
+   * "p50", "p99", "max" and "total" (in microseconds), so the snapshot can be sent like any other
+   * message with {@link GameApi.GameApiJsonHelper#getJsonStringFromMap}.
+   */
+  public synchronized Map<String, Object> snapshot() {
+    Map<String, Object> snapshot = Maps.newTreeMap();
+    for (Map.Entry<String, Map<String, Histogram>> phaseEntry : histograms.entrySet()) {
+      for (Map.Entry<String, Histogram> entry : phaseEntry.getValue().entrySet()) {
+        snapshot.put(phaseEntry.getKey() + "/" + entry.getKey(), entry.getValue().snapshot());
+      }
+    }
+    return snapshot;
+  }
+
+  public synchronized void reset() {
+    histograms.clear();
+  }
+
+  /**
+   * Latency histogram with logarithmic buckets: values under 16 microseconds have their own
+   * bucket, and every following power of two is split in 8 buckets.
+   */
+  public static final class Histogram {
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = LINEAR_BUCKETS + (31 - 4) * SUB_BUCKETS;
+
+    private final int[] buckets;
+    private int count;
+    private long totalMicros;
+    private int maxMicros;
+
+    public Histogram() {
+      buckets = new int[BUCKETS];
+    }
+
+    /**
+     * Copy of {@code other}.
+     */
+    public Histogram(Histogram other) {
+      buckets = other.buckets.clone();
+      count = other.count;
+      totalMicros = other.totalMicros;
+      maxMicros = other.maxMicros;
+    }
+
+    public void record(long nanos) {
+      int micros = (int) Math.min(Math.max(nanos / 1000, 0), Integer.MAX_VALUE);
+      buckets[bucketIndex(micros)]++;
+      count++;
+      totalMicros += micros;
+      maxMicros = Math.max(maxMicros, micros);
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public long getTotalMicros() {
+      return totalMicros;
+    }
+
+    public int getMaxMicros() {
+      return maxMicros;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile, in microseconds, 0 if
+     * nothing is recorded.
+     */
+    public int getPercentileMicros(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      int rank = Math.max(1, (int) Math.ceil(percentile / 100 * count));
+      int seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          return Math.min(bucketUpperBound(i), maxMicros);
+        }
+      }
+      return maxMicros;
+    }
+
+    Map<String, Object> snapshot() {
+      Map<String, Object> snapshot = Maps.newLinkedHashMap();
+      snapshot.put("count", count);
+      snapshot.put("p50", getPercentileMicros(50));
+      snapshot.put("p99", getPercentileMicros(99));
+      snapshot.put("max", maxMicros);
+      snapshot.put("total", (int) Math.min(totalMicros, Integer.MAX_VALUE));
+      return snapshot;
+    }
+
+    static int bucketIndex(int micros) {
+      if (micros < LINEAR_BUCKETS) {
+        return micros;
+      }
+      int exponent = 31 - Integer.numberOfLeadingZeros(micros);
+      int subBucket = (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    static int bucketUpperBound(int index) {
+      if (index < LINEAR_BUCKETS) {
+        return index;
+      }
+      int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+      int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+      long upperBound = ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+      return (int) Math.min(upperBound, Integer.MAX_VALUE);
+    }
+  }
+}
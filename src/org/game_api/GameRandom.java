@@ -0,0 +1,84 @@
+package org.game_api;
+
+/**
+ * Seeded splittable random generator (SplitMix64), used for SetRandomInteger and Shuffle so that
+ * a match replayed from its seed and its moves gives the same states, bit for bit, on the JVM and
+ * in the compiled client.
+ *
+ * <p>The same seed gives the same values as {@code java.util.SplittableRandom}, which is not
+ * available in GWT. {@link #split()} returns an independent generator, e.g. one per match from the
+ * generator of a load test.
+ */
+public final class GameRandom {
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private long seed;
+  private final long gamma;
+
+  public GameRandom(long seed) {
+    this(seed, GOLDEN_GAMMA);
+  }
+
+  private GameRandom(long seed, long gamma) {
+    this.seed = seed;
+    this.gamma = gamma;
+  }
+
+  /**
+   * @return a generator which continues with the same values as this one.
+   */
+  public GameRandom copy() {
+    return new GameRandom(seed, gamma);
+  }
+
+  /**
+   * @return a new generator, whose values are independent of the following values of this one.
+   */
+  public GameRandom split() {
+    return new GameRandom(mix64(nextSeed()), mixGamma(nextSeed()));
+  }
+
+  public long nextLong() {
+    return mix64(nextSeed());
+  }
+
+  /**
+   * @return a value from 0 (inclusive) to {@code bound} (exclusive), without modulo bias.
+   */
+  public int nextInt(int bound) {
+    if (bound <= 0) {
+      throw new IllegalArgumentException("bound must be positive: " + bound);
+    }
+    int r = mix32(nextSeed());
+    int m = bound - 1;
+    if ((bound & m) == 0) {
+      return r & m;
+    }
+    for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+    }
+    return r;
+  }
+
+  private long nextSeed() {
+    return seed += gamma;
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private static int mix32(long z) {
+    z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+    return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+  }
+
+  private static long mixGamma(long z) {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    z = (z ^ (z >>> 33)) | 1L;
+    // gammas with too few bit transitions give poorly mixed sequences.
+    return Long.bitCount(z ^ (z >>> 1)) < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+  }
+}
@@ -0,0 +1,68 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AbaloneLineMasksTest {
+
+	private int countLines(int length) {
+		int count = 0;
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			for(int direction = 0; direction < AbaloneGeometry.DIRECTION_COUNT; direction++) {
+				long line = AbaloneLineMasks.getLineMask(cell, direction, length);
+				if(line != 0) {
+					assertEquals(length, Long.bitCount(line));
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testLineCounts() {
+		// every line is counted once from each end.
+		assertEquals(2 * 156, countLines(2));
+		assertEquals(2 * 129, countLines(3));
+	}
+
+	@Test
+	public void testGroups() {
+		AbaloneCompactBoard board = new AbaloneCompactBoard(initialBoard, WTurn);
+		long white = board.getPieces(AbaloneCompactBoard.WHITE);
+		assertEquals(14, Long.bitCount(white));
+		// the corner starts two white pieces to the right, and three to the lower right.
+		assertTrue(AbaloneLineMasks.isLine(white, 0, 0, 2));
+		assertFalse(AbaloneLineMasks.isLine(white, 0, 0, 3));
+		assertTrue(AbaloneLineMasks.isLine(white, 0, 2, 3));
+		assertFalse(AbaloneLineMasks.isLine(white, 0, 1, 2));
+		assertFalse(AbaloneLineMasks.isLine(board.getPieces(AbaloneCompactBoard.BLACK), 0, 0, 2));
+	}
+
+	@Test
+	public void testPiecesFollowPlayedMoves() {
+		Random random = new Random(3);
+		AbaloneCompactBoard board = new AbaloneCompactBoard(initialBoard, WTurn);
+		int[] moves = new int[AbaloneCompactBoard.MAX_MOVES];
+		for(int ply = 0; ply < 200; ply++) {
+			int count = board.generateMoves(moves);
+			if(board.play(moves[random.nextInt(count)])) {
+				board = new AbaloneCompactBoard(initialBoard, WTurn);
+			}
+			for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+				assertTrue((board.getPieces(board.getCell(cell))
+						& AbaloneLineMasks.getCellMask(cell)) != 0);
+			}
+			assertEquals(AbaloneGeometry.CELL_COUNT, Long.bitCount(
+					board.getPieces(AbaloneCompactBoard.EMPTY) | board.getPieces(AbaloneCompactBoard.WHITE)
+					| board.getPieces(AbaloneCompactBoard.BLACK)));
+		}
+	}
+}
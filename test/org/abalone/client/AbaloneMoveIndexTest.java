@@ -0,0 +1,94 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.I;
+import static org.abalone.client.AbaloneConstants.S;
+import static org.abalone.client.AbaloneConstants.UNDERGOING;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbaloneMoveIndexTest {
+
+	@Test
+	public void testHoldableMatrix() {
+		AbaloneMoveIndex moveIndex = new AbaloneMoveIndex(initialBoard, WTurn);
+		int holdable = 0;
+		for(boolean[] row : moveIndex.getHoldableMatrix()) {
+			for(boolean square : row) {
+				holdable += square ? 1 : 0;
+			}
+		}
+		assertEquals(14, holdable);
+		assertTrue(moveIndex.getHoldableMatrix()[1][5]);
+		assertFalse(moveIndex.getHoldableMatrix()[1][11]);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPlacableMatrixAndJumps() {
+		AbaloneMoveIndex moveIndex = new AbaloneMoveIndex(initialBoard, WTurn);
+		boolean[][] placableMatrix = moveIndex.getPlacableMatrix(3, 7);
+		assertTrue(placableMatrix[3][7]);
+		assertTrue(placableMatrix[4][6]);
+		assertTrue(placableMatrix[4][8]);
+		assertTrue(placableMatrix[3][9]);
+		assertFalse(placableMatrix[2][6]);
+
+		// moving the rear piece of a line pushes the whole line.
+		Placement placement = moveIndex.getPlacement(1, 5, 2, 6);
+		assertEquals(UNDERGOING, placement.getMessage());
+		assertEquals(Lists.<ArrayList<Integer>>newArrayList(
+				Lists.newArrayList(3, 7, 4, 8, 0),
+				Lists.newArrayList(2, 6, 3, 7, 0),
+				Lists.newArrayList(1, 5, 2, 6, 0)), placement.getJumps());
+		assertNull(moveIndex.getPlacement(1, 5, 0, 4));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPushOutPlacement() {
+		List<ArrayList<String>> board =
+	  		Lists.<ArrayList<String>>newArrayList(
+	  				Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I),
+	  				Lists.<String>newArrayList(I, I, I, S, S, E, I, B, I, W, I, B, I, E, S, S, I, I, I),
+	  				Lists.<String>newArrayList(I, I, S, S, E, I, W, I, W, I, W, I, W, I, E, S, S, I, I),
+	  				Lists.<String>newArrayList(I, S, S, W, I, W, I, W, I, B, I, B, I, B, I, E, S, S, I),
+	  				Lists.<String>newArrayList(S, S, E, I, E, I, E, I, B, I, B, I, B, I, W, I, W, S, S),
+	  				Lists.<String>newArrayList(S, E, I, E, I, E, I, E, I, E, I, E, I, B, I, E, I, E, S),
+	  				Lists.<String>newArrayList(S, S, E, I, E, I, W, I, E, I, E, I, B, I, E, I, E, S, S),
+	  				Lists.<String>newArrayList(I, S, S, E, I, B, I, E, I, E, I, E, I, E, I, E, S, S, I),
+	  				Lists.<String>newArrayList(I, I, S, S, E, I, E, I, W, I, W, I, B, I, B, S, S, I, I),
+	  				Lists.<String>newArrayList(I, I, I, S, S, B, I, W, I, E, I, E, I, E, S, S, I, I, I),
+	  				Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I)
+	  		);
+		AbaloneMoveIndex moveIndex = new AbaloneMoveIndex(board, BTurn);
+		Placement placement = moveIndex.getPlacement(4, 8, 4, 10);
+		assertEquals(GAMEOVER, placement.getMessage());
+		assertEquals(Lists.<ArrayList<Integer>>newArrayList(
+				Lists.<Integer>newArrayList(4, 16, 4, 17, 0),
+				Lists.<Integer>newArrayList(4, 14, 4, 16, 0),
+				Lists.<Integer>newArrayList(4, 12, 4, 14, 1),
+				Lists.<Integer>newArrayList(4, 10, 4, 12, 1),
+				Lists.<Integer>newArrayList(4, 8, 4, 10, 1)), placement.getJumps());
+		// two pieces can not push two pieces.
+		assertNull(moveIndex.getPlacement(4, 10, 4, 12));
+		assertEquals(board.get(4).get(16), W);
+		assertEquals(board.get(4).get(8), B);
+	}
+}
@@ -3,13 +3,26 @@ package org.abalone.client;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.abalone.client.AbaloneComputeApi.ComputeCallback;
+import org.abalone.client.AbaloneComputeApi.ComputeChannel;
+import org.abalone.client.AbaloneComputeApi.ComputeRequest;
+import org.abalone.client.AbaloneComputeApi.LocalComputeChannel;
+import org.abalone.client.AbalonePresenter.View;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.IteratingPlayerContainer;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
 import org.junit.Test;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
 import com.google.common.collect.Lists;
 
 public class AbalonePresenterTest {
@@ -50,4 +63,101 @@ public class AbalonePresenterTest {
 			assertEquals(jumps.get(i), targetJumps.get(i));
 		}
 	}
+
+	/**
+	 * Method used to let white finish a round without jump, in a container driving the presenter.
+	 * @return the container, whose turn clock is the one sent by the presenter.
+	 */
+	private IteratingPlayerContainer finishRound(int secondsForBlack) {
+		// a view which ignores all the calls.
+		View view = (View) Proxy.newProxyInstance(View.class.getClassLoader(),
+				new Class<?>[] {View.class}, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return null;
+					}
+				});
+		return finishRound(secondsForBlack, Ticker.systemTicker(), view,
+				new LocalComputeChannel());
+	}
+
+	private IteratingPlayerContainer finishRound(int secondsForBlack, Ticker ticker, View view,
+			ComputeChannel computeChannel) {
+		final AbalonePresenter[] presenter = new AbalonePresenter[1];
+		IteratingPlayerContainer container = new IteratingPlayerContainer(new Game() {
+			@Override
+			public void sendVerifyMove(VerifyMove verifyMove) {
+			}
+
+			@Override
+			public void sendUpdateUI(UpdateUI updateUI) {
+				presenter[0].updateUI(updateUI);
+			}
+		}, 2, ticker);
+		presenter[0] = new AbalonePresenter(view, container, computeChannel);
+		if(secondsForBlack != AbalonePresenter.NO_TURN_CLOCK) {
+			presenter[0].setSecondsForTurn(container.getPlayerIds().get(1), secondsForBlack);
+		}
+		// white sends the initial move, then plays.
+		container.updateUi(container.getPlayerIds().get(0));
+		presenter[0].finishAllPlacing(false);
+		return container;
+	}
+
+	@Test
+	public void testNoTurnClockByDefault() {
+		assertEquals(-1, finishRound(AbalonePresenter.NO_TURN_CLOCK).getMillisLeftForTurn());
+	}
+
+	@Test
+	public void testTurnClockOfSeat() {
+		long millisLeft = finishRound(20).getMillisLeftForTurn();
+		assertTrue(millisLeft > 19000 && millisLeft <= 20000);
+	}
+
+	@Test
+	public void testMatchEndedOnTimeIsReadOnly() {
+		final long[] nanos = new long[1];
+		Ticker ticker = new Ticker() {
+			@Override
+			public long read() {
+				return nanos[0];
+			}
+		};
+		// a view which records the names of the calls, with the message of setPlayerState.
+		final List<String> calls = Lists.newArrayList();
+		View view = (View) Proxy.newProxyInstance(View.class.getClassLoader(),
+				new Class<?>[] {View.class}, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						calls.add(method.getName().equals("setPlayerState")
+								? method.getName() + " " + args[2] : method.getName());
+						return null;
+					}
+				});
+		final List<ComputeRequest> requests = Lists.newArrayList();
+		final int[] cancels = new int[1];
+		ComputeChannel computeChannel = new ComputeChannel() {
+			@Override
+			public void sendComputeRequest(ComputeRequest computeRequest,
+					ComputeCallback computeCallback) {
+				requests.add(computeRequest);
+			}
+
+			@Override
+			public void cancel() {
+				cancels[0]++;
+			}
+		};
+		IteratingPlayerContainer container = finishRound(20, ticker, view, computeChannel);
+		String black = container.getPlayerIds().get(1);
+		nanos[0] = 21 * 1000000000L;
+		calls.clear();
+		int cancelsBefore = cancels[0];
+		container.updateUi(black);
+		assertEquals(black, container.getTimedOutPlayerId());
+		assertEquals(Lists.newArrayList("setPlayerState " + AbaloneConstants.GAMEOVER), calls);
+		assertTrue(requests.isEmpty());
+		assertEquals(cancelsBefore + 1, cancels[0]);
+	}
 }
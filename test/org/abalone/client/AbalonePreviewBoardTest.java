@@ -0,0 +1,70 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbalonePreviewBoardTest {
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testApplyAndUndo() {
+		AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(initialBoard);
+		AbaloneMoveIndex moveIndex = new AbaloneMoveIndex(initialBoard, WTurn);
+		List<ArrayList<Integer>> lineJumps = moveIndex.getPlacement(1, 5, 2, 6).getJumps();
+
+		previewBoard.apply(lineJumps);
+		previewBoard.apply(Lists.<ArrayList<Integer>>newArrayList(
+				Lists.newArrayList(2, 4, 3, 5, 0)));
+		AbaloneState applied = new AbaloneState(WTurn, Lists.<String>newArrayList(), initialBoard,
+				Lists.<ArrayList<Integer>>newArrayList(), null)
+				.applyJumpOnBoard(lineJumps);
+		assertEquals(E, previewBoard.getBoard().get(2).get(4));
+		assertEquals(W, previewBoard.getBoard().get(3).get(5));
+		assertEquals(4, previewBoard.getJumps().size());
+		assertEquals(Lists.newArrayList(2, 4, 3, 5, 0), previewBoard.getLastJump());
+
+		previewBoard.undo();
+		assertEquals(applied.getBoard(), previewBoard.getBoard());
+		assertEquals(lineJumps, previewBoard.getJumps());
+		assertEquals(Lists.newArrayList(1, 5, 2, 6, 0), previewBoard.getLastJump());
+
+		previewBoard.undo();
+		assertTrue(previewBoard.isEmpty());
+		assertNull(previewBoard.getLastJump());
+		assertEquals(initialBoard, previewBoard.getBoard());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testUndoPushOut() {
+		List<ArrayList<String>> startBoard = Lists.newArrayList();
+		for(ArrayList<String> row : initialBoard) {
+			startBoard.add(Lists.newArrayList(row));
+		}
+		startBoard.get(5).set(1, B);
+		startBoard.get(5).set(3, W);
+		startBoard.get(5).set(5, W);
+		AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(startBoard);
+		List<ArrayList<Integer>> pushJumps = new AbaloneMoveIndex(startBoard, WTurn)
+				.getPlacement(5, 5, 5, 3).getJumps();
+		assertEquals(Lists.newArrayList(5, 1, 5, 0, 1), pushJumps.get(0));
+
+		previewBoard.apply(pushJumps);
+		assertEquals(B, previewBoard.getBoard().get(5).get(0));
+		previewBoard.undo();
+		assertEquals(startBoard, previewBoard.getBoard());
+	}
+}
@@ -0,0 +1,90 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.I;
+import static org.abalone.client.AbaloneConstants.S;
+import static org.abalone.client.AbaloneConstants.UNDERGOING;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.abalone.client.AbalonePushOutSolver.Proof;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbalonePushOutSolverTest {
+
+	/*
+	 * Black pushes the white piece at (6, 14) to the edge, and pushes it out next round whatever
+	 * white does.
+	 */
+	@SuppressWarnings("unchecked")
+	private final List<ArrayList<String>> forcedBoard =
+			Lists.<ArrayList<String>>newArrayList(
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, E, I, E, I, W, I, B, I, B, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, S, S, W, I, E, I, W, I, B, I, B, I, E, S, S, I, I),
+					Lists.<String>newArrayList(I, S, S, W, I, E, I, W, I, E, I, E, I, E, I, B, S, S, I),
+					Lists.<String>newArrayList(S, S, W, I, E, I, B, I, W, I, E, I, B, I, E, I, E, S, S),
+					Lists.<String>newArrayList(S, E, I, E, I, E, I, E, I, E, I, E, I, B, I, E, I, E, S),
+					Lists.<String>newArrayList(S, S, E, I, E, I, E, I, E, I, B, I, B, I, W, I, W, S, S),
+					Lists.<String>newArrayList(I, S, S, B, I, E, I, E, I, E, I, W, I, E, I, E, S, S, I),
+					Lists.<String>newArrayList(I, I, S, S, B, I, B, I, W, I, W, I, E, I, E, S, S, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, B, I, E, I, E, I, W, I, W, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I));
+
+	@Test
+	public void testProvesForcedPushOut() {
+		assertTrue(AbalonePushOutSolver.isSharp(forcedBoard, BTurn));
+		AbalonePushOutSolver solver = new AbalonePushOutSolver(forcedBoard, BTurn);
+		assertEquals(Proof.PROVEN, solver.solve(5, 20000));
+		assertEquals(3, solver.getProofPlies());
+		assertEquals(UNDERGOING, solver.getWinningPlacement().getMessage());
+		assertEquals(Lists.newArrayList(4, 12, 5, 13, 1), solver.getWinningPlacement().getHeldJump());
+		// one round is not enough.
+		assertEquals(Proof.DISPROVEN, new AbalonePushOutSolver(forcedBoard, BTurn).solve(1, 20000));
+	}
+
+	@Test
+	public void testSearchUsesSolver() {
+		AbaloneSearch search = new AbaloneSearch(forcedBoard, BTurn);
+		AbaloneSearch.Result result = search.search(6, 100000);
+		assertTrue(search.isDecided());
+		assertEquals(3, result.getDepth());
+		assertEquals(AbaloneSearch.WIN_SCORE - 2, result.getScore());
+		assertEquals(Lists.newArrayList(4, 12, 5, 13, 1), result.getBestPlacement().getHeldJump());
+	}
+
+	@Test
+	public void testImmediatePushOut() {
+		List<ArrayList<String>> board = Lists.newArrayList();
+		for(ArrayList<String> row : forcedBoard) {
+			board.add(Lists.newArrayList(row));
+		}
+		// the white piece is already on the edge, in front of a line of three black pieces.
+		board.get(6).set(14, B);
+		board.get(7).set(15, W);
+		AbalonePushOutSolver solver = new AbalonePushOutSolver(board, BTurn);
+		assertEquals(Proof.PROVEN, solver.solve(5, 20000));
+		assertEquals(1, solver.getProofPlies());
+		assertEquals(GAMEOVER, solver.getWinningPlacement().getMessage());
+	}
+
+	@Test
+	public void testQuietPosition() {
+		assertFalse(AbalonePushOutSolver.isSharp(initialBoard, WTurn));
+		AbalonePushOutSolver solver = new AbalonePushOutSolver(initialBoard, WTurn);
+		assertEquals(Proof.DISPROVEN, solver.solve(5, 20000));
+		assertEquals(0, solver.getProofPlies());
+	}
+}
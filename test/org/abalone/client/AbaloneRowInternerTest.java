@@ -0,0 +1,81 @@
+package org.abalone.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbaloneRowInternerTest {
+	private static ArrayList<String> row(int number) {
+		ArrayList<String> row = Lists.newArrayList();
+		for(int bit = 0; bit < 11; bit++) {
+			row.add((number >> bit & 1) == 0 ? AbaloneConstants.E : AbaloneConstants.W);
+		}
+		return row;
+	}
+
+	@Test
+	public void testEqualRowsAreShared() {
+		ArrayList<String> first = AbaloneRowInterner.intern(row(1234));
+		ArrayList<String> second = AbaloneRowInterner.intern(row(1234));
+		assertSame(first, second);
+		assertEquals(row(1234), second);
+	}
+
+	@Test
+	public void testInternedRowIsACopy() {
+		ArrayList<String> row = row(4321);
+		ArrayList<String> internedRow = AbaloneRowInterner.intern(row);
+		row.set(0, AbaloneConstants.B);
+		assertEquals(row(4321), internedRow);
+		assertSame(internedRow, AbaloneRowInterner.intern(row(4321)));
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void testBoardOfOtherLists() {
+		// e.g. a board parsed from JSON, seen through an unchecked cast.
+		List<ArrayList<String>> board = (List) Lists.newArrayList(
+				Collections.unmodifiableList(row(5)), Arrays.asList(row(6).toArray(new String[0])));
+		List<ArrayList<String>> internedBoard = AbaloneRowInterner.internBoard(board);
+		assertEquals(Lists.newArrayList(row(5), row(6)), internedBoard);
+		assertSame(AbaloneRowInterner.intern(row(5)), internedBoard.get(0));
+	}
+
+	@Test
+	public void testConcurrentInternsShareOneRow() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<List<ArrayList<String>>>> futures = Lists.newArrayList();
+		for(int thread = 0; thread < 4; thread++) {
+			futures.add(executor.submit(new Callable<List<ArrayList<String>>>() {
+				@Override
+				public List<ArrayList<String>> call() {
+					List<ArrayList<String>> rows = Lists.newArrayList();
+					for(int number = 0; number < 200; number++) {
+						rows.add(AbaloneRowInterner.intern(row(number)));
+					}
+					return rows;
+				}
+			}));
+		}
+		List<ArrayList<String>> rows = futures.get(0).get();
+		for(Future<List<ArrayList<String>>> future : futures) {
+			List<ArrayList<String>> threadRows = future.get();
+			for(int number = 0; number < 200; number++) {
+				assertSame(rows.get(number), threadRows.get(number));
+			}
+		}
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,143 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.I;
+import static org.abalone.client.AbaloneConstants.S;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.abalone.client.AbaloneComputeApi.ComputeCallback;
+import org.abalone.client.AbaloneComputeApi.ComputeDone;
+import org.abalone.client.AbaloneComputeApi.ComputeRequest;
+import org.abalone.client.AbaloneComputeApi.LocalComputeChannel;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbaloneSearchTest {
+
+	@SuppressWarnings("unchecked")
+	private final List<ArrayList<String>> pushOutBoard =
+			Lists.<ArrayList<String>>newArrayList(
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, E, I, B, I, W, I, B, I, E, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, S, S, E, I, W, I, W, I, W, I, W, I, E, S, S, I, I),
+					Lists.<String>newArrayList(I, S, S, W, I, W, I, W, I, B, I, B, I, B, I, E, S, S, I),
+					Lists.<String>newArrayList(S, S, E, I, E, I, E, I, B, I, B, I, B, I, W, I, W, S, S),
+					Lists.<String>newArrayList(S, E, I, E, I, E, I, E, I, E, I, E, I, B, I, E, I, E, S),
+					Lists.<String>newArrayList(S, S, E, I, E, I, W, I, E, I, E, I, B, I, E, I, E, S, S),
+					Lists.<String>newArrayList(I, S, S, E, I, B, I, E, I, E, I, E, I, E, I, E, S, S, I),
+					Lists.<String>newArrayList(I, I, S, S, E, I, E, I, W, I, W, I, B, I, B, S, S, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, B, I, W, I, E, I, E, I, E, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I));
+
+	@Test
+	public void testSearchFindsPushOut() {
+		AbaloneSearch search = new AbaloneSearch(pushOutBoard, BTurn);
+		AbaloneSearch.Result result = search.search(3, 10000);
+		assertEquals(GAMEOVER, result.getBestPlacement().getMessage());
+		assertEquals(AbaloneSearch.WIN_SCORE, result.getScore());
+		assertEquals(1, result.getDepth());
+		assertTrue(search.isDecided());
+		// the searched board is not changed.
+		assertEquals(W, pushOutBoard.get(4).get(16));
+	}
+
+	@Test
+	public void testSearchInitialBoard() {
+		AbaloneSearch search = new AbaloneSearch(initialBoard, WTurn);
+		assertTrue(search.searchNextDepth());
+		assertTrue(search.searchNextDepth());
+		AbaloneSearch.Result result = search.getResult();
+		assertEquals(2, result.getDepth());
+		assertEquals(2, result.getPrincipalVariation().size());
+		assertFalse(search.isDecided());
+		search.cancel();
+		assertFalse(search.searchNextDepth());
+		assertEquals(result, search.getResult());
+	}
+
+	@Test
+	public void testComputeMessages() {
+		final List<ComputeDone> answers = Lists.newArrayList();
+		ComputeRequest request = new ComputeRequest(7, AbaloneComputeApi.HINT, pushOutBoard, BTurn,
+				2, 10000);
+		assertEquals(request, AbaloneComputeApi.messageToComputeMessage(request.toMessage()));
+		new LocalComputeChannel().sendComputeRequest(request, new ComputeCallback() {
+			@Override
+			public void computeDone(ComputeDone computeDone) {
+				answers.add(computeDone);
+			}
+		});
+		ComputeDone computeDone = answers.get(0);
+		assertEquals(7, computeDone.getRequestId());
+		assertEquals(GAMEOVER, computeDone.getMessage());
+		assertEquals(Lists.newArrayList(4, 8, 4, 10, 1),
+				computeDone.getJumps().get(computeDone.getJumps().size() - 1));
+		assertEquals(computeDone, AbaloneComputeApi.messageToComputeMessage(computeDone.toMessage()));
+
+		ComputeDone moves = new AbaloneComputeApi.ComputeService().compute(new ComputeRequest(8,
+				AbaloneComputeApi.MOVES, initialBoard, WTurn, 0, 0));
+		assertNotNull(moves.getMoves());
+		assertEquals(AbaloneMoveIndex.getPlacements(initialBoard, WTurn).size(),
+				moves.getMoves().size());
+	}
+
+	@Test
+	public void testTranspositionTableReuse() {
+		AbaloneTranspositionTable transpositionTable = new AbaloneTranspositionTable(16);
+		AbaloneSearch.Result first = new AbaloneSearch(initialBoard, WTurn, transpositionTable)
+				.search(3, 100000);
+		AbaloneSearch.Result second = new AbaloneSearch(initialBoard, WTurn, transpositionTable)
+				.search(3, 100000);
+		assertEquals(3, second.getDepth());
+		assertEquals(first.getScore(), second.getScore());
+		assertTrue(second.getNodes() < first.getNodes());
+	}
+
+	@Test
+	public void testPonder() {
+		AbaloneComputeApi.ComputeService computeService = new AbaloneComputeApi.ComputeService();
+		assertFalse(computeService.ponder(10));
+		computeService.startPondering(new ComputeRequest(1, AbaloneComputeApi.PONDER, initialBoard,
+				WTurn, 2, 0));
+		while(computeService.ponder(10)) {
+			// one slice after the other, as in the worker.
+		}
+		ComputeDone computeDone = computeService.compute(new ComputeRequest(2,
+				AbaloneComputeApi.AI_MOVE, initialBoard, WTurn, 2, 1000));
+		assertEquals(1, computeService.getPonderHits());
+		assertEquals(0, computeService.getPonderMisses());
+		assertEquals(2, computeDone.getDepth());
+
+		computeService.startPondering(new ComputeRequest(3, AbaloneComputeApi.PONDER, initialBoard,
+				BTurn, 2, 0));
+		computeService.ponder(1000);
+		computeService.compute(new ComputeRequest(4, AbaloneComputeApi.AI_MOVE, initialBoard,
+				WTurn, 1, 1000));
+		assertEquals(1, computeService.getPonderHits());
+		assertEquals(1, computeService.getPonderMisses());
+	}
+
+	@Test
+	public void testNotPonderedIsNoHit() {
+		AbaloneComputeApi.ComputeService computeService = new AbaloneComputeApi.ComputeService();
+		computeService.startPondering(new ComputeRequest(1, AbaloneComputeApi.PONDER, initialBoard,
+				WTurn, 2, 0));
+		computeService.compute(new ComputeRequest(2, AbaloneComputeApi.AI_MOVE, initialBoard,
+				WTurn, 2, 1000));
+		assertEquals(0, computeService.getPonderHits());
+		assertEquals(0, computeService.getPonderMisses());
+	}
+}
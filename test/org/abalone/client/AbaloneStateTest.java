@@ -11,6 +11,8 @@ import static org.abalone.client.AbaloneConstants.W;
 import static org.abalone.client.AbaloneConstants.WTurn;
 import static org.abalone.client.AbaloneConstants.initialBoard;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -55,6 +57,32 @@ public class AbaloneStateTest {
 		
 	}
 	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testApplyJumpSharesRows() {
+		List<ArrayList<Integer>> jumps = Lists.<ArrayList<Integer>>newArrayList(
+				Lists.newArrayList(7, 7, 6, 8, 1), 
+				Lists.newArrayList(8, 6, 7, 7, 1));
+		AbaloneState startState = new AbaloneState(WTurn, Lists.newArrayList("0", "1"), 
+				AbaloneConstants.initialBoard, Lists.<ArrayList<Integer>>newArrayList(), null);
+		
+		AbaloneState endState = startState.applyJumpOnBoard(jumps);
+		AbaloneState sameEndState = startState.applyJumpOnBoard(jumps);
+		
+		for(int i = 0; i < initialBoard.size(); i++) {
+			if(i == 6 || i == 8) {
+				assertNotSame(initialBoard.get(i), endState.getBoard().get(i));
+			} else if(i != 7) {
+				// row 7 is copied, but ends as it was.
+				assertSame(initialBoard.get(i), endState.getBoard().get(i));
+			}
+			// the changed rows are interned.
+			assertSame(endState.getBoard().get(i), sameEndState.getBoard().get(i));
+		}
+		assertEquals(B, initialBoard.get(8).get(6));
+		assertEquals(E, initialBoard.get(6).get(8));
+	}
+	
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testIsGameEnd() {
@@ -0,0 +1,121 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbaloneSymmetry.Canonical;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class AbaloneSymmetryTest {
+
+	@Test
+	public void testGeometry() {
+		assertEquals(0, AbaloneGeometry.getCell(1, 5));
+		assertEquals(30, AbaloneGeometry.getCell(5, 9));
+		assertEquals(60, AbaloneGeometry.getCell(9, 13));
+		assertEquals(-1, AbaloneGeometry.getCell(0, 4));
+		assertEquals(-1, AbaloneGeometry.getCell(5, 10));
+		assertEquals(0, AbaloneGeometry.getDistanceToCenter(30));
+		assertEquals(4, AbaloneGeometry.getDistanceToCenter(0));
+	}
+
+	@Test
+	public void testNeighborsAndRays() {
+		// the center has six neighbors, the rays reach the edge four cells away.
+		for(int direction = 0; direction < AbaloneGeometry.DIRECTION_COUNT; direction++) {
+			int neighbor = AbaloneGeometry.getNeighbor(30, direction);
+			assertEquals(1, AbaloneGeometry.getDistanceToCenter(neighbor));
+			assertEquals(30, AbaloneGeometry.getNeighbor(neighbor, AbaloneGeometry.getOpposite(direction)));
+			assertEquals(direction, AbaloneGeometry.getDirection(30, neighbor));
+			assertEquals(4, AbaloneGeometry.getRay(30, direction).length);
+			assertEquals(neighbor, AbaloneGeometry.getRay(30, direction)[0]);
+			assertEquals(AbaloneGeometry.OFF_BOARD,
+					AbaloneGeometry.getNeighbor(AbaloneGeometry.OFF_BOARD, direction));
+		}
+		assertEquals(AbaloneGeometry.getCell(5, 11), AbaloneGeometry.getNeighbor(30, 0));
+		assertEquals(AbaloneGeometry.getCell(6, 10), AbaloneGeometry.getNeighbor(30, 2));
+		assertEquals(AbaloneGeometry.getCell(4, 10), AbaloneGeometry.getNeighbor(30, 4));
+		// the corner of the first row is on the edge to the left, up and up right.
+		assertEquals(AbaloneGeometry.OFF_BOARD, AbaloneGeometry.getNeighbor(0, 1));
+		assertEquals(AbaloneGeometry.OFF_BOARD, AbaloneGeometry.getNeighbor(0, 3));
+		assertEquals(AbaloneGeometry.OFF_BOARD, AbaloneGeometry.getNeighbor(0, 4));
+		assertEquals(8, AbaloneGeometry.getRay(0, 2).length);
+		assertEquals(-1, AbaloneGeometry.getDirection(30, 0));
+		assertEquals(1, AbaloneGeometry.getDirection(5, 9, 5, 8));
+		assertEquals(5, AbaloneGeometry.getDirection(5, 9, 6, 8));
+	}
+
+	@Test
+	public void testTransformsArePermutations() {
+		Set<List<Integer>> transforms = Sets.newHashSet();
+		for(int transform = 0; transform < AbaloneSymmetry.TRANSFORM_COUNT; transform++) {
+			List<Integer> cells = Lists.newArrayList();
+			for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+				int transformedCell = AbaloneSymmetry.transformCell(cell, transform);
+				assertTrue(transformedCell >= 0);
+				assertEquals(cell, AbaloneSymmetry.transformCell(transformedCell,
+						AbaloneSymmetry.inverse(transform)));
+				cells.add(transformedCell);
+			}
+			assertEquals(AbaloneGeometry.CELL_COUNT, Sets.newHashSet(cells).size());
+			transforms.add(cells);
+		}
+		assertEquals(AbaloneSymmetry.TRANSFORM_COUNT, transforms.size());
+	}
+
+	@Test
+	public void testEquivalentPositionsHaveTheSameKey() {
+		Canonical canonical = AbaloneSymmetry.canonicalize(initialBoard, WTurn);
+		for(int transform = 0; transform < AbaloneSymmetry.TRANSFORM_COUNT; transform++) {
+			List<ArrayList<String>> transformedBoard = transformBoard(initialBoard, transform);
+			assertEquals(canonical.getKey(),
+					AbaloneSymmetry.canonicalize(transformedBoard, WTurn).getKey());
+		}
+		// the canonical board is its own canonical form.
+		assertEquals(canonical.getKey(),
+				AbaloneSymmetry.canonicalize(canonical.getBoard(), WTurn).getKey());
+	}
+
+	@Test
+	public void testJumpsAreMappedToLegalPlacements() {
+		for(String turn : new String[]{WTurn, BTurn}) {
+			Canonical canonical = AbaloneSymmetry.canonicalize(initialBoard, turn);
+			AbaloneMoveIndex canonicalIndex = new AbaloneMoveIndex(canonical.getBoard(), WTurn);
+			for(Placement placement : AbaloneMoveIndex.getPlacements(initialBoard, turn)) {
+				List<ArrayList<Integer>> jumps = canonical.toCanonical(placement.getJumps());
+				List<Integer> heldJump = jumps.get(jumps.size() - 1);
+				Placement canonicalPlacement = canonicalIndex.getPlacement(
+						heldJump.get(0), heldJump.get(1), heldJump.get(2), heldJump.get(3));
+				assertNotNull(canonicalPlacement);
+				assertEquals(canonicalPlacement.getJumps(), jumps);
+				assertEquals(placement.getJumps(), canonical.fromCanonical(jumps));
+			}
+		}
+	}
+
+	private List<ArrayList<String>> transformBoard(List<ArrayList<String>> board, int transform) {
+		List<ArrayList<String>> transformedBoard = Lists.newArrayList();
+		for(ArrayList<String> row : board) {
+			transformedBoard.add(Lists.newArrayList(row));
+		}
+		for(int cell = 0; cell < AbaloneGeometry.CELL_COUNT; cell++) {
+			int transformedCell = AbaloneSymmetry.transformCell(cell, transform);
+			transformedBoard.get(AbaloneGeometry.getRow(transformedCell)).set(
+					AbaloneGeometry.getColumn(transformedCell),
+					board.get(AbaloneGeometry.getRow(cell)).get(AbaloneGeometry.getColumn(cell)));
+		}
+		return transformedBoard;
+	}
+}
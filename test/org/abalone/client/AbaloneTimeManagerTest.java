@@ -0,0 +1,59 @@
+package org.abalone.client;
+
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbaloneTimeManagerTest {
+	private final List<Placement> placements = AbaloneMoveIndex.getPlacements(initialBoard, WTurn);
+
+	private AbaloneSearch.Result result(int placement, int score, int depth) {
+		return new AbaloneSearch.Result(Lists.newArrayList(placements.get(placement)), score, depth, 0);
+	}
+
+	@Test
+	public void testBudget() {
+		AbaloneTimeManager timeManager = new AbaloneTimeManager(0, 10500);
+		assertEquals(8500, timeManager.getHardDeadline());
+		assertEquals(4000, timeManager.getSoftDeadline());
+		// no time at all is left after the overhead.
+		assertEquals(1000, new AbaloneTimeManager(1000, 300).getHardDeadline());
+	}
+
+	@Test
+	public void testStableBestPlacementStopsEarly() {
+		AbaloneTimeManager timeManager = new AbaloneTimeManager(0, 10500);
+		assertTrue(timeManager.shouldSearchDeeper(result(0, 10, 1), 10));
+		assertTrue(timeManager.shouldSearchDeeper(result(0, 10, 2), 100));
+		// the same placement for two more depths: the soft budget is halved to 2000.
+		assertFalse(timeManager.shouldSearchDeeper(result(0, 12, 3), 2100));
+		assertEquals(2000, timeManager.getSoftDeadline());
+	}
+
+	@Test
+	public void testVolatilePositionIsExtended() {
+		AbaloneTimeManager timeManager = new AbaloneTimeManager(0, 10500);
+		assertTrue(timeManager.shouldSearchDeeper(result(0, 10, 1), 10));
+		assertTrue(timeManager.shouldSearchDeeper(result(1, 10, 2), 100));
+		assertEquals(7200, timeManager.getSoftDeadline());
+		assertTrue(timeManager.shouldSearchDeeper(result(1, -50, 3), 500));
+		assertEquals(7200, timeManager.getSoftDeadline());
+	}
+
+	@Test
+	public void testDepthWhichCanNotFinishIsNotStarted() {
+		AbaloneTimeManager timeManager = new AbaloneTimeManager(0, 10500);
+		assertTrue(timeManager.shouldSearchDeeper(result(0, 10, 1), 100));
+		// the last depth took 10 times longer than the one before, the next one would end at 11100.
+		assertFalse(timeManager.shouldSearchDeeper(result(1, 10, 2), 1100));
+	}
+}
@@ -0,0 +1,203 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BOARD;
+import static org.abalone.client.AbaloneConstants.JUMP;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.abalone.client.AbaloneLogic;
+import org.abalone.client.AbaloneVerifier;
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbalonePreviewBoard;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.IteratingPlayerContainer;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class AbaloneBatchVerifierTest {
+	private final AbaloneBatchVerifier verifier = new AbaloneBatchVerifier(4);
+	private VerifyMove lastVerifyMove;
+	private final IteratingPlayerContainer container = new IteratingPlayerContainer(new Game() {
+		@Override
+		public void sendVerifyMove(VerifyMove verifyMove) {
+			lastVerifyMove = verifyMove;
+		}
+
+		@Override
+		public void sendUpdateUI(UpdateUI updateUI) {
+		}
+	}, 2);
+
+	@After
+	public void shutdown() {
+		verifier.shutdown();
+	}
+
+	/**
+	 * Method used to play the initial move and one move of white, whose board is changed if
+	 * {@code isHacked}.
+	 * @return the VerifyMove of the move of white.
+	 */
+	private VerifyMove verifyMoveOfFirstRound(int placementIndex, boolean isHacked) {
+		List<String> playerIds = container.getPlayerIds();
+		container.updateUi(playerIds.get(0));
+		container.sendMakeMove(new AbaloneLogic().getInitialMove(playerIds));
+		Placement placement = AbaloneMoveIndex.getPlacements(initialBoard, WTurn).get(placementIndex);
+		AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(initialBoard);
+		previewBoard.apply(placement.getJumps());
+		List<ArrayList<String>> board = Lists.newArrayList();
+		for(ArrayList<String> row : previewBoard.getBoard()) {
+			board.add(Lists.newArrayList(row));
+		}
+		if(isHacked) {
+			// a piece of white appears in the center, which no first move reaches.
+			board.get(5).set(9, W);
+		}
+		container.updateUi(playerIds.get(0));
+		container.sendMakeMove(Lists.<Operation>newArrayList(
+				new SetTurn(playerIds.get(1)),
+				new Set(BOARD, board),
+				new Set(JUMP, Lists.newArrayList(previewBoard.getJumps()))));
+		return lastVerifyMove;
+	}
+
+	private List<VerifyMove> batch() {
+		List<VerifyMove> batch = Lists.newArrayList();
+		for(int i = 0; i < 12; i++) {
+			batch.add(verifyMoveOfFirstRound(i, i % 3 == 1));
+		}
+		return batch;
+	}
+
+	private void assertResults(List<VerifyMoveDone> results) {
+		assertEquals(12, results.size());
+		for(int i = 0; i < results.size(); i++) {
+			if(i % 3 == 1) {
+				assertEquals(container.getPlayerIds().get(0), results.get(i).getHackerPlayerId());
+			} else {
+				assertNull(results.get(i).getHackerPlayerId());
+			}
+		}
+	}
+
+	@Test
+	public void testVerifyInOrder() {
+		assertResults(verifier.verify(batch()));
+	}
+
+	@Test
+	public void testOneThreadVerifiesOnTheCallingThread() {
+		final AbaloneLogic logic = new AbaloneLogic();
+		final java.util.Set<Thread> threads = Sets.newHashSet();
+		AbaloneBatchVerifier callingThreadVerifier = new AbaloneBatchVerifier(1, new AbaloneVerifier() {
+			@Override
+			public VerifyMoveDone verify(VerifyMove verifyMove) {
+				threads.add(Thread.currentThread());
+				return logic.verify(verifyMove);
+			}
+		});
+		assertResults(callingThreadVerifier.verify(batch()));
+		assertEquals(Sets.newHashSet(Thread.currentThread()), threads);
+		callingThreadVerifier.shutdown();
+	}
+
+	@Test
+	public void testJsonBatch() throws IOException {
+		StringBuilder json = new StringBuilder("[");
+		for(VerifyMove verifyMove : batch()) {
+			json.append(json.length() > 1 ? "," : "").append(AbaloneMessageJson.toJson(verifyMove));
+		}
+		json.append(']');
+		List<VerifyMove> verifyMoves =
+				AbaloneBatchVerifier.readJsonBatch(new StringReader(json.toString()));
+		assertEquals(batch(), verifyMoves);
+		StringWriter output = new StringWriter();
+		AbaloneBatchVerifier.writeJsonResults(output, verifier.verify(verifyMoves));
+		List<VerifyMoveDone> results = Lists.newArrayList();
+		for(Object result : (List<?>) AbaloneMessageJson.parse(output.toString())) {
+			@SuppressWarnings("unchecked")
+			VerifyMoveDone verifyMoveDone = (VerifyMoveDone) AbaloneMessageJson.toMessage(
+					(java.util.Map<String, Object>) result);
+			results.add(verifyMoveDone);
+		}
+		assertResults(results);
+	}
+
+	@Test
+	public void testBinaryBatch() throws IOException {
+		ByteArrayOutputStream request = new ByteArrayOutputStream();
+		AbaloneBatchVerifier.writeBinaryBatch(request, batch());
+		List<VerifyMove> verifyMoves = AbaloneBatchVerifier.readBinaryBatch(
+				new ByteArrayInputStream(request.toByteArray()));
+		assertEquals(batch(), verifyMoves);
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		AbaloneBatchVerifier.writeBinaryResults(response, verifier.verify(verifyMoves));
+		assertResults(AbaloneBatchVerifier.readBinaryResults(
+				new ByteArrayInputStream(response.toByteArray())));
+	}
+
+	@Test
+	public void testMessageEncodedOnce() {
+		VerifyMove verifyMove = verifyMoveOfFirstRound(0, false);
+		assertSame(AbaloneMessageJson.toJsonBytes(verifyMove), AbaloneMessageJson.toJsonBytes(verifyMove));
+		assertEquals(AbaloneMessageJson.toJson(verifyMove),
+				new String(AbaloneMessageJson.toJsonBytes(verifyMove), StandardCharsets.UTF_8));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotVerifyMove() throws IOException {
+		AbaloneBatchVerifier.readJsonBatch(new StringReader(
+				"[" + AbaloneMessageJson.toJson(new VerifyMoveDone()) + "]"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformedJson() throws IOException {
+		AbaloneBatchVerifier.readJsonBatch(new StringReader("[{\"type\": \"VerifyMove\""));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDeepJson() throws IOException {
+		// would overflow the stack of the parser.
+		AbaloneBatchVerifier.readJsonBatch(new StringReader(Strings.repeat("[", 100000)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLongJson() throws IOException {
+		AbaloneBatchVerifier.readJsonBatch(new StringReader(
+				"[" + Strings.repeat(" ", AbaloneBatchVerifier.MAX_BATCH_SIZE) + "]"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManyJsonMoves() throws IOException {
+		String verifyMove = AbaloneMessageJson.toJson(verifyMoveOfFirstRound(0, false));
+		StringBuilder json = new StringBuilder("[");
+		for(int i = 0; i <= AbaloneBatchVerifier.MAX_BATCH; i++) {
+			json.append(i == 0 ? "" : ",").append(verifyMove);
+		}
+		AbaloneBatchVerifier.readJsonBatch(new StringReader(json.append("]").toString()));
+	}
+}
@@ -0,0 +1,222 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.abalone.client.AbaloneCompactBoard;
+import org.abalone.client.AbaloneGeometry;
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbalonePreviewBoard;
+import org.abalone.server.AbaloneArchive.ArchiveReader;
+import org.abalone.server.AbaloneArchive.ArchiveWriter;
+import org.abalone.server.AbaloneBinaryRecords.BinaryRecordReader;
+import org.abalone.server.AbaloneBinaryRecords.BinaryRecordWriter;
+import org.abalone.server.AbaloneTextRecords.TextRecordReader;
+import org.abalone.server.AbaloneTextRecords.TextRecordWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+
+public class AbaloneGameRecordTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * Method used to play a random game, some rounds also move a second piece into the square
+	 * left by the first placement.
+	 */
+	private List<List<ArrayList<Integer>>> playRandomGame(Random random, int maxRounds) {
+		List<List<ArrayList<Integer>>> rounds = Lists.newArrayList();
+		List<ArrayList<String>> board = initialBoard;
+		String turn = WTurn;
+		for(int round = 0; round < maxRounds; round++) {
+			List<Placement> placements = AbaloneMoveIndex.getPlacements(board, turn);
+			Placement placement = placements.get(random.nextInt(placements.size()));
+			AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+			previewBoard.apply(placement.getJumps());
+			if(placement.getMessage().equals(GAMEOVER)) {
+				rounds.add(Lists.newArrayList(previewBoard.getJumps()));
+				break;
+			}
+			List<Integer> heldJump = placement.getHeldJump();
+			int leftCell = AbaloneGeometry.getCell(heldJump.get(0), heldJump.get(1));
+			String color = turn.equals(WTurn) ? W : B;
+			for(int direction = 0; direction < AbaloneCompactBoard.DIRECTION_COUNT; direction++) {
+				int cell = AbaloneGeometry.getNeighbor(leftCell, direction);
+				if(random.nextBoolean() && cell != AbaloneGeometry.OFF_BOARD && previewBoard.getBoard().get(
+						AbaloneGeometry.getRow(cell)).get(AbaloneGeometry.getColumn(cell)).equals(color)) {
+					List<ArrayList<Integer>> jumps = new ArrayList<ArrayList<Integer>>();
+					jumps.add(Lists.newArrayList(AbaloneGeometry.getRow(cell),
+							AbaloneGeometry.getColumn(cell), heldJump.get(0), heldJump.get(1), heldJump.get(4)));
+					previewBoard.apply(jumps);
+					break;
+				}
+			}
+			rounds.add(Lists.newArrayList(previewBoard.getJumps()));
+			board = previewBoard.getBoard();
+			turn = turn.equals(WTurn) ? BTurn : WTurn;
+		}
+		return rounds;
+	}
+
+	private AbaloneGameRecord record(String gameId, List<List<ArrayList<Integer>>> rounds) {
+		AbaloneGameRecord.Builder builder = new AbaloneGameRecord.Builder(gameId, "42", "43");
+		for(List<ArrayList<Integer>> round : rounds) {
+			builder.addRound(round);
+		}
+		return builder.build(AbaloneGameRecord.UNFINISHED);
+	}
+
+	@Test
+	public void testNotation() {
+		assertEquals("e5", AbaloneTextRecords.toNotation(5, 9));
+		assertArrayEquals(new int[]{9, 5}, AbaloneTextRecords.parseSquare("a1"));
+		assertArrayEquals(new int[]{1, 13}, AbaloneTextRecords.parseSquare("i9"));
+		assertEquals("a5", AbaloneTextRecords.toNotation(9, 13));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadSquare() {
+		AbaloneTextRecords.parseSquare("a6");
+	}
+
+	@Test
+	public void testReplay() {
+		List<List<ArrayList<Integer>>> rounds = playRandomGame(new Random(7), 80);
+		AbaloneGameRecord record = record("7", rounds);
+		assertEquals(rounds.size(), record.getRoundCount());
+		assertEquals(rounds, record.getRoundJumps());
+	}
+
+	@Test
+	public void testTextRecords() throws IOException {
+		Random random = new Random(11);
+		List<AbaloneGameRecord> records = Lists.newArrayList();
+		StringWriter output = new StringWriter();
+		TextRecordWriter writer = new TextRecordWriter(output);
+		for(int i = 0; i < 20; i++) {
+			records.add(record("game" + i, playRandomGame(random, 40)));
+			writer.write(records.get(i));
+		}
+		writer.close();
+		TextRecordReader reader = new TextRecordReader(
+				new StringReader("# exported games\n\n" + output.toString()));
+		for(AbaloneGameRecord record : records) {
+			assertEquals(record, reader.read());
+		}
+		assertNull(reader.read());
+		reader.close();
+	}
+
+	@Test
+	public void testBinaryRecords() throws IOException {
+		Random random = new Random(13);
+		List<AbaloneGameRecord> records = Lists.newArrayList();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		BinaryRecordWriter writer = new BinaryRecordWriter(output);
+		for(int i = 0; i < 20; i++) {
+			records.add(record("game" + i, playRandomGame(random, 40)));
+			writer.write(records.get(i));
+		}
+		writer.close();
+		BinaryRecordReader reader = new BinaryRecordReader(
+				new ByteArrayInputStream(output.toByteArray()));
+		for(AbaloneGameRecord record : records) {
+			AbaloneGameRecord readRecord = reader.read();
+			assertEquals(record, readRecord);
+			assertEquals(record.getRoundJumps(), readRecord.getRoundJumps());
+		}
+		assertNull(reader.read());
+		reader.close();
+	}
+
+	@Test
+	public void testArchive() throws IOException {
+		Random random = new Random(29);
+		List<AbaloneGameRecord> records = Lists.newArrayList();
+		File archive = temporaryFolder.newFile("games.archive");
+		ArchiveWriter writer = new ArchiveWriter(new FileOutputStream(archive), 16);
+		ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+		BinaryRecordWriter binaryWriter = new BinaryRecordWriter(binaryOutput);
+		for(int i = 0; i < 100; i++) {
+			records.add(record("game" + i, playRandomGame(random, 40)));
+			writer.write(records.get(i));
+			binaryWriter.write(records.get(i));
+		}
+		writer.close();
+		binaryWriter.close();
+		// the moves take less than the binary records, which have the same ids.
+		assertTrue(archive.length() < binaryOutput.size());
+
+		ArchiveReader reader = new ArchiveReader(archive);
+		assertEquals(records.size(), reader.getGameCount());
+		for(AbaloneGameRecord record : records) {
+			AbaloneGameRecord readRecord = reader.read();
+			assertEquals(record, readRecord);
+			assertEquals(record.getRoundJumps(), readRecord.getRoundJumps());
+		}
+		assertNull(reader.read());
+		// random access, then reading on from there.
+		assertEquals(records.get(57), reader.read(57));
+		assertEquals(records.get(3), reader.read(3));
+		assertEquals(records.get(4), reader.read());
+		assertEquals(records.get(99), reader.read(99));
+		assertNull(reader.read());
+		reader.close();
+	}
+
+	@Test
+	public void testArchiveWithoutFailedRecord() throws IOException {
+		Random random = new Random(31);
+		File archive = temporaryFolder.newFile("games.archive");
+		ArchiveWriter writer = new ArchiveWriter(new FileOutputStream(archive), 16);
+		AbaloneGameRecord first = record("first", playRandomGame(random, 10));
+		writer.write(first);
+		List<List<ArrayList<Integer>>> rounds = playRandomGame(random, 10);
+		rounds.add(new ArrayList<ArrayList<Integer>>());
+		try {
+			writer.write(record("empty round", rounds));
+			fail();
+		} catch(IllegalArgumentException e) {
+			// the game with an empty round is not written, not even in part.
+		}
+		AbaloneGameRecord second = record("second", playRandomGame(random, 10));
+		writer.write(second);
+		writer.close();
+
+		ArchiveReader reader = new ArchiveReader(archive);
+		assertEquals(2, reader.getGameCount());
+		assertEquals(first, reader.read());
+		assertEquals(second, reader.read());
+		assertNull(reader.read());
+		reader.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testBadTextRecord() throws IOException {
+		new TextRecordReader(new StringReader("1\t42\t43\t*\te5z9")).read();
+	}
+}
@@ -0,0 +1,101 @@
+package org.abalone.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.abalone.client.AbaloneVerifier;
+import org.abalone.server.AbaloneLoadDriver.Report;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.game_api.GameMetrics;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class AbaloneLoadDriverTest {
+	private Report run(long seed) throws InterruptedException {
+		return new AbaloneLoadDriver.Builder()
+				.matches(4).threads(2).maxRounds(30).seed(seed).build().run();
+	}
+
+	@Test
+	public void testMatchesArePlayedAndVerified() throws InterruptedException {
+		Report report = run(7);
+		assertEquals(4, report.getMatches());
+		assertEquals(0, report.getFailedMatches());
+		assertTrue(report.getMoves() > 4);
+		assertTrue(report.getMovesPerSecond() > 0);
+		GameMetrics metrics = report.getMetrics();
+		assertEquals(report.getMoves(),
+				metrics.getHistogram(GameMetrics.POST, AbaloneLoadDriver.MAKE_MOVE).getCount());
+		// every move is verified by both players.
+		assertEquals(2 * report.getMoves(),
+				metrics.getHistogram(GameMetrics.VERIFY, "VerifyMove").getCount());
+		assertTrue(metrics.getHistogram(GameMetrics.UPDATE_UI, "UpdateUI").getCount()
+				> report.getMoves());
+		assertTrue(report.toString().contains("verify/VerifyMove"));
+	}
+
+	@Test
+	public void testSameSeedPlaysSameMatches() throws InterruptedException {
+		Report report = run(11);
+		assertEquals(report.getMoves(), run(11).getMoves());
+		assertEquals(report.getFinishedMatches(), run(11).getFinishedMatches());
+	}
+
+	@Test
+	public void testFailuresKeepTheirCause() throws InterruptedException {
+		Report report = new AbaloneLoadDriver.Builder()
+				.matches(6).threads(2).maxRounds(10).seed(7)
+				.verifier(new AbaloneVerifier() {
+					@Override
+					public VerifyMoveDone verify(VerifyMove verifyMove) {
+						return new VerifyMoveDone(verifyMove.getLastMovePlayerId(), "Always a hacker");
+					}
+				})
+				.build().run();
+		assertEquals(6, report.getFailedMatches());
+		assertEquals(6, report.getFailureReasons().size());
+		assertEquals(1, report.getFailureReasons().elementSet().size());
+		assertTrue(report.getFailureReasons().elementSet().iterator().next()
+				.contains("Always a hacker"));
+		assertEquals(AbaloneLoadDriver.MAX_KEPT_FAILURES, report.getFailures().size());
+		assertTrue(report.toString().contains("6 failed: "));
+	}
+
+	@Test
+	public void testEnginesPlayTheSeats() throws InterruptedException {
+		Report report = new AbaloneLoadDriver.Builder()
+				.matches(2).threads(2).maxRounds(3).seed(7).engines("mcts,alphabeta", 20)
+				.build().run();
+		assertEquals(0, report.getFailedMatches());
+		// the initial move, then three moves, unless an engine ends its match earlier.
+		assertTrue(report.getMoves() <= 2 * 4);
+		assertTrue(report.getMoves() >= 2 * 4 - report.getFinishedMatches() * 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownEngine() {
+		new AbaloneLoadDriver.Builder().engines("mcts,random", 20);
+	}
+
+	@Test
+	public void testPlayersOutOfTimeLoseTheirMatch() throws InterruptedException {
+		final AtomicLong nanos = new AtomicLong();
+		Report report = new AbaloneLoadDriver.Builder()
+				.matches(3).threads(3).maxRounds(10).secondsForTurn(1).seed(7)
+				.ticker(new Ticker() {
+					@Override
+					public long read() {
+						// every reading of the clock is two seconds later.
+						return nanos.addAndGet(2000000000L);
+					}
+				})
+				.build().run();
+		assertEquals(3, report.getTimedOutMatches());
+		assertEquals(0, report.getFailedMatches());
+		assertEquals(0, report.getFinishedMatches());
+	}
+}
@@ -0,0 +1,340 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BOARD;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.JUMP;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.abalone.client.AbaloneLogic;
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbalonePreviewBoard;
+import org.abalone.server.AbaloneMatchRepository.MatchState;
+import org.abalone.server.AbaloneMatchRepository.MatchStore;
+import org.game_api.GameApi.EndGame;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class AbaloneMatchRepositoryTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final List<String> playerIds = ImmutableList.of("42", "43");
+	private final Map<String, MatchState> cache = new ConcurrentHashMap<String, MatchState>();
+	private final FakeTicker ticker = new FakeTicker();
+	private CountingStore store;
+	private AbaloneMatchRepository repository;
+
+	/**
+	 * Store which counts the reads and the states written.
+	 */
+	private static class CountingStore implements MatchStore {
+		private final MatchStore store;
+		private int reads;
+		private int writes;
+
+		CountingStore(MatchStore store) {
+			this.store = store;
+		}
+
+		@Override
+		public MatchState read(String matchId) throws IOException {
+			reads++;
+			return store.read(matchId);
+		}
+
+		@Override
+		public void write(Collection<MatchState> states) throws IOException {
+			writes += states.size();
+			store.write(states);
+		}
+	}
+
+	private static class FakeTicker extends Ticker {
+		private long nanos;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+
+		void advance(long millis) {
+			nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		store = new CountingStore(new AbaloneFileMatchStore(temporaryFolder.getRoot()));
+		repository = new AbaloneMatchRepository(cache, store, 0, ticker);
+	}
+
+	/**
+	 * Method used to play the first placement of the side to move.
+	 */
+	private MatchState playRound(String matchId) throws IOException {
+		MatchState state = repository.get(matchId);
+		@SuppressWarnings("unchecked")
+		List<ArrayList<String>> board = (List<ArrayList<String>>) state.getState().get(BOARD);
+		boolean isWhiteTurn = state.getTurn().equals(playerIds.get(0));
+		Placement placement =
+				AbaloneMoveIndex.getPlacements(board, isWhiteTurn ? WTurn : BTurn).get(0);
+		AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+		previewBoard.apply(placement.getJumps());
+		return repository.makeMove(matchId, Lists.<Operation>newArrayList(
+				new SetTurn(playerIds.get(isWhiteTurn ? 1 : 0)),
+				new Set(BOARD, previewBoard.getBoard()),
+				new Set(JUMP, Lists.newArrayList(previewBoard.getJumps()))));
+	}
+
+	@Test
+	public void testMovesAreCacheHitsAndCoalesced() throws IOException {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		repository.createMatch("2", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		// creating a match looks for it in the store, its moves only read the cache.
+		assertEquals(2, repository.getCacheMisses());
+		assertEquals(2, store.reads);
+		for(int round = 0; round < 10; round++) {
+			playRound("1");
+		}
+		playRound("2");
+		assertEquals(2, repository.getCacheMisses());
+		assertEquals(2, store.reads);
+		assertEquals(0, store.writes);
+		assertEquals(2, repository.getDirtyCount());
+
+		repository.flush();
+		assertEquals(2, store.writes);
+		assertEquals(0, repository.getDirtyCount());
+		assertEquals(11, store.read("1").getVersion());
+		assertEquals(2, store.read("2").getVersion());
+		assertEquals(repository.get("1").getState(), store.read("1").getState());
+		// nothing to write.
+		repository.flush();
+		assertEquals(1, repository.getFlushes());
+	}
+
+	@Test
+	public void testFlushIfDue() throws IOException {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		playRound("1");
+		ticker.advance(999);
+		assertFalse(repository.flushIfDue(1000));
+		assertEquals(0, store.writes);
+		ticker.advance(1);
+		assertTrue(repository.flushIfDue(1000));
+		assertEquals(1, store.writes);
+		playRound("1");
+		assertFalse(repository.flushIfDue(1000));
+		assertEquals(1, repository.getDirtyCount());
+	}
+
+	@Test
+	public void testEvictedMatchIsReadFromDirtyStates() throws IOException {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		MatchState state = playRound("1");
+		cache.clear();
+		assertEquals(state, repository.get("1"));
+		assertEquals(2, repository.getCacheMisses());
+		assertEquals(1, store.reads);
+		repository.flush();
+		cache.clear();
+		assertEquals(2, repository.get("1").getVersion());
+		assertEquals(2, store.reads);
+	}
+
+	@Test
+	public void testMatchesSurviveRestart() throws IOException {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		playRound("1");
+		repository.close();
+		cache.clear();
+		repository = new AbaloneMatchRepository(cache, store, 0);
+		MatchState state = playRound("1");
+		assertEquals(3, state.getVersion());
+		assertEquals(playerIds.get(0), state.getTurn());
+		assertNull(repository.get("2"));
+	}
+
+	private void assertSameState(MatchState expected, MatchState actual) {
+		assertEquals(expected.getMatchId(), actual.getMatchId());
+		assertEquals(expected.getVersion(), actual.getVersion());
+		assertEquals(expected.getPlayerIds(), actual.getPlayerIds());
+		assertEquals(expected.getTurn(), actual.getTurn());
+		assertEquals(expected.getSecondsForTurn(), actual.getSecondsForTurn());
+		assertEquals(expected.getTurnStartMillis(), actual.getTurnStartMillis());
+		assertEquals(expected.getState(), actual.getState());
+		assertEquals(expected.isGameEnd(), actual.isGameEnd());
+	}
+
+	@Test
+	public void testIdleMatchesHibernate() throws IOException {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		repository.createMatch("2", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		repository.createMatch("3", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		playRound("1");
+		repository.makeMove("1", Lists.<Operation>newArrayList(new SetTurn(playerIds.get(0), 3600)));
+		repository.flush();
+		// the move of the third match is not flushed yet.
+		playRound("3");
+		MatchState state = repository.get("1");
+		ticker.advance(120000);
+		repository.get("2");
+		assertEquals(1, repository.hibernateIdle(90000, false));
+		assertEquals(1, repository.getHibernatedCount());
+		assertNull(cache.get("1"));
+		assertTrue(AbaloneMatchHibernation.hibernate(state).length < 64);
+
+		int reads = store.reads;
+		assertSameState(state, repository.get("1"));
+		assertEquals(1, repository.getRehydrations());
+		assertEquals(0, repository.getHibernatedCount());
+		assertEquals(reads, store.reads);
+		assertEquals(3600, state.getSecondsForTurn());
+		assertEquals(4, playRound("1").getVersion());
+	}
+
+	@Test
+	public void testIdleMatchesSpillToStore() throws IOException {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		MatchState state = playRound("1");
+		repository.flush();
+		ticker.advance(120000);
+		assertEquals(1, repository.hibernateIdle(60000, true));
+		assertEquals(0, repository.getHibernatedCount());
+		int reads = store.reads;
+		assertSameState(state, repository.get("1"));
+		assertEquals(reads + 1, store.reads);
+		// accessed again, so no longer idle.
+		assertEquals(0, repository.hibernateIdle(60000, true));
+	}
+
+	/**
+	 * Store whose first read waits for {@code release}, after counting down {@code reading}.
+	 */
+	private static class BlockingStore implements MatchStore {
+		private final MatchStore store;
+		private final CountDownLatch reading = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		BlockingStore(MatchStore store) {
+			this.store = store;
+		}
+
+		@Override
+		public MatchState read(String matchId) throws IOException {
+			MatchState state = store.read(matchId);
+			if(reading.getCount() > 0) {
+				reading.countDown();
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			return state;
+		}
+
+		@Override
+		public void write(Collection<MatchState> states) throws IOException {
+			store.write(states);
+		}
+	}
+
+	@Test
+	public void testMissDoesNotOverwriteConcurrentMove() throws Exception {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		repository.flush();
+		cache.clear();
+		BlockingStore blockingStore = new BlockingStore(store);
+		repository = new AbaloneMatchRepository(cache, blockingStore, 0, ticker);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<MatchState> read = executor.submit(new Callable<MatchState>() {
+				@Override
+				public MatchState call() throws IOException {
+					return repository.get("1");
+				}
+			});
+			blockingStore.reading.await();
+			// the move waits for the read of its match, which it would otherwise overwrite.
+			Future<MatchState> move = executor.submit(new Callable<MatchState>() {
+				@Override
+				public MatchState call() throws IOException {
+					return playRound("1");
+				}
+			});
+			Thread.sleep(100);
+			blockingStore.release.countDown();
+			assertEquals(1, read.get().getVersion());
+			assertEquals(2, move.get().getVersion());
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(2, repository.get("1").getVersion());
+		assertEquals(1, repository.getCacheMisses());
+	}
+
+	@Test
+	public void testFailedFlushIsCounted() throws IOException {
+		repository = new AbaloneMatchRepository(cache, new MatchStore() {
+			@Override
+			public MatchState read(String matchId) {
+				return null;
+			}
+
+			@Override
+			public void write(Collection<MatchState> states) throws IOException {
+				throw new IOException("disk full");
+			}
+		}, 0, ticker);
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		try {
+			repository.flush();
+			fail();
+		} catch(IOException e) {
+			assertEquals(1, repository.getFlushFailures());
+			assertEquals(0, repository.getFlushes());
+			assertEquals(1, repository.getDirtyCount());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoMoveAfterEndGame() throws IOException {
+		repository.createMatch("1", playerIds, new AbaloneLogic().getInitialMove(playerIds));
+		repository.makeMove("1", Lists.<Operation>newArrayList(new EndGame(playerIds.get(0))));
+		playRound("1");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMatchId() throws IOException {
+		repository.get("../1");
+	}
+}
@@ -0,0 +1,117 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.I;
+import static org.abalone.client.AbaloneConstants.S;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import org.abalone.client.AbaloneCompactBoard;
+import org.abalone.client.AbaloneGeometry;
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbalonePreviewBoard;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbaloneMctsEngineTest {
+	private final AbaloneMctsEngine engine = new AbaloneMctsEngine(2, Executors.newFixedThreadPool(2));
+
+	@SuppressWarnings("unchecked")
+	private final List<ArrayList<String>> pushOutBoard =
+			Lists.<ArrayList<String>>newArrayList(
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, E, I, B, I, W, I, B, I, E, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, S, S, E, I, W, I, W, I, W, I, W, I, E, S, S, I, I),
+					Lists.<String>newArrayList(I, S, S, W, I, W, I, W, I, B, I, B, I, B, I, E, S, S, I),
+					Lists.<String>newArrayList(S, S, E, I, E, I, E, I, B, I, B, I, B, I, W, I, W, S, S),
+					Lists.<String>newArrayList(S, E, I, E, I, E, I, E, I, E, I, E, I, B, I, E, I, E, S),
+					Lists.<String>newArrayList(S, S, E, I, E, I, W, I, E, I, E, I, B, I, E, I, E, S, S),
+					Lists.<String>newArrayList(I, S, S, E, I, B, I, E, I, E, I, E, I, E, I, E, S, S, I),
+					Lists.<String>newArrayList(I, I, S, S, E, I, E, I, W, I, W, I, B, I, B, S, S, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, B, I, W, I, E, I, E, I, E, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I));
+
+	@After
+	public void shutdown() {
+		engine.shutdown();
+	}
+
+	@Test
+	public void testCompactBoardMatchesMoveIndex() {
+		Random random = new Random(42);
+		List<ArrayList<String>> board = initialBoard;
+		String turn = WTurn;
+		AbaloneCompactBoard compactBoard = new AbaloneCompactBoard(board, turn);
+		int[] moves = new int[AbaloneCompactBoard.MAX_MOVES];
+		for(int ply = 0; ply < 60; ply++) {
+			List<Placement> placements = AbaloneMoveIndex.getPlacements(board, turn);
+			assertEquals(placements.size(), compactBoard.generateMoves(moves));
+			Placement placement = placements.get(random.nextInt(placements.size()));
+			List<Integer> heldJump = placement.getHeldJump();
+			int cell = AbaloneGeometry.getCell(heldJump.get(0), heldJump.get(1));
+			int move = -1;
+			for(int direction = 0; direction < AbaloneCompactBoard.DIRECTION_COUNT; direction++) {
+				if(AbaloneGeometry.getNeighbor(cell, direction)
+						== AbaloneGeometry.getCell(heldJump.get(2), heldJump.get(3))) {
+					move = cell * AbaloneCompactBoard.DIRECTION_COUNT + direction;
+				}
+			}
+			assertEquals(placement.getMessage().equals(GAMEOVER), compactBoard.play(move));
+			if(placement.getMessage().equals(GAMEOVER)) {
+				return;
+			}
+			AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+			previewBoard.apply(placement.getJumps());
+			board = previewBoard.getBoard();
+			turn = turn.equals(WTurn) ? BTurn : WTurn;
+			assertEquals(new AbaloneCompactBoard(board, turn), compactBoard);
+		}
+	}
+
+	@Test
+	public void testFindsPushOut() {
+		Placement placement = engine.chooseMove(pushOutBoard, BTurn, 10000, 500);
+		assertEquals(GAMEOVER, placement.getMessage());
+	}
+
+	@Test
+	public void testTreeReuse() {
+		Placement placement = engine.chooseMove(initialBoard, WTurn, 10000, 2000);
+		assertNotNull(placement);
+		assertTrue(engine.getPlayouts() >= 2000);
+		AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(initialBoard);
+		previewBoard.apply(placement.getJumps());
+		// no playout at all, the root is the subtree of the chosen move.
+		engine.chooseMove(previewBoard.getBoard(), BTurn, 10000, 0);
+		assertEquals(0, engine.getPlayouts());
+		assertTrue(engine.getRootVisits() > 0);
+	}
+
+	@Test
+	public void testEngineSeats() {
+		AbaloneEngineSeats seats = AbaloneEngineSeats.parse("mcts, alphabeta");
+		assertTrue(seats.getEngine(WTurn) instanceof AbaloneMctsEngine);
+		assertTrue(seats.getEngine(BTurn) instanceof AbaloneSearchEngine);
+		seats.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownEngine() {
+		AbaloneEngineSeats.parse("alphabeta,random");
+	}
+}
@@ -0,0 +1,114 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.B;
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.I;
+import static org.abalone.client.AbaloneConstants.S;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbaloneState;
+import org.abalone.client.AbaloneZobrist;
+import org.abalone.server.AbalonePositionAnalyzer.Analysis;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class AbalonePositionAnalyzerTest {
+	private final AbalonePositionAnalyzer analyzer =
+			new AbalonePositionAnalyzer(100, Executors.newFixedThreadPool(2));
+
+	@SuppressWarnings("unchecked")
+	private final List<ArrayList<String>> pushOutBoard =
+			Lists.<ArrayList<String>>newArrayList(
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, E, I, B, I, W, I, B, I, E, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, S, S, E, I, W, I, W, I, W, I, W, I, E, S, S, I, I),
+					Lists.<String>newArrayList(I, S, S, W, I, W, I, W, I, B, I, B, I, B, I, E, S, S, I),
+					Lists.<String>newArrayList(S, S, E, I, E, I, E, I, B, I, B, I, B, I, W, I, W, S, S),
+					Lists.<String>newArrayList(S, E, I, E, I, E, I, E, I, E, I, E, I, B, I, E, I, E, S),
+					Lists.<String>newArrayList(S, S, E, I, E, I, W, I, E, I, E, I, B, I, E, I, E, S, S),
+					Lists.<String>newArrayList(I, S, S, E, I, B, I, E, I, E, I, E, I, E, I, E, S, S, I),
+					Lists.<String>newArrayList(I, I, S, S, E, I, E, I, W, I, W, I, B, I, B, S, S, I, I),
+					Lists.<String>newArrayList(I, I, I, S, S, B, I, W, I, E, I, E, I, E, S, S, I, I, I),
+					Lists.<String>newArrayList(I, I, I, I, S, I, S, I, S, I, S, I, S, I, S, I, I, I, I));
+
+	@After
+	public void shutdown() {
+		analyzer.shutdown();
+	}
+
+	private AbaloneState state(List<ArrayList<String>> board, String turn) {
+		return new AbaloneState(turn, Lists.newArrayList("42", "43"), board,
+				Lists.<ArrayList<Integer>>newArrayList(), null);
+	}
+
+	private List<ArrayList<String>> swapColors(List<ArrayList<String>> board) {
+		List<ArrayList<String>> swappedBoard = Lists.newArrayList();
+		for(ArrayList<String> row : board) {
+			ArrayList<String> swappedRow = Lists.newArrayList();
+			for(String square : row) {
+				swappedRow.add(square.equals(W) ? B : square.equals(B) ? W : square);
+			}
+			swappedBoard.add(swappedRow);
+		}
+		return swappedBoard;
+	}
+
+	@Test
+	public void testZobristHash() {
+		assertEquals(AbaloneZobrist.hash(initialBoard, WTurn),
+				AbaloneZobrist.hash(Lists.newArrayList(initialBoard), WTurn));
+		assertEquals(AbaloneZobrist.hash(initialBoard, WTurn) ^ AbaloneZobrist.turnKey(),
+				AbaloneZobrist.hash(initialBoard, BTurn));
+		assertFalse(AbaloneZobrist.hash(initialBoard, WTurn) == AbaloneZobrist.hash(pushOutBoard, WTurn));
+	}
+
+	@Test
+	public void testAnalyzeIsCached() {
+		Analysis analysis = analyzer.analyze(state(initialBoard, WTurn), 2, 10000);
+		assertEquals(2, analysis.getDepth());
+		assertEquals(2, analysis.getPrincipalVariation().size());
+		assertEquals(analysis.getBestJumps(),
+				analyzer.analyze(state(initialBoard, WTurn), 1, 10000).getBestJumps());
+		assertEquals(1, analyzer.getCacheStats().hitCount());
+		// a deeper analysis replaces the cached one.
+		assertEquals(3, analyzer.analyze(state(initialBoard, WTurn), 3, 10000).getDepth());
+		assertEquals(3, analyzer.analyze(state(initialBoard, WTurn), 2, 10000).getDepth());
+		assertEquals(1, analyzer.getCacheSize());
+		// the position with the colors swapped and black to move is the same position.
+		assertEquals(analysis.getPositionHash(),
+				analyzer.analyze(state(swapColors(initialBoard), BTurn), 2, 10000).getPositionHash());
+		assertEquals(1, analyzer.getCacheSize());
+	}
+
+	@Test
+	public void testAnalyzeAll() {
+		List<Analysis> analyses = analyzer.analyzeAll(Lists.newArrayList(
+				state(pushOutBoard, BTurn), state(initialBoard, WTurn), state(pushOutBoard, BTurn)),
+				2, 10000);
+		assertEquals(3, analyses.size());
+		assertEquals(GAMEOVER, analyses.get(0).getMessage());
+		// the move is mapped back from the canonical board to a legal move of this board.
+		List<ArrayList<Integer>> bestJumps = analyses.get(0).getBestJumps();
+		List<Integer> heldJump = bestJumps.get(bestJumps.size() - 1);
+		Placement placement = new AbaloneMoveIndex(pushOutBoard, BTurn)
+				.getPlacement(heldJump.get(0), heldJump.get(1), heldJump.get(2), heldJump.get(3));
+		assertEquals(GAMEOVER, placement.getMessage());
+		assertEquals(placement.getJumps(), bestJumps);
+		assertEquals(bestJumps, analyses.get(2).getBestJumps());
+		assertEquals(2, analyzer.getCacheSize());
+	}
+}
@@ -0,0 +1,171 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BTurn;
+import static org.abalone.client.AbaloneConstants.GAMEOVER;
+import static org.abalone.client.AbaloneConstants.WTurn;
+import static org.abalone.client.AbaloneConstants.initialBoard;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.abalone.client.AbaloneMoveIndex;
+import org.abalone.client.AbaloneMoveIndex.Placement;
+import org.abalone.client.AbalonePreviewBoard;
+import org.abalone.server.AbalonePositionIndex.NextMove;
+import org.abalone.server.AbalonePositionIndex.PositionStats;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class AbalonePositionIndexTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final List<AbaloneGameRecord> records = Lists.newArrayList();
+
+	public AbalonePositionIndexTest() {
+		Random random = new Random(5);
+		for(int game = 0; game < 12; game++) {
+			AbaloneGameRecord.Builder builder =
+					new AbaloneGameRecord.Builder(String.valueOf(game), "42", "43");
+			List<ArrayList<String>> board = initialBoard;
+			String turn = WTurn;
+			for(int round = 0; round < 10; round++) {
+				List<Placement> placements = AbaloneMoveIndex.getPlacements(board, turn);
+				// half of the games open with the same move.
+				Placement placement = round == 0 && game % 2 == 0
+						? placements.get(0) : placements.get(random.nextInt(placements.size()));
+				builder.addRound(placement.getJumps());
+				AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(board);
+				previewBoard.apply(placement.getJumps());
+				board = previewBoard.getBoard();
+				if(placement.getMessage().equals(GAMEOVER)) {
+					break;
+				}
+				turn = turn.equals(WTurn) ? BTurn : WTurn;
+			}
+			records.add(builder.build(game % 3 == 0
+					? AbaloneGameRecord.WHITE_WINS : AbaloneGameRecord.UNFINISHED));
+		}
+	}
+
+	@Test
+	public void testLookup() throws IOException {
+		AbalonePositionIndex index = new AbalonePositionIndex(temporaryFolder.newFolder());
+		for(AbaloneGameRecord record : records) {
+			index.addGame(record);
+		}
+		PositionStats stats = index.lookup(initialBoard, WTurn);
+		assertEquals(12, stats.getGames());
+		assertEquals(4, stats.getSideToMoveWins());
+		assertEquals(0, stats.getOpponentWins());
+		NextMove mostCommon = stats.getNextMoves().get(0);
+		assertEquals(6, mostCommon.getGames());
+		// a line move is recorded as the move of its front piece, followed by single jumps.
+		int[] squares = AbaloneGameRecord.getSquares(records.get(0).getRoundMoves(0)[0]);
+		assertEquals(Lists.newArrayList(squares[0], squares[1], squares[2], squares[3]),
+				mostCommon.getHeldJump());
+		int games = 0;
+		for(NextMove nextMove : stats.getNextMoves()) {
+			List<Integer> jump = nextMove.getHeldJump();
+			assertNotNull(new AbaloneMoveIndex(initialBoard, WTurn).getPlacement(
+					jump.get(0), jump.get(1), jump.get(2), jump.get(3)));
+			games += nextMove.getGames();
+		}
+		assertEquals(12, games);
+		// the initial board with black to move is the same position with the colors swapped.
+		assertEquals(12, index.lookup(initialBoard, BTurn).getGames());
+		index.close();
+	}
+
+	@Test
+	public void testPositionAfterFirstRound() throws IOException {
+		AbalonePositionIndex index = new AbalonePositionIndex(temporaryFolder.newFolder());
+		index.addGames(new ListReader(records));
+		AbalonePreviewBoard previewBoard = new AbalonePreviewBoard(initialBoard);
+		previewBoard.apply(records.get(0).getRoundJumps().get(0));
+		PositionStats stats = index.lookup(previewBoard.getBoard(), BTurn);
+		assertEquals(6, stats.getGames());
+		assertNull(index.lookup(previewBoard.getBoard(), WTurn));
+		index.close();
+	}
+
+	@Test
+	public void testSegmentsAndCompaction() throws IOException {
+		File directory = temporaryFolder.newFolder();
+		AbalonePositionIndex index = new AbalonePositionIndex(directory);
+		for(AbaloneGameRecord record : records) {
+			index.addGame(record);
+			index.flush();
+		}
+		// merged segments are deleted.
+		int segmentCount = index.getSegmentCount();
+		assertTrue(segmentCount <= AbalonePositionIndex.MAX_SEGMENTS);
+		assertEquals(segmentCount, directory.listFiles().length);
+		index.close();
+		AbalonePositionIndex reopened = new AbalonePositionIndex(directory);
+		assertEquals(segmentCount, reopened.getSegmentCount());
+		PositionStats stats = reopened.lookup(initialBoard, WTurn);
+		assertEquals(12, stats.getGames());
+		assertEquals(4, stats.getSideToMoveWins());
+		assertEquals(6, stats.getNextMoves().get(0).getGames());
+		reopened.close();
+	}
+
+	@Test
+	public void testSegmentsLeftByCompactionAreSkipped() throws IOException {
+		File directory = temporaryFolder.newFolder();
+		AbalonePositionIndex index = new AbalonePositionIndex(directory);
+		for(AbaloneGameRecord record : records) {
+			index.addGame(record);
+			index.flush();
+		}
+		index.close();
+		File merged = null;
+		for(File file : directory.listFiles()) {
+			if(file.getName().startsWith("merged-")) {
+				merged = file;
+			}
+		}
+		assertNotNull(merged);
+		// as if the compaction stopped before deleting the merged segments and the temporary files.
+		File oldSegment = new File(directory, "segment-00000000.idx");
+		Files.copy(merged, oldSegment);
+		File temporaryFile = new File(directory, merged.getName() + ".tmp");
+		Files.write(new byte[] {1, 2, 3}, temporaryFile);
+		AbalonePositionIndex reopened = new AbalonePositionIndex(directory);
+		assertEquals(12, reopened.lookup(initialBoard, WTurn).getGames());
+		assertFalse(oldSegment.exists());
+		assertFalse(temporaryFile.exists());
+		reopened.close();
+	}
+
+	private static class ListReader implements AbaloneGameRecord.RecordReader {
+		private final List<AbaloneGameRecord> records;
+		private int next;
+
+		ListReader(List<AbaloneGameRecord> records) {
+			this.records = records;
+		}
+
+		@Override
+		public AbaloneGameRecord read() {
+			return next < records.size() ? records.get(next++) : null;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package org.abalone.server;
+
+import static org.abalone.client.AbaloneConstants.BOARD;
+import static org.abalone.client.AbaloneConstants.E;
+import static org.abalone.client.AbaloneConstants.JUMP;
+import static org.abalone.client.AbaloneConstants.W;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.abalone.client.AbaloneFastVerifier;
+import org.abalone.client.AbaloneLogic;
+import org.abalone.client.AbaloneVerifier;
+import org.abalone.server.AbaloneLoadDriver.Report;
+import org.abalone.server.AbaloneShadowVerifier.Disagreement;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.VerifyMove;
+import org.game_api.GameApi.VerifyMoveDone;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class AbaloneShadowVerifierTest {
+	/**
+	 * Verifier which keeps the moves it verifies, and finds them all legal.
+	 */
+	private static class RecordingVerifier implements AbaloneVerifier {
+		private final List<VerifyMove> verifyMoves = Lists.newArrayList();
+
+		@Override
+		public synchronized VerifyMoveDone verify(VerifyMove verifyMove) {
+			verifyMoves.add(verifyMove);
+			return new VerifyMoveDone();
+		}
+	}
+
+	/**
+	 * @return the VerifyMoves of matches played by {@link AbaloneLoadDriver}, two per move.
+	 */
+	private static List<VerifyMove> playedMoves(int matches, int maxRounds, long seed)
+			throws InterruptedException {
+		RecordingVerifier recordingVerifier = new RecordingVerifier();
+		new AbaloneLoadDriver.Builder().matches(matches).threads(1).maxRounds(maxRounds).seed(seed)
+				.verifier(recordingVerifier).build().run();
+		return recordingVerifier.verifyMoves;
+	}
+
+	private static VerifyMove emptyVerifyMove() {
+		return new VerifyMove(Lists.<Map<String, Object>>newArrayList(),
+				Maps.<String, Object>newHashMap(), Maps.<String, Object>newHashMap(),
+				Lists.<Operation>newArrayList(), "42", Maps.<String, Integer>newHashMap());
+	}
+
+	private static VerifyMove withState(VerifyMove verifyMove, Map<String, Object> state,
+			List<Operation> lastMove) {
+		return new VerifyMove(verifyMove.getPlayersInfo(), state, verifyMove.getLastState(),
+				lastMove, verifyMove.getLastMovePlayerId(),
+				verifyMove.getPlayerIdToNumberOfTokensInPot());
+	}
+
+	/**
+	 * @return variants of a move which are not legal: a piece of white added on an empty square,
+	 * the color of the first jump changed, or the jumps missing from the state.
+	 */
+	private static List<VerifyMove> hack(VerifyMove verifyMove) {
+		List<VerifyMove> hacks = Lists.newArrayList();
+		@SuppressWarnings("unchecked")
+		List<ArrayList<String>> board = (List<ArrayList<String>>) verifyMove.getState().get(BOARD);
+		List<ArrayList<String>> hackedBoard = Lists.newArrayList();
+		for(ArrayList<String> row : board) {
+			hackedBoard.add(Lists.newArrayList(row));
+		}
+		int emptyRow = 5;
+		int emptyColumn = hackedBoard.get(emptyRow).indexOf(E);
+		if(emptyColumn >= 0) {
+			hackedBoard.get(emptyRow).set(emptyColumn, W);
+			Map<String, Object> state = Maps.newHashMap(verifyMove.getState());
+			state.put(BOARD, hackedBoard);
+			hacks.add(withState(verifyMove, state, verifyMove.getLastMove()));
+		}
+		@SuppressWarnings("unchecked")
+		List<ArrayList<Integer>> jumps =
+				(List<ArrayList<Integer>>) ((Set) verifyMove.getLastMove().get(2)).getValue();
+		if(!jumps.isEmpty()) {
+			List<ArrayList<Integer>> hackedJumps = Lists.newArrayList(jumps);
+			ArrayList<Integer> jump = Lists.newArrayList(jumps.get(0));
+			jump.set(4, 1 - jump.get(4));
+			hackedJumps.set(0, jump);
+			List<Operation> lastMove = Lists.newArrayList(verifyMove.getLastMove());
+			lastMove.set(2, new Set(JUMP, hackedJumps));
+			hacks.add(withState(verifyMove, verifyMove.getState(), lastMove));
+
+			Map<String, Object> state = Maps.newHashMap(verifyMove.getState());
+			state.put(JUMP, Lists.newArrayList());
+			hacks.add(withState(verifyMove, state, verifyMove.getLastMove()));
+		}
+		return hacks;
+	}
+
+	@Test
+	public void testFastVerifierAgreesOnPlayedMatches() throws InterruptedException {
+		AbaloneShadowVerifier shadowVerifier =
+				new AbaloneShadowVerifier(new AbaloneLogic(), new AbaloneFastVerifier(), 1, 0);
+		Report report = new AbaloneLoadDriver.Builder()
+				.matches(4).threads(2).maxRounds(40).seed(5).verifier(shadowVerifier).build().run();
+		assertEquals(0, report.getFailedMatches());
+		assertEquals(2 * report.getMoves(), shadowVerifier.getSamples());
+		assertEquals(0, shadowVerifier.getDisagreementCount());
+		assertTrue(shadowVerifier.getLatencyRatio() > 0);
+		assertEquals(2 * report.getMoves(), shadowVerifier.getMetrics().getHistogram(
+				AbaloneShadowVerifier.CANDIDATE, "VerifyMove").getCount());
+
+		int hackCount = 0;
+		for(VerifyMove verifyMove : playedMoves(2, 10, 5)) {
+			if(verifyMove.getLastState().isEmpty()) {
+				continue;
+			}
+			for(VerifyMove hackedMove : hack(verifyMove)) {
+				assertNotNull(shadowVerifier.verify(hackedMove).getHackerPlayerId());
+				// as received by AbaloneVerifyServlet.
+				VerifyMove parsedMove = (VerifyMove) AbaloneMessageJson.toMessage(
+						AbaloneMessageJson.toJson(hackedMove));
+				assertNotNull(shadowVerifier.verify(parsedMove).getHackerPlayerId());
+				hackCount++;
+			}
+			assertNull(shadowVerifier.verify((VerifyMove) AbaloneMessageJson.toMessage(
+					AbaloneMessageJson.toJson(verifyMove))).getHackerPlayerId());
+		}
+		assertTrue(hackCount > 20);
+		assertEquals(0, shadowVerifier.getDisagreementCount());
+		assertTrue(shadowVerifier.isPromotable());
+		shadowVerifier.promote();
+		assertTrue(shadowVerifier.isPromoted());
+	}
+
+	@Test
+	public void testDisagreementKeepsTheMove() throws InterruptedException {
+		AbaloneShadowVerifier shadowVerifier =
+				new AbaloneShadowVerifier(new AbaloneLogic(), new RecordingVerifier(), 1, 0);
+		// the VerifyMoves of the first move of white.
+		VerifyMove hackedMove = hack(playedMoves(1, 1, 3).get(2)).get(0);
+		// the reference gives the result.
+		assertNotNull(shadowVerifier.verify(hackedMove).getHackerPlayerId());
+		assertEquals(1, shadowVerifier.getDisagreementCount());
+		assertFalse(shadowVerifier.isPromotable());
+		Disagreement disagreement = shadowVerifier.getDisagreements().get(0);
+		assertNull(disagreement.getCandidateResult().getHackerPlayerId());
+		assertEquals(hackedMove, AbaloneMessageJson.toMessage(disagreement.getPayload()));
+		try {
+			shadowVerifier.promote();
+			fail();
+		} catch(IllegalStateException e) {
+			assertFalse(shadowVerifier.isPromoted());
+		}
+	}
+
+	@Test
+	public void testPromotionAfterSamples() {
+		RecordingVerifier reference = new RecordingVerifier();
+		RecordingVerifier candidate = new RecordingVerifier();
+		AbaloneShadowVerifier shadowVerifier = new AbaloneShadowVerifier(reference, candidate, 1, 3);
+		for(int i = 0; i < 5; i++) {
+			assertNull(shadowVerifier.verify(emptyVerifyMove()).getHackerPlayerId());
+			assertEquals(i >= 2, shadowVerifier.isPromoted());
+		}
+		assertEquals(3, shadowVerifier.getSamples());
+		assertEquals(3, reference.verifyMoves.size());
+		assertEquals(5, candidate.verifyMoves.size());
+	}
+
+	@Test
+	public void testNoSample() {
+		RecordingVerifier candidate = new RecordingVerifier();
+		AbaloneShadowVerifier shadowVerifier =
+				new AbaloneShadowVerifier(new RecordingVerifier(), candidate, 0, 0);
+		shadowVerifier.verify(emptyVerifyMove());
+		assertEquals(0, candidate.verifyMoves.size());
+		assertEquals(0, shadowVerifier.getSamples());
+		assertFalse(shadowVerifier.isPromotable());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSampleRateOutOfRange() {
+		new AbaloneShadowVerifier(new AbaloneLogic(), new AbaloneFastVerifier(), 1.5, 0);
+	}
+}
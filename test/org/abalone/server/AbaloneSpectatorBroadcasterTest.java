@@ -0,0 +1,217 @@
+package org.abalone.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.abalone.server.AbaloneSpectatorBroadcaster.Frame;
+import org.abalone.server.AbaloneSpectatorBroadcaster.ViewerChannel;
+import org.game_api.GameApi;
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.IteratingPlayerContainer;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class AbaloneSpectatorBroadcasterTest {
+	private final IteratingPlayerContainer container = new IteratingPlayerContainer(new Game() {
+		@Override
+		public void sendVerifyMove(VerifyMove verifyMove) {
+		}
+
+		@Override
+		public void sendUpdateUI(UpdateUI updateUI) {
+		}
+	}, 2);
+
+	/**
+	 * Executor holding the writes until {@link #runAll()}, as if all the viewers were slow.
+	 */
+	private final List<Runnable> pendingWrites = Lists.newArrayList();
+	private final Executor heldExecutor = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			pendingWrites.add(command);
+		}
+	};
+	private final Executor directExecutor = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private static class RecordingChannel implements ViewerChannel {
+		private final List<byte[]> frames = Lists.newArrayList();
+
+		@Override
+		public void write(byte[] frame) {
+			frames.add(frame);
+		}
+	}
+
+	private void runAll() {
+		List<Runnable> writes = Lists.newArrayList(pendingWrites);
+		pendingWrites.clear();
+		for(Runnable write : writes) {
+			write.run();
+		}
+	}
+
+	private UpdateUI makeMove(int move) {
+		List<String> playerIds = container.getPlayerIds();
+		container.updateUi(playerIds.get(move % 2));
+		container.sendMakeMove(ImmutableList.<Operation>of(
+				new SetTurn(playerIds.get((move + 1) % 2)), new Set("move", move)));
+		return container.getUpdateUi(GameApi.VIEWER_ID);
+	}
+
+	@Test
+	public void testEncodedOnce() {
+		AbaloneSpectatorBroadcaster broadcaster = new AbaloneSpectatorBroadcaster(directExecutor);
+		List<RecordingChannel> channels = Lists.newArrayList();
+		for(int i = 0; i < 100; i++) {
+			RecordingChannel channel = new RecordingChannel();
+			channels.add(channel);
+			broadcaster.addViewer(channel);
+		}
+		UpdateUI updateUi = makeMove(0);
+		Frame frame = broadcaster.broadcast(updateUi);
+		assertEquals(1, broadcaster.getEncodedFrames());
+		assertEquals(100, broadcaster.getSentFrames());
+		for(RecordingChannel channel : channels) {
+			assertEquals(1, channel.frames.size());
+			assertSame(frame.getBytes(), channel.frames.get(0));
+		}
+		assertArrayEquals(AbaloneMessageJson.toJsonBytes(updateUi), frame.getBytes());
+	}
+
+	@Test
+	public void testSlowViewerGetsLatest() {
+		AbaloneSpectatorBroadcaster broadcaster = new AbaloneSpectatorBroadcaster(heldExecutor);
+		RecordingChannel channel = new RecordingChannel();
+		broadcaster.addViewer(channel);
+		broadcaster.broadcast(makeMove(0));
+		broadcaster.broadcast(makeMove(1));
+		Frame latest = broadcaster.broadcast(makeMove(2));
+		// one write scheduled for the viewer, whatever the number of moves.
+		assertEquals(1, pendingWrites.size());
+		runAll();
+		assertEquals(1, channel.frames.size());
+		assertSame(latest.getBytes(), channel.frames.get(0));
+		assertEquals(2, broadcaster.getDroppedFrames());
+		assertEquals(3, latest.getSequence());
+	}
+
+	@Test
+	public void testLateViewer() {
+		AbaloneSpectatorBroadcaster broadcaster = new AbaloneSpectatorBroadcaster(directExecutor);
+		broadcaster.broadcast(makeMove(0));
+		Frame latest = broadcaster.broadcast(makeMove(1));
+		RecordingChannel channel = new RecordingChannel();
+		broadcaster.addViewer(channel);
+		assertEquals(1, channel.frames.size());
+		assertSame(latest.getBytes(), channel.frames.get(0));
+	}
+
+	@Test
+	public void testFramesNeverGoBack() throws Exception {
+		final List<UpdateUI> updateUis = Lists.newArrayList();
+		for(int move = 0; move < 400; move++) {
+			updateUis.add(makeMove(move));
+		}
+		ExecutorService writers = Executors.newFixedThreadPool(4);
+		ExecutorService broadcasters = Executors.newFixedThreadPool(4);
+		final AbaloneSpectatorBroadcaster broadcaster = new AbaloneSpectatorBroadcaster(writers);
+		final Map<byte[], Long> sequences =
+				Collections.synchronizedMap(new IdentityHashMap<byte[], Long>());
+		final List<RecordingChannel> channels = Lists.newArrayList();
+		for(int i = 0; i < 8; i++) {
+			channels.add(new RecordingChannel());
+		}
+		List<Future<?>> futures = Lists.newArrayList();
+		for(int i = 0; i < updateUis.size(); i++) {
+			final int move = i;
+			futures.add(broadcasters.submit(new Runnable() {
+				@Override
+				public void run() {
+					// half of the viewers join meanwhile the moves.
+					if(move % 50 == 0) {
+						broadcaster.addViewer(channels.get(move / 50));
+					}
+					Frame frame = broadcaster.broadcast(updateUis.get(move));
+					sequences.put(frame.getBytes(), frame.getSequence());
+				}
+			}));
+		}
+		for(Future<?> future : futures) {
+			future.get();
+		}
+		broadcasters.shutdown();
+		writers.shutdown();
+		assertTrue(writers.awaitTermination(10, TimeUnit.SECONDS));
+		for(RecordingChannel channel : channels) {
+			long lastSequence = 0;
+			for(byte[] frame : channel.frames) {
+				long sequence = sequences.get(frame);
+				assertTrue(sequence > lastSequence);
+				lastSequence = sequence;
+			}
+			assertEquals(updateUis.size(), lastSequence);
+		}
+	}
+
+	@Test
+	public void testClosedViewerRemoved() {
+		AbaloneSpectatorBroadcaster broadcaster = new AbaloneSpectatorBroadcaster(directExecutor);
+		broadcaster.addViewer(new ViewerChannel() {
+			@Override
+			public void write(byte[] frame) throws IOException {
+				throw new IOException("closed");
+			}
+		});
+		broadcaster.addViewer(new RecordingChannel());
+		broadcaster.broadcast(makeMove(0));
+		assertEquals(1, broadcaster.getViewerCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPlayerUpdateUi() {
+		makeMove(0);
+		new AbaloneSpectatorBroadcaster(directExecutor).broadcast(
+				container.getUpdateUi(container.getPlayerIds().get(0)));
+	}
+
+	@Test
+	public void testJson() {
+		String json = AbaloneMessageJson.toJson(new Set("key", "a\"b\\c\nd\u2028"));
+		assertTrue(json.startsWith("{"));
+		assertTrue(json.contains("\"type\":\"Set\""));
+		assertTrue(json.contains("\"value\":\"a\\\"b\\\\c\\nd\\u2028\""));
+		assertTrue(json.contains("\"visibleToPlayerIds\":\"ALL\""));
+		String updateUi = new String(AbaloneMessageJson.toJsonBytes(makeMove(0)),
+				StandardCharsets.UTF_8);
+		assertTrue(updateUi.contains("\"yourPlayerId\":\"-1\""));
+		assertTrue(updateUi.contains("\"lastMove\":[{"));
+		assertTrue(updateUi.contains("\"move\":0"));
+	}
+}
@@ -0,0 +1,82 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.game_api.GameMetrics.Histogram;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class GameMetricsTest {
+  private long nanos;
+  private final GameMetrics gameMetrics = new GameMetrics(new Ticker() {
+    @Override
+    public long read() {
+      return nanos;
+    }
+  });
+
+  @Test
+  public void testStartStop() {
+    long start = gameMetrics.start();
+    nanos += 250000;
+    gameMetrics.stop(GameMetrics.PARSE, "UpdateUI", start);
+    Histogram histogram = gameMetrics.getHistogram(GameMetrics.PARSE, "UpdateUI");
+    assertEquals(1, histogram.getCount());
+    assertEquals(250, histogram.getMaxMicros());
+    assertEquals(250, histogram.getPercentileMicros(50));
+    assertNull(gameMetrics.getHistogram(GameMetrics.PARSE, "VerifyMove"));
+  }
+
+  @Test
+  public void testPercentiles() {
+    for (int micros = 1; micros <= 1000; micros++) {
+      gameMetrics.record(GameMetrics.VERIFY, "VerifyMove", micros * 1000L);
+    }
+    Histogram histogram = gameMetrics.getHistogram(GameMetrics.VERIFY, "VerifyMove");
+    int p50 = histogram.getPercentileMicros(50);
+    int p99 = histogram.getPercentileMicros(99);
+    assertTrue(p50 >= 500 && p50 <= 500 * 1.125);
+    assertTrue(p99 >= 990 && p99 <= 1000);
+    assertEquals(1000, histogram.getMaxMicros());
+    assertEquals(500500, histogram.getTotalMicros());
+  }
+
+  @Test
+  public void testHistogramIsASnapshot() {
+    gameMetrics.record(GameMetrics.RENDER, "UpdateUI", 3000);
+    Histogram histogram = gameMetrics.getHistogram(GameMetrics.RENDER, "UpdateUI");
+    gameMetrics.record(GameMetrics.RENDER, "UpdateUI", 5000);
+    assertEquals(1, histogram.getCount());
+    assertEquals(3, histogram.getMaxMicros());
+    assertEquals(2, gameMetrics.getHistogram(GameMetrics.RENDER, "UpdateUI").getCount());
+    assertTrue(gameMetrics.snapshot().containsKey(GameMetrics.RENDER + "/UpdateUI"));
+  }
+
+  @Test
+  public void testBuckets() {
+    for (int micros : new int[] {0, 15, 16, 17, 18, 1000, 123456, Integer.MAX_VALUE}) {
+      int index = Histogram.bucketIndex(micros);
+      assertTrue(micros <= Histogram.bucketUpperBound(index));
+      assertTrue(index == 0 || micros > Histogram.bucketUpperBound(index - 1));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testSnapshot() {
+    gameMetrics.record(GameMetrics.POST, "MakeMove", 3000);
+    gameMetrics.record(GameMetrics.POST, "MakeMove", 5000);
+    Map<String, Object> snapshot = gameMetrics.snapshot();
+    Map<String, Object> post = (Map<String, Object>) snapshot.get("post/MakeMove");
+    assertEquals(2, post.get("count"));
+    assertEquals(5, post.get("max"));
+    assertEquals(8, post.get("total"));
+    gameMetrics.reset();
+    assertTrue(gameMetrics.snapshot().isEmpty());
+  }
+}
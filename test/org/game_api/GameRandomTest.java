@@ -0,0 +1,50 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GameRandomTest {
+
+  @Test
+  public void testSameValuesAsSplitMix64() {
+    // first value of the reference SplitMix64 from seed 0.
+    assertEquals(0xe220a8397b1dcdafL, new GameRandom(0).nextLong());
+    assertEquals(31, new GameRandom(42).nextInt(100));
+  }
+
+  @Test
+  public void testCopyAndSplit() {
+    GameRandom random = new GameRandom(7);
+    random.nextLong();
+    GameRandom copy = random.copy();
+    GameRandom split = random.split();
+    GameRandom splitAgain = new GameRandom(7);
+    splitAgain.nextLong();
+    splitAgain = splitAgain.split();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(split.nextLong(), splitAgain.nextLong());
+    }
+    copy.split();
+    assertEquals(random.nextLong(), copy.nextLong());
+  }
+
+  @Test
+  public void testNextIntBounds() {
+    GameRandom random = new GameRandom(11);
+    int[] counts = new int[6];
+    for (int i = 0; i < 6000; i++) {
+      counts[random.nextInt(6)]++;
+    }
+    for (int count : counts) {
+      assertTrue(count > 800 && count < 1200);
+    }
+    assertEquals(0, random.nextInt(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadBound() {
+    new GameRandom(1).nextInt(0);
+  }
+}
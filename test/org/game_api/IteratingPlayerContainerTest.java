@@ -0,0 +1,146 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Game;
+import org.game_api.GameApi.IteratingPlayerContainer;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetRandomInteger;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.Shuffle;
+import org.game_api.GameApi.UpdateUI;
+import org.game_api.GameApi.VerifyMove;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+public class IteratingPlayerContainerTest {
+  private long nanos;
+  private final List<VerifyMove> verifyMoves = Lists.newArrayList();
+  private UpdateUI lastUpdateUi;
+  private final IteratingPlayerContainer container = new IteratingPlayerContainer(new Game() {
+    @Override
+    public void sendVerifyMove(VerifyMove verifyMove) {
+      verifyMoves.add(verifyMove);
+    }
+
+    @Override
+    public void sendUpdateUI(UpdateUI updateUI) {
+      lastUpdateUi = updateUI;
+    }
+  }, 2, new Ticker() {
+    @Override
+    public long read() {
+      return nanos;
+    }
+  });
+
+  private List<Operation> move(String nextPlayerId, int secondsForTurn) {
+    return ImmutableList.<Operation>of(new SetTurn(nextPlayerId, secondsForTurn),
+        new Set("key", nextPlayerId));
+  }
+
+  @Test
+  public void testTurnClock() {
+    List<String> playerIds = container.getPlayerIds();
+    container.updateUi(playerIds.get(0));
+    assertEquals(-1, container.getMillisLeftForTurn());
+    container.sendMakeMove(move(playerIds.get(1), 10));
+    assertEquals(10000, container.getMillisLeftForTurn());
+
+    nanos += 9000000000L;
+    assertEquals(1000, container.getMillisLeftForTurn());
+    container.updateUi(playerIds.get(1));
+    container.sendMakeMove(move(playerIds.get(0), 10));
+
+    container.updateUi(playerIds.get(0));
+    nanos += 10000000001L;
+    // the player who ran out of time loses, the late move is not made nor verified.
+    int verifiedMoves = verifyMoves.size();
+    container.sendMakeMove(move(playerIds.get(1), 10));
+    assertEquals(verifiedMoves, verifyMoves.size());
+    assertEquals(playerIds.get(0), container.getTimedOutPlayerId());
+    assertEquals(ImmutableMap.of(playerIds.get(0), 0, playerIds.get(1), 1),
+        container.getEndGame().getPlayerIdToScore());
+    assertEquals(ImmutableList.of(container.getEndGame()), lastUpdateUi.getLastMove());
+    assertEquals(playerIds.get(0), lastUpdateUi.getYourPlayerId());
+    assertEquals(playerIds.get(0), lastUpdateUi.getState().get("key"));
+    assertEquals(-1, container.getMillisLeftForTurn());
+    try {
+      container.sendMakeMove(move(playerIds.get(1), 10));
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("The match has ended", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testClockRunsOutBeforeUpdateUi() {
+    List<String> playerIds = container.getPlayerIds();
+    container.updateUi(playerIds.get(0));
+    container.sendMakeMove(move(playerIds.get(1), 10));
+    nanos += 10000000001L;
+    // the waiting player sees the end of the match without any move.
+    container.updateUi(playerIds.get(0));
+    assertEquals(playerIds.get(0), lastUpdateUi.getYourPlayerId());
+    assertEquals(playerIds.get(1), container.getTimedOutPlayerId());
+    assertEquals(Integer.valueOf(1),
+        container.getEndGame().getPlayerIdToScore().get(playerIds.get(0)));
+    assertEquals(ImmutableList.of(container.getEndGame()), lastUpdateUi.getLastMove());
+  }
+
+  @Test
+  public void testTurnWithoutClock() {
+    List<String> playerIds = container.getPlayerIds();
+    container.updateUi(playerIds.get(0));
+    container.sendMakeMove(move(playerIds.get(1), 0));
+    nanos += 100000000000L;
+    container.updateUi(playerIds.get(1));
+    container.sendMakeMove(move(playerIds.get(0), 0));
+    assertEquals(-1, container.getMillisLeftForTurn());
+  }
+
+  /**
+   * Method used to play two random moves in a container of the seed.
+   * @return the states of the last VerifyMove.
+   */
+  private Map<String, Object> playRandomMoves(long seed) {
+    final List<Map<String, Object>> states = Lists.newArrayList();
+    IteratingPlayerContainer seededContainer = new IteratingPlayerContainer(new Game() {
+      @Override
+      public void sendVerifyMove(VerifyMove verifyMove) {
+        states.add(verifyMove.getState());
+      }
+
+      @Override
+      public void sendUpdateUI(UpdateUI updateUI) {
+      }
+    }, 2, Ticker.systemTicker(), seed);
+    assertEquals(seed, seededContainer.getSeed());
+    List<String> playerIds = seededContainer.getPlayerIds();
+    seededContainer.updateUi(playerIds.get(0));
+    seededContainer.sendMakeMove(ImmutableList.<Operation>of(new SetTurn(playerIds.get(1)),
+        new Set("a", "A"), new Set("b", "B"), new Set("c", "C"), new Set("d", "D"),
+        new SetRandomInteger("dice", 0, 1000000)));
+    seededContainer.updateUi(playerIds.get(1));
+    seededContainer.sendMakeMove(ImmutableList.<Operation>of(new SetTurn(playerIds.get(0)),
+        new Shuffle(ImmutableList.of("a", "b", "c", "d")),
+        new SetRandomInteger("dice", 0, 1000000)));
+    return states.get(states.size() - 1);
+  }
+
+  @Test
+  public void testReplayFromSeed() {
+    assertEquals(playRandomMoves(2014), playRandomMoves(2014));
+    assertNotEquals(playRandomMoves(2014), playRandomMoves(2015));
+  }
+}
@@ -0,0 +1,58 @@
+package org.game_api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import org.game_api.GameApi.Message;
+import org.game_api.GameApi.Operation;
+import org.game_api.GameApi.Set;
+import org.game_api.GameApi.SetTurn;
+import org.game_api.GameApi.VerifyMove;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+public class MessageTest {
+  private final List<Map<String, Object>> playersInfo = ImmutableList.<Map<String, Object>>of(
+      ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, "42"),
+      ImmutableMap.<String, Object>of(GameApi.PLAYER_ID, "43"));
+
+  private VerifyMove verifyMove(String value) {
+    List<Operation> lastMove = ImmutableList.<Operation>of(new SetTurn("43"), new Set("key", value));
+    return new VerifyMove(playersInfo, ImmutableMap.<String, Object>of("key", value),
+        ImmutableMap.<String, Object>of(), lastMove, "42", ImmutableMap.<String, Integer>of());
+  }
+
+  @Test
+  public void testToMessageIsBuiltOnce() {
+    VerifyMove verifyMove = verifyMove("value");
+    Map<String, Object> message = verifyMove.toMessage();
+    assertSame(message, verifyMove.toMessage());
+    assertEquals("VerifyMove", message.get("type"));
+    assertEquals(verifyMove, Message.messageToHasEquality(message));
+    // the operations of lastMove share their own maps.
+    assertSame(verifyMove.getLastMove().get(1).toMessage(),
+        ((List<?>) message.get("lastMove")).get(1));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testToMessageIsUnmodifiable() {
+    verifyMove("value").toMessage().put("type", "UpdateUI");
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    VerifyMove verifyMove = verifyMove("value");
+    assertEquals(verifyMove.hashCode(), verifyMove.hashCode());
+    assertEquals(verifyMove, verifyMove("value"));
+    assertEquals(verifyMove.hashCode(), verifyMove("value").hashCode());
+    assertNotEquals(verifyMove, verifyMove("other value"));
+    assertNotEquals(new Set("key", Lists.newArrayList(1, 2)), new Set("key", Lists.newArrayList(2, 1)));
+  }
+}